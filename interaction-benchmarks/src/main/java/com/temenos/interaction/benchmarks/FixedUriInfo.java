@@ -0,0 +1,118 @@
+package com.temenos.interaction.benchmarks;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+
+import com.temenos.interaction.core.MultivaluedMapImpl;
+
+/**
+ * The {@link UriInfo} of a request to a fixed path, outside of a JAX-RS container.
+ */
+public class FixedUriInfo implements UriInfo {
+
+	private final URI baseUri;
+	private final String path;
+	private final MultivaluedMap<String, String> pathParameters = new MultivaluedMapImpl<String>();
+	private final MultivaluedMap<String, String> queryParameters = new MultivaluedMapImpl<String>();
+
+	public FixedUriInfo(String baseUri, String path) {
+		this.baseUri = URI.create(baseUri);
+		this.path = path;
+	}
+
+	@Override
+	public String getPath() {
+		return path;
+	}
+
+	@Override
+	public String getPath(boolean decode) {
+		return path;
+	}
+
+	@Override
+	public List<PathSegment> getPathSegments() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public List<PathSegment> getPathSegments(boolean decode) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public URI getRequestUri() {
+		return getAbsolutePath();
+	}
+
+	@Override
+	public UriBuilder getRequestUriBuilder() {
+		return UriBuilder.fromUri(getRequestUri());
+	}
+
+	@Override
+	public URI getAbsolutePath() {
+		return baseUri.resolve(path);
+	}
+
+	@Override
+	public UriBuilder getAbsolutePathBuilder() {
+		return UriBuilder.fromUri(getAbsolutePath());
+	}
+
+	@Override
+	public URI getBaseUri() {
+		return baseUri;
+	}
+
+	@Override
+	public UriBuilder getBaseUriBuilder() {
+		return UriBuilder.fromUri(baseUri);
+	}
+
+	@Override
+	public MultivaluedMap<String, String> getPathParameters() {
+		return pathParameters;
+	}
+
+	@Override
+	public MultivaluedMap<String, String> getPathParameters(boolean decode) {
+		return pathParameters;
+	}
+
+	@Override
+	public MultivaluedMap<String, String> getQueryParameters() {
+		return queryParameters;
+	}
+
+	@Override
+	public MultivaluedMap<String, String> getQueryParameters(boolean decode) {
+		return queryParameters;
+	}
+
+	@Override
+	public List<String> getMatchedURIs() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public List<String> getMatchedURIs(boolean decode) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public List<Object> getMatchedResources() {
+		return Collections.emptyList();
+	}
+}
@@ -0,0 +1,218 @@
+package com.temenos.interaction.benchmarks;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.ws.rs.HttpMethod;
+
+import com.temenos.interaction.core.MultivaluedMapImpl;
+import com.temenos.interaction.core.command.InteractionContext;
+import com.temenos.interaction.core.entity.Entity;
+import com.temenos.interaction.core.entity.EntityProperties;
+import com.temenos.interaction.core.entity.EntityProperty;
+import com.temenos.interaction.core.entity.Metadata;
+import com.temenos.interaction.core.entity.MetadataParser;
+import com.temenos.interaction.core.hypermedia.Action;
+import com.temenos.interaction.core.hypermedia.CollectionResourceState;
+import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.hypermedia.ResourceStateMachine;
+import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.resource.CollectionResource;
+import com.temenos.interaction.core.resource.EntityResource;
+import com.temenos.interaction.core.web.RequestContext;
+
+/**
+ * Generates the data of the benchmarks.  The data only depends on the sizes
+ * asked for and on {@link #SEED}, so every run measures the same work.
+ * <p>
+ * The synthetic RIM has a service document and, for each entity
+ * <code>Entity&lt;n&gt;</code>, a collection state at <code>/Entity&lt;n&gt;s()</code>,
+ * an item state at <code>/Entity&lt;n&gt;s('{id}')</code> and an update state
+ * sharing the path of the item.
+ */
+public final class SyntheticData {
+
+	public static final long SEED = 20190101L;
+
+	public static final String BASE_URI = "http://localhost:8080/benchmark";
+
+	private static final String[] RELATIONS = { "eq", "ne", "lt", "gt", "le", "ge" };
+
+	private SyntheticData() {
+	}
+
+	public static String entityName(int entity) {
+		return "Entity" + entity;
+	}
+
+	public static String propertyName(int property) {
+		return "Property" + property;
+	}
+
+	/**
+	 * @param entities the number of entities, the RIM has three states per entity
+	 * @return the initial state of the RIM
+	 */
+	public static ResourceState rim(int entities) {
+		ResourceState serviceDocument = new ResourceState("ServiceDocument", "ServiceDocument", view(), "/");
+		for (int i = 0; i < entities; i++) {
+			String entityName = entityName(i);
+			CollectionResourceState collection = new CollectionResourceState(entityName, entityName + "s", view(), "/" + entityName + "s()");
+			ResourceState item = new ResourceState(entityName, entityName, view(), "/" + entityName + "s('{id}')");
+			ResourceState update = new ResourceState(entityName, entityName + "_update",
+					Collections.singletonList(new Action("UpdateEntity", Action.TYPE.ENTRY)), "/" + entityName + "s('{id}')");
+			serviceDocument.addTransition(new Transition.Builder().method(HttpMethod.GET).target(collection).build());
+			collection.addTransition(new Transition.Builder().method(HttpMethod.GET).target(item)
+					.flags(Transition.FOR_EACH).uriParameters(Collections.singletonMap("id", "{" + propertyName(0) + "}")).build());
+			collection.addTransition(new Transition.Builder().method(HttpMethod.PUT).target(update)
+					.flags(Transition.FOR_EACH).uriParameters(Collections.singletonMap("id", "{" + propertyName(0) + "}")).build());
+			item.addTransition(new Transition.Builder().method(HttpMethod.GET).target(collection).build());
+			item.addTransition(new Transition.Builder().method(HttpMethod.PUT).target(update).build());
+		}
+		return serviceDocument;
+	}
+
+	/**
+	 * @param entities the number of entities of the RIM
+	 * @param count
+	 * @return request paths spread over the states of the RIM, a third of
+	 * them to collections
+	 */
+	public static List<String> paths(int entities, int count) {
+		Random random = new Random(SEED);
+		List<String> paths = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			String entityName = entityName(random.nextInt(entities));
+			if (i % 3 == 0) {
+				paths.add("/" + entityName + "s()");
+			} else {
+				paths.add("/" + entityName + "s('" + random.nextInt(1000000) + "')");
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * @param entities
+	 * @param properties the number of properties of each entity, the first is the id
+	 * @return a metadata document for {@link MetadataParser}
+	 */
+	public static String metadataXml(int entities, int properties) {
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<Metadata ModelName=\"Benchmark\" Version=\"1.0\" xmlns=\"http://iris.temenos.com/metadata.xsd\">\n");
+		for (int i = 0; i < entities; i++) {
+			xml.append("\t<Entity Name=\"").append(entityName(i)).append("\">\n");
+			for (int p = 0; p < properties; p++) {
+				xml.append("\t\t<Property Name=\"").append(propertyName(p)).append("\">\n");
+				if (p == 0) {
+					xml.append("\t\t\t<Term Name=\"TERM_ID_FIELD\">true</Term>\n");
+				} else if (p % 5 == 0) {
+					xml.append("\t\t\t<Term Name=\"TERM_VALUE_TYPE\">INTEGER_NUMBER</Term>\n");
+				}
+				xml.append("\t\t</Property>\n");
+			}
+			xml.append("\t</Entity>\n");
+		}
+		xml.append("</Metadata>\n");
+		return xml.toString();
+	}
+
+	public static Metadata metadata(int entities, int properties) {
+		byte[] xml = metadataXml(entities, properties).getBytes(StandardCharsets.UTF_8);
+		return new MetadataParser().parse(new ByteArrayInputStream(xml));
+	}
+
+	/**
+	 * @param entityName
+	 * @param rows
+	 * @param properties
+	 * @return a collection of entities with text and number properties
+	 */
+	public static CollectionResource<Entity> collection(String entityName, int rows, int properties) {
+		Random random = new Random(SEED);
+		List<EntityResource<Entity>> entities = new ArrayList<EntityResource<Entity>>(rows);
+		for (int r = 0; r < rows; r++) {
+			EntityProperties props = new EntityProperties();
+			props.setProperty(new EntityProperty(propertyName(0), String.valueOf(r)));
+			for (int p = 1; p < properties; p++) {
+				Object value = p % 5 == 0 ? (Object) Long.valueOf(random.nextInt(1000000)) : "value" + random.nextInt(100000);
+				props.setProperty(new EntityProperty(propertyName(p), value));
+			}
+			EntityResource<Entity> resource = new EntityResource<Entity>(entityName, new Entity(entityName, props));
+			entities.add(resource);
+		}
+		CollectionResource<Entity> collection = new CollectionResource<Entity>(entityName + "s", entities);
+		collection.setEntityName(entityName);
+		return collection;
+	}
+
+	/**
+	 * @param hypermediaEngine a RIM generated by {@link #rim(int)}
+	 * @param metadata
+	 * @param rows
+	 * @param properties
+	 * @return a collection of the first entity with its links and the links
+	 * of its rows, as a resource is before serialization
+	 */
+	public static CollectionResource<Entity> linkedCollection(ResourceStateMachine hypermediaEngine, Metadata metadata, int rows, int properties) {
+		String entityName = entityName(0);
+		ResourceState state = hypermediaEngine.getResourceStateByName(entityName + "s");
+		CollectionResource<Entity> collection = collection(entityName, rows, properties);
+		RequestContext.setRequestContext(new RequestContext(BASE_URI, state.getPath(), null));
+		try {
+			InteractionContext ctx = new InteractionContext(new FixedUriInfo(BASE_URI + "/", state.getPath().substring(1)), null,
+					new MultivaluedMapImpl<String>(), new MultivaluedMapImpl<String>(), state, metadata);
+			collection.setLinks(hypermediaEngine.injectLinks(null, ctx, collection, null, null, metadata));
+		} finally {
+			RequestContext.clearRequestContext();
+		}
+		return collection;
+	}
+
+	/**
+	 * @param clauses the number of comparisons, joined by and/or
+	 * @param properties the number of properties to compare
+	 * @return an OData $filter
+	 */
+	public static String filter(int clauses, int properties) {
+		Random random = new Random(SEED);
+		StringBuilder filter = new StringBuilder();
+		for (int i = 0; i < clauses; i++) {
+			if (i > 0) {
+				filter.append(i % 4 == 0 ? " or " : " and ");
+			}
+			int p = 1 + random.nextInt(Math.max(properties - 1, 1));
+			filter.append(propertyName(p)).append(' ').append(RELATIONS[random.nextInt(RELATIONS.length)]).append(' ');
+			if (p % 5 == 0) {
+				filter.append(random.nextInt(1000000));
+			} else {
+				filter.append("'value").append(random.nextInt(100000)).append('\'');
+			}
+		}
+		return filter.toString();
+	}
+
+	/**
+	 * @param properties
+	 * @return an OData $orderby on two properties
+	 */
+	public static String orderBy(int properties) {
+		return propertyName(1) + " asc, " + propertyName(Math.min(2, properties - 1)) + " desc";
+	}
+
+	private static List<Action> view() {
+		List<Action> actions = new ArrayList<Action>();
+		actions.add(new Action("GETEntities", Action.TYPE.VIEW));
+		return actions;
+	}
+}
@@ -0,0 +1,54 @@
+package com.temenos.interaction.core.entity;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.temenos.interaction.benchmarks.SyntheticData;
+
+/**
+ * Parsing of a metadata document by the {@link MetadataParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class MetadataParserBenchmark {
+
+	@Param({ "10", "500" })
+	public int entities;
+
+	@Param({ "50" })
+	public int properties;
+
+	private byte[] xml;
+
+	@Setup
+	public void setUp() {
+		xml = SyntheticData.metadataXml(entities, properties).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public Metadata parse() {
+		return new MetadataParser().parse(new ByteArrayInputStream(xml));
+	}
+}
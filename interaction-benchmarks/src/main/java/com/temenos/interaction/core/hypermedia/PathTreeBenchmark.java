@@ -0,0 +1,73 @@
+package com.temenos.interaction.core.hypermedia;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.temenos.interaction.benchmarks.SyntheticData;
+
+/**
+ * Resolution of request paths by the {@link PathTree} of a RIM, with and
+ * without hits in the cache of resolved paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class PathTreeBenchmark {
+
+	@Param({ "1000" })
+	public int entities;
+
+	/**
+	 * 1 to resolve every path, 4096 to cache all of them
+	 */
+	@Param({ "1", "4096" })
+	public int cacheSize;
+
+	private PathTree tree;
+	private List<String> paths;
+
+	@Setup
+	public void setUp() {
+		tree = new PathTree(cacheSize);
+		ResourceStateMachine rim = new ResourceStateMachine(SyntheticData.rim(entities));
+		for (Map.Entry<String, Set<ResourceState>> entry : rim.getResourceStatesByPath().entrySet()) {
+			for (ResourceState state : entry.getValue()) {
+				tree.put(entry.getKey(), state.getActions().get(0).getType() == Action.TYPE.VIEW ? "GET" : "PUT", state.getName());
+			}
+		}
+		paths = SyntheticData.paths(entities, 1000);
+	}
+
+	/**
+	 * Resolve 1000 paths.
+	 */
+	@Benchmark
+	public void resolve(Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(tree.get(path));
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.temenos.interaction.core.hypermedia;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.HttpMethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.temenos.interaction.benchmarks.FixedUriInfo;
+import com.temenos.interaction.benchmarks.SyntheticData;
+import com.temenos.interaction.core.MultivaluedMapImpl;
+import com.temenos.interaction.core.command.InteractionContext;
+import com.temenos.interaction.core.entity.Entity;
+import com.temenos.interaction.core.entity.EntityMetadata;
+import com.temenos.interaction.core.entity.Metadata;
+import com.temenos.interaction.core.resource.CollectionResource;
+import com.temenos.interaction.core.resource.EntityResource;
+import com.temenos.interaction.core.web.RequestContext;
+
+/**
+ * State resolution and link injection of a {@link ResourceStateMachine} on a
+ * synthetic RIM of three states per entity.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class ResourceStateMachineBenchmark {
+
+	private static final Event GET = new Event("GET", HttpMethod.GET);
+
+	@Param({ "1000" })
+	public int entities;
+
+	@Param({ "100" })
+	public int rows;
+
+	private ResourceStateMachine hypermediaEngine;
+	private List<String> paths;
+	private Metadata metadata;
+	private ResourceState collectionState;
+	private ResourceState itemState;
+	private CollectionResource<Entity> collection;
+	private EntityResource<Entity> item;
+
+	@Setup
+	public void setUp() {
+		hypermediaEngine = new ResourceStateMachine(SyntheticData.rim(entities), new EntityTransformer());
+		paths = SyntheticData.paths(entities, 1000);
+		String entityName = SyntheticData.entityName(0);
+		metadata = new Metadata("Benchmark");
+		metadata.setEntityMetadata(new EntityMetadata(entityName));
+		collectionState = hypermediaEngine.getResourceStateByName(entityName + "s");
+		itemState = hypermediaEngine.getResourceStateByName(entityName);
+		collection = SyntheticData.collection(entityName, rows, 10);
+		item = collection.getEntities().iterator().next();
+		RequestContext.setRequestContext(new RequestContext(SyntheticData.BASE_URI, "/" + entityName + "s()", null));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		RequestContext.clearRequestContext();
+	}
+
+	/**
+	 * Resolve the state of 1000 GET requests.
+	 */
+	@Benchmark
+	public void determineState(Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(hypermediaEngine.determineState(GET, path));
+		}
+	}
+
+	/**
+	 * Inject the links of an item, the links of its transitions and self link.
+	 */
+	@Benchmark
+	public Object injectItemLinks() {
+		InteractionContext ctx = context(itemState);
+		ctx.getPathParameters().putSingle("id", "0");
+		return hypermediaEngine.injectLinks(null, ctx, item, null, null, metadata);
+	}
+
+	/**
+	 * Inject the links of a collection, and the links of each of its rows.
+	 */
+	@Benchmark
+	public Object injectCollectionLinks() {
+		for (EntityResource<Entity> row : collection.getEntities()) {
+			row.setLinks(null);
+		}
+		return hypermediaEngine.injectLinks(null, context(collectionState), collection, null, null, metadata);
+	}
+
+	private InteractionContext context(ResourceState state) {
+		return new InteractionContext(new FixedUriInfo(SyntheticData.BASE_URI + "/", state.getPath().substring(1)), null,
+				new MultivaluedMapImpl<String>(), new MultivaluedMapImpl<String>(), state, metadata);
+	}
+}
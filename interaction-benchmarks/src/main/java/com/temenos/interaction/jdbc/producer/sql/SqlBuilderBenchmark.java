@@ -0,0 +1,86 @@
+package com.temenos.interaction.jdbc.producer.sql;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.temenos.interaction.benchmarks.SyntheticData;
+import com.temenos.interaction.jdbc.ServerMode;
+import com.temenos.interaction.odataext.odataparser.ODataParser;
+import com.temenos.interaction.odataext.odataparser.data.AccessProfile;
+import com.temenos.interaction.odataext.odataparser.data.FieldName;
+import com.temenos.interaction.odataext.odataparser.data.OrderBy;
+
+/**
+ * Generation of the SQL of a paged, filtered and sorted query by a {@link SqlBuilder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class SqlBuilderBenchmark {
+
+	private static final int PROPERTIES = 20;
+
+	@Param({ "MSSQL", "ORACLE" })
+	public ServerMode serverMode;
+
+	@Param({ "1", "10", "50" })
+	public int clauses;
+
+	private AccessProfile accessProfile;
+	private ColumnTypesMap columnTypesMap;
+	private List<OrderBy> orderBy;
+
+	@Setup
+	public void setUp() {
+		Set<FieldName> selects = new HashSet<FieldName>();
+		Map<String, Integer> columnTypes = new HashMap<String, Integer>();
+		for (int p = 0; p < PROPERTIES; p++) {
+			columnTypes.put(SyntheticData.propertyName(p), p % 5 == 0 ? Types.INTEGER : Types.VARCHAR);
+			if (p % 2 == 0) {
+				selects.add(new FieldName(SyntheticData.propertyName(p)));
+			}
+		}
+		accessProfile = new AccessProfile(ODataParser.parseFilters(SyntheticData.filter(clauses, PROPERTIES)), selects);
+		columnTypesMap = new ColumnTypesMap(columnTypes, SyntheticData.propertyName(0));
+		orderBy = ODataParser.parseOrderBy(SyntheticData.orderBy(PROPERTIES));
+	}
+
+	@Benchmark
+	public String getCommand() {
+		return builder().getCommand();
+	}
+
+	@Benchmark
+	public SqlCommand getParameterizedCommand() {
+		return builder().getParameterizedCommand();
+	}
+
+	private SqlBuilder builder() {
+		return SqlBuilderFactory.getSqlBuilder("BenchmarkTable", null, accessProfile, columnTypesMap, "50", "100", orderBy, serverMode);
+	}
+}
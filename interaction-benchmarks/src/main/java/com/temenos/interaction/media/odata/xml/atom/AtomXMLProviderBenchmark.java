@@ -0,0 +1,74 @@
+package com.temenos.interaction.media.odata.xml.atom;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.temenos.interaction.benchmarks.FixedUriInfo;
+import com.temenos.interaction.benchmarks.SyntheticData;
+import com.temenos.interaction.core.entity.Entity;
+import com.temenos.interaction.core.entity.Metadata;
+import com.temenos.interaction.core.hypermedia.EntityTransformer;
+import com.temenos.interaction.core.hypermedia.ResourceStateMachine;
+import com.temenos.interaction.core.resource.CollectionResource;
+import com.temenos.interaction.odataext.entity.MetadataOData4j;
+
+/**
+ * Serialization of a large collection to an Atom feed by the {@link AtomXMLProvider}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class AtomXMLProviderBenchmark {
+
+	@Param({ "100", "5000" })
+	public int rows;
+
+	@Param({ "20" })
+	public int properties;
+
+	private AtomXMLProvider provider;
+	private GenericEntity<CollectionResource<Entity>> entity;
+	private ByteArrayOutputStream out;
+
+	@Setup
+	public void setUp() {
+		Metadata metadata = SyntheticData.metadata(1, properties);
+		ResourceStateMachine hypermediaEngine = new ResourceStateMachine(SyntheticData.rim(1), new EntityTransformer());
+		provider = new AtomXMLProvider(new MetadataOData4j(metadata, hypermediaEngine), metadata, hypermediaEngine, new EntityTransformer());
+		provider.setUriInfo(new FixedUriInfo(SyntheticData.BASE_URI + "/", SyntheticData.entityName(0) + "s()"));
+		entity = new GenericEntity<CollectionResource<Entity>>(SyntheticData.linkedCollection(hypermediaEngine, metadata, rows, properties)) {
+		};
+		out = new ByteArrayOutputStream(rows * properties * 64);
+	}
+
+	@Benchmark
+	public int writeCollection() throws IOException {
+		out.reset();
+		provider.writeTo(entity.getEntity(), entity.getRawType(), entity.getType(), null, MediaType.APPLICATION_ATOM_XML_TYPE, null, out);
+		return out.size();
+	}
+}
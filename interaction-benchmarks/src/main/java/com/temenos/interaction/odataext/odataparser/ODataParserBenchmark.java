@@ -0,0 +1,64 @@
+package com.temenos.interaction.odataext.odataparser;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.temenos.interaction.benchmarks.SyntheticData;
+import com.temenos.interaction.odataext.odataparser.data.RowFilters;
+
+/**
+ * Parsing and printing of OData $filter and $orderby options by the {@link ODataParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class ODataParserBenchmark {
+
+	@Param({ "1", "10", "50" })
+	public int clauses;
+
+	private String filter;
+	private String orderBy;
+	private RowFilters parsedFilter;
+
+	@Setup
+	public void setUp() {
+		filter = SyntheticData.filter(clauses, 20);
+		orderBy = SyntheticData.orderBy(20);
+		parsedFilter = ODataParser.parseFilters(filter);
+	}
+
+	@Benchmark
+	public RowFilters parseFilters() {
+		return ODataParser.parseFilters(filter);
+	}
+
+	@Benchmark
+	public String toFilters() {
+		return ODataParser.toFilters(parsedFilter);
+	}
+
+	@Benchmark
+	public Object parseOrderBy() {
+		return ODataParser.parseOrderBy(orderBy);
+	}
+}
@@ -9,18 +9,37 @@ package com.temenos.interaction.authorization.command;
  * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
  *******************************************************************************/
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import javax.ws.rs.core.Response.Status;
 
+import org.odata4j.core.OEntity;
+import org.odata4j.exceptions.ODataProducerException;
+import org.odata4j.expression.BoolCommonExpression;
+import org.odata4j.producer.EntitiesResponse;
 import org.odata4j.producer.ODataProducer;
+import org.odata4j.producer.QueryInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.temenos.interaction.authorization.exceptions.AuthorizationException;
+import com.temenos.interaction.commands.odata.CommandHelper;
 import com.temenos.interaction.commands.odata.ODataAttributes;
 import com.temenos.interaction.core.command.InteractionCommand;
 import com.temenos.interaction.core.command.InteractionContext;
 import com.temenos.interaction.core.command.InteractionException;
+import com.temenos.interaction.core.entity.Entity;
+import com.temenos.interaction.core.resource.CollectionResource;
+import com.temenos.interaction.core.resource.EntityResource;
+import com.temenos.interaction.core.resource.RESTResource;
 import com.temenos.interaction.odataext.odataparser.ODataParser;
+import com.temenos.interaction.odataext.odataparser.ODataParser.UnsupportedQueryOperationException;
+import com.temenos.interaction.odataext.odataparser.ParsedQueryOptions;
+import com.temenos.interaction.odataext.odataparser.query.CompiledQuery;
+import com.temenos.interaction.odataext.odataparser.query.CoreEntityAdapter;
+import com.temenos.interaction.odataext.odataparser.query.OEntityAdapter;
 
 public class PostFilterCommand implements InteractionCommand {
 
@@ -45,16 +64,17 @@ public class PostFilterCommand implements InteractionCommand {
 			logger.info("Post filtering not required");
 			res = Result.SUCCESS;
 		} else {
+			FilterState state = new FilterState();
 			do {
 				// Do the filtering
-				res = postFilter(ctx);
+				res = postFilter(ctx, state);
 
 				if (Result.SUCCESS != res) {
 					// Asked to filter but could not. Security failure.
 					throw (new AuthorizationException(Status.UNAUTHORIZED, "Post filtering failed"));
 				}
 
-			} while (getMoreDataIfReqd(ctx));
+			} while (getMoreDataIfReqd(ctx, state));
 
 			// Note that filtering has been done.
 			ctx.setAttribute(AuthorizationAttributes.FILTER_DONE_ATTRIBUTE, Boolean.TRUE);
@@ -63,25 +83,114 @@ public class PostFilterCommand implements InteractionCommand {
 		return (res);
 	}
 
-	private Result postFilter(InteractionContext ctx) {
+	/*
+	 * Filter the collection on the first pass, and only the rows added by a
+	 * top up on the following ones.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Result postFilter(InteractionContext ctx, FilterState state) {
 
-		String filter = ctx.getQueryParameters().getFirst(ODataParser.FILTER_KEY);
-		logger.info("Post filtering with \"" + filter + "\"");
+		if (null == state.query) {
+			String filter = ctx.getQueryParameters().getFirst(ODataParser.FILTER_KEY);
+			logger.info("Post filtering with \"" + filter + "\"");
 
-		// TODO implement filtering.
-		logger.info("Post filtering not yet implemented");
+			RESTResource resource = ctx.getResource();
+			if (null == filter || !(resource instanceof CollectionResource)) {
+				logger.info("No collection to post filter");
+				return (Result.SUCCESS);
+			}
+			state.collection = (CollectionResource) resource;
+			Collection<EntityResource> entities = state.collection.getEntities();
+			if (null == entities || entities.isEmpty()) {
+				return (Result.SUCCESS);
+			}
+
+			try {
+				state.query = compile(entities.iterator().next().getEntity(),
+						ParsedQueryOptions.get(ctx).getFilter(filter));
+			} catch (UnsupportedQueryOperationException e) {
+				logger.error("Cannot post filter with \"" + filter + "\"", e);
+				return (Result.FAILURE);
+			} catch (RuntimeException e) {
+				logger.error("Cannot post filter with \"" + filter + "\"", e);
+				return (Result.FAILURE);
+			}
+			// The producer's list may not be modifiable, so filter and top up a copy.
+			entities = new ArrayList<EntityResource>(entities);
+			state.collection.setEntities(entities);
+			state.fetched = entities.size();
+			state.pending = entities;
+		}
 
+		if (null == state.query) {
+			// Entities of a type which cannot be filtered.
+			return (Result.FAILURE);
+		}
+		try {
+			int kept = state.query.apply(state.pending, 0, Integer.MAX_VALUE);
+			if (state.pending != state.collection.getEntities()) {
+				state.collection.getEntities().addAll(state.pending);
+			}
+			logger.debug("Post filter kept " + kept + " entities");
+		} catch (RuntimeException e) {
+			logger.error("Post filtering failed", e);
+			return (Result.FAILURE);
+		}
+		state.pending = null;
 		return (Result.SUCCESS);
 	}
 
+	@SuppressWarnings({ "rawtypes" })
+	private CompiledQuery compile(Object entity, BoolCommonExpression filter)
+			throws UnsupportedQueryOperationException {
+		if (entity instanceof OEntity) {
+			return new CompiledQuery.Builder<OEntity>(new OEntityAdapter()).filter(filter).build();
+		}
+		if (entity instanceof Entity) {
+			return new CompiledQuery.Builder<Entity>(new CoreEntityAdapter()).filter(filter).build();
+		}
+		logger.error("Cannot post filter entities of " + (null == entity ? null : entity.getClass()));
+		return null;
+	}
+
 	/*
 	 * If there is not enough data in the result set to it up.
 	 * 
+	 * Only the number of rows removed by the filter are asked for, starting
+	 * after the last row already read. Only OData collections read from
+	 * $skip can be topped up, and only they need a producer.
+	 * 
 	 * @return True if data toped up. False if data not toped up.
 	 * 
 	 * Throws if cannot top up.
 	 */
-	private boolean getMoreDataIfReqd(InteractionContext ctx) throws InteractionException {
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private boolean getMoreDataIfReqd(InteractionContext ctx, FilterState state) throws InteractionException {
+
+		// If we already have enough data no more needed.
+		Integer top = parseInt(ctx.getQueryParameters().getFirst(ODataParser.TOP_KEY));
+		if (null == state.query || null == top || state.exhausted) {
+			return (false);
+		}
+		int missing = top - state.collection.getEntities().size();
+		if (missing <= 0) {
+			return (false);
+		}
+		if (!state.toppedUp && state.fetched < top) {
+			// The first read was short so there is nothing more to read.
+			return (false);
+		}
+		Object first = state.collection.getEntities().isEmpty() ? null
+				: ((EntityResource) state.collection.getEntities().iterator().next()).getEntity();
+		if (null != first && !(first instanceof OEntity)) {
+			logger.info("Cannot top up entities of " + first.getClass());
+			return (false);
+		}
+		if (null != ctx.getQueryParameters().getFirst(ODataParser.SKIPTOKEN_KEY)) {
+			// The page did not start at $skip so its end is not known.
+			logger.info("Cannot top up a page read from a " + ODataParser.SKIPTOKEN_KEY);
+			return (false);
+		}
 
 		// Get producer
 		ODataProducer producer = (ODataProducer) ctx.getAttribute(ODataAttributes.O_DATA_PRODUCER_ATTRIBUTE);
@@ -90,17 +199,62 @@ public class PostFilterCommand implements InteractionCommand {
 					"More data required but OData producer not available"));
 		}
 
-		// If we already have enough data no more needed.
-		// TODO implement check.
-		boolean enoughData = true;
-		if (enoughData) {
+		Integer skip = parseInt(ctx.getQueryParameters().getFirst(ODataParser.SKIP_KEY));
+		int from = (null == skip ? 0 : skip) + state.fetched;
+		String orderBy = ctx.getQueryParameters().getFirst(ODataParser.ORDERBY_KEY);
+		QueryInfo query = new QueryInfo(null, missing, from, null,
+				null == orderBy ? null : ParsedQueryOptions.get(ctx).getOrderBy(orderBy), null, null, null, null);
+
+		EntitiesResponse response;
+		try {
+			response = producer.getEntities(state.collection.getEntitySetName(), query);
+		} catch (ODataProducerException e) {
+			throw new InteractionException(e.getHttpStatus(), e);
+		}
+		List<OEntity> more = null == response ? null : response.getEntities();
+		if (null == more || more.isEmpty()) {
+			state.exhausted = true;
 			return (false);
 		}
+		logger.info("Topped up " + more.size() + " of " + missing + " missing entities");
 
-		// TODO implement top up
-		logger.info("Data top up not yet implemented");
+		List<EntityResource<OEntity>> pending = new ArrayList<EntityResource<OEntity>>(more.size());
+		for (OEntity entity : more) {
+			pending.add(CommandHelper.createEntityResource(entity));
+		}
+		state.pending = (Collection) pending;
+		state.fetched += more.size();
+		state.exhausted = more.size() < missing;
+		state.toppedUp = true;
 
 		// We added some data so must re-filter.
 		return (true);
 	}
+
+	private Integer parseInt(String value) {
+		if (null == value) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(value.trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * Progress of the filtering over the passes of one execution.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static class FilterState {
+		// Null until there is something to filter.
+		private CompiledQuery query;
+		private CollectionResource collection;
+		// The entities still to be filtered.
+		private Collection pending;
+		// Rows read from the data source, before filtering.
+		private int fetched;
+		private boolean toppedUp;
+		private boolean exhausted;
+	}
 }
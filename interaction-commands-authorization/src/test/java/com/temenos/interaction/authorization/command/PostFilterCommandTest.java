@@ -6,22 +6,52 @@ package com.temenos.interaction.authorization.command;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.UriInfo;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.odata4j.core.OEntities;
+import org.odata4j.core.OEntity;
+import org.odata4j.core.OEntityKey;
+import org.odata4j.core.OLink;
+import org.odata4j.core.OProperties;
+import org.odata4j.core.OProperty;
+import org.odata4j.edm.EdmEntitySet;
+import org.odata4j.edm.EdmEntityType;
+import org.odata4j.producer.EntitiesResponse;
 import org.odata4j.producer.ODataProducer;
+import org.odata4j.producer.QueryInfo;
+import org.odata4j.producer.Responses;
 
 import com.temenos.interaction.authorization.exceptions.AuthorizationException;
+import com.temenos.interaction.commands.odata.CommandHelper;
 import com.temenos.interaction.commands.odata.ODataAttributes;
 import com.temenos.interaction.core.MultivaluedMapImpl;
 import com.temenos.interaction.core.command.InteractionContext;
+import com.temenos.interaction.core.entity.Entity;
+import com.temenos.interaction.core.entity.EntityProperties;
+import com.temenos.interaction.core.entity.EntityProperty;
 import com.temenos.interaction.core.entity.Metadata;
 import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.resource.CollectionResource;
+import com.temenos.interaction.core.resource.EntityResource;
 import com.temenos.interaction.odataext.odataparser.ODataParser;
 
 /**
@@ -138,7 +168,8 @@ public class PostFilterCommandTest extends AbstractAuthorizationTest {
 	}
 
 	/**
-	 * Check that if filterDone false and no producer is available throws.
+	 * Check that if filterDone false and more data is required but no producer
+	 * is available throws.
 	 */
 	@Test
 	public void testFilterDoneFalseNoProducer() {
@@ -158,8 +189,11 @@ public class PostFilterCommandTest extends AbstractAuthorizationTest {
 		// Set the flag
 		ctx.setAttribute(AuthorizationAttributes.FILTER_DONE_ATTRIBUTE, Boolean.FALSE);
 
-		// Set up filter
-		ctx.getQueryParameters().add(ODataParser.FILTER_KEY, "test");
+		// Set up filter, removing one of the rows asked for
+		ctx.getQueryParameters().add(ODataParser.FILTER_KEY, "Balance gt 15");
+		ctx.getQueryParameters().add(ODataParser.TOP_KEY, "2");
+		ctx.setResource(CommandHelper.createCollectionResource("Accounts",
+				Arrays.asList(oEntity("1", 10), oEntity("2", 20))));
 
 		boolean threw = false;
 		try {
@@ -173,4 +207,202 @@ public class PostFilterCommandTest extends AbstractAuthorizationTest {
 		assertTrue(threw);
 	}
 
+	/**
+	 * Check that the entities of an OData collection are filtered.
+	 */
+	@Test
+	public void testFilterOEntities() throws Exception {
+		InteractionContext ctx = createContext("Balance gt 15");
+		ODataProducer producer = mock(ODataProducer.class);
+		ctx.setAttribute(ODataAttributes.O_DATA_PRODUCER_ATTRIBUTE, producer);
+		CollectionResource<OEntity> collection = CommandHelper.createCollectionResource("Accounts",
+				Arrays.asList(oEntity("1", 10), oEntity("2", 20), oEntity("3", 30)));
+		ctx.setResource(collection);
+
+		new PostFilterCommand().execute(ctx);
+
+		assertEquals(Arrays.asList("2", "3"), oEntityIds(collection));
+		assertEquals(Boolean.TRUE, (Boolean) ctx.getAttribute(AuthorizationAttributes.FILTER_DONE_ATTRIBUTE));
+
+		// No $top so nothing to top up.
+		verifyZeroInteractions(producer);
+	}
+
+	/**
+	 * Check that the entities of a collection of core entities are filtered.
+	 */
+	@Test
+	public void testFilterEntities() throws Exception {
+		InteractionContext ctx = createContext("Name eq 'Bart' or Name eq 'Kate'");
+		List<EntityResource<Entity>> entities = new ArrayList<EntityResource<Entity>>();
+		for (String name : Arrays.asList("Alice", "Bart", "Karl", "Kate")) {
+			EntityProperties properties = new EntityProperties();
+			properties.setProperty(new EntityProperty("Name", name));
+			entities.add(new EntityResource<Entity>("Account", new Entity("Account", properties)));
+		}
+		CollectionResource<Entity> collection = new CollectionResource<Entity>("Accounts", entities) {
+		};
+		ctx.setResource(collection);
+
+		new PostFilterCommand().execute(ctx);
+
+		List<String> names = new ArrayList<String>();
+		for (EntityResource<Entity> resource : collection.getEntities()) {
+			names.add((String) resource.getEntity().getProperties().getProperty("Name").getValue());
+		}
+		assertEquals(Arrays.asList("Bart", "Kate"), names);
+	}
+
+	/**
+	 * Check that a collection which is not topped up needs no producer.
+	 */
+	@Test
+	public void testFilterWithoutProducer() throws Exception {
+		InteractionContext ctx = createContext("Balance gt 15");
+		ctx.getQueryParameters().add(ODataParser.TOP_KEY, "5");
+		CollectionResource<OEntity> collection = CommandHelper.createCollectionResource("Accounts",
+				Arrays.asList(oEntity("1", 10), oEntity("2", 20)));
+		ctx.setResource(collection);
+
+		new PostFilterCommand().execute(ctx);
+
+		assertEquals(Arrays.asList("2"), oEntityIds(collection));
+		assertEquals(Boolean.TRUE, (Boolean) ctx.getAttribute(AuthorizationAttributes.FILTER_DONE_ATTRIBUTE));
+	}
+
+	/**
+	 * Check that a page read from a $skiptoken is not topped up from $skip.
+	 */
+	@Test
+	public void testNoTopUpFromSkipToken() throws Exception {
+		InteractionContext ctx = createContext("Balance gt 15");
+		ctx.getQueryParameters().add(ODataParser.TOP_KEY, "2");
+		ctx.getQueryParameters().add(ODataParser.SKIPTOKEN_KEY, "'k1'");
+		ODataProducer producer = mock(ODataProducer.class);
+		ctx.setAttribute(ODataAttributes.O_DATA_PRODUCER_ATTRIBUTE, producer);
+		CollectionResource<OEntity> collection = CommandHelper.createCollectionResource("Accounts",
+				Arrays.asList(oEntity("1", 10), oEntity("2", 20)));
+		ctx.setResource(collection);
+
+		new PostFilterCommand().execute(ctx);
+
+		assertEquals(Arrays.asList("2"), oEntityIds(collection));
+		verifyZeroInteractions(producer);
+	}
+
+	/**
+	 * Check that rows removed by the filter are replaced from the producer,
+	 * asking only for the missing rows.
+	 */
+	@Test
+	public void testTopUp() throws Exception {
+		InteractionContext ctx = createContext("Balance gt 15");
+		ctx.getQueryParameters().add(ODataParser.TOP_KEY, "3");
+		ctx.getQueryParameters().add(ODataParser.SKIP_KEY, "5");
+		ODataProducer producer = mock(ODataProducer.class);
+		ctx.setAttribute(ODataAttributes.O_DATA_PRODUCER_ATTRIBUTE, producer);
+		CollectionResource<OEntity> collection = CommandHelper.createCollectionResource("Accounts",
+				Arrays.asList(oEntity("1", 10), oEntity("2", 20), oEntity("3", 5)));
+		ctx.setResource(collection);
+
+		// First top up replaces two rows, one of which is filtered. The
+		// second returns nothing so the source is exhausted.
+		EntitiesResponse first = Responses.entities(Arrays.asList(oEntity("4", 1), oEntity("5", 50)), null,
+				null, null);
+		EntitiesResponse second = Responses.entities(new ArrayList<OEntity>(), null, null, null);
+		when(producer.getEntities(eq("Accounts"), any(QueryInfo.class))).thenReturn(first, second);
+
+		new PostFilterCommand().execute(ctx);
+
+		assertEquals(Arrays.asList("2", "5"), oEntityIds(collection));
+		ArgumentCaptor<QueryInfo> queries = ArgumentCaptor.forClass(QueryInfo.class);
+		verify(producer, times(2)).getEntities(eq("Accounts"), queries.capture());
+		assertEquals(Integer.valueOf(2), queries.getAllValues().get(0).top);
+		assertEquals(Integer.valueOf(8), queries.getAllValues().get(0).skip);
+		assertEquals(Integer.valueOf(1), queries.getAllValues().get(1).top);
+		assertEquals(Integer.valueOf(10), queries.getAllValues().get(1).skip);
+		assertNull(queries.getAllValues().get(1).filter);
+	}
+
+	/**
+	 * Check that a producer's unmodifiable list is filtered and topped up in
+	 * a copy.
+	 */
+	@Test
+	public void testTopUpUnmodifiable() throws Exception {
+		InteractionContext ctx = createContext("Balance gt 15");
+		ctx.getQueryParameters().add(ODataParser.TOP_KEY, "2");
+		ODataProducer producer = mock(ODataProducer.class);
+		ctx.setAttribute(ODataAttributes.O_DATA_PRODUCER_ATTRIBUTE, producer);
+		List<EntityResource<OEntity>> entities = Collections.unmodifiableList(Arrays.asList(
+				CommandHelper.createEntityResource(oEntity("1", 10)), CommandHelper.createEntityResource(oEntity("2", 20))));
+		CollectionResource<OEntity> collection = new CollectionResource<OEntity>("Accounts", entities) {
+		};
+		ctx.setResource(collection);
+		when(producer.getEntities(eq("Accounts"), any(QueryInfo.class))).thenReturn(
+				Responses.entities(Arrays.asList(oEntity("3", 30)), null, null, null));
+
+		new PostFilterCommand().execute(ctx);
+
+		assertEquals(Arrays.asList("2", "3"), oEntityIds(collection));
+		assertEquals(2, entities.size());
+	}
+
+	/**
+	 * Check that a short first read is not topped up.
+	 */
+	@Test
+	public void testNoTopUpWhenExhausted() throws Exception {
+		InteractionContext ctx = createContext("Balance gt 15");
+		ctx.getQueryParameters().add(ODataParser.TOP_KEY, "5");
+		ODataProducer producer = mock(ODataProducer.class);
+		ctx.setAttribute(ODataAttributes.O_DATA_PRODUCER_ATTRIBUTE, producer);
+		CollectionResource<OEntity> collection = CommandHelper.createCollectionResource("Accounts",
+				Arrays.asList(oEntity("1", 10), oEntity("2", 20)));
+		ctx.setResource(collection);
+
+		new PostFilterCommand().execute(ctx);
+
+		assertEquals(Arrays.asList("2"), oEntityIds(collection));
+		verifyZeroInteractions(producer);
+	}
+
+	/**
+	 * Check that a filter which cannot be evaluated is a security failure.
+	 */
+	@Test(expected = AuthorizationException.class)
+	public void testUnsupportedFilterThrows() throws Exception {
+		InteractionContext ctx = createContext("year(Created) eq 2019");
+		ctx.setAttribute(ODataAttributes.O_DATA_PRODUCER_ATTRIBUTE, mock(ODataProducer.class));
+		ctx.setResource(CommandHelper.createCollectionResource("Accounts", Arrays.asList(oEntity("1", 10))));
+
+		new PostFilterCommand().execute(ctx);
+	}
+
+	private InteractionContext createContext(String filter) {
+		InteractionContext ctx = new InteractionContext(mock(UriInfo.class), mock(HttpHeaders.class),
+				new MultivaluedMapImpl<String>(), new MultivaluedMapImpl<String>(), mock(ResourceState.class),
+				mock(Metadata.class));
+		ctx.setAttribute(AuthorizationAttributes.FILTER_DONE_ATTRIBUTE, Boolean.FALSE);
+		ctx.getQueryParameters().add(ODataParser.FILTER_KEY, filter);
+		return ctx;
+	}
+
+	private OEntity oEntity(String id, int balance) {
+		List<OProperty<?>> properties = new ArrayList<OProperty<?>>();
+		properties.add(OProperties.string("Id", id));
+		properties.add(OProperties.int32("Balance", balance));
+		EdmEntityType.Builder entityType = EdmEntityType.newBuilder().setNamespace("AuthorizationTest")
+				.setName("Account").addKeys(Arrays.asList("Id"));
+		EdmEntitySet entitySet = EdmEntitySet.newBuilder().setName("Accounts").setEntityType(entityType).build();
+		return OEntities.create(entitySet, OEntityKey.create(id), properties, new ArrayList<OLink>());
+	}
+
+	private List<String> oEntityIds(CollectionResource<OEntity> collection) {
+		List<String> ids = new ArrayList<String>();
+		for (EntityResource<OEntity> resource : collection.getEntities()) {
+			ids.add((String) resource.getEntity().getProperty("Id").getValue());
+		}
+		return ids;
+	}
 }
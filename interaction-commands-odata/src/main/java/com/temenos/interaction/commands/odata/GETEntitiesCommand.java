@@ -27,6 +27,7 @@ import com.temenos.interaction.core.command.InteractionException;
 import com.temenos.interaction.core.command.InteractionProducerException;
 import com.temenos.interaction.core.resource.CollectionResource;
 import com.temenos.interaction.odataext.entity.MetadataOData4j;
+import com.temenos.interaction.odataext.odataparser.ParsedQueryOptions;
 
 public class GETEntitiesCommand extends AbstractODataCommand implements InteractionCommand {
 	private final Logger logger = LoggerFactory.getLogger(GETEntitiesCommand.class);
@@ -110,16 +111,17 @@ public class GETEntitiesCommand extends AbstractODataCommand implements Interact
 		Map<String, String> customOptions = CommandHelper.populateCustomOptionsMap(ctx);
 		
 		try {
+			ParsedQueryOptions options = ParsedQueryOptions.get(ctx);
 			return new QueryInfo(
 					validateAndGetInlineCount(queryParams),
 					OptionsQueryParser.parseTop(top),
 					OptionsQueryParser.parseSkip(skip),
-					OptionsQueryParser.parseFilter(filter),
-					OptionsQueryParser.parseOrderBy(orderBy),
+					options.getFilter(filter),
+					options.getOrderBy(orderBy),
 					OptionsQueryParser.parseSkipToken(skipToken),
 					customOptions,
 					OptionsQueryParser.parseExpand(expand),
-					OptionsQueryParser.parseSelect(select));
+					options.getSelect(select));
 		} catch (RuntimeException e) {
 			// all runtime exceptions are due to failure in parsing the query options
 		    logger.error("Invalid query option in '" + queryParams + "'. Error: ", e);
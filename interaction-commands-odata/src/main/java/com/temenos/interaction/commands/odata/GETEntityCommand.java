@@ -28,6 +28,7 @@ import com.temenos.interaction.core.command.InteractionException;
 import com.temenos.interaction.core.command.InteractionProducerException;
 import com.temenos.interaction.core.resource.EntityResource;
 import com.temenos.interaction.odataext.entity.MetadataOData4j;
+import com.temenos.interaction.odataext.odataparser.ParsedQueryOptions;
 
 public class GETEntityCommand extends AbstractODataCommand implements InteractionCommand {
 	private final static Logger logger = LoggerFactory.getLogger(GETEntityCommand.class);
@@ -109,10 +110,11 @@ public class GETEntityCommand extends AbstractODataCommand implements Interactio
 		// Capture all query parameters 
 		Map<String, String> customOptions = CommandHelper.populateCustomOptionsMap(ctx);
 			      
+		ParsedQueryOptions options = ParsedQueryOptions.get(ctx);
 		return new EntityQueryInfo(
-				OptionsQueryParser.parseFilter(filter),
+				options.getFilter(filter),
 				customOptions,
 				OptionsQueryParser.parseExpand(expand),
-				OptionsQueryParser.parseSelect(select));		
+				options.getSelect(select));		
 	}
 }
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import com.temenos.interaction.core.command.InteractionCommand;
 import com.temenos.interaction.core.command.InteractionContext;
 import com.temenos.interaction.core.command.InteractionException;
+import com.temenos.interaction.odataext.odataparser.ParsedQueryOptions;
 
 public class GETNavPropertyCommand extends AbstractODataCommand implements InteractionCommand {
 	private final Logger logger = LoggerFactory.getLogger(GETNavPropertyCommand.class);
@@ -76,16 +77,17 @@ public class GETNavPropertyCommand extends AbstractODataCommand implements Inter
 			String expand = queryParams.getFirst("$expand");
 			String select = queryParams.getFirst("$select");
 
+			ParsedQueryOptions options = ParsedQueryOptions.get(ctx);
 			query = new QueryInfo(
 					OptionsQueryParser.parseInlineCount(inlineCount),
 					OptionsQueryParser.parseTop(top),
 					OptionsQueryParser.parseSkip(skip),
-					OptionsQueryParser.parseFilter(filter),
-					OptionsQueryParser.parseOrderBy(orderBy),
+					options.getFilter(filter),
+					options.getOrderBy(orderBy),
 					OptionsQueryParser.parseSkipToken(skipToken),
 					null,
 					OptionsQueryParser.parseExpand(expand),
-					OptionsQueryParser.parseSelect(select));
+					options.getSelect(select));
 		}
 
 		CountResponse count = producer.getNavPropertyCount(entity, key, navProperty, query);
@@ -0,0 +1,218 @@
+package com.temenos.interaction.core.cache;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size bounded implementation of a cache using a ConcurrentHashMap.
+ *
+ * Reads never lock; every entry records the time it was last read and once
+ * the cache grows over its maximum size entries are evicted in a single pass
+ * by whichever writer gets there first. Eviction is segmented: entries never
+ * read since they were put go first, oldest first, and only then the least
+ * recently used of the entries which were read again. A burst of one-off keys
+ * therefore cannot flush the entries which are actually reused. Entries put
+ * with an age expire after that many seconds.
+ */
+public class LruCacheConcurrentImpl<K, V> implements CacheExtended<K, V> {
+    // evict down to this fraction of the maximum size to amortise the sort
+    private static final float EVICTION_FACTOR = 0.9f;
+
+    private final ConcurrentMap<K, Entry<V>> cache = new ConcurrentHashMap<K, Entry<V>>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize
+     *            the number of entries above which the least recently used
+     *            ones are evicted
+     */
+    public LruCacheConcurrentImpl(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than zero");
+        }
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        put(key, new Entry<V>(value, Long.MAX_VALUE));
+    }
+
+    @Override
+    public void put(K key, V value, int ageInSeconds) {
+        put(key, new Entry<V>(value, System.currentTimeMillis() + 1000L * ageInSeconds));
+    }
+
+    @Override
+    public void putAll(Map<K, V> keyValueMap) {
+        for (Map.Entry<K, V> entry : keyValueMap.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        Entry<V> entry = cache.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expires <= System.currentTimeMillis()) {
+            cache.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        if (!entry.reused) {
+            entry.reused = true;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    @Override
+    public void remove(K key) {
+        cache.remove(key);
+    }
+
+    @Override
+    public void removeAll() {
+        cache.clear();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    /**
+     * @return the number of entries currently held, including expired entries
+     *         not yet evicted
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of lookups which returned a value
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups which found no value or an expired one
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries removed to keep the cache within its
+     *         maximum size or because they expired
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private void put(K key, Entry<V> entry) {
+        cache.put(key, entry);
+        if (cache.size() > maxSize && evictionLock.tryLock()) {
+            try {
+                evict(key);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /*
+     * Remove the expired entries, then the least recently used ones until the
+     * cache is back under its eviction threshold. The entry just put is kept.
+     */
+    private void evict(K added) {
+        long now = System.currentTimeMillis();
+        List<Candidate<K, V>> candidates = new ArrayList<Candidate<K, V>>(cache.size());
+        int live = 0;
+        for (Map.Entry<K, Entry<V>> e : cache.entrySet()) {
+            if (e.getValue().expires <= now) {
+                if (cache.remove(e.getKey(), e.getValue())) {
+                    evictions.increment();
+                }
+            } else {
+                live++;
+                if (!e.getKey().equals(added)) {
+                    candidates.add(new Candidate<K, V>(e.getKey(), e.getValue()));
+                }
+            }
+        }
+        int excess = Math.min(live - (int) (maxSize * EVICTION_FACTOR), candidates.size());
+        if (excess <= 0) {
+            return;
+        }
+        Collections.sort(candidates);
+        for (int i = 0; i < excess; i++) {
+            Candidate<K, V> candidate = candidates.get(i);
+            if (cache.remove(candidate.key, candidate.entry)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /*
+     * An entry considered for eviction, with its access details frozen so
+     * concurrent reads cannot change the ordering while sorting.
+     */
+    private static class Candidate<K, V> implements Comparable<Candidate<K, V>> {
+        final K key;
+        final Entry<V> entry;
+        final boolean reused;
+        final long lastAccess;
+
+        Candidate(K key, Entry<V> entry) {
+            this.key = key;
+            this.entry = entry;
+            this.reused = entry.reused;
+            this.lastAccess = entry.lastAccess;
+        }
+
+        @Override
+        public int compareTo(Candidate<K, V> other) {
+            if (reused != other.reused) {
+                return reused ? 1 : -1;
+            }
+            return lastAccess < other.lastAccess ? -1 : (lastAccess == other.lastAccess ? 0 : 1);
+        }
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long expires;
+        volatile long lastAccess = System.nanoTime();
+        volatile boolean reused;
+
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.temenos.interaction.core.cache;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Response cache bounded by its number of entries, intended as the production
+ * replacement of {@link HashMapCache}.
+ *
+ * Lookups do not lock and entries expire after the max age they were put
+ * with, usually the {@link com.temenos.interaction.core.hypermedia.ResourceState#getMaxAge()}
+ * of the state that produced the response. When full, responses that were
+ * never served from the cache are evicted before the least recently used ones
+ * (see {@link LruCacheConcurrentImpl}). An entry is an immutable copy of the
+ * status, headers and entity of the response, so every hit gets a builder of
+ * its own rather than sharing a mutable one between request threads.
+ */
+public class LruResponseCache implements Cache {
+	private static final Logger logger = LoggerFactory.getLogger(LruResponseCache.class);
+
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private final LruCacheConcurrentImpl<String, CachedResponse> data;
+
+	public LruResponseCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries the maximum number of responses to hold
+	 */
+	public LruResponseCache(int maxEntries) {
+		data = new LruCacheConcurrentImpl<String, CachedResponse>(maxEntries);
+		logger.debug("LRU response cache initialized with {} entries", maxEntries);
+	}
+
+	/** Insert a value into the cache.
+	 *  @param maxAge the entry will be invalid after this many seconds
+	 */
+	@Override
+	public void put(Object key, Response.ResponseBuilder value, int maxAge) {
+		if (key == null) {
+			logger.warn("Attempt to cache null key");
+			return;
+		}
+		if (value == null || maxAge <= 0) {
+			return;
+		}
+		// build from a clone, building resets the builder the caller still uses
+		data.put(key.toString(), new CachedResponse(value.clone().build()), maxAge);
+	}
+
+	/** Retrieve a value from the cache
+	 *  @return a new builder for the cached response if present and valid
+	 */
+	@Override
+	public Response.ResponseBuilder get(Object key) {
+		if (key == null) {
+			return null;
+		}
+		CachedResponse response = data.get(key.toString());
+		return response != null ? response.toResponseBuilder() : null;
+	}
+
+	public void remove(Object key) {
+		if (key != null) {
+			data.remove(key.toString());
+		}
+	}
+
+	public void removeAll() {
+		data.removeAll();
+	}
+
+	public int size() {
+		return data.size();
+	}
+
+	public int getMaxEntries() {
+		return data.getMaxSize();
+	}
+
+	public long getHitCount() {
+		return data.getHitCount();
+	}
+
+	public long getMissCount() {
+		return data.getMissCount();
+	}
+
+	public long getEvictionCount() {
+		return data.getEvictionCount();
+	}
+
+	private static class CachedResponse {
+		private final int status;
+		private final Object entity;
+		private final List<Map.Entry<String, Object>> headers;
+
+		CachedResponse(Response response) {
+			status = response.getStatus();
+			entity = response.getEntity();
+			List<Map.Entry<String, Object>> tmpHeaders = new ArrayList<Map.Entry<String, Object>>();
+			MultivaluedMap<String, Object> metadata = response.getMetadata();
+			if (metadata != null) {
+				for (Map.Entry<String, List<Object>> header : metadata.entrySet()) {
+					for (Object value : header.getValue()) {
+						tmpHeaders.add(new AbstractMap.SimpleImmutableEntry<String, Object>(header.getKey(), value));
+					}
+				}
+			}
+			headers = Collections.unmodifiableList(tmpHeaders);
+		}
+
+		Response.ResponseBuilder toResponseBuilder() {
+			Response.ResponseBuilder builder = Response.status(status).entity(entity);
+			for (Map.Entry<String, Object> header : headers) {
+				builder.header(header.getKey(), header.getValue());
+			}
+			return builder;
+		}
+	}
+}
@@ -4,25 +4,41 @@ package com.temenos.interaction.core.command;
  * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
  *******************************************************************************/
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.reflections.Reflections;
+import org.reflections.util.ClasspathHelper;
 import org.reflections.util.ConfigurationBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 
 import com.temenos.interaction.core.command.annotation.InteractionCommandImpl;
+import com.temenos.interaction.core.command.annotation.InteractionCommandIndexProcessor;
 
 /**
  * Implementation of {@link CommandController} based on Annotation. Using
  * Reflection will scan the classes in JAR's & Packages for required annotation.
  * Resolution is based on the name attribute of the annotation.
+ * <p>
+ * When the annotated classes were compiled with the
+ * {@link InteractionCommandIndexProcessor}, the command classes are read from
+ * the index it generated and each command is instantiated on its first use.
+ * Only the JARs, or locations of the Packages, without an index are scanned,
+ * and all of them when the index is disabled with
+ * {@link #setUseCommandIndex(boolean)}.
  *
  * @author hmanchala
  * @author trojanbug
@@ -31,12 +47,15 @@ public class AnnotationBasedCommandController implements CommandController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationBasedCommandController.class);
 
-    protected Map<String, InteractionCommand> cache = new HashMap<String, InteractionCommand>();
+    protected Map<String, InteractionCommand> cache = new ConcurrentHashMap<String, InteractionCommand>();
     private ClassLoader classloader = null;
     private Collection<String> packagesToScan = null;
     private Collection<URL> jarsToScan = null;
     private Reflections reflectionsHelper = null;
-    private boolean initialized = false;
+    private boolean useCommandIndex = true;
+    // command name to class name, null if the commands were scanned
+    private volatile Map<String, String> commandIndex = null;
+    private volatile boolean initialized = false;
 
     public AnnotationBasedCommandController() {
         this(Thread.currentThread().getContextClassLoader());
@@ -51,7 +70,8 @@ public class AnnotationBasedCommandController implements CommandController {
 
     /**
      * @param name
-     * @return If the command is already in the cache it is returned else using
+     * @return If the command is already in the cache it is returned else
+     * instantiate the command class found in the command index, or using
      * reflection scan the JARs/Packages and get the required annotated classes
      * which have implemented the interface, and return the object by calling
      * BeanUtils.instantiate() method
@@ -63,20 +83,44 @@ public class AnnotationBasedCommandController implements CommandController {
             LOGGER.debug("AnnotationBasedCommandController store not yet initialized (or reintiialized) - requesting initialisation");
             reinitialize();
         }
-        return cache.get(name);
+        InteractionCommand command = cache.get(name);
+        if (command == null && commandIndex != null) {
+            command = instantiateIndexedCommand(name);
+        }
+        return command;
     }
 
     protected synchronized void reinitialize() {
         LOGGER.debug("AnnotationBasedCommandController initializing.");
+        commandIndex = null;
         ConfigurationBuilder config = new ConfigurationBuilder();
-        if (getJarsToScan() != null && (!jarsToScan.isEmpty())) {
-            config.setUrls(getJarsToScan());
-        }
         if (getClassloader() != null) {
             config.addClassLoader(getClassloader());
         }
-        if (getPackagesToScan() != null && (!packagesToScan.isEmpty())) {
-            config.forPackages(getPackagesToScan().toArray(new String[]{}));
+        Collection<URL> unindexed = null;
+        if (useCommandIndex) {
+            Map<String, String> index = new HashMap<String, String>();
+            unindexed = readCommandIndex(index);
+            if (unindexed != null) {
+                LOGGER.debug("AnnotationBasedCommandController found {} commands in the command index.", index.size());
+                commandIndex = index;
+                if (unindexed.isEmpty()) {
+                    initialized = true;
+                    return;
+                }
+                LOGGER.debug("AnnotationBasedCommandController found no command index in {} - scanning them.", unindexed);
+                config.setUrls(unindexed);
+            } else {
+                LOGGER.debug("AnnotationBasedCommandController found no command index - scanning.");
+            }
+        }
+        if (unindexed == null) {
+            if (getJarsToScan() != null && (!jarsToScan.isEmpty())) {
+                config.setUrls(getJarsToScan());
+            }
+            if (getPackagesToScan() != null && (!packagesToScan.isEmpty())) {
+                config.forPackages(getPackagesToScan().toArray(new String[]{}));
+            }
         }
         reflectionsHelper = new Reflections(config);
 
@@ -96,6 +140,109 @@ public class AnnotationBasedCommandController implements CommandController {
         initialized = true;
     }
 
+    /*
+     * Read the command classes from the index resources in the JARs to scan, or
+     * anywhere in the classloader when no JAR is set. Returns the JARs, or the
+     * locations of the packages to scan, which have no index; null if no index
+     * was read at all.
+     */
+    private Collection<URL> readCommandIndex(Map<String, String> index) {
+        ClassLoader loader = getClassloader() != null ? getClassloader() : AnnotationBasedCommandController.class.getClassLoader();
+        Collection<URL> jars = getJarsToScan() != null && !jarsToScan.isEmpty() ? jarsToScan : null;
+        Collection<URL> unindexed = new LinkedHashSet<URL>();
+        if (jars != null) {
+            unindexed.addAll(jars);
+        } else if (getPackagesToScan() != null) {
+            for (String packageName : packagesToScan) {
+                unindexed.addAll(ClasspathHelper.forPackage(packageName, loader));
+            }
+        }
+        int indexes = 0;
+        try {
+            Enumeration<URL> resources = loader.getResources(InteractionCommandIndexProcessor.INDEX_RESOURCE);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                if (jars != null && !isInJar(resource, jars)) {
+                    continue;
+                }
+                for (URL location : unindexed) {
+                    if (isInJar(resource, Collections.singleton(location))) {
+                        unindexed.remove(location);
+                        break;
+                    }
+                }
+                indexes++;
+                Properties commands = new Properties();
+                InputStream in = resource.openStream();
+                try {
+                    commands.load(in);
+                } finally {
+                    in.close();
+                }
+                for (String name : commands.stringPropertyNames()) {
+                    String className = commands.getProperty(name);
+                    if (isInPackagesToScan(className)) {
+                        index.put(name, className);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("AnnotationBasedCommandController unable to read the command index.", e);
+            return null;
+        }
+        if (indexes == 0) {
+            return null;
+        }
+        return unindexed;
+    }
+
+    private static boolean isInJar(URL resource, Collection<URL> jars) {
+        String location = resource.toExternalForm();
+        for (URL jar : jars) {
+            String jarLocation = jar.toExternalForm();
+            if (location.startsWith("jar:" + jarLocation + "!/") || location.startsWith(jarLocation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isInPackagesToScan(String className) {
+        if (getPackagesToScan() == null || packagesToScan.isEmpty()) {
+            return true;
+        }
+        for (String packageName : packagesToScan) {
+            if (className.startsWith(packageName + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized InteractionCommand instantiateIndexedCommand(String name) {
+        InteractionCommand command = cache.get(name);
+        Map<String, String> index = commandIndex;
+        if (command != null || index == null || !index.containsKey(name)) {
+            return command;
+        }
+        String className = index.remove(name);
+        try {
+            Class<?> commandClass = Class.forName(className, false,
+                    getClassloader() != null ? getClassloader() : AnnotationBasedCommandController.class.getClassLoader());
+            Object newCommandAsObject = BeanUtils.instantiate(commandClass);
+            if (newCommandAsObject instanceof InteractionCommand) {
+                command = (InteractionCommand) newCommandAsObject;
+                LOGGER.debug("AnnotationBasedCommandController adding {} class to cache uinder the name {}.", className, name);
+                cache.put(name, command);
+            } else {
+                LOGGER.warn("A class annotated with @InteractionCommandImpl is not an InteractionCommand - ignoring!");
+            }
+        } catch (ClassNotFoundException e) {
+            LOGGER.warn("AnnotationBasedCommandController unable to load indexed command {} class {} - ignoring!", name, className);
+        }
+        return command;
+    }
+
     @Override
     public boolean isValidCommand(String name) {
         return fetchCommand(name) != null;
@@ -111,6 +258,20 @@ public class AnnotationBasedCommandController implements CommandController {
         initialized = false;
     }
 
+    public boolean isUseCommandIndex() {
+        return useCommandIndex;
+    }
+
+    /**
+     * @param useCommandIndex false to always scan the JARs/Packages, ignoring
+     * any index generated by the {@link InteractionCommandIndexProcessor}
+     */
+    public void setUseCommandIndex(boolean useCommandIndex) {
+        LOGGER.trace("AnnotationBasedCommandController {} setting use of command index: {}", this, useCommandIndex);
+        this.useCommandIndex = useCommandIndex;
+        initialized = false;
+    }
+
     public Collection<String> getPackagesToScan() {
         return packagesToScan;
     }
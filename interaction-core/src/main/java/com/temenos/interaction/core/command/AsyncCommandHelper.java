@@ -0,0 +1,104 @@
+package com.temenos.interaction.core.command;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers to execute {@link InteractionCommand}s, blocking or
+ * {@link AsyncInteractionCommand}, as stages.
+ */
+public final class AsyncCommandHelper {
+
+	private AsyncCommandHelper() {
+	}
+
+	/**
+	 * Execute a command asynchronously if it is an {@link AsyncInteractionCommand},
+	 * else on the calling thread.
+	 * @param command
+	 * @param ctx
+	 * @return the stage of the result, completed with the exception of the command if it failed
+	 */
+	public static CompletionStage<InteractionCommand.Result> executeAsync(InteractionCommand command, InteractionContext ctx) {
+		if (command instanceof AsyncInteractionCommand) {
+			try {
+				return ((AsyncInteractionCommand) command).executeAsync(ctx);
+			} catch (RuntimeException e) {
+				return failed(e);
+			}
+		}
+		return new BlockingCommandAdapter(command).executeAsync(ctx);
+	}
+
+	/**
+	 * Wait for the result of an asynchronous command.
+	 * @param stage
+	 * @return the result
+	 * @throws InteractionException the exception the stage completed with
+	 */
+	public static <T> T await(CompletionStage<T> stage) throws InteractionException {
+		try {
+			return stage.toCompletableFuture().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InteractionException(HttpStatusTypes.GATEWAY_TIMEOUT, "Interrupted waiting for the command", e);
+		} catch (ExecutionException e) {
+			Throwable cause = unwrap(e);
+			if (cause instanceof InteractionException) {
+				throw (InteractionException) cause;
+			}
+			throw propagate(cause);
+		}
+	}
+
+	/**
+	 * Wait for a stage which cannot complete with an {@link InteractionException}.
+	 * @param stage
+	 * @return the value
+	 */
+	public static <T> T join(CompletionStage<T> stage) {
+		try {
+			return stage.toCompletableFuture().join();
+		} catch (CompletionException e) {
+			throw propagate(unwrap(e));
+		}
+	}
+
+	/**
+	 * @param error the exception a stage completed with
+	 * @return the exception wrapped by the stages
+	 */
+	public static Throwable unwrap(Throwable error) {
+		Throwable cause = error;
+		while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		return cause;
+	}
+
+	/**
+	 * @param error
+	 * @return a stage completed with the exception
+	 */
+	public static <T> CompletableFuture<T> failed(Throwable error) {
+		CompletableFuture<T> stage = new CompletableFuture<T>();
+		stage.completeExceptionally(error);
+		return stage;
+	}
+
+	private static RuntimeException propagate(Throwable cause) {
+		if (cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		} else if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new CompletionException(cause);
+	}
+}
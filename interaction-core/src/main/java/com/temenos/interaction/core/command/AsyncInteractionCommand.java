@@ -0,0 +1,34 @@
+package com.temenos.interaction.core.command;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * An {@link InteractionCommand} which can complete without holding the
+ * calling thread while it waits for a backend.  The workflows and the
+ * {@link com.temenos.interaction.core.rim.HTTPHypermediaRIM} call
+ * {@link #executeAsync(InteractionContext)} on such commands, and run other
+ * commands through a {@link BlockingCommandAdapter}.
+ * <p>
+ * {@link #execute(InteractionContext)} must still be implemented for the
+ * callers expecting a result, typically by waiting for
+ * {@link #executeAsync(InteractionContext)} with
+ * {@link AsyncCommandHelper#await(CompletionStage)}.
+ */
+public interface AsyncInteractionCommand extends InteractionCommand {
+
+	/**
+	 * Asynchronous execution interface for resource interactions.
+	 * @precondition a valid, non null {@link InteractionContext}
+	 * @postcondition a non null stage completed with the InteractionCommand.Result
+	 * indicating command outcome, or with the {@link InteractionException} of the command
+	 * @param ctx
+	 * @return the stage of the result
+	 */
+	public CompletionStage<Result> executeAsync(InteractionContext ctx);
+
+}
@@ -0,0 +1,31 @@
+package com.temenos.interaction.core.command;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.List;
+
+/**
+ * An {@link InteractionCommand} able to execute for several interaction
+ * contexts in a single invocation.  When the target state of an embedded
+ * forEach transition is served by a batch command, the resource embedded in
+ * each entity of a collection is obtained with one call to the backing system
+ * rather than one call per entity.
+ */
+public interface BatchInteractionCommand extends InteractionCommand {
+
+	/**
+	 * Execute this command for each of the supplied interaction contexts.
+	 * @precondition a non empty list of valid, non null {@link InteractionContext}s
+	 * @postcondition a non null InteractionCommand.Result for each context, in the
+	 * order of the contexts, and the resource of each context set as by
+	 * {@link #execute(InteractionContext)}
+	 * @param ctxs
+	 * @throws interaction command exception, failing all the contexts
+	 * @return results
+	 */
+	public List<Result> executeAll(List<InteractionContext> ctxs) throws InteractionException;
+
+}
@@ -0,0 +1,99 @@
+package com.temenos.interaction.core.command;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.temenos.interaction.core.web.RequestContext;
+
+/**
+ * Adapts a blocking {@link InteractionCommand} to the
+ * {@link AsyncInteractionCommand} contract.  The command is executed on the
+ * calling thread, or on an {@link Executor} to leave the calling thread free
+ * while it blocks.
+ */
+public class BlockingCommandAdapter implements AsyncInteractionCommand {
+
+	private final InteractionCommand command;
+	private final Executor executor;
+
+	/**
+	 * Execute the command on the calling thread.
+	 * @param command
+	 */
+	public BlockingCommandAdapter(InteractionCommand command) {
+		this(command, null);
+	}
+
+	/**
+	 * @param command
+	 * @param executor executing the command, the calling thread if null
+	 */
+	public BlockingCommandAdapter(InteractionCommand command, Executor executor) {
+		if (command == null)
+			throw new IllegalArgumentException("No command supplied");
+		this.command = command;
+		this.executor = executor;
+	}
+
+	public InteractionCommand getCommand() {
+		return command;
+	}
+
+	@Override
+	public Result execute(InteractionContext ctx) throws InteractionException {
+		return command.execute(ctx);
+	}
+
+	@Override
+	public CompletionStage<Result> executeAsync(final InteractionContext ctx) {
+		final CompletableFuture<Result> result = new CompletableFuture<Result>();
+		if (executor == null) {
+			complete(ctx, result);
+			return result;
+		}
+		final RequestContext requestContext = RequestContext.getRequestContext();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					// the executor may run this on the calling thread
+					RequestContext previous = RequestContext.getRequestContext();
+					RequestContext.setRequestContext(requestContext);
+					try {
+						complete(ctx, result);
+					} finally {
+						if (previous == null) {
+							RequestContext.clearRequestContext();
+						} else {
+							RequestContext.setRequestContext(previous);
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	private void complete(InteractionContext ctx, CompletableFuture<Result> result) {
+		try {
+			result.complete(command.execute(ctx));
+		} catch (InteractionException e) {
+			result.completeExceptionally(e);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		} catch (Error e) {
+			result.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+}
@@ -5,6 +5,9 @@ package com.temenos.interaction.core.command;
  *******************************************************************************/
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,52 +16,99 @@ import org.slf4j.LoggerFactory;
  * to a chain of wrapped CommandController implementations. The first
  * CommandController to return non-null from fetchCommand "wins". If not found
  * on any, return null
+ * <p>
+ * The CommandController resolving each name, or the absence of any, is cached
+ * so the chain is only probed once per name, and a cached CommandController is
+ * asked for the command again on each lookup. The cache is dropped when the
+ * chain is changed, as the dynamic loader does on reload, and on
+ * {@link #refresh(Object)}, which must be called when commands are added to a
+ * wrapped CommandController, e.g. with
+ * {@link MapBasedCommandController#setCommandMap(java.util.Map)}.
  *
  * @author trojanbug
  */
-public class ChainingCommandController implements CommandController {
+public class ChainingCommandController implements CommandController, Refreshable<Object> {
 
     private static final Logger logger = LoggerFactory.getLogger(ChainingCommandController.class);
 
+    // cached for the names no CommandController resolves
+    private static final CommandController NO_CONTROLLER = new MapBasedCommandController();
+
     private List<? extends CommandController> commandControllers = new ArrayList<CommandController>();
+    private volatile ConcurrentMap<String, CommandController> resolved = new ConcurrentHashMap<String, CommandController>();
 
     @Override
     public InteractionCommand fetchCommand(String name) {
         logger.trace("Chaining CommandController requested InteractionCommand for name {}", name);
 
+        ConcurrentMap<String, CommandController> cache = resolved;
+        CommandController cached = cache.get(name);
+        if (cached == NO_CONTROLLER) {
+            return null;
+        }
+        if (cached != null) {
+            InteractionCommand command = cached.fetchCommand(name);
+            if (command != null) {
+                return command;
+            }
+        }
+
         for (CommandController commandController : commandControllers) {
             logger.trace("ChainingCommandController delegating to {} to retrieve command for name {}", commandController, name);
             InteractionCommand command = commandController.fetchCommand(name);
             if (command != null) {
                 logger.trace("ChainingCommandController returning command for name {} found by delegating to {}", name, commandController);
+                cache.put(name, commandController);
                 return command;
             }
         }
 
         logger.trace("ChainingCommandController could not find command for name {} by delegation to any configured CommandControllers", name);
+        cache.put(name, NO_CONTROLLER);
         return null;
     }
 
     @Override
     public boolean isValidCommand(String name) {
         logger.trace("ChainingCommandController requested to check existence of command for name {}", name);
+        ConcurrentMap<String, CommandController> cache = resolved;
+        CommandController cached = cache.get(name);
+        if (cached == NO_CONTROLLER) {
+            return false;
+        }
+        if (cached != null && cached.isValidCommand(name)) {
+            return true;
+        }
         for (CommandController commandController : commandControllers) {
             if (commandController.isValidCommand(name)) {
                 logger.trace("ChainingCommandController found command for name {} found by delegating to {}", name, commandController);
+                cache.put(name, commandController);
                 return true;
             }
         }
         logger.trace("ChainingCommandController could not find command for name {} by delegation to any configured CommandControllers", name);
- 
+        cache.put(name, NO_CONTROLLER);
         return false;
     }
 
+    /**
+     * Drop the cached resolution of the command names, e.g. after the commands
+     * of a wrapped CommandController were reloaded.
+     * @param context ignored
+     */
+    @Override
+    public void refresh(Object context) {
+        logger.debug("ChainingCommandController dropping the resolved command names");
+        resolved = new ConcurrentHashMap<String, CommandController>();
+    }
+
     public List<? extends CommandController> getCommandControllers() {
         return commandControllers;
     }
 
     public void setCommandControllers(List<? extends CommandController> commandControllers) {
         this.commandControllers = new ArrayList<CommandController>(commandControllers);
+        refresh(null);
     }
 
 }
@@ -8,6 +8,7 @@ package com.temenos.interaction.core.command;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,7 +57,7 @@ public class InteractionContext {
 
 	/* Command context */
 	private RESTResource resource;
-	private Map<String, Object> attributes = new HashMap<String, Object>();
+	private Map<String, Object> attributes = Collections.synchronizedMap(new HashMap<String, Object>());
 	private String preconditionIfMatch = null;
 	private List<String> preferredLanguages = new ArrayList<String>();
 	private final Map<String, String> responseHeaders = new HashMap<String, String>();
@@ -273,9 +274,9 @@ public class InteractionContext {
 	 * @return
 	 */
 	public Map<String, Object> getAttributes() {
-		Map<String, Object> attributesCopy = new HashMap<>();
-		attributesCopy.putAll(attributes);
-		return attributesCopy;
+		synchronized (attributes) {
+			return new HashMap<String, Object>(attributes);
+		}
 	}
 
 	/**
@@ -0,0 +1,121 @@
+package com.temenos.interaction.core.command.annotation;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.temenos.interaction.core.command.AnnotationBasedCommandController;
+import com.temenos.interaction.core.command.InteractionCommand;
+
+/**
+ * Annotation processor writing the index of the classes annotated with
+ * {@link InteractionCommandImpl} to {@link #INDEX_RESOURCE}, mapping each
+ * command name to the binary name of its class.  The
+ * {@link AnnotationBasedCommandController} reads this index rather than
+ * scanning the classpath.
+ *
+ * <p>The processor is registered as a service of interaction-core, so javac
+ * runs it for every project compiled against interaction-core.</p>
+ */
+@SupportedAnnotationTypes("com.temenos.interaction.core.command.annotation.InteractionCommandImpl")
+public class InteractionCommandIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_RESOURCE = "META-INF/iris/interaction-commands.properties";
+
+    private final Map<String, String> index = new TreeMap<String, String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!index.isEmpty()) {
+                writeIndex();
+            }
+            return false;
+        }
+        TypeElement commandType = processingEnv.getElementUtils().getTypeElement(InteractionCommand.class.getCanonicalName());
+        for (Element element : roundEnv.getElementsAnnotatedWith(InteractionCommandImpl.class)) {
+            if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+                warn(element, "@InteractionCommandImpl is not on a concrete class - ignoring");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (commandType != null && !processingEnv.getTypeUtils().isAssignable(type.asType(), commandType.asType())) {
+                warn(element, "A class annotated with @InteractionCommandImpl is not an InteractionCommand - ignoring");
+                continue;
+            }
+            String name = type.getAnnotation(InteractionCommandImpl.class).name();
+            String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+            String previous = index.put(name, className);
+            if (previous != null && !previous.equals(className)) {
+                warn(element, "Command name '" + name + "' is also used by " + previous);
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        Properties commands = new Properties();
+        // keep the entries of classes not compiled this time, e.g. on an incremental build
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            InputStream in = existing.openInputStream();
+            try {
+                commands.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // no index yet
+        } catch (IllegalArgumentException e) {
+            // not a valid index, rewrite it
+        }
+        for (String name : commands.stringPropertyNames()) {
+            String className = commands.getProperty(name);
+            if (processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) == null) {
+                commands.remove(name);
+            }
+        }
+        commands.putAll(index);
+
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            OutputStream out = resource.openOutputStream();
+            try {
+                commands.store(out, "Generated by " + getClass().getName());
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + INDEX_RESOURCE + ": " + e);
+        }
+    }
+
+    private void warn(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+}
@@ -0,0 +1,112 @@
+package com.temenos.interaction.core.hypermedia;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The accessors of a Java bean class, looked up once per class and shared by
+ * the code reading bean properties for every entity of a response, e.g.
+ * {@link BeanTransformer}.
+ */
+public final class BeanAccessors {
+
+	private static final ClassValue<BeanAccessors> ACCESSORS = new ClassValue<BeanAccessors>() {
+		@Override
+		protected BeanAccessors computeValue(Class<?> beanClass) {
+			return new BeanAccessors(beanClass);
+		}
+	};
+
+	// marks a method the class does not have
+	private static final Method NO_METHOD;
+	static {
+		try {
+			NO_METHOD = BeanAccessors.class.getDeclaredMethod("noMethod");
+		} catch (NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Class<?> beanClass;
+	private final Map<String, Method> readMethods;
+	private final IntrospectionException introspectionException;
+	private final ConcurrentMap<String, Method> methods = new ConcurrentHashMap<String, Method>();
+
+	private BeanAccessors(Class<?> beanClass) {
+		this.beanClass = beanClass;
+		Map<String, Method> read = new LinkedHashMap<String, Method>();
+		IntrospectionException error = null;
+		try {
+			BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
+			for (PropertyDescriptor propertyDesc : beanInfo.getPropertyDescriptors()) {
+				if (propertyDesc.getReadMethod() != null) {
+					read.put(propertyDesc.getName(), propertyDesc.getReadMethod());
+				}
+			}
+		} catch (IntrospectionException e) {
+			error = e;
+		}
+		this.readMethods = Collections.unmodifiableMap(read);
+		this.introspectionException = error;
+	}
+
+	/**
+	 * Get the accessors of a class.
+	 * @param beanClass
+	 * @return the accessors, looked up on the first call for the class
+	 */
+	public static BeanAccessors of(Class<?> beanClass) {
+		return ACCESSORS.get(beanClass);
+	}
+
+	/**
+	 * @return the read method of each property of the bean, in the order
+	 *         of the {@link PropertyDescriptor}s
+	 * @throws IntrospectionException if the class could not be introspected
+	 */
+	public Map<String, Method> getReadMethods() throws IntrospectionException {
+		if (introspectionException != null) {
+			throw introspectionException;
+		}
+		return readMethods;
+	}
+
+	/**
+	 * Get a public method of the bean taking no parameter.
+	 * @param name
+	 * @return the method
+	 * @throws NoSuchMethodException if the class has no such method
+	 */
+	public Method getMethod(String name) throws NoSuchMethodException {
+		Method method = methods.get(name);
+		if (method == null) {
+			try {
+				method = beanClass.getMethod(name);
+			} catch (NoSuchMethodException e) {
+				method = NO_METHOD;
+			}
+			methods.put(name, method);
+		}
+		if (method == NO_METHOD) {
+			throw new NoSuchMethodException(beanClass.getName() + "." + name + "()");
+		}
+		return method;
+	}
+
+	private static void noMethod() {
+		// never called, stands for missing methods
+	}
+}
@@ -5,10 +5,7 @@ package com.temenos.interaction.core.hypermedia;
  *******************************************************************************/
 
 
-import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
@@ -48,15 +45,11 @@ public class BeanTransformer implements Transformer {
 		Map<String, Object> map = new HashMap<String, Object>();
 		
 		try {
-			BeanInfo beanInfo = Introspector.getBeanInfo(entity.getClass());
-			for (PropertyDescriptor propertyDesc : beanInfo.getPropertyDescriptors()) {
-			    String propertyName = propertyDesc.getName();
+			for (Map.Entry<String, Method> readMethod : BeanAccessors.of(entity.getClass()).getReadMethods().entrySet()) {
+			    String propertyName = readMethod.getKey();
 			    if (!ReservedProperty.contains(propertyName)) {
-			    	Method readMethod = propertyDesc.getReadMethod();
-			    	if (readMethod != null) {
-			    		Object value = readMethod.invoke(entity);
-			    		map.put(propertyName, value);
-			    	}
+			    	Object value = readMethod.getValue().invoke(entity);
+			    	map.put(propertyName, value);
 			    }
 			}
 		} catch (IllegalArgumentException e) {
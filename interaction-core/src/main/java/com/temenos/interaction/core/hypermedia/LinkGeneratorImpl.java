@@ -42,6 +42,8 @@ public class LinkGeneratorImpl implements LinkGenerator {
     private Transition transition;
     private InteractionContext interactionContext;
     private boolean allQueryParameters;
+    // out query parameters of the interaction context, encoded once
+    private MultivaluedMap<String, String> encodedOutQueryParameters;
 
     public LinkGeneratorImpl(ResourceStateMachine resourceStateMachine, Transition transition, InteractionContext interactionContext) {
         this.resourceStateMachine = resourceStateMachine;
@@ -84,12 +86,12 @@ public class LinkGeneratorImpl implements LinkGenerator {
                 return null;
             }
 
-            UriBuilder linkTemplate = UriBuilder.fromUri(RequestContext.getRequestContext().getBasePath());
+            String basePath = RequestContext.getRequestContext().getBasePath();
 
             if (targetState instanceof DynamicResourceState) {
-                return createLinkForDynamicResource(linkTemplate, linkProperties, targetState, entity);
+                return createLinkForDynamicResource(UriBuilder.fromUri(basePath), linkProperties, targetState, entity);
             } else {
-                return createLinkForResource(linkTemplate, linkProperties, targetState, queryParameters, entity);
+                return createLinkForResource(basePath, linkProperties, targetState, queryParameters, entity);
             }
         } catch (IllegalArgumentException e) {
             logger.warn("Dead link [" + transition + "]", e);
@@ -103,35 +105,48 @@ public class LinkGeneratorImpl implements LinkGenerator {
     }
 
     private void configureLink(UriBuilder linkTemplate, Map<String, Object> transitionProperties, String targetResourcePath) {
-        // Pass uri parameters as query parameters if they are not
-        // replaceable in the path, and replace any token.
-        Map<String, String> uriParameters = transition.getCommand().getUriParameters();
-        MultivaluedMap<String, String> outQueryParams = new MultivaluedMapImpl<String, String>();
-        if (interactionContext != null) {
-            MultivaluedMap<String, String> outQueryParamsTemp = interactionContext.getOutQueryParameters();
-            for (Map.Entry<String, List<String>> param : outQueryParamsTemp.entrySet()) {
-                for(String paramValue: param.getValue()) {
-                    try{
-                        outQueryParams.add(param.getKey(), URLEncoder.encode(paramValue, "UTF-8"));
-                    }catch(UnsupportedEncodingException uee){
-                        logger.error("ERROR unable to encode " + param.getKey(), uee);
+        LinkTemplate template = new LinkTemplate(targetResourcePath, transition.getCommand().getUriParameters());
+        addQueryParams(linkTemplate, getOutQueryParameters(transitionProperties, template));
+    }
+
+    /*
+     * Pass uri parameters as query parameters if they are not replaceable in
+     * the path, and replace any token.
+     */
+    private MultivaluedMap<String, String> getOutQueryParameters(Map<String, Object> transitionProperties, LinkTemplate template) {
+        if (encodedOutQueryParameters == null) {
+            encodedOutQueryParameters = new MultivaluedMapImpl<String, String>();
+            if (interactionContext != null) {
+                MultivaluedMap<String, String> outQueryParamsTemp = interactionContext.getOutQueryParameters();
+                for (Map.Entry<String, List<String>> param : outQueryParamsTemp.entrySet()) {
+                    for(String paramValue: param.getValue()) {
+                        try{
+                            encodedOutQueryParameters.add(param.getKey(), URLEncoder.encode(paramValue, "UTF-8"));
+                        }catch(UnsupportedEncodingException uee){
+                            logger.error("ERROR unable to encode " + param.getKey(), uee);
+                        }
                     }
                 }
             }
         }
-        
-        if (uriParameters != null) {
-            for (String key : uriParameters.keySet()) {
-                String value = uriParameters.get(key);
-                if (!targetResourcePath.contains("{" + key + "}")) {
-                    String paramValue = HypermediaTemplateHelper.templateReplace(value, transitionProperties);
-                    if (paramValue != null) {
-                        outQueryParams.putSingle(key, paramValue);
-                    }
-                }
+        if (template.getQueryParameters().isEmpty()) {
+            return encodedOutQueryParameters;
+        }
+
+        MultivaluedMap<String, String> outQueryParams = new MultivaluedMapImpl<String, String>();
+        for (Map.Entry<String, List<String>> param : encodedOutQueryParameters.entrySet()) {
+            outQueryParams.put(param.getKey(), new ArrayList<String>(param.getValue()));
+        }
+        for (String key : template.getQueryParameters().keySet()) {
+            String paramValue = template.resolveQueryParameter(key, transitionProperties);
+            if (paramValue != null) {
+                outQueryParams.putSingle(key, paramValue);
             }
         }
-        
+        return outQueryParams;
+    }
+
+    private void addQueryParams(UriBuilder linkTemplate, MultivaluedMap<String, String> outQueryParams) {
         for (Map.Entry<String, List<String>> param : outQueryParams.entrySet()) {
             for(String paramValue: param.getValue()) {
                 linkTemplate.queryParam(param.getKey(), paramValue);
@@ -158,14 +173,19 @@ public class LinkGeneratorImpl implements LinkGenerator {
         return transition.getLabel() != null && !transition.getLabel().equals("") ? transition.getLabel() : transition.getTarget().getName();
     }
 
-    private void addQueryParams(MultivaluedMap<String, String> queryParameters, boolean allQueryParameters, UriBuilder linkTemplate, String targetResourcePath, Map<String, String> uriParameters) {
+    /*
+     * Get the query parameters of the request passed on to the link.
+     */
+    private List<String> getPassedQueryParameters(MultivaluedMap<String, String> queryParameters, LinkTemplate template, Map<String, String> uriParameters) {
+        List<String> passed = new ArrayList<String>();
         if (queryParameters != null && allQueryParameters) {
             for (String param : queryParameters.keySet()) {
-                if (!targetResourcePath.contains("{" + param + "}") && (uriParameters == null || !uriParameters.containsKey(param))) {
-                    linkTemplate.queryParam(param, queryParameters.getFirst(param));
+                if (!template.isPathVariable(param) && (uriParameters == null || !uriParameters.containsKey(param))) {
+                    passed.add(param);
                 }
             }
         }
+        return passed;
     }
 
     private Link createLinkForDynamicResource(UriBuilder linkTemplate, LinkProperties linkProperties, ResourceState targetState, Object entity) {
@@ -220,10 +240,10 @@ public class LinkGeneratorImpl implements LinkGenerator {
         URI href = linkTemplate.buildFromEncodedMap(linkPropertiesMap);
 
         Transition resolvedTransition = rebuildTransitionWithResolvedTarget(targetState);
-        return buildLink(resolvedTransition, linkProperties, entity, rel, href, method);
+        return buildLink(resolvedTransition, linkProperties, entity, rel, href.toASCIIString(), method);
     }
 
-    private Link createLinkForResource(UriBuilder linkTemplate, LinkProperties linkProperties, ResourceState targetState, MultivaluedMap<String, String> queryParameters, Object entity) {
+    private Link createLinkForResource(String basePath, LinkProperties linkProperties, ResourceState targetState, MultivaluedMap<String, String> queryParameters, Object entity) {
         Map<String, Object> encodedLinkPropertiesMap = new HashMap<String, Object>();
         for (String key : linkProperties.getTransitionProperties().keySet()) {
         	Object value = linkProperties.getTransitionProperties().get(key);
@@ -238,32 +258,51 @@ public class LinkGeneratorImpl implements LinkGenerator {
         }
 
         String targetPath = targetState.getPath();
-        linkTemplate.path(targetPath);
-        configureLink(linkTemplate, encodedLinkPropertiesMap, targetPath);
+        LinkTemplate template = transition.getLinkTemplate();
+        MultivaluedMap<String, String> outQueryParams = getOutQueryParameters(encodedLinkPropertiesMap, template);
         String rel = getTargetRelValue(targetState);
 
         // Pass any query parameters
-        addQueryParams(queryParameters, allQueryParameters, linkTemplate, targetState.getPath(), transition.getCommand().getUriParameters());
+        List<String> passedQueryParameters = getPassedQueryParameters(queryParameters, template, transition.getCommand().getUriParameters());
+
+        boolean buildWithEntity = entity != null && resourceStateMachine.getTransformer() == null;
+        String href = null;
+        if (!buildWithEntity && outQueryParams.isEmpty() && passedQueryParameters.isEmpty() 
+        		&& template.isCompiled() && LinkTemplate.isEncoded(basePath)) {
+            // Render the href from the compiled template
+            StringBuilder sb = new StringBuilder(basePath.length() + targetPath.length() + 32);
+            sb.append(basePath);
+            if (template.appendPath(sb, encodedLinkPropertiesMap)) {
+                href = sb.toString();
+            }
+        }
+        if (href == null) {
+            UriBuilder linkTemplate = UriBuilder.fromUri(basePath);
+            linkTemplate.path(targetPath);
+            addQueryParams(linkTemplate, outQueryParams);
+            for (String param : passedQueryParameters) {
+                linkTemplate.queryParam(param, queryParameters.getFirst(param));
+            }
 
-        // Build href from template
-        URI href;
-        if (entity != null && resourceStateMachine.getTransformer() == null) {
-            logger.debug("Building link with entity (No Transformer) [" + entity + "] [" + transition + "]");
-            href = linkTemplate.build(entity);
-        } else {
-            // Links in the transition properties are already encoded so
-            // build the href using encoded map.
-            href = linkTemplate.buildFromEncodedMap(encodedLinkPropertiesMap);
+            // Build href from template
+            if (buildWithEntity) {
+                logger.debug("Building link with entity (No Transformer) [" + entity + "] [" + transition + "]");
+                href = linkTemplate.build(entity).toASCIIString();
+            } else {
+                // Links in the transition properties are already encoded so
+                // build the href using encoded map.
+                href = linkTemplate.buildFromEncodedMap(encodedLinkPropertiesMap).toASCIIString();
+            }
         }
 
         return buildLink(transition, linkProperties, entity, rel, href, transition.getCommand().getMethod());
     }
 
-    private Link buildLink(Transition resolvedTransition, LinkProperties linkProperties, Object entity, String rel, URI href, String method) {
+    private Link buildLink(Transition resolvedTransition, LinkProperties linkProperties, Object entity, String rel, String href, String method) {
         Link link;
         if (linkProperties.getTransitionProperties().containsKey("profileOEntity") && "self".equals(rel) && entity instanceof OEntity) {
             // Create link adding profile to href to be resolved later on AtomXMLProvider
-            link = new Link(resolvedTransition, rel, href.toASCIIString() + "#@" + createLinkForProfile(resolvedTransition), method);
+            link = new Link(resolvedTransition, rel, href + "#@" + createLinkForProfile(resolvedTransition), method);
         } else {
             // Create link as normal behaviour
             String fieldLabel = linkProperties.getTargetFieldFullyQualifiedName();
@@ -271,10 +310,10 @@ public class LinkGeneratorImpl implements LinkGenerator {
             if (fieldLabel != null && fieldLabel.contains(".")) {
                 linkFieldLabel = resolvedTransition.getSource().getEntityName() + "_" + fieldLabel;
             }
-            link = new Link(resolvedTransition, rel, href.toASCIIString(), method, linkFieldLabel);
+            link = new Link(resolvedTransition, rel, href, method, linkFieldLabel);
         }
 
-        logger.debug("Created link for transition [" + resolvedTransition + "] [title=" + resolvedTransition.getId() + ", rel=" + rel + ", method=" + method + ", href=" + href.toString() + "(ASCII=" + href.toASCIIString() + ")]");
+        logger.debug("Created link for transition [" + resolvedTransition + "] [title=" + resolvedTransition.getId() + ", rel=" + rel + ", method=" + method + ", href=" + href + "]");
 
         return link;
     }
@@ -0,0 +1,204 @@
+package com.temenos.interaction.core.hypermedia;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+/**
+ * <p>The link template of a {@link Transition}, compiled once from the path of
+ * its target state and its uri parameters.</p>
+ * <p>The target path is split into literal and variable segments so a link
+ * can be rendered by appending the segments to a {@link StringBuilder} rather
+ * than parsing the path with a UriBuilder for every link.  Only paths made of
+ * characters which need no encoding, and of simple variables, are compiled; other
+ * paths are left to the UriBuilder.</p>
+ */
+public final class LinkTemplate {
+
+	private final String path;
+	private final Map<String, String> uriParameters;
+	private final Set<String> pathVariables;
+	// false if a variable holds a '{', the variables may then miss some tokens
+	private final boolean plainVariables;
+	// literal and variable names alternate, starting and ending with a literal
+	private final String[] segments;
+	// uri parameters not replaced in the path, passed as query parameters
+	private final Map<String, String> queryParameters;
+	// the uri parameters which are templates to resolve for each link
+	private final Set<String> templatedQueryParameters;
+
+	LinkTemplate(String path, Map<String, String> uriParameters) {
+		this.path = path;
+		this.uriParameters = uriParameters;
+
+		Set<String> variables = new HashSet<String>();
+		boolean plain = true;
+		List<String> parts = new ArrayList<String>();
+		boolean compilable = path != null && isEncoded(path.replaceAll(HypermediaTemplateHelper.TEMPLATE_PATTERN.pattern(), ""));
+		if (path != null) {
+			Matcher m = HypermediaTemplateHelper.TEMPLATE_PATTERN.matcher(path);
+			int start = 0;
+			while (m.find()) {
+				String variable = m.group(1);
+				variables.add(variable);
+				plain &= variable.indexOf('{') < 0;
+				compilable &= isSimpleVariable(variable);
+				parts.add(path.substring(start, m.start()));
+				parts.add(variable);
+				start = m.end();
+			}
+			parts.add(path.substring(start));
+		}
+		this.pathVariables = Collections.unmodifiableSet(variables);
+		this.plainVariables = plain;
+		this.segments = compilable ? parts.toArray(new String[parts.size()]) : null;
+
+		Map<String, String> query = new LinkedHashMap<String, String>();
+		Set<String> templated = new HashSet<String>();
+		if (uriParameters != null) {
+			for (Map.Entry<String, String> parameter : uriParameters.entrySet()) {
+				if (!isPathVariable(parameter.getKey())) {
+					query.put(parameter.getKey(), parameter.getValue());
+					if (parameter.getValue() != null && HypermediaTemplateHelper.TEMPLATE_PATTERN.matcher(parameter.getValue()).find()) {
+						templated.add(parameter.getKey());
+					}
+				}
+			}
+		}
+		this.queryParameters = Collections.unmodifiableMap(query);
+		this.templatedQueryParameters = Collections.unmodifiableSet(templated);
+	}
+
+	/**
+	 * @return true if this template was compiled from the given target path and uri parameters
+	 */
+	boolean isCompiledFor(String path, Map<String, String> uriParameters) {
+		return (this.path == null ? path == null : this.path.equals(path)) && this.uriParameters == uriParameters;
+	}
+
+	/**
+	 * @return the target path this template was compiled from
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @param name
+	 * @return true if the target path contains the variable {name}
+	 */
+	public boolean isPathVariable(String name) {
+		if (path == null) {
+			return false;
+		}
+		return plainVariables ? pathVariables.contains(name) : path.contains("{" + name + "}");
+	}
+
+	/**
+	 * @return the uri parameters which are not replaced in the path, in
+	 *         declaration order
+	 */
+	public Map<String, String> getQueryParameters() {
+		return queryParameters;
+	}
+
+	/**
+	 * Resolve the value of a uri parameter passed as a query parameter.
+	 * @param name
+	 * @param properties
+	 * @return the value with any template tokens replaced
+	 */
+	public String resolveQueryParameter(String name, Map<String, Object> properties) {
+		String value = queryParameters.get(name);
+		if (templatedQueryParameters.contains(name)) {
+			value = HypermediaTemplateHelper.templateReplace(value, properties);
+		}
+		return value;
+	}
+
+	/**
+	 * @return true if links can be rendered by {@link #appendPath(StringBuilder, Map)}
+	 */
+	public boolean isCompiled() {
+		return segments != null;
+	}
+
+	/**
+	 * Append the target path, with its variables replaced by already encoded
+	 * values, to a base uri.  Joins the base and path with a single '/' as
+	 * UriBuilder.path() does.
+	 * @param href holding the base uri
+	 * @param encodedValues
+	 * @return false, leaving href in an undefined state, if the path cannot be
+	 *         rendered because it was not compiled or a value is missing
+	 */
+	public boolean appendPath(StringBuilder href, Map<String, Object> encodedValues) {
+		if (segments == null) {
+			return false;
+		}
+		if (path.length() > 0) {
+			boolean baseSlash = href.length() > 0 && href.charAt(href.length() - 1) == '/';
+			boolean pathSlash = path.charAt(0) == '/';
+			if (baseSlash && pathSlash) {
+				href.setLength(href.length() - 1);
+			} else if (!baseSlash && !pathSlash) {
+				href.append('/');
+			}
+		}
+		for (int i = 0; i < segments.length; i++) {
+			if (i % 2 == 0) {
+				href.append(segments[i]);
+			} else {
+				Object value = encodedValues.get(segments[i]);
+				if (value == null) {
+					return false;
+				}
+				String encoded = value.toString();
+				if (!isEncoded(encoded)) {
+					return false;
+				}
+				href.append(encoded);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param uri
+	 * @return true if the uri only holds characters which are left as they
+	 *         are in the path of an encoded uri
+	 */
+	public static boolean isEncoded(String uri) {
+		for (int i = 0; i < uri.length(); i++) {
+			char c = uri.charAt(i);
+			if (c == '%') {
+				if (i + 2 >= uri.length() || !isHex(uri.charAt(i + 1)) || !isHex(uri.charAt(i + 2))) {
+					return false;
+				}
+				i += 2;
+			} else if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+					|| "-._~/!$&'()*+,;=:@".indexOf(c) >= 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isHex(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+
+	private static boolean isSimpleVariable(String variable) {
+		return variable.length() > 0 && variable.indexOf(':') < 0 && variable.trim().equals(variable);
+	}
+}
@@ -5,39 +5,147 @@ package com.temenos.interaction.core.hypermedia;
  *******************************************************************************/
 
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.temenos.interaction.core.cache.LruCacheConcurrentImpl;
+
 /**
  * This class provides a tree representation of a set of OData path template / http method tuples including handling path wildcards like /{id} and provides a
  * means of resolving a path to a path template allowing navigation from a path to an object associated with a given path template / http method tuple. 
+ * 
+ * The tree is immutable; every put / remove builds a new tree sharing the untouched nodes with the previous one and publishes it atomically, 
+ * so lookups never lock. Recently resolved paths are cached until the next modification of the tree.
  *
  * @author mlambert
  */
 public class PathTree {
-    private static final Pattern PATH_PARAMETER_PATTERN = Pattern.compile("(.*)(?:\\()(.*)(?:\\))$");    
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    
+    // Cached result of a path which does not resolve to any node
+    private static final Map<String,String> NOT_FOUND = Collections.unmodifiableMap(new HashMap<String,String>());
+    private static final String[] NO_SEGMENTS = new String[0];
+    private static final Node[] NO_NODES = new Node[0];
+    
     private final Logger logger = LoggerFactory.getLogger(PathTree.class);
-    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    private final int cacheSize;
+    
+    private static final class Node {
+        final String segment;
+        final Map<String, String> value;
+        // sorted literal segments and their nodes at the same index
+        final String[] literalSegments;
+        final Node[] literals;
+        final Node[] variables;
+        
+        Node(String segment) {
+            this(segment, Collections.<String,String>emptyMap(), NO_SEGMENTS, NO_NODES, NO_NODES);
+        }
+        
+        Node(String segment, Map<String, String> value, String[] literalSegments, Node[] literals, Node[] variables) {
+            this.segment = segment;
+            this.value = value;
+            this.literalSegments = literalSegments;
+            this.literals = literals;
+            this.variables = variables;
+        }
+        
+        Node getLiteral(String literal) {
+            int index = Arrays.binarySearch(literalSegments, literal);
+            return index >= 0 ? literals[index] : null;
+        }
+        
+        Node getVariable(String variable) {
+            for(Node node: variables) {
+                if(node.segment.equals(variable)) {
+                    return node;
+                }
+            }
+            return null;
+        }
+        
+        Node withValue(String httpMethod, String stateName) {
+            Map<String, String> newValue = new HashMap<String, String>(value);
+            newValue.put(httpMethod, stateName);
+            return new Node(segment, Collections.unmodifiableMap(newValue), literalSegments, literals, variables);
+        }
+        
+        Node withoutValue(String httpMethod) {
+            Map<String, String> newValue = new HashMap<String, String>(value);
+            newValue.remove(httpMethod);
+            return new Node(segment, Collections.unmodifiableMap(newValue), literalSegments, literals, variables);
+        }
+        
+        Node withLiteral(Node literal) {
+            int index = Arrays.binarySearch(literalSegments, literal.segment);
+            String[] newLiteralSegments = literalSegments;
+            Node[] newLiterals;
+            if(index >= 0) {
+                newLiterals = literals.clone();
+            } else {
+                // insert at the insertion point to keep the segments sorted
+                index = -index - 1;
+                newLiteralSegments = new String[literalSegments.length + 1];
+                newLiterals = new Node[literals.length + 1];
+                System.arraycopy(literalSegments, 0, newLiteralSegments, 0, index);
+                System.arraycopy(literals, 0, newLiterals, 0, index);
+                System.arraycopy(literalSegments, index, newLiteralSegments, index + 1, literalSegments.length - index);
+                System.arraycopy(literals, index, newLiterals, index + 1, literals.length - index);
+                newLiteralSegments[index] = literal.segment;
+            }
+            newLiterals[index] = literal;
+            return new Node(segment, value, newLiteralSegments, newLiterals, variables);
+        }
+        
+        Node withVariable(Node variable) {
+            Node[] newVariables = null;
+            for(int i = 0; i < variables.length; i++) {
+                if(variables[i].segment.equals(variable.segment)) {
+                    newVariables = variables.clone();
+                    newVariables[i] = variable;
+                    break;
+                }
+            }
+            if(newVariables == null) {
+                // keep variables in registration order as it drives the resolution order
+                newVariables = Arrays.copyOf(variables, variables.length + 1);
+                newVariables[variables.length] = variable;
+            }
+            return new Node(segment, value, literalSegments, literals, newVariables);
+        }
+    }
+    
+    private static final class Snapshot {
+        final Node root;
+        final LruCacheConcurrentImpl<String, Map<String,String>> resolved;
+        
+        Snapshot(Node root, int cacheSize) {
+            this.root = root;
+            this.resolved = new LruCacheConcurrentImpl<String, Map<String,String>>(cacheSize);
+        }
+    }
+    
+    private volatile Snapshot snapshot;
     
-    private class Node {
-        String segment;
-        Map<String, String> value = new HashMap<String,String>();
-        Map<String, Node> literals = new HashMap<String, Node>();
-        List<Node> variables = new LinkedList<Node>();
+    public PathTree() {
+        this(DEFAULT_CACHE_SIZE);
     }
     
-    private Node root;
+    /**
+     * @param cacheSize
+     *          The maximum number of resolved paths to cache
+     */
+    public PathTree(int cacheSize) {
+        this.cacheSize = cacheSize;
+        this.snapshot = new Snapshot(null, cacheSize);
+    }
     
     /**
      * Returns true if there are no OData paths in the tree otherwise false.
@@ -45,14 +153,7 @@ public class PathTree {
      * @return true if there are no OData paths in the tree otherwise false.
      */
     public boolean isEmpty() { 
-        Lock readLock = readWriteLock.readLock(); 
-        readLock.lock();
-        
-        try {
-            return root == null;   
-        } finally {
-            readLock.unlock();
-        }
+        return snapshot.root == null;
     }
     
     /**
@@ -73,103 +174,47 @@ public class PathTree {
     		return;
     	}
     	
-        LinkedList<String> segments = new LinkedList<String>(Arrays.asList(path.split("/")));
+        List<String> segments = splitPath(path);
         
-        Lock writeLock = readWriteLock.writeLock(); 
-        writeLock.lock();
-
-        try {
+        synchronized(this) {
+            Node root = snapshot.root;
             if(root == null) {
                 // All paths will be relative to "/" so this we be the root
-                root = new Node();
-                String segment = "/";
-                root.segment = segment;
+                root = new Node("/");
             }
-                    
+            
             if(segments.isEmpty()) {
-                root.value.put(httpMethod, stateName);
+                root = root.withValue(httpMethod, stateName);
             } else {
-                segments.remove(0);
-                put(root, segments, httpMethod, stateName);    
+                List<String> templateSegments = new ArrayList<String>();
+                for(int i = 1; i < segments.size(); i++) {
+                    addSegment(templateSegments, segments.get(i), true);
+                }
+                root = put(root, templateSegments, 0, httpMethod, stateName);
             }
-        } finally {
-            writeLock.unlock();
+            snapshot = new Snapshot(root, cacheSize);
         }
     }
     
-    private void put(Node current, LinkedList<String> segments, String httpMethod, String stateName) {
-        String segment = segments.remove(0);
-        Node match = null;        
-        boolean variableSegment = false;
-                        
-        Matcher m = PATH_PARAMETER_PATTERN.matcher(segment);
-        
-        if (m.find()) {
-            // We are dealing with a path that contains (...) where ... may contain 0 or more characters
-            String tmpSegment = m.group(2);
-            
-            if (!"".equals(tmpSegment)) {
-                /*
-                 * TODO The current implementation internally expands /myResource('{id}')/modify to something that can be thought of as equivalent to 
-                 * /myResource/{id}/modify; in future we may want to modify it to be /myResource/(/{id}/)/modify to reduce the chance of a collision 
-                 * with another path such as /myResource/{other}/modify
-                 */
-                if (tmpSegment.charAt(0) == '\'' && tmpSegment.charAt(tmpSegment.length() - 1) == '\'') {
-                    // There are ' at the start and end of the segment - drop them
-                    tmpSegment = tmpSegment.substring(1, tmpSegment.length() - 1);
-                }
-                segments.addFirst(tmpSegment);
-            }
-
-            // Reduce the segment to non (...) section
-            segment = m.group(1) == null ? "" : m.group(1);
+    private Node put(Node current, List<String> segments, int index, String httpMethod, String stateName) {
+        if(index == segments.size()) {
+            return current.withValue(httpMethod, stateName);
         }
         
-        if(segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}') {
-            // The current segment represents a variable
-            variableSegment = true;
-        }
+        String segment = segments.get(index);
+        boolean variableSegment = isVariable(segment);
+        Node match = variableSegment ? current.getVariable(segment) : current.getLiteral(segment);
         
-        if(variableSegment) {
-            // We are dealing with a variable segment - check if this node already has this variable child            
-            for(Node variable: current.variables) {
-                if(variable.segment.equals(segment)) {
-                    match = variable;
-                    break;
-                }
-            }
+        if(match == null) {
+            match = new Node(segment);
             
-            if(match == null) {
-                match = new Node();
-                match.segment = segment;
-                current.variables.add(match);
-                
-                if(logger.isDebugEnabled()) {
-                    logger.debug("Adding " + match + " to " + segment);
-                }
-            }            
-        }
-
-        if(!variableSegment) {
-            // We a dealing with a literal segment - check if this node already has this literal child
-            if(current.literals.containsKey(segment)) {
-                match = current.literals.get(segment);
-            } else {
-                match = new Node();
-                match.segment = segment;
-                current.literals.put(segment, match);
-                
-                if(logger.isDebugEnabled()) {
-                    logger.debug("Adding " + match + " to " + segment);
-                }
+            if(logger.isDebugEnabled()) {
+                logger.debug("Adding " + match + " to " + segment);
             }
         }
         
-        if(segments.isEmpty()) {
-            match.value.put(httpMethod, stateName);
-        } else {
-            put(match, segments, httpMethod, stateName);
-        }        
+        match = put(match, segments, index + 1, httpMethod, stateName);
+        return variableSegment ? current.withVariable(match) : current.withLiteral(match);
     }
     
     /**
@@ -180,79 +225,60 @@ public class PathTree {
      * @return The http method / state name pairs associated with the given OData path
      */
     public Map<String,String> get(String path) {
-        List<String> segments = new LinkedList<String>(Arrays.asList(path.split("/")));
+        Snapshot current = snapshot;
+        Map<String,String> result = current.resolved.get(path);
         
-        String segment = "/";
-        
-        Lock readLock = readWriteLock.readLock(); 
-        readLock.lock();
+        if(result == null) {
+            result = resolve(current.root, path);
+            current.resolved.put(path, result == null ? NOT_FOUND : result);
+        } else if(result == NOT_FOUND) {
+            result = null;
+        }
         
-        try {
-            if(root != null && root.segment != null && root.segment.equals(segment)) {
-                if(!segments.isEmpty()) {
-                    segments.remove(0);
-                }
-                
-                if(segments.isEmpty()) {
-                    return root.value;
-                } else {                
-                    return get(root, segments);
-                }
-            } else {
-                return null;
-            }            
-        } finally {
-            readLock.unlock();
+        return result;
+    }
+    
+    private Map<String,String> resolve(Node root, String path) {
+        if(root == null) {
+            return null;
         }
+        
+        Node node = resolveNode(root, path);
+        return node == null ? null : node.value;
     }
-
-    private Map<String,String> get(Node current, List<String> segments) {
-        LinkedList<String> tmpSegments = new LinkedList<String>();
-        tmpSegments.addAll(segments);
-        String segment = tmpSegments.get(0);
-        tmpSegments.remove(0);
-        Matcher matcher = PATH_PARAMETER_PATTERN.matcher(segment);
+    
+    private Node resolveNode(Node root, String path) {
+        List<String> segments = splitPath(path);
         
-        if(matcher.find()) {
-            // We are dealing with a path that contains (...) where ... may contain 0 or more characters
-            String tmpSegment = matcher.group(2);
-            
-            if(!"".equals(tmpSegment)) {
-                // Drop '(' and ')' characters and add the value as the next segment to process                                 
-                tmpSegments.addFirst(tmpSegment);
-            }
-            
-            // Reduce the segment to non (...) section
-            segment = matcher.group(1) == null ? "" : matcher.group(1);            
+        if(segments.size() <= 1) {
+            return root;
         }
         
-        if(current.literals.containsKey(segment)) {
-            if(tmpSegments.isEmpty()) {
-                return current.literals.get(segment).value;
-            } else {
-                return get(current.literals.get(segment), tmpSegments);
-            }
+        List<String> pathSegments = new ArrayList<String>(segments.size() + 1);
+        for(int i = 1; i < segments.size(); i++) {
+            addSegment(pathSegments, segments.get(i), false);
+        }
+        return resolveNode(root, pathSegments, 0);
+    }
+
+    private Node resolveNode(Node current, List<String> segments, int index) {
+        String segment = segments.get(index);
+        boolean last = index == segments.size() - 1;
+        Node literal = current.getLiteral(segment);
+        
+        if(literal != null) {
+            return last ? literal : resolveNode(literal, segments, index + 1);
+        } else if(last) {
+            return current.variables.length == 1 ? current.variables[0] : null;
         } else {
-        	Map<String,String> result = null;
-        	
-        	if(tmpSegments.isEmpty()) {
-                if(current.variables.size() == 1) {
-                    return current.variables.get(0).value;
-                } else {
-                    return null;
+            for(Node variable: current.variables) {
+                Node result = resolveNode(variable, segments, index + 1);
+                
+                if(result != null) {
+                    return result;
                 }
-            } else {
-                for(Node variable: current.variables) {
-                    
-                    result = get(variable, tmpSegments);
-                    
-                    if(result != null) {
-                        break;
-                    }
-                }            
             }
-            
-            return result;
+            return null;
         }
     }
 
@@ -265,25 +291,99 @@ public class PathTree {
      * @param httpMethod
      *          The http method part of the tuple to remove from the tree          
      */    
-    public void remove(String path, String httpMethod) {
-        Lock writeLock = readWriteLock.writeLock(); 
-        writeLock.lock();
+    public synchronized void remove(String path, String httpMethod) {
+        Node root = snapshot.root;
+        Node node = root == null ? null : resolveNode(root, path);
+        
+        if(node == null) {
+            throw new IllegalArgumentException("Path not found (" + path + ")");
+        } else if(!node.value.containsKey(httpMethod)) {
+            throw new IllegalArgumentException("Method (" + httpMethod + ") not found for path (" + path + ")");
+        }
         
-        try {
-            Map<String,String> httpMethodToState = get(path);
+        snapshot = new Snapshot(replace(root, node, node.withoutValue(httpMethod)), cacheSize);
+    }
+    
+    /*
+     * Returns a copy of current in which the given node is replaced, or null if the node is not under current.
+     */
+    private Node replace(Node current, Node node, Node replacement) {
+        if(current == node) {
+            return replacement;
+        }
+        for(Node literal: current.literals) {
+            Node result = replace(literal, node, replacement);
             
-            if(httpMethodToState == null) {
-                throw new IllegalArgumentException("Path not found (" + path + ")");
-            } else {
-                if(httpMethodToState.containsKey(httpMethod)) {
-                    // Remove the http method given from the set of http methods associated with the url
-                    httpMethodToState.remove(httpMethod);
-                } else {
-                    throw new IllegalArgumentException("Method (" + httpMethod + ") not found for path (" + path + ")");
-                }
+            if(result != null) {
+                return current.withLiteral(result);
+            }
+        }
+        for(Node variable: current.variables) {
+            Node result = replace(variable, node, replacement);
+            
+            if(result != null) {
+                return current.withVariable(result);
             }
-        } finally {
-            writeLock.unlock();
-        }        
-    }    
-}
\ No newline at end of file
+        }
+        return null;
+    }
+    
+    /*
+     * Splits a path on '/' dropping the trailing empty segments, the same way String.split would. 
+     */
+    private static List<String> splitPath(String path) {
+        List<String> segments = new ArrayList<String>();
+        int start = 0;
+        int end;
+        
+        while((end = path.indexOf('/', start)) >= 0) {
+            segments.add(path.substring(start, end));
+            start = end + 1;
+        }
+        segments.add(path.substring(start));
+        
+        int size = segments.size();
+        while(size > 1 && segments.get(size - 1).isEmpty()) {
+            size--;
+        }
+        if(size == 1 && segments.get(0).isEmpty() && start > 0) {
+            size = 0;
+        }
+        return segments.subList(0, size);
+    }
+    
+    /*
+     * Adds the segment to the list, expanding a segment of the form name(key) to the segments name and key.
+     * 
+     * TODO The current implementation internally expands /myResource('{id}')/modify to something that can be thought of as equivalent to 
+     * /myResource/{id}/modify; in future we may want to modify it to be /myResource/(/{id}/)/modify to reduce the chance of a collision 
+     * with another path such as /myResource/{other}/modify
+     */
+    private static void addSegment(List<String> segments, String segment, boolean template) {
+        int open = segment.endsWith(")") ? segment.lastIndexOf('(') : -1;
+        
+        if(open < 0) {
+            segments.add(segment);
+            return;
+        }
+        
+        // Reduce the segment to non (...) section
+        segments.add(segment.substring(0, open));
+        
+        // We are dealing with a path that contains (...) where ... may contain 0 or more characters
+        String key = segment.substring(open + 1, segment.length() - 1);
+        
+        if(template && key.length() > 1 && key.charAt(0) == '\'' && key.charAt(key.length() - 1) == '\'') {
+            // There are ' at the start and end of the segment - drop them
+            key = key.substring(1, key.length() - 1);
+        }
+        
+        if(!key.isEmpty()) {
+            addSegment(segments, key, template);
+        }
+    }
+    
+    private static boolean isVariable(String segment) {
+        return !segment.isEmpty() && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
+}
@@ -10,10 +10,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -25,6 +25,7 @@ import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.Response.Status.Family;
 
 import com.temenos.interaction.core.hypermedia.expression.Expression;
+import com.temenos.interaction.core.hypermedia.expression.ResourceGETExpression;
 import com.temenos.interaction.core.hypermedia.transition.TransitionPropertiesBuilder;
 import com.temenos.interaction.core.workflow.*;
 import com.temenos.interaction.core.workflow.WorkflowCommandBuilderProvider.WorkflowType;
@@ -37,8 +38,10 @@ import org.slf4j.LoggerFactory;
 import com.temenos.interaction.core.MapWithReadWriteLock;
 import com.temenos.interaction.core.MultivaluedMapImpl;
 import com.temenos.interaction.core.cache.Cache;
+import com.temenos.interaction.core.command.BatchInteractionCommand;
 import com.temenos.interaction.core.command.CommandController;
 import com.temenos.interaction.core.command.CommonAttributes;
+import com.temenos.interaction.core.command.HttpStatusTypes;
 import com.temenos.interaction.core.command.InteractionCommand;
 import com.temenos.interaction.core.command.InteractionContext;
 import com.temenos.interaction.core.command.InteractionException;
@@ -77,6 +80,11 @@ public class ResourceStateMachine {
 	ResourceLocatorProvider resourceLocatorProvider;
 	ResourceParameterResolverProvider parameterResolverProvider;
 	WorkflowCommandBuilderProvider workflowCommandBuilderProvider;
+	ResourceRequestHandler resourceRequestHandler;
+
+	// maximum number of entities embedded by one batch command invocation
+	public static final int DEFAULT_EMBED_BATCH_SIZE = 100;
+	private int embedBatchSize = DEFAULT_EMBED_BATCH_SIZE;
 
 	// optimised access
 	private Map<String, Transition> transitionsById = new MapWithReadWriteLock<String, Transition>();
@@ -86,6 +94,11 @@ public class ResourceStateMachine {
     private Map<String, Set<String>> resourceStateNamesByPath = new MapWithReadWriteLock<String, Set<String>>();
 	private Map<String, ResourceState> resourceStatesByName = new MapWithReadWriteLock<String, ResourceState>();
 
+	// immutable routing snapshot used on the request path, rebuilt for the
+	// paths modified by every (un)registration
+	private volatile ResourceStateRoutingTable routingTable = ResourceStateRoutingTable.EMPTY;
+	private final Set<String> modifiedPaths = new HashSet<String>();
+
 	public ResourceStateMachine(ResourceState initialState) {
 		this(initialState, null, null, null);
 	}
@@ -119,13 +132,38 @@ public class ResourceStateMachine {
 		responseCache = cache;
 	}
 
+	/**
+	 * @return the handler getting the embedded resources of this state machine
+	 *         or null to use the default of the {@link HTTPHypermediaRIM}
+	 */
+	public ResourceRequestHandler getResourceRequestHandler() {
+		return resourceRequestHandler;
+	}
+
+	public void setResourceRequestHandler(ResourceRequestHandler resourceRequestHandler) {
+		this.resourceRequestHandler = resourceRequestHandler;
+	}
+
+	/**
+	 * @return the maximum number of entities of a collection whose embedded
+	 *         resource is obtained by one {@link BatchInteractionCommand}
+	 *         invocation
+	 */
+	public int getEmbedBatchSize() {
+		return embedBatchSize;
+	}
+
+	public void setEmbedBatchSize(int embedBatchSize) {
+		if (embedBatchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1");
+		}
+		this.embedBatchSize = embedBatchSize;
+	}
+
 	// TODO support Event
 	public InteractionCommand determineAction(Event event, String resourcePath) {
-		List<Action> actions = new ArrayList<Action>();
-		Set<ResourceState> resourceStates = getResourceStatesByPath().get(resourcePath);
-		for (ResourceState s : resourceStates) {
-			actions.addAll(determineActions(event, s));
-		}
+		ResourceStateRoutingTable.Route route = routingTable.getRoute(resourcePath, event.getMethod());
+		List<Action> actions = route != null ? route.getActions() : Collections.<Action>emptyList();
 		return buildWorkflow(event, actions);
 	}
 
@@ -133,14 +171,14 @@ public class ResourceStateMachine {
 		List<Action> actions = new ArrayList<Action>();
 		Set<String> interactions = getInteractionByState().get(state.getName());
 		// TODO turn interactions into Events
-		if (interactions.contains(event.getMethod())) {
+		if (interactions.contains(event.getMethod()) && state.getActions() != null) {
 			for (Action a : state.getActions()) {
-				if (event.isSafe() && a.getType().equals(Action.TYPE.VIEW)) {
+				if (event.isSafe() && a.getType() == Action.TYPE.VIEW) {
                     // Add action to list. Since we now support command chains,
                     // with more than one GET command, it is possible
 					// to have more than one VIEW in the action list.
 					actions.add(a);
-				} else if (event.isUnSafe() && a.getType().equals(Action.TYPE.ENTRY)
+				} else if (event.isUnSafe() && a.getType() == Action.TYPE.ENTRY
 						&& (a.getMethod() == null || event.getMethod().equals(a.getMethod()))) {
 					actions.add(a);
 				}
@@ -163,12 +201,19 @@ public class ResourceStateMachine {
 	}
 
 	public ResourceState determineState(Event event, String resourcePath) {
+		ResourceStateRoutingTable.Route route = routingTable.getRoute(resourcePath, event.getMethod());
+		return route != null ? route.getState() : null;
+	}
+
+	/*
+	 * Resolve the state handling the event amongst the states sharing a path.
+	 */
+	private ResourceState resolveState(Event event, String resourcePath, Set<ResourceState> resourceStates) {
 		ResourceState state = null;
-		Set<ResourceState> resourceStates = getResourceStatesByPath().get(resourcePath);
 		if (resourceStates != null) {
 			for (ResourceState s : resourceStates) {
 				Set<String> interactions = getInteractionByState().get(s.getName());
-				if (interactions.contains(event.getMethod())) {
+				if (interactions != null && interactions.contains(event.getMethod())) {
 					if (state == null || interactions.size() == 1 || !event.getMethod().equals("GET")) { // Avoid
 																											// overriding
 																											// existing
@@ -270,6 +315,11 @@ public class ResourceStateMachine {
      *            method
      */
     public synchronized void registerAllStartingFromState(ResourceState state, String method) {
+        registerAllStates(state, method);
+        publishRoutingTable();
+    }
+
+    private void registerAllStates(ResourceState state, String method) {
 
 		checkAndResolve(state);
         if (state == null) return;
@@ -283,7 +333,7 @@ public class ResourceStateMachine {
         // Register all target resources from this resource
         for (Transition tmpTransition : state.getTransitions()) {
             if(tmpTransition.getTarget() != null) {
-               	registerAllStartingFromState(tmpTransition.getTarget(), tmpTransition.getCommand().getMethod());
+               	registerAllStates(tmpTransition.getTarget(), tmpTransition.getCommand().getMethod());
             }
         }
     }
@@ -307,6 +357,11 @@ public class ResourceStateMachine {
      *            as multiple states can share the same path
 	 */
 	public synchronized void register(ResourceState state, String method) {
+		registerState(state, method);
+		publishRoutingTable();
+	}
+
+	private void registerState(ResourceState state, String method) {
 
 		checkAndResolve(state);
         if (state == null) return;
@@ -321,7 +376,7 @@ public class ResourceStateMachine {
         for (Transition tmpTransition : state.getTransitions()) {
             if(tmpTransition.getTarget() != null) {
                 if (tmpTransition.isAnyOfTypes(Transition.EMBEDDED, Transition.FOR_EACH, Transition.FOR_EACH_EMBEDDED)) {
-                    register(tmpTransition.getTarget(), tmpTransition.getCommand().getMethod());
+                    registerState(tmpTransition.getTarget(), tmpTransition.getCommand().getMethod());
                 }
             }
         }
@@ -332,6 +387,10 @@ public class ResourceStateMachine {
 	 * processed, since we can reach a state by different methods.
 	 */
 	private void populateAccessMaps(ResourceState state, String method) {
+        modifiedPaths.add(state.getResourcePath());
+        for (ResourceState next : state.getAllTargets()) {
+            modifiedPaths.add(next.getResourcePath());
+        }
         collectTransitionsByIdForState(state);
         collectTransitionsByRelForState(state);
         collectInteractionsByPathForState(state, method);
@@ -437,6 +496,8 @@ public class ResourceStateMachine {
 	private void collectTransitionsByIdForState(ResourceState state) {
 		for (Transition transition : state.getTransitions()) {
 			transitionsById.put(transition.getId(), transition);
+			// compile the link template ahead of the first request
+			transition.getLinkTemplate();
 		}
 	}
 
@@ -495,6 +556,54 @@ public class ResourceStateMachine {
 		        }
 		        resourceStatesByName.remove(state.getName());
             }
+
+		modifiedPaths.add(state.getResourcePath());
+		publishRoutingTable();
+	}
+
+	/*
+	 * Rebuild the routing entries of the modified paths from the access maps
+	 * and atomically publish the resulting snapshot.
+	 */
+	private void publishRoutingTable() {
+		if (modifiedPaths.isEmpty())
+			return;
+		Map<String, Set<ResourceState>> statesByPath = new HashMap<String, Set<ResourceState>>();
+		Map<String, Map<String, ResourceStateRoutingTable.Route>> routesByPath = new HashMap<String, Map<String, ResourceStateRoutingTable.Route>>();
+		Set<String> removedPaths = new HashSet<String>();
+		for (String path : modifiedPaths) {
+			Set<String> resourceStateNames = resourceStateNamesByPath.get(path);
+			if (resourceStateNames == null) {
+				removedPaths.add(path);
+				continue;
+			}
+			Set<ResourceState> resourceStates = new LinkedHashSet<ResourceState>();
+			Set<String> methods = new HashSet<String>();
+			for (String resourceStateName : resourceStateNames) {
+				ResourceState state = resourceStatesByName.get(resourceStateName);
+				if (state != null) {
+					resourceStates.add(state);
+					Set<String> interactions = interactionsByState.get(resourceStateName);
+					if (interactions != null)
+						methods.addAll(interactions);
+				}
+			}
+			statesByPath.put(path, Collections.unmodifiableSet(resourceStates));
+
+			Map<String, ResourceStateRoutingTable.Route> routes = new HashMap<String, ResourceStateRoutingTable.Route>();
+			for (String method : methods) {
+				Event event = new Event(method, method);
+				List<Action> actions = new ArrayList<Action>();
+				for (ResourceState s : resourceStates) {
+					if (interactionsByState.get(s.getName()) != null)
+						actions.addAll(determineActions(event, s));
+				}
+				routes.put(method, new ResourceStateRoutingTable.Route(resolveState(event, path, resourceStates), actions));
+			}
+			routesByPath.put(path, routes);
+		}
+		modifiedPaths.clear();
+		routingTable = routingTable.update(statesByPath, routesByPath, removedPaths);
 	}
 
 	public void setParameterResolverProvider(ResourceParameterResolverProvider parameterResolverProvider) {
@@ -563,7 +672,7 @@ public class ResourceStateMachine {
 		if (path == null) {
 			path = initial.getPath();
 		}
-		return getResourceStatesByPath().get(path);
+		return routingTable.getStates(path);
 	}
 
 	/**
@@ -588,7 +697,7 @@ public class ResourceStateMachine {
 	 */
 	public Set<ResourceState> getResourceStatesForPathRegex(Pattern pattern) {
 		Set<ResourceState> matchingStates = new HashSet<ResourceState>();
-		for (String path : resourceStateNamesByPath.keySet()) {
+		for (String path : routingTable.getStatesByPath().keySet()) {
             Matcher m = pattern.matcher(path);
             if (m.matches()) {
                 matchingStates.addAll(getResourceStatesForPath(path));
@@ -598,23 +707,14 @@ public class ResourceStateMachine {
 	}
 
 	/**
-	 * Return a map of all the paths to the various resources, without
-	 * ensuring consistency between the returned map and the state
-	 * of the internal maps.
+	 * Return an unmodifiable map of all the paths to the various resources,
+	 * taken from the routing snapshot published by the last modification of
+	 * the state machine.
 	 * 
 	 * @invariant initial state not null
 	 */
 	public Map<String, Set<ResourceState>> getResourceStatesByPath() {
-        Map<String, Set<ResourceState>> stateMap = new HashMap<String, Set<ResourceState>>();
-        for (Entry<String, Set<String>> entry : resourceStateNamesByPath.entrySet()) {
-            Set<ResourceState> resourceStateSet = new LinkedHashSet<ResourceState>();
-            for(String resourceStateName : entry.getValue()) {
-                ResourceState state = resourceStatesByName.get(resourceStateName);
-                if(state != null) resourceStateSet.add(state);
-            }
-            stateMap.put(entry.getKey(), resourceStateSet);
-        }
-        return stateMap;
+		return routingTable.getStatesByPath();
 	}
 
 	/**
@@ -624,10 +724,22 @@ public class ResourceStateMachine {
 	 * @precondition begin state not null
 	 * @invariant initial state not null
 	 */
-	public Map<String, Set<ResourceState>> getResourceStatesByPath(ResourceState begin) {
+	public synchronized Map<String, Set<ResourceState>> getResourceStatesByPath(ResourceState begin) {
 		assert (begin != null);
 		
-		collectResourceStatesByPath(resourceStateNamesByPath, begin);
+		Map<String, Set<String>> collected = new HashMap<String, Set<String>>();
+		collectResourceStatesByPath(collected, begin);
+		// only the paths gaining states are republished
+		for (Map.Entry<String, Set<String>> entry : collected.entrySet()) {
+			Set<String> resourceStateNames = resourceStateNamesByPath.get(entry.getKey());
+			if (resourceStateNames == null) {
+				resourceStateNames = new HashSet<String>();
+				resourceStateNamesByPath.put(entry.getKey(), resourceStateNames);
+			}
+			if (resourceStateNames.addAll(entry.getValue()))
+				modifiedPaths.add(entry.getKey());
+		}
+		publishRoutingTable();
 		return getResourceStatesByPath();
 	}
 
@@ -831,15 +943,18 @@ public class ResourceStateMachine {
 			 */
 			if (cs.isForEach() || cs.isEmbeddedForEach()) {
 				if (collectionResource != null) {
+					Iterator<Boolean> addLinks = addLinks(transition, ctx, collectionResource.getEntities(), rimHander).iterator();
+					List<InteractionContext> embedCtxs = new ArrayList<InteractionContext>();
+					List<EntityResource<?>> embedEntities = new ArrayList<EntityResource<?>>();
+					LinkGenerator linkGenerator = new LinkGeneratorImpl(this, transition, ctx);
 					for (EntityResource<?> er : collectionResource.getEntities()) {
 						Collection<Link> eLinks = er.getLinks();
 						if (eLinks == null) {
 							eLinks = new ArrayList<Link>();
 						}
-						LinkGenerator linkGenerator = new LinkGeneratorImpl(this, transition, ctx);
 						Collection<Link> generatedLinks = linkGenerator.createLink(resourceProperties, ctx.getQueryParameters(), er.getEntity());
 
-						if (addLink(transition, ctx, er, rimHander)) {
+						if (addLinks.next()) {
 						    eLinks.addAll(generatedLinks);
 						}
 
@@ -857,7 +972,7 @@ public class ResourceStateMachine {
 				            Object tmpObj = er.getEntity();
 
                             if (tmpObj instanceof Entity) {
-                                EntityProperty prop = ((Entity) tmpObj).getProperties().getProperty(ids.get(0));
+                                EntityProperty prop = ((Entity) tmpObj).getProperties().getProperty(entityMetadata.getIdFields().get(0));
 				                ids.add(prop.getValue().toString());
                             } else if (tmpObj instanceof OEntity) {
                                 OEntityKey entityKey = ((OEntity) tmpObj).getEntityKey();
@@ -867,7 +982,7 @@ public class ResourceStateMachine {
     				                String fieldName = entityMetadata.getIdFields().get(0);
                                     String methodName = "get" + fieldName.substring(0, 1).toUpperCase()
                                             + fieldName.substring(1);
-                                    Method method = tmpObj.getClass().getMethod(methodName);
+                                    Method method = BeanAccessors.of(tmpObj.getClass()).getMethod(methodName);
                                     ids.add(method.invoke(tmpObj).toString());
                                 } catch (Exception e) {
                                     LOGGER.warn("Failed to add record id while trying to embed current collection resource", e);
@@ -878,9 +993,13 @@ public class ResourceStateMachine {
 
                             InteractionContext tmpCtx = new InteractionContext(ctx, headers, newPathParameters,
                                     ctx.getQueryParameters(), transition.getTarget());
-                            embedResources(rimHander, headers, tmpCtx, er);
+                            embedCtxs.add(tmpCtx);
+                            embedEntities.add(er);
 						}
 					}
+					if (!embedEntities.isEmpty()) {
+						embedResources(rimHander, headers, transition, embedCtxs, embedEntities);
+					}
 				}
 			} else {
 				EntityResource<?> entityResource = null;
@@ -973,7 +1092,7 @@ public class ResourceStateMachine {
 			}
 			for (Transition transition : results.keySet()) {
 				ResourceRequestResult result = results.get(transition);
-				if (Family.SUCCESSFUL.equals(Status.fromStatusCode(result.getStatus()).getFamily())) {
+				if (Family.SUCCESSFUL.equals(HttpStatusTypes.fromStatusCode(result.getStatus()).getFamily())) {
 					resourceResults.put(transition, result.getResource());
 				} else {
 					LOGGER.error("Failed to embed resource for transition [{}]", transition.getId());
@@ -988,6 +1107,110 @@ public class ResourceStateMachine {
 		}
 	}
 
+	/**
+	 * Embed the target resource of an embedded forEach transition in the
+	 * entities of a collection.  When the target state is served by a
+	 * {@link BatchInteractionCommand} the resources of up to
+	 * {@link #getEmbedBatchSize()} entities are obtained with one command
+	 * invocation, otherwise the resources of each entity are requested in turn.
+	 * 
+	 * @param rimHandler
+	 * @param headers
+	 * @param transition
+	 *            the embedded forEach transition
+	 * @param ctxs
+	 *            the context of each entity
+	 * @param entities
+	 *            the entities of the collection
+	 */
+	void embedResources(HTTPHypermediaRIM rimHandler, HttpHeaders headers, Transition transition,
+			List<InteractionContext> ctxs, List<EntityResource<?>> entities) {
+		assert (ctxs.size() == entities.size());
+		BatchInteractionCommand batchCommand = getBatchCommand(transition);
+		if (batchCommand == null) {
+			for (int i = 0; i < entities.size(); i++) {
+				embedResources(rimHandler, headers, ctxs.get(i), entities.get(i));
+			}
+			return;
+		}
+
+		// only the entities holding a link for this transition embed its target
+		SequentialResourceRequestHandler requestHandler = new SequentialResourceRequestHandler();
+		List<InteractionContext> targetCtxs = new ArrayList<InteractionContext>();
+		List<EntityResource<?>> targetEntities = new ArrayList<EntityResource<?>>();
+		for (int i = 0; i < entities.size(); i++) {
+			EntityResource<?> er = entities.get(i);
+			if (hasLink(er, transition)) {
+				targetCtxs.add(requestHandler.createTargetContext(rimHandler, ctxs.get(i), null, er.getEntity(),
+						transition));
+				targetEntities.add(er);
+			}
+		}
+
+		for (int from = 0; from < targetCtxs.size(); from += embedBatchSize) {
+			int to = Math.min(from + embedBatchSize, targetCtxs.size());
+			List<ResourceRequestResult> results = requestHandler.getResources(rimHandler, headers,
+					targetCtxs.subList(from, to), transition, batchCommand);
+			for (int i = 0; i < results.size(); i++) {
+				ResourceRequestResult result = results.get(i);
+				if (Family.SUCCESSFUL.equals(HttpStatusTypes.fromStatusCode(result.getStatus()).getFamily())) {
+					EntityResource<?> er = targetEntities.get(from + i);
+					Map<Transition, RESTResource> embedded = er.getEmbedded();
+					if (embedded == null) {
+						embedded = new HashMap<Transition, RESTResource>();
+					}
+					embedded.put(transition, result.getResource());
+					er.setEmbedded(embedded);
+				} else {
+					LOGGER.error("Failed to embed resource for transition [{}]", transition.getId());
+				}
+			}
+		}
+	}
+
+	/*
+	 * Get the batch command serving the target state of a transition. Only
+	 * states with a single action and no auto or redirect transitions can be
+	 * served by a batch, otherwise the states are requested one at a time.
+	 */
+	private BatchInteractionCommand getBatchCommand(Transition transition) {
+		if (commandController == null) {
+			return null;
+		}
+		ResourceState target = transition.getTarget();
+		if (target instanceof LazyResourceState || target instanceof LazyCollectionResourceState) {
+			target = resourceStateProvider != null ? resourceStateProvider.getResourceState(target.getName()) : null;
+		}
+		if (target == null || target.getActions() == null || target.getActions().size() != 1) {
+			return null;
+		}
+		for (Transition t : target.getTransitions()) {
+			if (t.getCommand().isAutoTransition() || t.getCommand().isRedirectTransition()) {
+				return null;
+			}
+		}
+		Action action = target.getActions().get(0);
+		if (action.getType() != Action.TYPE.VIEW) {
+			return null;
+		}
+		InteractionCommand command = commandController.fetchCommand(action.getName());
+		if (command instanceof BatchInteractionCommand) {
+			return (BatchInteractionCommand) command;
+		}
+		return null;
+	}
+
+	private boolean hasLink(EntityResource<?> er, Transition transition) {
+		if (er.getLinks() != null) {
+			for (Link link : er.getLinks()) {
+				if (link != null && link.getTransition() == transition) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Find the transition that was used by evaluating the LinkHeader and create
 	 * a a Link for that transition.
@@ -1144,6 +1367,7 @@ public class ResourceStateMachine {
 		private ResourceParameterResolverProvider parameterResolverProvider;
 		private WorkflowCommandBuilderProvider workflowCommandBuilderProvider;
 		private Cache responseCache;
+		private ResourceRequestHandler resourceRequestHandler;
 
 		public Builder initial(ResourceState initial) {
 			this.initial = initial;
@@ -1190,6 +1414,11 @@ public class ResourceStateMachine {
 			return this;
 		}
 
+		public Builder resourceRequestHandler(ResourceRequestHandler resourceRequestHandler) {
+			this.resourceRequestHandler = resourceRequestHandler;
+			return this;
+		}
+
 		public ResourceStateMachine build() {
 			return new ResourceStateMachine(this);
 		}
@@ -1205,6 +1434,7 @@ public class ResourceStateMachine {
 		this.parameterResolverProvider = builder.parameterResolverProvider;
 		this.workflowCommandBuilderProvider = builder.workflowCommandBuilderProvider;
 		this.responseCache = builder.responseCache;
+		this.resourceRequestHandler = builder.resourceRequestHandler;
 		build();
 	}
 
@@ -1223,5 +1453,30 @@ public class ResourceStateMachine {
 		return addLink;
 	}
 
+	/*
+	 * Evaluate the conditional expression of a transition for each entity of
+	 * a collection, in a single batch where the expression supports it.
+	 */
+	private List<Boolean> addLinks(Transition transition, InteractionContext ctx,
+			Collection<? extends EntityResource<?>> entities, HTTPHypermediaRIM rimHander) {
+		Expression conditionalExp = transition.getCommand().getEvaluation();
+		if (conditionalExp instanceof ResourceGETExpression) {
+			List<EntityResource<?>> clones = new ArrayList<EntityResource<?>>(entities.size());
+			try {
+				for (EntityResource<?> er : entities) {
+					clones.add((er != null) ? er.clone() : null);
+				}
+			} catch(CloneNotSupportedException cnse){ //not thrown, but added to support clone design contract
+				throw new RuntimeException("Failed to clone EntityResource", cnse);
+			}
+			return ((ResourceGETExpression) conditionalExp).evaluateAll(rimHander, ctx, clones);
+		}
+		List<Boolean> addLinks = new ArrayList<Boolean>(entities.size());
+		for (EntityResource<?> er : entities) {
+			addLinks.add(addLink(transition, ctx, er, rimHander));
+		}
+		return addLinks;
+	}
+
 
 }
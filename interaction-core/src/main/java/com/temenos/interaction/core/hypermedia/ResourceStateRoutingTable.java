@@ -0,0 +1,112 @@
+package com.temenos.interaction.core.hypermedia;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of the routing information held by a
+ * {@link ResourceStateMachine}. For every registered path it holds the
+ * resource states sharing that path and, for every HTTP method accepted on
+ * that path, the state that handles the request together with the candidate
+ * actions to execute.
+ *
+ * A new snapshot is built each time the state machine is modified and is
+ * published through a volatile reference, so request threads can resolve
+ * states and actions without locking or copying anything.
+ */
+final class ResourceStateRoutingTable {
+
+	static final ResourceStateRoutingTable EMPTY = new ResourceStateRoutingTable(
+			new HashMap<String, Set<ResourceState>>(), new HashMap<String, Map<String, Route>>());
+
+	private final Map<String, Set<ResourceState>> statesByPath;
+	private final Map<String, Map<String, Route>> routesByPath;
+
+	private ResourceStateRoutingTable(Map<String, Set<ResourceState>> statesByPath,
+			Map<String, Map<String, Route>> routesByPath) {
+		this.statesByPath = Collections.unmodifiableMap(statesByPath);
+		this.routesByPath = routesByPath;
+	}
+
+	/**
+	 * Create a new snapshot from this one, replacing the entries of the
+	 * supplied paths and removing those of the removed paths. This snapshot
+	 * is left untouched.
+	 * 
+	 * @param states
+	 *            map of changed path to the unmodifiable set of states
+	 *            registered under that path
+	 * @param routes
+	 *            map of changed path to the routes of that path keyed by HTTP
+	 *            method
+	 * @param removed
+	 *            paths no longer having any state registered under them
+	 * @return the new snapshot
+	 */
+	ResourceStateRoutingTable update(Map<String, Set<ResourceState>> states, Map<String, Map<String, Route>> routes,
+			Collection<String> removed) {
+		Map<String, Set<ResourceState>> newStatesByPath = new HashMap<String, Set<ResourceState>>(statesByPath);
+		newStatesByPath.putAll(states);
+		newStatesByPath.keySet().removeAll(removed);
+		Map<String, Map<String, Route>> newRoutesByPath = new HashMap<String, Map<String, Route>>(routesByPath);
+		newRoutesByPath.putAll(routes);
+		newRoutesByPath.keySet().removeAll(removed);
+		return new ResourceStateRoutingTable(newStatesByPath, newRoutesByPath);
+	}
+
+	/**
+	 * @return unmodifiable map of all the paths to the resource states
+	 *         registered under them
+	 */
+	Map<String, Set<ResourceState>> getStatesByPath() {
+		return statesByPath;
+	}
+
+	/**
+	 * @param path
+	 * @return the states registered under the path or null if the path is unknown
+	 */
+	Set<ResourceState> getStates(String path) {
+		return statesByPath.get(path);
+	}
+
+	/**
+	 * @param path
+	 * @param method
+	 * @return the route for the path / method pair or null if no state accepts
+	 *         the method on this path
+	 */
+	Route getRoute(String path, String method) {
+		Map<String, Route> routes = routesByPath.get(path);
+		return routes != null ? routes.get(method) : null;
+	}
+
+	/**
+	 * The resolved state and candidate actions for a path / method pair.
+	 */
+	static final class Route {
+		private final ResourceState state;
+		private final List<Action> actions;
+
+		Route(ResourceState state, List<Action> actions) {
+			this.state = state;
+			this.actions = Collections.unmodifiableList(actions);
+		}
+
+		ResourceState getState() {
+			return state;
+		}
+
+		List<Action> getActions() {
+			return actions;
+		}
+	}
+}
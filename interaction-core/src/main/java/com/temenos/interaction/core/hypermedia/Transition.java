@@ -62,6 +62,9 @@ public class Transition {
 	
 	// optional field which causes this transition
 	private String sourceField;
+
+	// compiled link template, rebuilt when the target changes
+	private volatile LinkTemplate linkTemplate;
 	
 	public String getLinkId() {
 		return linkId;
@@ -85,6 +88,25 @@ public class Transition {
 
 	public void setTarget(ResourceState target) {
 		this.target = target;
+		this.linkTemplate = null;
+	}
+
+	/**
+	 * Get the link template compiled from the path of the target state and the
+	 * uri parameters of this transition.
+	 * @return the template, or null if this transition has no target
+	 */
+	public LinkTemplate getLinkTemplate() {
+		if (target == null) {
+			return null;
+		}
+		LinkTemplate template = linkTemplate;
+		Map<String, String> uriParameters = command.getUriParameters();
+		if (template == null || !template.isCompiledFor(target.getPath(), uriParameters)) {
+			template = new LinkTemplate(target.getPath(), uriParameters);
+			linkTemplate = template;
+		}
+		return template;
 	}
 
 	public TransitionCommandSpec getCommand() {
@@ -0,0 +1,72 @@
+package com.temenos.interaction.core.hypermedia.expression;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.temenos.interaction.core.command.InteractionContext;
+
+/**
+ * <p>Request scoped cache of the status codes returned by the resources
+ * probed when evaluating link conditions.</p>
+ * <p>The same condition is often evaluated for every entity of a collection,
+ * or for several transitions of a resource, with the same target state and
+ * parameters.  The cache is held in an attribute of the {@link InteractionContext}
+ * so it is shared by the contexts derived from the request context and is
+ * discarded with it.</p>
+ */
+public class ExpressionEvaluationCache {
+
+	/**
+	 * Name of the interaction context attribute holding the cache.
+	 */
+	public static final String ATTRIBUTE_NAME = ExpressionEvaluationCache.class.getName();
+
+	private final ConcurrentMap<Object, Integer> statuses = new ConcurrentHashMap<Object, Integer>();
+
+	/**
+	 * Get the cache of an interaction context, creating it if needed.
+	 * @param ctx
+	 * @return the cache, never null
+	 */
+	public static ExpressionEvaluationCache get(InteractionContext ctx) {
+		Object cache = ctx.getAttribute(ATTRIBUTE_NAME);
+		if (cache instanceof ExpressionEvaluationCache) {
+			return (ExpressionEvaluationCache) cache;
+		}
+		// concurrent requests for the cache of a new context may each create
+		// one, later evaluations use the last one stored
+		ExpressionEvaluationCache newCache = new ExpressionEvaluationCache();
+		ctx.setAttribute(ATTRIBUTE_NAME, newCache);
+		return newCache;
+	}
+
+	/**
+	 * Get the status returned by a probe.
+	 * @param key identifies the target state and resolved parameters of the probe
+	 * @return the status, or null if the probe has not been made
+	 */
+	public Integer getStatus(Object key) {
+		return statuses.get(key);
+	}
+
+	/**
+	 * Store the status returned by a probe.
+	 * @param key identifies the target state and resolved parameters of the probe
+	 * @param status
+	 */
+	public void putStatus(Object key, int status) {
+		statuses.put(key, status);
+	}
+
+	/**
+	 * @return the number of probes cached
+	 */
+	public int size() {
+		return statuses.size();
+	}
+}
@@ -5,8 +5,13 @@ package com.temenos.interaction.core.hypermedia.expression;
  *******************************************************************************/
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -20,6 +25,8 @@ import com.temenos.interaction.core.hypermedia.LazyResourceState;
 import com.temenos.interaction.core.hypermedia.ResourceState;
 import com.temenos.interaction.core.hypermedia.ResourceStateMachine;
 import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.metrics.Metrics;
+import com.temenos.interaction.core.metrics.MetricsRecorder.Counter;
 import com.temenos.interaction.core.resource.EntityResource;
 import com.temenos.interaction.core.resource.RESTResource;
 import com.temenos.interaction.core.rim.HTTPHypermediaRIM;
@@ -68,6 +75,21 @@ public class ResourceGETExpression implements Expression {
 	
 	@Override
 	public boolean evaluate(HTTPHypermediaRIM rimHandler, InteractionContext ctx, EntityResource<?> resource) {
+		return evaluateAll(rimHandler, ctx, Collections.<EntityResource<?>>singletonList(resource)).get(0);
+	}
+
+	/**
+	 * Evaluate this expression for each of the entities of a collection.
+	 * The target state is resolved once and entities which resolve to the same
+	 * target resource share a single GET.  The status of each GET is held in the
+	 * {@link ExpressionEvaluationCache} of the request so identical probes made
+	 * by other expressions of the same request are not repeated.
+	 * @param rimHandler
+	 * @param ctx
+	 * @param resources the entities, an entry may be null to use the resource of the context
+	 * @return the result for each entity, in iteration order
+	 */
+	public List<Boolean> evaluateAll(HTTPHypermediaRIM rimHandler, InteractionContext ctx, Collection<? extends EntityResource<?>> resources) {
 		ResourceStateMachine hypermediaEngine = rimHandler.getHypermediaEngine();
 		ResourceState target = null;
 		Transition ourTransition = transition;
@@ -87,13 +109,33 @@ public class ResourceGETExpression implements Expression {
 		if(ourTransition.getTarget() instanceof LazyResourceState) {
 		    ourTransition.setTarget(target);
 		}
-        //Create a new interaction context for this state
-        MultivaluedMap<String, String> pathParameters = getPathParametersForTargetState(hypermediaEngine, ctx, ourTransition);
-    	InteractionContext newCtx = new InteractionContext(ctx, null, pathParameters, null, target);
-		EntityResource<?> entityResourceCopy = CommandHelper.createEntityResource(resolveEntityResource(resource, ctx.getResource()));
-		newCtx.setResource(entityResourceCopy);
+		MultivaluedMap<String, String> pathParameters = getPathParametersForTargetState(hypermediaEngine, ctx, ourTransition);
+		ExpressionEvaluationCache cache = ExpressionEvaluationCache.get(ctx);
+		List<Boolean> evaluations = new ArrayList<Boolean>(resources.size());
+		for (EntityResource<?> resource : resources) {
+	        //Create a new interaction context for this state
+	    	InteractionContext newCtx = new InteractionContext(ctx, null, pathParameters, null, target);
+			EntityResource<?> entityResourceCopy = CommandHelper.createEntityResource(resolveEntityResource(resource, ctx.getResource()));
+			newCtx.setResource(entityResourceCopy);
+
+			Object key = getProbeKey(hypermediaEngine, newCtx, entityResourceCopy, ourTransition);
+			Integer status = cache.getStatus(key);
+			if (status == null) {
+				Metrics.increment(Counter.EXPRESSION_CACHE_MISS, target.getName());
+				status = getStatus(rimHandler, newCtx, entityResourceCopy, ourTransition);
+				cache.putStatus(key, status);
+			} else {
+				Metrics.increment(Counter.EXPRESSION_CACHE_HIT, target.getName());
+			}
+			evaluations.add(evaluate(status));
+		}
+		return evaluations;
+	}
 
-    	//Get the target resource
+	/*
+	 * GET the target resource and return its status.
+	 */
+	private int getStatus(HTTPHypermediaRIM rimHandler, InteractionContext newCtx, EntityResource<?> entityResourceCopy, Transition ourTransition) {
 		ResourceRequestConfig config = new ResourceRequestConfig.Builder()
 				.transition(ourTransition)
 				.injectLinks(false)
@@ -102,19 +144,51 @@ public class ResourceGETExpression implements Expression {
 		Map<Transition, ResourceRequestResult> results = new SequentialResourceRequestHandler().getResources(rimHandler, null, newCtx, entityResourceCopy, config);
 		assert(results.values() != null && results.values().size() == 1);
 		ResourceRequestResult result = results.values().iterator().next();
-		
-		//Ignore the resource and its links, just interested in the result status
-		if (Status.OK.getStatusCode() == result.getStatus() 
+		return result.getStatus();
+	}
+
+	/*
+	 * Ignore the resource and its links, just interested in the result status
+	 */
+	private boolean evaluate(int status) {
+		if (Status.OK.getStatusCode() == status 
 				&& getFunction().equals(Function.OK)) {
 			return true;
 		}
-		if (Status.OK.getStatusCode() != result.getStatus() 
+		if (Status.OK.getStatusCode() != status 
 				&& getFunction().equals(Function.NOT_FOUND)) {
 			return true;
 		}
 		return false;
 	}
 
+	/*
+	 * Identify a GET by its target state and the parameters it resolves to,
+	 * as built by SequentialResourceRequestHandler.
+	 */
+	private Object getProbeKey(ResourceStateMachine hypermediaEngine, InteractionContext newCtx, EntityResource<?> entityResourceCopy, Transition ourTransition) {
+		Object entity = entityResourceCopy != null ? entityResourceCopy.getEntity() : null;
+		Map<String, String> transitionProperties = new HashMap<String, String>();
+		Map<String, Object> properties = hypermediaEngine.getTransitionProperties(ourTransition, entity, newCtx.getPathParameters(), newCtx.getQueryParameters());
+		for (Map.Entry<String, Object> property : properties.entrySet()) {
+			if (property.getValue() != null) {
+				transitionProperties.put(property.getKey(), property.getValue().toString());
+			}
+		}
+		return Arrays.asList(ourTransition.getTarget().getName(),
+				copy(newCtx.getPathParameters()),
+				transitionProperties,
+				copy(newCtx.getQueryParameters()));
+	}
+
+	private Map<String, List<String>> copy(MultivaluedMap<String, String> parameters) {
+		Map<String, List<String>> copy = new HashMap<String, List<String>>();
+		if (parameters != null) {
+			copy.putAll(parameters);
+		}
+		return copy;
+	}
+
 	@Override
 	public Set<Transition> getTransitions() {
 		return transitions;
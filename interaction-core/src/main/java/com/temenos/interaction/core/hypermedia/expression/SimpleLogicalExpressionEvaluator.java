@@ -40,7 +40,11 @@ public class SimpleLogicalExpressionEvaluator implements Expression {
 		}
 		return true;
 	}
-	
+
+	public List<Expression> getExpressions() {
+		return expressions;
+	}
+
 	@Override
 	public Set<Transition> getTransitions() {
 		return transitions;
@@ -0,0 +1,826 @@
+package com.temenos.interaction.core.loader;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import com.temenos.interaction.core.hypermedia.Action;
+import com.temenos.interaction.core.hypermedia.CollectionResourceState;
+import com.temenos.interaction.core.hypermedia.DynamicResourceState;
+import com.temenos.interaction.core.hypermedia.LazyCollectionResourceState;
+import com.temenos.interaction.core.hypermedia.LazyResourceState;
+import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.hypermedia.UriSpecification;
+import com.temenos.interaction.core.hypermedia.expression.Expression;
+import com.temenos.interaction.core.hypermedia.expression.ResourceGETExpression;
+import com.temenos.interaction.core.hypermedia.expression.SimpleLogicalExpressionEvaluator;
+
+/**
+ * Reads the resource states defined in PRD files without creating a Spring
+ * application context.
+ *
+ * PRD files are Spring bean definition files, but the ones generated from the
+ * RIM DSL only use a small part of the Spring schema: resource states,
+ * actions, uri specifications, transition factory beans, lazy and dynamic
+ * targets, resource GET expressions, lists, maps, properties and constants.
+ * This reader parses that part with StAX and builds the resource states
+ * directly, resolving references between beans the way Spring does.
+ *
+ * A file using anything else, or whose beans cannot be created, raises an
+ * UnsupportedPrdException. It should then be loaded through Spring, which
+ * also reports any error in it.
+ *
+ * For example:
+ *
+ *     Map<String, ResourceState> states = PrdReader.read(new ClassPathResource("IRIS-Notes-PRD.xml"));
+ */
+public class PrdReader {
+    private static final String BEANS_NS = "http://www.springframework.org/schema/beans";
+    private static final String UTIL_NS = "http://www.springframework.org/schema/util";
+
+    private static final String TRANSITION_FACTORY_BEAN = "com.temenos.interaction.springdsl.TransitionFactoryBean";
+
+    private static final Param[] RESOURCE_STATE_PARAMS = { new Param("entityName", String.class),
+            new Param("name", String.class), new Param("actions", List.class), new Param("path", String.class),
+            new Param("rels", String[].class), new Param("uriSpec", UriSpecification.class),
+            new Param("errorState", ResourceState.class) };
+    private static final Param[] ACTION_PARAMS = { new Param("name", String.class),
+            new Param("type", Action.TYPE.class), new Param("props", Properties.class),
+            new Param("method", String.class) };
+    private static final Param[] URI_SPECIFICATION_PARAMS = { new Param("name", String.class),
+            new Param("template", String.class) };
+    private static final Param[] LAZY_RESOURCE_STATE_PARAMS = { new Param("name", String.class) };
+    private static final Param[] DYNAMIC_RESOURCE_STATE_PARAMS = { new Param("entityName", String.class),
+            new Param("name", String.class), new Param("resourceLocatorName", String.class),
+            new Param("resourceLocatorArgs", String[].class) };
+    private static final Param[] LOGICAL_EXPRESSION_PARAMS = { new Param("expressions", List.class) };
+    private static final Param[] GET_EXPRESSION_PARAMS = { new Param("target", ResourceState.class),
+            new Param("function", ResourceGETExpression.Function.class) };
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    // Bean definitions of all the files, a later definition replaces an
+    // earlier one with the same id as in Spring
+    private final Map<String, Node> definitions = new LinkedHashMap<String, Node>();
+    private final Map<String, Object> singletons = new HashMap<String, Object>();
+    // Resource states whose properties are being set
+    private final Map<String, Object> earlySingletons = new HashMap<String, Object>();
+    private final Set<String> inCreation = new HashSet<String>();
+
+    private PrdReader() {
+    }
+
+    /**
+     * Read the resource states of PRD files sharing one set of bean
+     * definitions, like the files of one Spring context.
+     *
+     * @return the resource states by bean id, in the order they are defined
+     * @throws UnsupportedPrdException
+     *             if the files cannot be read, use Spring features this
+     *             reader does not handle, or fail to create their beans
+     */
+    public static Map<String, ResourceState> read(Resource... resources) throws UnsupportedPrdException {
+        return read(Arrays.asList(resources));
+    }
+
+    public static Map<String, ResourceState> read(List<? extends Resource> resources) throws UnsupportedPrdException {
+        PrdReader reader = new PrdReader();
+        for (Resource resource : resources) {
+            reader.parse(resource);
+        }
+        try {
+            return reader.createResourceStates();
+        } catch (RuntimeException | AssertionError e) {
+            throw new UnsupportedPrdException("Failed to create the resource states of " + resources, e);
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /* Parsing */
+
+    private void parse(Resource resource) throws UnsupportedPrdException {
+        try (InputStream in = resource.getInputStream()) {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+            try {
+                int event = reader.next();
+                while (event != XMLStreamConstants.START_ELEMENT) {
+                    if (event == XMLStreamConstants.DTD) {
+                        throw unsupported(reader, "DTD");
+                    }
+                    event = reader.next();
+                }
+                parseBeans(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new UnsupportedPrdException("Failed to read " + resource.getDescription(), e);
+        }
+    }
+
+    private void parseBeans(XMLStreamReader reader) throws XMLStreamException, UnsupportedPrdException {
+        if (!isElement(reader, BEANS_NS, "beans")) {
+            throw unsupported(reader, "root element");
+        }
+        attributes(reader, "default-lazy-init");
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (isElement(reader, BEANS_NS, "description")) {
+                reader.getElementText();
+                continue;
+            }
+            if (!isElement(reader, BEANS_NS, "bean") && !UTIL_NS.equals(reader.getNamespaceURI())) {
+                throw unsupported(reader, "element");
+            }
+            String id = reader.getAttributeValue(null, "id");
+            if (id == null) {
+                throw unsupported(reader, "bean without an id");
+            }
+            definitions.put(id, parseValue(reader));
+        }
+    }
+
+    /*
+     * Parse the value element the reader is on, leaving the reader on its end
+     * element.
+     */
+    private Node parseValue(XMLStreamReader reader) throws XMLStreamException, UnsupportedPrdException {
+        String name = reader.getLocalName();
+        if (BEANS_NS.equals(reader.getNamespaceURI())) {
+            if ("bean".equals(name)) {
+                return parseBean(reader);
+            } else if ("ref".equals(name)) {
+                Map<String, String> attributes = attributes(reader, "bean", "local");
+                String bean = attributes.containsKey("bean") ? attributes.get("bean") : attributes.get("local");
+                if (bean == null) {
+                    throw unsupported(reader, "reference");
+                }
+                endElement(reader);
+                return new Ref(bean);
+            } else if ("value".equals(name)) {
+                String type = attributes(reader, "type").get("type");
+                if (type != null && !"java.lang.String".equals(type) && !"java.lang.String[]".equals(type)) {
+                    throw unsupported(reader, "value type " + type);
+                }
+                return new Value(reader.getElementText(), "java.lang.String[]".equals(type));
+            } else if ("null".equals(name)) {
+                attributes(reader);
+                endElement(reader);
+                return Null.NULL;
+            } else if ("list".equals(name) || "array".equals(name)) {
+                attributes(reader, "value-type");
+                return parseList(reader);
+            } else if ("map".equals(name)) {
+                attributes(reader, "key-type", "value-type");
+                return parseMap(reader);
+            } else if ("props".equals(name)) {
+                attributes(reader);
+                return parseProps(reader);
+            }
+        } else if (UTIL_NS.equals(reader.getNamespaceURI())) {
+            if ("list".equals(name)) {
+                attributes(reader, "id", "value-type");
+                return parseList(reader);
+            } else if ("map".equals(name)) {
+                attributes(reader, "id", "key-type", "value-type");
+                return parseMap(reader);
+            } else if ("properties".equals(name)) {
+                attributes(reader, "id");
+                return parseProps(reader);
+            } else if ("constant".equals(name)) {
+                String staticField = attributes(reader, "id", "static-field").get("static-field");
+                if (staticField == null) {
+                    throw unsupported(reader, "constant");
+                }
+                endElement(reader);
+                return new Constant(staticField);
+            }
+        }
+        throw unsupported(reader, "element");
+    }
+
+    private BeanNode parseBean(XMLStreamReader reader) throws XMLStreamException, UnsupportedPrdException {
+        Map<String, String> attributes = attributes(reader, "id", "class", "lazy-init", "scope");
+        String scope = attributes.get("scope");
+        if (attributes.get("class") == null || (scope != null && !"singleton".equals(scope))) {
+            throw unsupported(reader, "bean");
+        }
+        BeanNode bean = new BeanNode(attributes.get("class"));
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (isElement(reader, BEANS_NS, "constructor-arg")) {
+                Map<String, String> argAttributes = attributes(reader, "name", "index", "type", "value", "ref");
+                int index = -1;
+                if (argAttributes.containsKey("index")) {
+                    try {
+                        index = Integer.parseInt(argAttributes.get("index"));
+                    } catch (NumberFormatException e) {
+                        throw unsupported(reader, "index");
+                    }
+                }
+                Node value = parseArgumentValue(reader, argAttributes);
+                bean.arguments.add(new Argument(argAttributes.get("name"), index, argAttributes.get("type"), value));
+            } else if (isElement(reader, BEANS_NS, "property")) {
+                Map<String, String> propertyAttributes = attributes(reader, "name", "value", "ref");
+                String name = propertyAttributes.get("name");
+                if (name == null || bean.properties.containsKey(name)) {
+                    throw unsupported(reader, "property " + name);
+                }
+                bean.properties.put(name, parseArgumentValue(reader, propertyAttributes));
+            } else if (isElement(reader, BEANS_NS, "description")) {
+                reader.getElementText();
+            } else {
+                throw unsupported(reader, "element");
+            }
+        }
+        return bean;
+    }
+
+    /*
+     * The value of a constructor argument or property, given by a value or ref
+     * attribute or by a single child element.
+     */
+    private Node parseArgumentValue(XMLStreamReader reader, Map<String, String> attributes)
+            throws XMLStreamException, UnsupportedPrdException {
+        Node value;
+        if (attributes.containsKey("value")) {
+            value = new Value(attributes.get("value"), false);
+        } else if (attributes.containsKey("ref")) {
+            value = new Ref(attributes.get("ref"));
+        } else {
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+                throw unsupported(reader, "missing value");
+            }
+            value = parseValue(reader);
+        }
+        endElement(reader);
+        return value;
+    }
+
+    private ListNode parseList(XMLStreamReader reader) throws XMLStreamException, UnsupportedPrdException {
+        ListNode list = new ListNode();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            list.elements.add(parseValue(reader));
+        }
+        return list;
+    }
+
+    private MapNode parseMap(XMLStreamReader reader) throws XMLStreamException, UnsupportedPrdException {
+        MapNode map = new MapNode();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (!isElement(reader, BEANS_NS, "entry")) {
+                throw unsupported(reader, "element");
+            }
+            Map<String, String> attributes = attributes(reader, "key", "value", "value-ref");
+            String key = attributes.get("key");
+            if (key == null) {
+                throw unsupported(reader, "entry without a key");
+            }
+            Node value;
+            if (attributes.containsKey("value-ref")) {
+                value = new Ref(attributes.get("value-ref"));
+                endElement(reader);
+            } else {
+                value = parseArgumentValue(reader, attributes);
+            }
+            map.entries.put(key, value);
+        }
+        return map;
+    }
+
+    private PropsNode parseProps(XMLStreamReader reader) throws XMLStreamException, UnsupportedPrdException {
+        PropsNode props = new PropsNode();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (!isElement(reader, BEANS_NS, "prop")) {
+                throw unsupported(reader, "element");
+            }
+            String key = attributes(reader, "key").get("key");
+            if (key == null) {
+                throw unsupported(reader, "prop without a key");
+            }
+            // Spring trims the text of a prop, but not of a value
+            props.properties.put(key, reader.getElementText().trim());
+        }
+        return props;
+    }
+
+    private static boolean isElement(XMLStreamReader reader, String namespace, String name) {
+        return namespace.equals(reader.getNamespaceURI()) && name.equals(reader.getLocalName());
+    }
+
+    private static void endElement(XMLStreamReader reader) throws XMLStreamException, UnsupportedPrdException {
+        if (reader.nextTag() != XMLStreamConstants.END_ELEMENT) {
+            throw unsupported(reader, "element");
+        }
+    }
+
+    /*
+     * The attributes of the current element, which must all be among the
+     * allowed ones.
+     */
+    private static Map<String, String> attributes(XMLStreamReader reader, String... allowed)
+            throws UnsupportedPrdException {
+        Map<String, String> attributes = new HashMap<String, String>();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String namespace = reader.getAttributeNamespace(i);
+            String name = reader.getAttributeLocalName(i);
+            if (XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI.equals(namespace)) {
+                continue;
+            }
+            if ((namespace != null && !namespace.isEmpty()) || !Arrays.asList(allowed).contains(name)) {
+                throw unsupported(reader, "attribute " + name);
+            }
+            attributes.put(name, reader.getAttributeValue(i));
+        }
+        return attributes;
+    }
+
+    private static UnsupportedPrdException unsupported(XMLStreamReader reader, String what) {
+        String element = reader.isStartElement() || reader.isEndElement() ? " in <" + reader.getLocalName() + ">"
+                : "";
+        return new UnsupportedPrdException("Unsupported " + what + element + " at line "
+                + reader.getLocation().getLineNumber());
+    }
+
+    /* Creating the beans */
+
+    private Map<String, ResourceState> createResourceStates() throws UnsupportedPrdException {
+        Map<String, ResourceState> resourceStates = new LinkedHashMap<String, ResourceState>();
+        for (String id : definitions.keySet()) {
+            Object bean = getBean(id);
+            if (bean instanceof ResourceState) {
+                resourceStates.put(id, (ResourceState) bean);
+            }
+        }
+        return resourceStates;
+    }
+
+    private Object getBean(String id) throws UnsupportedPrdException {
+        if (singletons.containsKey(id)) {
+            return singletons.get(id);
+        }
+        if (earlySingletons.containsKey(id)) {
+            return earlySingletons.get(id);
+        }
+        Node definition = definitions.get(id);
+        if (definition == null) {
+            throw new UnsupportedPrdException("Reference to bean " + id + " which is not defined");
+        }
+        if (!inCreation.add(id)) {
+            throw new UnsupportedPrdException("Circular reference to bean " + id);
+        }
+        try {
+            Object bean = definition instanceof BeanNode ? createBean((BeanNode) definition, id) : resolve(definition);
+            singletons.put(id, bean);
+            return bean;
+        } finally {
+            earlySingletons.remove(id);
+            inCreation.remove(id);
+        }
+    }
+
+    private Object resolve(Node node) throws UnsupportedPrdException {
+        if (node == Null.NULL) {
+            return null;
+        } else if (node instanceof Value) {
+            Value value = (Value) node;
+            return value.array ? toStringArray(value.text) : value.text;
+        } else if (node instanceof Ref) {
+            return getBean(((Ref) node).bean);
+        } else if (node instanceof BeanNode) {
+            return createBean((BeanNode) node, null);
+        } else if (node instanceof Constant) {
+            return constant(((Constant) node).staticField);
+        } else if (node instanceof ListNode) {
+            List<Object> list = new ArrayList<Object>();
+            for (Node element : ((ListNode) node).elements) {
+                list.add(resolve(element));
+            }
+            return list;
+        } else if (node instanceof MapNode) {
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            for (Map.Entry<String, Node> entry : ((MapNode) node).entries.entrySet()) {
+                map.put(entry.getKey(), resolve(entry.getValue()));
+            }
+            return map;
+        } else {
+            Properties properties = new Properties();
+            properties.putAll(((PropsNode) node).properties);
+            return properties;
+        }
+    }
+
+    private Object createBean(BeanNode bean, String id) throws UnsupportedPrdException {
+        String className = bean.className;
+        if (ResourceState.class.getName().equals(className)
+                || CollectionResourceState.class.getName().equals(className)) {
+            return createResourceState(bean, id);
+        } else if (TRANSITION_FACTORY_BEAN.equals(className)) {
+            return createTransition(bean);
+        }
+
+        Object result;
+        if (Action.class.getName().equals(className)) {
+            result = createAction(bean);
+        } else if (UriSpecification.class.getName().equals(className)) {
+            Node[] args = arguments(bean, URI_SPECIFICATION_PARAMS, 2);
+            result = new UriSpecification(convert(args[0], String.class), convert(args[1], String.class));
+        } else if (LazyResourceState.class.getName().equals(className)) {
+            result = new LazyResourceState(convert(arguments(bean, LAZY_RESOURCE_STATE_PARAMS, 1)[0], String.class));
+        } else if (LazyCollectionResourceState.class.getName().equals(className)) {
+            result = new LazyCollectionResourceState(convert(arguments(bean, LAZY_RESOURCE_STATE_PARAMS, 1)[0],
+                    String.class));
+        } else if (DynamicResourceState.class.getName().equals(className)) {
+            Node[] args = arguments(bean, DYNAMIC_RESOURCE_STATE_PARAMS, 4);
+            result = new DynamicResourceState(convert(args[0], String.class), convert(args[1], String.class),
+                    convert(args[2], String.class), convert(args[3], String[].class));
+        } else if (SimpleLogicalExpressionEvaluator.class.getName().equals(className)) {
+            Node[] args = arguments(bean, LOGICAL_EXPRESSION_PARAMS, 1);
+            result = new SimpleLogicalExpressionEvaluator(convertList(args[0], Expression.class));
+        } else if (ResourceGETExpression.class.getName().equals(className)) {
+            Node[] args = arguments(bean, GET_EXPRESSION_PARAMS, 2);
+            ResourceGETExpression.Function function = convert(args[1], ResourceGETExpression.Function.class);
+            if (args[0] instanceof Value) {
+                result = new ResourceGETExpression(convert(args[0], String.class), function);
+            } else {
+                result = new ResourceGETExpression(convert(args[0], ResourceState.class), function);
+            }
+        } else {
+            throw new UnsupportedPrdException("Unsupported bean class " + className);
+        }
+        if (!bean.properties.isEmpty()) {
+            throw new UnsupportedPrdException("Unsupported properties " + bean.properties.keySet() + " of "
+                    + className);
+        }
+        return result;
+    }
+
+    private ResourceState createResourceState(BeanNode bean, String id) throws UnsupportedPrdException {
+        Node[] args = arguments(bean, RESOURCE_STATE_PARAMS, 4, 5, 6, 7);
+        boolean collection = CollectionResourceState.class.getName().equals(bean.className);
+        if (collection && args[4] != null && args[5] == null) {
+            // CollectionResourceState has no constructor taking rels without uriSpec
+            throw new UnsupportedPrdException("Unsupported CollectionResourceState constructor");
+        }
+        String entityName = convert(args[0], String.class);
+        String name = convert(args[1], String.class);
+        List<Action> actions = convertList(args[2], Action.class);
+        String path = convert(args[3], String.class);
+        String[] rels = convert(args[4], String[].class);
+        UriSpecification uriSpec = convert(args[5], UriSpecification.class);
+        ResourceState errorState = convert(args[6], ResourceState.class);
+
+        // The shorter constructors are all equivalent to the longest one with
+        // null for the missing arguments
+        ResourceState state = collection
+                ? new CollectionResourceState(entityName, name, actions, path, rels, uriSpec, errorState)
+                : new ResourceState(entityName, name, actions, path, rels, uriSpec, errorState);
+        if (id != null) {
+            earlySingletons.put(id, state);
+        }
+
+        for (Map.Entry<String, Node> property : bean.properties.entrySet()) {
+            String propertyName = property.getKey();
+            if ("initial".equals(propertyName)) {
+                state.setInitial(convert(property.getValue(), Boolean.class));
+            } else if ("exception".equals(propertyName)) {
+                state.setException(convert(property.getValue(), Boolean.class));
+            } else if ("maxAge".equals(propertyName)) {
+                state.setMaxAge(convert(property.getValue(), Integer.class));
+            } else if ("errorState".equals(propertyName)) {
+                state.setErrorState(convert(property.getValue(), ResourceState.class));
+            } else if ("transitions".equals(propertyName)) {
+                state.setTransitions(convertList(property.getValue(), Transition.class));
+            } else {
+                throw new UnsupportedPrdException("Unsupported property " + propertyName + " of " + bean.className);
+            }
+        }
+        return state;
+    }
+
+    private Action createAction(BeanNode bean) throws UnsupportedPrdException {
+        Node[] args = arguments(bean, ACTION_PARAMS, 2, 3, 4);
+        String name = convert(args[0], String.class);
+        Action.TYPE type = convert(args[1], Action.TYPE.class);
+        if (args[2] == null) {
+            return new Action(name, type);
+        }
+        Properties props = convert(args[2], Properties.class);
+        if (args[3] == null) {
+            return new Action(name, type, props);
+        }
+        return new Action(name, type, props, convert(args[3], String.class));
+    }
+
+    /*
+     * The Transition a TransitionFactoryBean would make.
+     */
+    @SuppressWarnings("unchecked")
+    private Transition createTransition(BeanNode bean) throws UnsupportedPrdException {
+        if (!bean.arguments.isEmpty()) {
+            throw new UnsupportedPrdException("Unsupported constructor of " + bean.className);
+        }
+        ResourceState source = null, target = null;
+        String label = null, method = null, linkId = null, sourceField = null;
+        int flags = 0;
+        Expression evaluation = null;
+        Map<String, String> uriParameters = null;
+        for (Map.Entry<String, Node> property : bean.properties.entrySet()) {
+            String propertyName = property.getKey();
+            Node value = property.getValue();
+            if ("source".equals(propertyName)) {
+                source = convert(value, ResourceState.class);
+            } else if ("target".equals(propertyName)) {
+                target = convert(value, ResourceState.class);
+            } else if ("label".equals(propertyName)) {
+                label = convert(value, String.class);
+            } else if ("method".equals(propertyName)) {
+                method = convert(value, String.class);
+            } else if ("linkId".equals(propertyName)) {
+                linkId = convert(value, String.class);
+            } else if ("sourceField".equals(propertyName)) {
+                sourceField = convert(value, String.class);
+            } else if ("flags".equals(propertyName)) {
+                flags = convert(value, Integer.class);
+            } else if ("evaluation".equals(propertyName)) {
+                evaluation = convert(value, Expression.class);
+            } else if ("uriParameters".equals(propertyName)) {
+                uriParameters = convert(value, Map.class);
+            } else {
+                throw new UnsupportedPrdException("Unsupported property " + propertyName + " of " + bean.className);
+            }
+        }
+        Transition.Builder builder = new Transition.Builder();
+        builder.label(label);
+        builder.source(source);
+        builder.target(target);
+        builder.method(method);
+        builder.flags(flags);
+        builder.evaluation(evaluation);
+        builder.uriParameters(uriParameters);
+        builder.linkId(linkId);
+        builder.sourceField(sourceField);
+        return builder.build();
+    }
+
+    /*
+     * The constructor arguments of a bean in parameter order, null for those
+     * not given. Arguments are matched by index, then name, then position.
+     * The number given must be one of the counts, with no gaps.
+     */
+    private static Node[] arguments(BeanNode bean, Param[] params, int... counts) throws UnsupportedPrdException {
+        Node[] args = new Node[params.length];
+        for (int i = 0; i < bean.arguments.size(); i++) {
+            Argument argument = bean.arguments.get(i);
+            int slot = argument.index >= 0 ? argument.index : i;
+            if (argument.name != null) {
+                int named = -1;
+                for (int j = 0; j < params.length; j++) {
+                    if (params[j].name.equals(argument.name)) {
+                        named = j;
+                    }
+                }
+                if (named < 0 || (argument.index >= 0 && argument.index != named)) {
+                    throw new UnsupportedPrdException("Unsupported argument " + argument.name + " of " + bean.className);
+                }
+                slot = named;
+            }
+            if (slot >= params.length || args[slot] != null || !params[slot].accepts(argument.type)) {
+                throw new UnsupportedPrdException("Unsupported arguments of " + bean.className);
+            }
+            args[slot] = argument.value;
+        }
+        int count = bean.arguments.size();
+        for (int i = 0; i < count; i++) {
+            if (args[i] == null) {
+                throw new UnsupportedPrdException("Unsupported arguments of " + bean.className);
+            }
+        }
+        for (int allowed : counts) {
+            if (allowed == count) {
+                return args;
+            }
+        }
+        throw new UnsupportedPrdException("Unsupported constructor of " + bean.className);
+    }
+
+    /*
+     * Convert a value to a type, as far as Spring would for the definitions
+     * this reader handles. A missing value is null.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private <T> T convert(Node node, Class<T> type) throws UnsupportedPrdException {
+        if (node == null) {
+            return null;
+        }
+        Object value = resolve(node);
+        if (value == null || type.isInstance(value)) {
+            return (T) value;
+        }
+        try {
+            if (value instanceof String) {
+                String text = (String) value;
+                if (type == String[].class) {
+                    return (T) toStringArray(text);
+                } else if (type == Integer.class) {
+                    return (T) Integer.valueOf(text.trim());
+                } else if (type == Boolean.class) {
+                    return (T) toBoolean(text);
+                } else if (type.isEnum()) {
+                    return (T) Enum.valueOf((Class<Enum>) type, text.trim());
+                }
+            } else if (value instanceof Number && type == Integer.class) {
+                return (T) Integer.valueOf(((Number) value).intValue());
+            } else if (value instanceof List && type == String[].class) {
+                return (T) ((List<?>) value).toArray(new String[0]);
+            } else if (value instanceof Map && type == Properties.class) {
+                Properties properties = new Properties();
+                properties.putAll((Map<?, ?>) value);
+                return (T) properties;
+            }
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedPrdException("Cannot convert " + value + " to " + type.getSimpleName(), e);
+        } catch (ArrayStoreException e) {
+            throw new UnsupportedPrdException("Cannot convert " + value + " to " + type.getSimpleName(), e);
+        }
+        throw new UnsupportedPrdException("Cannot convert " + value.getClass().getName() + " to "
+                + type.getSimpleName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> convertList(Node node, Class<T> elementType) throws UnsupportedPrdException {
+        List<?> list = convert(node, List.class);
+        if (list != null) {
+            for (Object element : list) {
+                if (element != null && !elementType.isInstance(element)) {
+                    throw new UnsupportedPrdException("Cannot convert " + element.getClass().getName() + " to "
+                            + elementType.getSimpleName());
+                }
+            }
+        }
+        return (List<T>) list;
+    }
+
+    // As Spring's StringArrayPropertyEditor
+    private static String[] toStringArray(String text) {
+        return StringUtils.trimArrayElements(StringUtils.commaDelimitedListToStringArray(text));
+    }
+
+    // As Spring's CustomBooleanEditor
+    private static Boolean toBoolean(String text) {
+        String value = text.trim();
+        if ("true".equalsIgnoreCase(value) || "on".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value)
+                || "1".equals(value)) {
+            return Boolean.TRUE;
+        } else if ("false".equalsIgnoreCase(value) || "off".equalsIgnoreCase(value) || "no".equalsIgnoreCase(value)
+                || "0".equals(value)) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException("Invalid boolean value [" + text + "]");
+    }
+
+    private static Object constant(String staticField) throws UnsupportedPrdException {
+        int dot = staticField.lastIndexOf('.');
+        if (dot <= 0) {
+            throw new UnsupportedPrdException("Unsupported constant " + staticField);
+        }
+        try {
+            // Resolves nested classes such as ResourceGETExpression.Function
+            Class<?> type = ClassUtils.forName(staticField.substring(0, dot), ClassUtils.getDefaultClassLoader());
+            return type.getField(staticField.substring(dot + 1)).get(null);
+        } catch (ClassNotFoundException | NoSuchFieldException | IllegalAccessException e) {
+            throw new UnsupportedPrdException("Unsupported constant " + staticField, e);
+        }
+    }
+
+    /**
+     * Thrown when a PRD file cannot be read without Spring.
+     */
+    public static class UnsupportedPrdException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedPrdException(String message) {
+            super(message);
+        }
+
+        public UnsupportedPrdException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /* Bean definitions */
+
+    private interface Node {
+    }
+
+    private enum Null implements Node {
+        NULL
+    }
+
+    private static class Value implements Node {
+        private final String text;
+        // A comma separated String[]
+        private final boolean array;
+
+        Value(String text, boolean array) {
+            this.text = text;
+            this.array = array;
+        }
+    }
+
+    private static class Ref implements Node {
+        private final String bean;
+
+        Ref(String bean) {
+            this.bean = bean;
+        }
+    }
+
+    private static class Constant implements Node {
+        private final String staticField;
+
+        Constant(String staticField) {
+            this.staticField = staticField;
+        }
+    }
+
+    private static class ListNode implements Node {
+        private final List<Node> elements = new ArrayList<Node>();
+    }
+
+    private static class MapNode implements Node {
+        private final Map<String, Node> entries = new LinkedHashMap<String, Node>();
+    }
+
+    private static class PropsNode implements Node {
+        private final Map<String, String> properties = new LinkedHashMap<String, String>();
+    }
+
+    private static class BeanNode implements Node {
+        private final String className;
+        private final List<Argument> arguments = new ArrayList<Argument>();
+        private final Map<String, Node> properties = new LinkedHashMap<String, Node>();
+
+        BeanNode(String className) {
+            this.className = className;
+        }
+    }
+
+    private static class Argument {
+        private final String name;
+        private final int index;
+        private final String type;
+        private final Node value;
+
+        Argument(String name, int index, String type, Node value) {
+            this.name = name;
+            this.index = index;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private static class Param {
+        private final String name;
+        private final Class<?> type;
+
+        Param(String name, Class<?> type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        // Whether the type attribute of an argument names this parameter type
+        boolean accepts(String typeName) {
+            return typeName == null || typeName.equals(type.getName()) || typeName.equals(type.getSimpleName())
+                    || typeName.equals(type.getCanonicalName());
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package com.temenos.interaction.core.loader;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import com.temenos.interaction.core.hypermedia.Action;
+import com.temenos.interaction.core.hypermedia.CollectionResourceState;
+import com.temenos.interaction.core.hypermedia.DynamicResourceState;
+import com.temenos.interaction.core.hypermedia.LazyCollectionResourceState;
+import com.temenos.interaction.core.hypermedia.LazyResourceState;
+import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.hypermedia.UriSpecification;
+import com.temenos.interaction.core.hypermedia.expression.Expression;
+import com.temenos.interaction.core.hypermedia.expression.ResourceGETExpression;
+import com.temenos.interaction.core.hypermedia.expression.SimpleLogicalExpressionEvaluator;
+
+/**
+ * A binary snapshot of the resource states of PRD files, written at build
+ * time by a {@link ResourceStateSnapshotWriter}.
+ *
+ * The snapshot is memory mapped when it is a file. Opening it only reads its
+ * table of contents: the state bindings of the RIM and, for each PRD file,
+ * where its resource states are and the checksum of the XML they were read
+ * from. The resource states of a file are decoded when {@link #read(String)}
+ * is first called for it, so the files never used cost nothing.
+ *
+ * A snapshot does not replace the PRD files. A loader should only use the
+ * resource states of a file when {@link #isCurrent(String, InputStream)}
+ * confirms the XML has not changed since the snapshot was written, and read
+ * the XML otherwise.
+ *
+ * The layout, all numbers big endian:
+ *
+ *     int magic, int version, int table length, int table CRC32
+ *     table: int binding count, (UTF state, UTF binding)*,
+ *            int file count, (UTF file name, long XML length, int XML CRC32,
+ *                             long offset, int length, int CRC32)*
+ *     the encoded resource states of each file
+ */
+public final class ResourceStateSnapshot {
+
+    /**
+     * The name of a snapshot file, in META-INF on the classpath or in an
+     * IRIS configuration directory.
+     */
+    public static final String FILE_NAME = "IRIS-PRD.snapshot";
+
+    static final int MAGIC = 0x49524953;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 16;
+
+    // Kinds of resource state
+    static final int RESOURCE_STATE = 0;
+    static final int COLLECTION_RESOURCE_STATE = 1;
+    static final int LAZY_RESOURCE_STATE = 2;
+    static final int LAZY_COLLECTION_RESOURCE_STATE = 3;
+    static final int DYNAMIC_RESOURCE_STATE = 4;
+
+    // Kinds of expression
+    static final int NO_EXPRESSION = 0;
+    static final int LOGICAL_EXPRESSION = 1;
+    static final int GET_EXPRESSION = 2;
+    static final int GET_STATE_EXPRESSION = 3;
+
+    private final String location;
+    private final ByteBuffer buffer;
+    private final Properties bindings = new Properties();
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    private ResourceStateSnapshot(String location, ByteBuffer buffer) throws IOException {
+        this.location = location;
+        this.buffer = buffer;
+        readTable();
+    }
+
+    /**
+     * Open a snapshot file, mapping it into memory.
+     *
+     * @throws IOException
+     *             if it cannot be read or is not a snapshot of this version
+     */
+    public static ResourceStateSnapshot open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            // The mapping stays valid after the channel is closed
+            return new ResourceStateSnapshot(file.toURI().toString(),
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Open a snapshot from a URL, mapping it into memory when it is a file
+     * and reading it otherwise, e.g. from a jar.
+     *
+     * @throws IOException
+     *             if it cannot be read or is not a snapshot of this version
+     */
+    public static ResourceStateSnapshot open(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return open(new File(url.toURI()));
+            } catch (URISyntaxException e) {
+                // Read it as any other URL
+            }
+        }
+        InputStream in = url.openStream();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            for (int read = in.read(chunk); read >= 0; read = in.read(chunk)) {
+                bytes.write(chunk, 0, read);
+            }
+            return new ResourceStateSnapshot(url.toString(), ByteBuffer.wrap(bytes.toByteArray()));
+        } finally {
+            in.close();
+        }
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return the state bindings of the RIM, "GET,PUT /path" by state name
+     */
+    public Properties getBindings() {
+        Properties result = new Properties();
+        result.putAll(bindings);
+        return result;
+    }
+
+    /**
+     * @return the names of the PRD files in this snapshot
+     */
+    public Set<String> getFileNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public boolean contains(String fileName) {
+        return entries.containsKey(fileName);
+    }
+
+    /**
+     * Check the XML of a PRD file is the one the snapshot was written from.
+     *
+     * @param fileName
+     *            the name of the PRD file
+     * @param xml
+     *            its current content, closed by the caller
+     * @return false if it changed or is not in this snapshot
+     */
+    public boolean isCurrent(String fileName, InputStream xml) throws IOException {
+        Entry entry = entries.get(fileName);
+        if (entry == null) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        long length = 0;
+        byte[] chunk = new byte[8192];
+        for (int read = xml.read(chunk); read >= 0; read = xml.read(chunk)) {
+            crc.update(chunk, 0, read);
+            length += read;
+        }
+        return length == entry.xmlLength && (int) crc.getValue() == entry.xmlCrc;
+    }
+
+    /**
+     * Create the resource states of a PRD file, new instances on each call.
+     *
+     * @return the resource states by bean id, in the order they are defined
+     *         in the file, null if it is not in this snapshot
+     * @throws IOException
+     *             if its part of the snapshot is corrupt
+     */
+    public Map<String, ResourceState> read(String fileName) throws IOException {
+        Entry entry = entries.get(fileName);
+        if (entry == null) {
+            return null;
+        }
+        byte[] data = new byte[entry.length];
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) entry.offset);
+        view.get(data);
+        if (crc(data) != entry.crc) {
+            throw new IOException("Corrupt entry " + fileName + " in snapshot " + location);
+        }
+        try {
+            return new Decoder(new DataInputStream(new ByteArrayInputStream(data))).decode();
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Failed to read entry " + fileName + " in snapshot " + location, e);
+        }
+    }
+
+    private void readTable() throws IOException {
+        ByteBuffer view = buffer.duplicate();
+        if (view.remaining() < HEADER_LENGTH || view.getInt() != MAGIC) {
+            throw new IOException("Not a resource state snapshot: " + location);
+        }
+        int version = view.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of resource state snapshot " + location);
+        }
+        int length = view.getInt();
+        int crc = view.getInt();
+        if (length < 0 || length > view.remaining()) {
+            throw new IOException("Truncated resource state snapshot " + location);
+        }
+        byte[] table = new byte[length];
+        view.get(table);
+        if (crc(table) != crc) {
+            throw new IOException("Corrupt resource state snapshot " + location);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(table));
+        for (int i = in.readInt(); i > 0; i--) {
+            bindings.setProperty(in.readUTF(), in.readUTF());
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            String fileName = in.readUTF();
+            Entry entry = new Entry(in.readLong(), in.readInt(), in.readLong(), in.readInt(), in.readInt());
+            if (entry.offset < HEADER_LENGTH + length || entry.length < 0
+                    || entry.offset + entry.length > buffer.capacity()) {
+                throw new IOException("Truncated resource state snapshot " + location);
+            }
+            entries.put(fileName, entry);
+        }
+    }
+
+    static int crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    /*
+     * Where the resource states of a file are, and the XML they were read
+     * from.
+     */
+    private static class Entry {
+        final long xmlLength;
+        final int xmlCrc;
+        final long offset;
+        final int length;
+        final int crc;
+
+        Entry(long xmlLength, int xmlCrc, long offset, int length, int crc) {
+            this.xmlLength = xmlLength;
+            this.xmlCrc = xmlCrc;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    /*
+     * Decodes the resource states of one file. All states are constructed
+     * first, then linked, as their references may be circular.
+     */
+    private static class Decoder {
+        private final DataInputStream in;
+        private String[] strings;
+        private final List<ResourceState> states = new ArrayList<ResourceState>();
+
+        Decoder(DataInputStream in) {
+            this.in = in;
+        }
+
+        Map<String, ResourceState> decode() throws IOException {
+            strings = new String[readCount()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] utf8 = new byte[readCount()];
+                in.readFully(utf8);
+                strings[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+            int count = readCount();
+            for (int i = 0; i < count; i++) {
+                states.add(readState());
+            }
+            for (ResourceState state : states) {
+                readLinks(state);
+            }
+            Map<String, ResourceState> result = new LinkedHashMap<String, ResourceState>();
+            for (int i = readCount(); i > 0; i--) {
+                String id = readString();
+                result.put(id, readStateReference());
+            }
+            return result;
+        }
+
+        private ResourceState readState() throws IOException {
+            int kind = in.readByte();
+            switch (kind) {
+            case RESOURCE_STATE:
+            case COLLECTION_RESOURCE_STATE:
+                String entityName = readString();
+                String name = readString();
+                String path = readString();
+                List<Action> actions = readActions();
+                String[] rels = readStrings();
+                UriSpecification uriSpec = null;
+                if (in.readBoolean()) {
+                    uriSpec = new UriSpecification(readString(), readString());
+                }
+                return kind == RESOURCE_STATE
+                        ? new ResourceState(entityName, name, actions, path, rels, uriSpec, null)
+                        : new CollectionResourceState(entityName, name, actions, path, rels, uriSpec, null);
+            case LAZY_RESOURCE_STATE:
+                return new LazyResourceState(readString());
+            case LAZY_COLLECTION_RESOURCE_STATE:
+                return new LazyCollectionResourceState(readString());
+            case DYNAMIC_RESOURCE_STATE:
+                return new DynamicResourceState(readString(), readString(), readString(), readStrings());
+            default:
+                throw new IOException("Unknown kind of resource state " + kind);
+            }
+        }
+
+        private void readLinks(ResourceState state) throws IOException {
+            state.setErrorState(readStateReference());
+            state.setInitial(in.readBoolean());
+            state.setException(in.readBoolean());
+            state.setMaxAge(in.readInt());
+            for (int i = readCount(); i > 0; i--) {
+                Transition.Builder builder = new Transition.Builder();
+                builder.target(readStateReference());
+                builder.label(readString());
+                builder.method(readString());
+                builder.flags(in.readInt());
+                builder.evaluation(readExpression());
+                builder.uriParameters(readMap());
+                builder.linkId(readString());
+                builder.sourceField(readString());
+                state.addTransition(builder.build());
+            }
+        }
+
+        private Expression readExpression() throws IOException {
+            int kind = in.readByte();
+            switch (kind) {
+            case NO_EXPRESSION:
+                return null;
+            case LOGICAL_EXPRESSION:
+                List<Expression> expressions = new ArrayList<Expression>();
+                for (int i = readCount(); i > 0; i--) {
+                    expressions.add(readExpression());
+                }
+                return new SimpleLogicalExpressionEvaluator(expressions);
+            case GET_EXPRESSION:
+                ResourceState target = readStateReference();
+                return new ResourceGETExpression(target, readFunction());
+            case GET_STATE_EXPRESSION:
+                String state = readString();
+                return new ResourceGETExpression(state, readFunction());
+            default:
+                throw new IOException("Unknown kind of expression " + kind);
+            }
+        }
+
+        private ResourceGETExpression.Function readFunction() throws IOException {
+            String function = readString();
+            return function == null ? null : ResourceGETExpression.Function.valueOf(function);
+        }
+
+        private List<Action> readActions() throws IOException {
+            int count = readCount() - 1;
+            if (count < 0) {
+                return null;
+            }
+            List<Action> actions = new ArrayList<Action>(count);
+            for (int i = 0; i < count; i++) {
+                String name = readString();
+                String type = readString();
+                String method = readString();
+                Properties properties = null;
+                Map<String, String> map = readMap();
+                if (map != null) {
+                    properties = new Properties();
+                    properties.putAll(map);
+                }
+                Action action = new Action(name, type == null ? null : Action.TYPE.valueOf(type), properties, method);
+                action.setMaxage(in.readInt());
+                actions.add(action);
+            }
+            return actions;
+        }
+
+        private Map<String, String> readMap() throws IOException {
+            int count = readCount() - 1;
+            if (count < 0) {
+                return null;
+            }
+            Map<String, String> map = new HashMap<String, String>();
+            for (int i = 0; i < count; i++) {
+                map.put(readString(), readString());
+            }
+            return map;
+        }
+
+        private String[] readStrings() throws IOException {
+            int count = readCount() - 1;
+            if (count < 0) {
+                return null;
+            }
+            String[] result = new String[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = readString();
+            }
+            return result;
+        }
+
+        private ResourceState readStateReference() throws IOException {
+            int index = readCount();
+            return index == 0 ? null : states.get(index - 1);
+        }
+
+        private String readString() throws IOException {
+            int index = readCount();
+            return index == 0 ? null : strings[index - 1];
+        }
+
+        // An unsigned variable length int, 7 bits per byte
+        private int readCount() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed count");
+        }
+    }
+}
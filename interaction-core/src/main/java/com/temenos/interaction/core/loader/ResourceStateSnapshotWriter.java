@@ -0,0 +1,427 @@
+package com.temenos.interaction.core.loader;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.temenos.interaction.core.hypermedia.Action;
+import com.temenos.interaction.core.hypermedia.CollectionResourceState;
+import com.temenos.interaction.core.hypermedia.DynamicResourceState;
+import com.temenos.interaction.core.hypermedia.LazyCollectionResourceState;
+import com.temenos.interaction.core.hypermedia.LazyResourceState;
+import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.hypermedia.TransitionCommandSpec;
+import com.temenos.interaction.core.hypermedia.UriSpecification;
+import com.temenos.interaction.core.hypermedia.expression.Expression;
+import com.temenos.interaction.core.hypermedia.expression.ResourceGETExpression;
+import com.temenos.interaction.core.hypermedia.expression.SimpleLogicalExpressionEvaluator;
+
+/**
+ * Writes a {@link ResourceStateSnapshot} of PRD files.
+ *
+ * Only the resource states PRD files define can be written: resource and
+ * collection resource states made with their full constructor, lazy and
+ * dynamic targets, actions with string properties, transitions and resource
+ * GET expressions. A file with any other state is left out of the snapshot,
+ * to be read from its XML.
+ *
+ * For example:
+ *
+ *     ResourceStateSnapshotWriter writer = new ResourceStateSnapshotWriter();
+ *     writer.addFile("IRIS-Notes-PRD.xml", xml, PrdReader.read(new ByteArrayResource(xml)));
+ *     writer.write(new File("META-INF", ResourceStateSnapshot.FILE_NAME));
+ */
+public class ResourceStateSnapshotWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceStateSnapshotWriter.class);
+
+    // Sorted so that the same RIM always gives the same snapshot
+    private final Map<String, String> bindings = new TreeMap<String, String>();
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+    /**
+     * Add the state bindings of a RIM, "GET,PUT /path" by state name.
+     */
+    public void addBindings(Properties properties) {
+        for (String name : properties.stringPropertyNames()) {
+            bindings.put(name, properties.getProperty(name));
+        }
+    }
+
+    /**
+     * Add the resource states of a PRD file.
+     *
+     * @param fileName
+     *            the name of the PRD file
+     * @param xml
+     *            its content, whose checksum is kept to detect changes
+     * @param resourceStates
+     *            the resource states read from it, by bean id
+     * @return false if the resource states cannot be written and the file
+     *         was left out
+     */
+    public boolean addFile(String fileName, byte[] xml, Map<String, ResourceState> resourceStates) {
+        try {
+            byte[] data = new Encoder().encode(resourceStates);
+            entries.put(fileName, new Entry(xml.length, ResourceStateSnapshot.crc(xml), data));
+            return true;
+        } catch (UnsupportedStateException e) {
+            LOGGER.info("Leaving " + fileName + " out of the snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public void write(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    public void write(OutputStream out) throws IOException {
+        // Offsets are fixed length, so the table is as long with the right
+        // ones as with none
+        byte[] table = table(0);
+        table = table(ResourceStateSnapshot.HEADER_LENGTH + table.length);
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(ResourceStateSnapshot.MAGIC);
+        data.writeInt(ResourceStateSnapshot.VERSION);
+        data.writeInt(table.length);
+        data.writeInt(ResourceStateSnapshot.crc(table));
+        data.write(table);
+        for (Entry entry : entries.values()) {
+            data.write(entry.data);
+        }
+        data.flush();
+    }
+
+    private byte[] table(long offset) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream table = new DataOutputStream(bytes);
+        table.writeInt(bindings.size());
+        for (Map.Entry<String, String> binding : bindings.entrySet()) {
+            table.writeUTF(binding.getKey());
+            table.writeUTF(binding.getValue());
+        }
+        table.writeInt(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            table.writeUTF(entry.getKey());
+            table.writeLong(entry.getValue().xmlLength);
+            table.writeInt(entry.getValue().xmlCrc);
+            table.writeLong(offset);
+            table.writeInt(entry.getValue().data.length);
+            table.writeInt(ResourceStateSnapshot.crc(entry.getValue().data));
+            offset += entry.getValue().data.length;
+        }
+        table.flush();
+        return bytes.toByteArray();
+    }
+
+    private static class Entry {
+        final long xmlLength;
+        final int xmlCrc;
+        final byte[] data;
+
+        Entry(long xmlLength, int xmlCrc, byte[] data) {
+            this.xmlLength = xmlLength;
+            this.xmlCrc = xmlCrc;
+            this.data = data;
+        }
+    }
+
+    private static class UnsupportedStateException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedStateException(String message) {
+            super(message);
+        }
+    }
+
+    /*
+     * Encodes the resource states of one file: a table of strings, every
+     * state reachable from them, then their links, so that states shared or
+     * referring to each other are decoded the same way.
+     */
+    private static class Encoder {
+        private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        private final Map<ResourceState, Integer> stateIndexes = new IdentityHashMap<ResourceState, Integer>();
+        private final List<ResourceState> states = new ArrayList<ResourceState>();
+        private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        private final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        byte[] encode(Map<String, ResourceState> resourceStates) throws UnsupportedStateException {
+            try {
+                for (ResourceState state : resourceStates.values()) {
+                    collect(state);
+                }
+                writeCount(states.size());
+                for (ResourceState state : states) {
+                    writeState(state);
+                }
+                for (ResourceState state : states) {
+                    writeLinks(state);
+                }
+                writeCount(resourceStates.size());
+                for (Map.Entry<String, ResourceState> entry : resourceStates.entrySet()) {
+                    writeString(entry.getKey());
+                    writeStateReference(entry.getValue());
+                }
+                body.flush();
+
+                ByteArrayOutputStream result = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(result);
+                writeCount(out, strings.size());
+                for (String string : strings.keySet()) {
+                    byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+                    writeCount(out, utf8.length);
+                    out.write(utf8);
+                }
+                bodyBytes.writeTo(out);
+                out.flush();
+                return result.toByteArray();
+            } catch (IOException e) {
+                // Not thrown writing to memory
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /*
+         * Number all the states reachable from a state, checking they can be
+         * written.
+         */
+        private void collect(ResourceState root) throws UnsupportedStateException {
+            List<ResourceState> pending = new ArrayList<ResourceState>();
+            pending.add(root);
+            while (!pending.isEmpty()) {
+                ResourceState state = pending.remove(pending.size() - 1);
+                if (state == null || stateIndexes.containsKey(state)) {
+                    continue;
+                }
+                checkState(state);
+                stateIndexes.put(state, states.size());
+                states.add(state);
+                pending.add(state.getErrorState());
+                for (Transition transition : state.getTransitions()) {
+                    if (transition.getSource() != state || transition.getLocator() != null
+                            || !equal(transition.getLinkId(), transition.getCommand().getLinkId())) {
+                        throw new UnsupportedStateException("Unsupported transition of " + state.getId());
+                    }
+                    pending.add(transition.getTarget());
+                    collectExpression(transition.getCommand().getEvaluation(), pending);
+                }
+            }
+        }
+
+        private void collectExpression(Expression expression, List<ResourceState> pending)
+                throws UnsupportedStateException {
+            if (expression == null) {
+                return;
+            }
+            if (expression.getClass() == SimpleLogicalExpressionEvaluator.class) {
+                for (Expression child : ((SimpleLogicalExpressionEvaluator) expression).getExpressions()) {
+                    collectExpression(child, pending);
+                }
+            } else if (expression.getClass() == ResourceGETExpression.class) {
+                Transition transition = ((ResourceGETExpression) expression).transition;
+                if (transition != null) {
+                    pending.add(transition.getTarget());
+                }
+            } else {
+                throw new UnsupportedStateException("Unsupported expression " + expression.getClass().getName());
+            }
+        }
+
+        private void checkState(ResourceState state) throws UnsupportedStateException {
+            Class<?> type = state.getClass();
+            if (type != ResourceState.class && type != CollectionResourceState.class
+                    && type != LazyResourceState.class && type != LazyCollectionResourceState.class
+                    && type != DynamicResourceState.class) {
+                throw new UnsupportedStateException("Unsupported resource state " + type.getName());
+            }
+            if (state.getParent() != null || state.getPathIdParameter() != null) {
+                throw new UnsupportedStateException("Unsupported resource state " + state.getId());
+            }
+            if (state.getActions() != null) {
+                for (Action action : state.getActions()) {
+                    if (action.getProperties() == null) {
+                        continue;
+                    }
+                    // Transitions replace the properties they link with
+                    // references, which must not be replaced twice
+                    for (Map.Entry<Object, Object> property : action.getProperties().entrySet()) {
+                        if (!(property.getKey() instanceof String) || !(property.getValue() instanceof String)) {
+                            throw new UnsupportedStateException("Unsupported property " + property.getKey()
+                                    + " of action " + action.getName() + " of " + state.getId());
+                        }
+                    }
+                }
+            }
+        }
+
+        private void writeState(ResourceState state) throws IOException {
+            if (state instanceof LazyResourceState) {
+                body.writeByte(ResourceStateSnapshot.LAZY_RESOURCE_STATE);
+                writeString(state.getName());
+            } else if (state instanceof LazyCollectionResourceState) {
+                body.writeByte(ResourceStateSnapshot.LAZY_COLLECTION_RESOURCE_STATE);
+                writeString(state.getName());
+            } else if (state instanceof DynamicResourceState) {
+                DynamicResourceState dynamic = (DynamicResourceState) state;
+                body.writeByte(ResourceStateSnapshot.DYNAMIC_RESOURCE_STATE);
+                writeString(dynamic.getEntityName());
+                writeString(dynamic.getName());
+                writeString(dynamic.getResourceLocatorName());
+                writeStrings(dynamic.getResourceLocatorArgs());
+            } else {
+                body.writeByte(state instanceof CollectionResourceState
+                        ? ResourceStateSnapshot.COLLECTION_RESOURCE_STATE : ResourceStateSnapshot.RESOURCE_STATE);
+                writeString(state.getEntityName());
+                writeString(state.getName());
+                writeString(state.getPath());
+                writeActions(state.getActions());
+                writeStrings(state.getRels());
+                UriSpecification uriSpec = state.getUriSpecification();
+                body.writeBoolean(uriSpec != null);
+                if (uriSpec != null) {
+                    writeString(uriSpec.getName());
+                    writeString(uriSpec.getTemplate());
+                }
+            }
+        }
+
+        private void writeLinks(ResourceState state) throws IOException {
+            writeStateReference(state.getErrorState());
+            body.writeBoolean(state.isInitial());
+            body.writeBoolean(state.isException());
+            body.writeInt(state.getMaxAge());
+            writeCount(state.getTransitions().size());
+            for (Transition transition : state.getTransitions()) {
+                TransitionCommandSpec command = transition.getCommand();
+                writeStateReference(transition.getTarget());
+                writeString(transition.getLabel());
+                writeString(command.getMethod());
+                body.writeInt(command.getFlags());
+                writeExpression(command.getEvaluation());
+                writeMap(command.getUriParameters());
+                writeString(command.getLinkId());
+                writeString(transition.getSourceField());
+            }
+        }
+
+        private void writeExpression(Expression expression) throws IOException {
+            if (expression == null) {
+                body.writeByte(ResourceStateSnapshot.NO_EXPRESSION);
+            } else if (expression instanceof SimpleLogicalExpressionEvaluator) {
+                List<Expression> expressions = ((SimpleLogicalExpressionEvaluator) expression).getExpressions();
+                body.writeByte(ResourceStateSnapshot.LOGICAL_EXPRESSION);
+                writeCount(expressions.size());
+                for (Expression child : expressions) {
+                    writeExpression(child);
+                }
+            } else {
+                ResourceGETExpression get = (ResourceGETExpression) expression;
+                if (get.transition != null) {
+                    body.writeByte(ResourceStateSnapshot.GET_EXPRESSION);
+                    writeStateReference(get.transition.getTarget());
+                } else {
+                    body.writeByte(ResourceStateSnapshot.GET_STATE_EXPRESSION);
+                    writeString(get.state);
+                }
+                writeString(get.getFunction() == null ? null : get.getFunction().name());
+            }
+        }
+
+        private void writeActions(List<Action> actions) throws IOException {
+            if (actions == null) {
+                writeCount(0);
+                return;
+            }
+            writeCount(actions.size() + 1);
+            for (Action action : actions) {
+                writeString(action.getName());
+                writeString(action.getType() == null ? null : action.getType().name());
+                writeString(action.getMethod());
+                writeMap(action.getProperties());
+                body.writeInt(action.getMaxage());
+            }
+        }
+
+        private void writeMap(Map<?, ?> map) throws IOException {
+            if (map == null) {
+                writeCount(0);
+                return;
+            }
+            writeCount(map.size() + 1);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString((String) entry.getKey());
+                writeString((String) entry.getValue());
+            }
+        }
+
+        private void writeStrings(String[] values) throws IOException {
+            if (values == null) {
+                writeCount(0);
+                return;
+            }
+            writeCount(values.length + 1);
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        private void writeStateReference(ResourceState state) throws IOException {
+            writeCount(state == null ? 0 : stateIndexes.get(state) + 1);
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeCount(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = strings.size();
+                strings.put(value, index);
+            }
+            writeCount(index + 1);
+        }
+
+        private void writeCount(int value) throws IOException {
+            writeCount(body, value);
+        }
+
+        // An unsigned variable length int, 7 bits per byte
+        private static void writeCount(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        private static boolean equal(Object lhs, Object rhs) {
+            return lhs == null ? rhs == null : lhs.equals(rhs);
+        }
+    }
+}
@@ -13,14 +13,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ClassUtils;
 
 import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.loader.PrdReader.UnsupportedPrdException;
 
 /**
  * Loads a list of ResourceState from a prd name, which should be a filename
  * without a path. This is for compatibility with the Spring class
  * ClassPathXmlApplicationContext.
  *
+ * The file is read with a {@link PrdReader} when it only uses the part of
+ * the Spring schema generated for PRD files, and through a Spring context
+ * otherwise.
+ *
  * @author kwieconkowski
  * @author andres
  * @author dgroves
@@ -33,6 +41,10 @@ public class SpringResourceStateLoadingStrategy implements ResourceStateLoadingS
     @Override
     public List<ResourceStateResult> load(String nameOfSpringFile) {
         validateSpringNameOtherwiseThrowException(nameOfSpringFile);
+        Map<String, ResourceState> prdResourceStates = readResourceStates(nameOfSpringFile);
+        if (prdResourceStates != null) {
+            return toResults(prdResourceStates, nameOfSpringFile);
+        }
         ApplicationContext PrdAppCtx = loadSpringContext(nameOfSpringFile);
         
         if (PrdAppCtx == null) {
@@ -40,9 +52,13 @@ public class SpringResourceStateLoadingStrategy implements ResourceStateLoadingS
             return null;
         }
         
+        return toResults(PrdAppCtx.getBeansOfType(ResourceState.class), nameOfSpringFile);
+    }
+
+    private List<ResourceStateResult> toResults(Map<String, ResourceState> beans, String nameOfSpringFile) {
         List<ResourceStateResult> resourceStates = new ArrayList<ResourceStateResult>();
         
-        for (Map.Entry<String, ResourceState> springBean : PrdAppCtx.getBeansOfType(ResourceState.class).entrySet()) {
+        for (Map.Entry<String, ResourceState> springBean : beans.entrySet()) {
             resourceStates.add(new ResourceStateResult(springBean.getKey(), springBean.getValue()));
         }
         
@@ -51,6 +67,24 @@ public class SpringResourceStateLoadingStrategy implements ResourceStateLoadingS
         return resourceStates;
     }
 
+    /*
+     * Read the file without Spring, null if it is not found or uses features
+     * the PRD reader does not handle.
+     */
+    private Map<String, ResourceState> readResourceStates(String nameOfSpringFile) {
+        // The class loader ClassPathXmlApplicationContext would use
+        Resource resource = new ClassPathResource(nameOfSpringFile, ClassUtils.getDefaultClassLoader());
+        if (!resource.exists()) {
+            return null;
+        }
+        try {
+            return PrdReader.read(resource);
+        } catch (UnsupportedPrdException e) {
+            LOGGER.debug("Loading " + nameOfSpringFile + " through Spring: " + e.getMessage());
+            return null;
+        }
+    }
+
     private ApplicationContext loadSpringContext(String nameOfSpringFile) {
         ApplicationContext PrdAppCtx = null;
         
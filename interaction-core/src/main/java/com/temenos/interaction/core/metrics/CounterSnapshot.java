@@ -0,0 +1,42 @@
+package com.temenos.interaction.core.metrics;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The count of an event for a resource state.
+ */
+public class CounterSnapshot {
+
+	private final String counter;
+	private final String resourceState;
+	private final long count;
+
+	@ConstructorProperties({ "counter", "resourceState", "count" })
+	public CounterSnapshot(String counter, String resourceState, long count) {
+		this.counter = counter;
+		this.resourceState = resourceState;
+		this.count = count;
+	}
+
+	public String getCounter() {
+		return counter;
+	}
+
+	public String getResourceState() {
+		return resourceState;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return counter + " [" + resourceState + "] count=" + count;
+	}
+}
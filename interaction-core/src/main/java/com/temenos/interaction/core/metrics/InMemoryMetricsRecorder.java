@@ -0,0 +1,168 @@
+package com.temenos.interaction.core.metrics;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link MetricsRecorder} keeping a {@link LatencyHistogram} per stage,
+ * resource state and command, and a count per event and resource state, in
+ * memory.  The metrics can be read in process with {@link #getTimers()} and
+ * {@link #getCounters()}, or over JMX with a {@link JmxMetricsExporter}.
+ */
+public class InMemoryMetricsRecorder implements MetricsRecorder {
+
+	private final ConcurrentMap<Key, LatencyHistogram> timers = new ConcurrentHashMap<Key, LatencyHistogram>();
+	private final ConcurrentMap<Key, AtomicLong> counters = new ConcurrentHashMap<Key, AtomicLong>();
+	private volatile boolean enabled = true;
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled false to stop recording, the metrics recorded are kept
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void recordTime(Stage stage, String resourceState, String command, long nanos) {
+		Key key = new Key(stage.name(), resourceState, command);
+		LatencyHistogram histogram = timers.get(key);
+		if (histogram == null) {
+			LatencyHistogram newHistogram = new LatencyHistogram();
+			histogram = timers.putIfAbsent(key, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		histogram.record(nanos);
+	}
+
+	@Override
+	public void increment(Counter counter, String resourceState) {
+		Key key = new Key(counter.name(), resourceState, null);
+		AtomicLong count = counters.get(key);
+		if (count == null) {
+			AtomicLong newCount = new AtomicLong();
+			count = counters.putIfAbsent(key, newCount);
+			if (count == null) {
+				count = newCount;
+			}
+		}
+		count.incrementAndGet();
+	}
+
+	/**
+	 * @return the durations recorded per stage, resource state and command
+	 */
+	public List<TimerSnapshot> getTimers() {
+		List<TimerSnapshot> snapshots = new ArrayList<TimerSnapshot>(timers.size());
+		for (Map.Entry<Key, LatencyHistogram> entry : timers.entrySet()) {
+			Key key = entry.getKey();
+			LatencyHistogram histogram = entry.getValue();
+			snapshots.add(new TimerSnapshot(key.name, key.resourceState, key.command, histogram.getCount(),
+					histogram.getTotalNanos(), histogram.getMaxNanos(), histogram.getPercentileNanos(50),
+					histogram.getPercentileNanos(99)));
+		}
+		return snapshots;
+	}
+
+	/**
+	 * @param stage
+	 * @param resourceState
+	 * @param command
+	 * @return the durations recorded, or null if none was
+	 */
+	public LatencyHistogram getTimer(Stage stage, String resourceState, String command) {
+		return timers.get(new Key(stage.name(), resourceState, command));
+	}
+
+	/**
+	 * @return the counts per event and resource state
+	 */
+	public List<CounterSnapshot> getCounters() {
+		List<CounterSnapshot> snapshots = new ArrayList<CounterSnapshot>(counters.size());
+		for (Map.Entry<Key, AtomicLong> entry : counters.entrySet()) {
+			snapshots.add(new CounterSnapshot(entry.getKey().name, entry.getKey().resourceState, entry.getValue().get()));
+		}
+		return snapshots;
+	}
+
+	/**
+	 * @param counter
+	 * @param resourceState
+	 * @return the count of the event for the resource state
+	 */
+	public long getCount(Counter counter, String resourceState) {
+		AtomicLong count = counters.get(new Key(counter.name(), resourceState, null));
+		return count != null ? count.get() : 0;
+	}
+
+	/**
+	 * @param counter
+	 * @return the count of the event for all the resource states
+	 */
+	public long getCount(Counter counter) {
+		long total = 0;
+		for (Map.Entry<Key, AtomicLong> entry : counters.entrySet()) {
+			if (entry.getKey().name.equals(counter.name())) {
+				total += entry.getValue().get();
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Discard the metrics recorded.
+	 */
+	public void reset() {
+		timers.clear();
+		counters.clear();
+	}
+
+	private static final class Key {
+		private final String name;
+		private final String resourceState;
+		private final String command;
+		private final int hash;
+
+		Key(String name, String resourceState, String command) {
+			this.name = name;
+			this.resourceState = resourceState;
+			this.command = command;
+			int h = name.hashCode();
+			h = 31 * h + (resourceState != null ? resourceState.hashCode() : 0);
+			h = 31 * h + (command != null ? command.hashCode() : 0);
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return hash == other.hash && name.equals(other.name)
+					&& (resourceState == null ? other.resourceState == null : resourceState.equals(other.resourceState))
+					&& (command == null ? other.command == null : command.equals(other.command));
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.temenos.interaction.core.metrics;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Installs an {@link InMemoryMetricsRecorder} and exports it as an MXBean,
+ * for instance from Spring:
+ * <pre>
+ * &lt;bean class="com.temenos.interaction.core.metrics.JmxMetricsExporter"
+ *     init-method="register" destroy-method="unregister" /&gt;
+ * </pre>
+ */
+public class JmxMetricsExporter implements MetricsMXBean {
+	private static final Logger logger = LoggerFactory.getLogger(JmxMetricsExporter.class);
+
+	public static final String DEFAULT_OBJECT_NAME = "com.temenos.interaction:type=Metrics";
+
+	private final InMemoryMetricsRecorder recorder;
+	private final MBeanServer server;
+	private String objectName = DEFAULT_OBJECT_NAME;
+	private ObjectName registeredName;
+
+	public JmxMetricsExporter() {
+		this(new InMemoryMetricsRecorder());
+	}
+
+	public JmxMetricsExporter(InMemoryMetricsRecorder recorder) {
+		this(recorder, ManagementFactory.getPlatformMBeanServer());
+	}
+
+	public JmxMetricsExporter(InMemoryMetricsRecorder recorder, MBeanServer server) {
+		if (recorder == null)
+			throw new IllegalArgumentException("No recorder supplied");
+		this.recorder = recorder;
+		this.server = server;
+	}
+
+	public void setObjectName(String objectName) {
+		this.objectName = objectName;
+	}
+
+	public InMemoryMetricsRecorder getRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * Install the recorder and register it with the MBean server.
+	 * @throws MalformedObjectNameException
+	 */
+	public synchronized void register() throws MalformedObjectNameException {
+		Metrics.setRecorder(recorder);
+		if (registeredName != null) {
+			return;
+		}
+		ObjectName name = new ObjectName(objectName);
+		try {
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+			registeredName = name;
+		} catch (JMException e) {
+			logger.warn("Failed to register metrics MBean [" + objectName + "]", e);
+		}
+	}
+
+	/**
+	 * Uninstall the recorder and unregister it from the MBean server.
+	 */
+	public synchronized void unregister() {
+		if (Metrics.getRecorder() == recorder) {
+			Metrics.setRecorder(null);
+		}
+		if (registeredName == null) {
+			return;
+		}
+		try {
+			server.unregisterMBean(registeredName);
+		} catch (JMException e) {
+			logger.warn("Failed to unregister metrics MBean [" + registeredName + "]", e);
+		}
+		registeredName = null;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return recorder.isEnabled();
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		recorder.setEnabled(enabled);
+	}
+
+	@Override
+	public List<TimerSnapshot> getTimers() {
+		return recorder.getTimers();
+	}
+
+	@Override
+	public List<CounterSnapshot> getCounters() {
+		return recorder.getCounters();
+	}
+
+	@Override
+	public void reset() {
+		recorder.reset();
+	}
+}
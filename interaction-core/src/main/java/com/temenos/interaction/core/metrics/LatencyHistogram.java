@@ -0,0 +1,95 @@
+package com.temenos.interaction.core.metrics;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of durations in nanoseconds.  The durations are counted
+ * in power of two buckets, so a percentile is known to within a factor of two,
+ * which is what is needed to tell where the time of a request goes.
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos a duration, negative durations are counted as zero
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		buckets.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotalNanos() {
+		return total.get();
+	}
+
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket holding the percentile, 0 if nothing was recorded
+	 */
+	public long getPercentileNanos(double percentile) {
+		long recorded = 0;
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			recorded += counts[i];
+		}
+		if (recorded == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(recorded * Math.min(Math.max(percentile, 0), 100) / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	/*
+	 * Bucket i holds the values in [2^(i-1), 2^i), bucket 0 holds 0
+	 */
+	private static int bucket(long value) {
+		return Math.min(BUCKETS - Long.numberOfLeadingZeros(value), BUCKETS - 1);
+	}
+
+	private static long upperBound(int bucket) {
+		return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+}
@@ -0,0 +1,98 @@
+package com.temenos.interaction.core.metrics;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import com.temenos.interaction.core.metrics.MetricsRecorder.Counter;
+import com.temenos.interaction.core.metrics.MetricsRecorder.Stage;
+
+/**
+ * Entry point of the request pipeline to the installed {@link MetricsRecorder}.
+ * <p>
+ * No recorder is installed by default; a disabled recorder costs a volatile
+ * read per call and the clock is not read:
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * Metrics.stop(Stage.INJECT_LINKS, stateName, null, start);
+ * </pre>
+ */
+public final class Metrics {
+
+	/**
+	 * Returned by {@link #start()} when the metrics are disabled.
+	 */
+	public static final long NOT_STARTED = Long.MIN_VALUE;
+
+	private static final MetricsRecorder DISABLED = new MetricsRecorder() {
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+
+		@Override
+		public void recordTime(Stage stage, String resourceState, String command, long nanos) {
+		}
+
+		@Override
+		public void increment(Counter counter, String resourceState) {
+		}
+	};
+
+	private static volatile MetricsRecorder recorder = DISABLED;
+
+	private Metrics() {
+	}
+
+	/**
+	 * Install the recorder of this class loader.
+	 * @param newRecorder the recorder, null to disable the metrics
+	 */
+	public static void setRecorder(MetricsRecorder newRecorder) {
+		recorder = newRecorder != null ? newRecorder : DISABLED;
+	}
+
+	/**
+	 * @return the installed recorder, never null
+	 */
+	public static MetricsRecorder getRecorder() {
+		return recorder;
+	}
+
+	public static boolean isEnabled() {
+		return recorder.isEnabled();
+	}
+
+	/**
+	 * @return the start time of a stage, {@link #NOT_STARTED} if the metrics are disabled
+	 */
+	public static long start() {
+		return recorder.isEnabled() ? System.nanoTime() : NOT_STARTED;
+	}
+
+	/**
+	 * Record the time elapsed since the start of a stage.
+	 * @param stage
+	 * @param resourceState
+	 * @param command
+	 * @param start as returned by {@link #start()}
+	 */
+	public static void stop(Stage stage, String resourceState, String command, long start) {
+		if (start == NOT_STARTED) {
+			return;
+		}
+		MetricsRecorder current = recorder;
+		if (current.isEnabled()) {
+			current.recordTime(stage, resourceState, command, System.nanoTime() - start);
+		}
+	}
+
+	public static void increment(Counter counter, String resourceState) {
+		MetricsRecorder current = recorder;
+		if (current.isEnabled()) {
+			current.increment(counter, resourceState);
+		}
+	}
+}
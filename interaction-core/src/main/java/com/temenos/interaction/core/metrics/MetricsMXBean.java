@@ -0,0 +1,25 @@
+package com.temenos.interaction.core.metrics;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.List;
+
+/**
+ * Management interface of the request pipeline metrics, see {@link JmxMetricsExporter}.
+ */
+public interface MetricsMXBean {
+
+	public boolean isEnabled();
+
+	public void setEnabled(boolean enabled);
+
+	public List<TimerSnapshot> getTimers();
+
+	public List<CounterSnapshot> getCounters();
+
+	public void reset();
+
+}
@@ -0,0 +1,67 @@
+package com.temenos.interaction.core.metrics;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+/**
+ * Service provider interface receiving the timings and counts of the request
+ * pipeline.  Implementations are called on the request threads and must be
+ * thread safe and cheap; install one with {@link Metrics#setRecorder(MetricsRecorder)}.
+ */
+public interface MetricsRecorder {
+
+	/**
+	 * The stages of a request which are timed.
+	 */
+	public enum Stage {
+		/** resolving the resource state of a request */
+		DETERMINE_STATE,
+		/** executing the commands of a resource state */
+		COMMAND,
+		/** following the auto transitions of a resource state */
+		AUTO_TRANSITION,
+		/** injecting the links of a resource */
+		INJECT_LINKS,
+		/** getting the embedded resources of a resource */
+		EMBED_RESOURCES,
+		/** writing a resource to the response, tagged by media type rather than command */
+		SERIALIZATION
+	}
+
+	/**
+	 * The events which are counted.
+	 */
+	public enum Counter {
+		RESPONSE_CACHE_HIT,
+		RESPONSE_CACHE_MISS,
+		EXPRESSION_CACHE_HIT,
+		EXPRESSION_CACHE_MISS,
+		/** an internal request made to get a linked or embedded resource */
+		SUB_REQUEST
+	}
+
+	/**
+	 * @return false if the recorder discards what it is given, the pipeline
+	 * then does not read the clock or compute the tags
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Record the duration of a stage.
+	 * @param stage
+	 * @param resourceState the name of the resource state, may be null
+	 * @param command the name of the commands, may be null
+	 * @param nanos the duration in nanoseconds
+	 */
+	public void recordTime(Stage stage, String resourceState, String command, long nanos);
+
+	/**
+	 * Count an event.
+	 * @param counter
+	 * @param resourceState the name of the resource state, may be null
+	 */
+	public void increment(Counter counter, String resourceState);
+
+}
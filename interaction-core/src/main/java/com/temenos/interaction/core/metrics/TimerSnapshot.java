@@ -0,0 +1,74 @@
+package com.temenos.interaction.core.metrics;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The durations recorded for a stage, resource state and command.
+ */
+public class TimerSnapshot {
+
+	private final String stage;
+	private final String resourceState;
+	private final String command;
+	private final long count;
+	private final long totalNanos;
+	private final long maxNanos;
+	private final long medianNanos;
+	private final long p99Nanos;
+
+	@ConstructorProperties({ "stage", "resourceState", "command", "count", "totalNanos", "maxNanos", "medianNanos", "p99Nanos" })
+	public TimerSnapshot(String stage, String resourceState, String command, long count, long totalNanos, long maxNanos,
+			long medianNanos, long p99Nanos) {
+		this.stage = stage;
+		this.resourceState = resourceState;
+		this.command = command;
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.medianNanos = medianNanos;
+		this.p99Nanos = p99Nanos;
+	}
+
+	public String getStage() {
+		return stage;
+	}
+
+	public String getResourceState() {
+		return resourceState;
+	}
+
+	public String getCommand() {
+		return command;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public long getMedianNanos() {
+		return medianNanos;
+	}
+
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	@Override
+	public String toString() {
+		return stage + " [" + resourceState + "] [" + command + "] count=" + count + " total(ns)=" + totalNanos
+				+ " max(ns)=" + maxNanos + " p50(ns)=" + medianNanos + " p99(ns)=" + p99Nanos;
+	}
+}
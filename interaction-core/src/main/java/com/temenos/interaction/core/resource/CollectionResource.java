@@ -77,6 +77,15 @@ public class CollectionResource<T> implements RESTResource {
 	public Collection<EntityResource<T>> getEntities() {
 		return entities;
 	}
+
+	/**
+	 * Replace the entities, for instance with a modifiable copy of those the
+	 * producer returned.
+	 * @param entities
+	 */
+	public void setEntities(Collection<EntityResource<T>> entities) {
+		this.entities = entities;
+	}
 	
 	@Override
 	public GenericEntity<CollectionResource<T>> getGenericEntity() {
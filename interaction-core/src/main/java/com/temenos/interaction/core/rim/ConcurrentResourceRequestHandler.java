@@ -0,0 +1,193 @@
+package com.temenos.interaction.core.rim;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.temenos.interaction.core.command.HttpStatusTypes;
+import com.temenos.interaction.core.command.InteractionContext;
+import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.resource.EntityResource;
+import com.temenos.interaction.core.web.RequestContext;
+
+/**
+ * <p>Get the resources of all the transitions at the same time on a bounded
+ * executor, so the time taken is that of the slowest transition rather than
+ * the sum of them all.</p>
+ *
+ * <p>The results are returned in the order of the transitions and an exception
+ * thrown getting any of the resources is rethrown to the caller, as with the
+ * {@link SequentialResourceRequestHandler}. A transition which does not
+ * complete within the timeout is cancelled and reported with a
+ * {@link HttpStatusTypes#GATEWAY_TIMEOUT} status. The {@link RequestContext}
+ * of the calling thread is made available to the commands executed for every
+ * transition.</p>
+ *
+ * <p>The calling thread gets one of the resources itself, and resources
+ * requested from a thread of the executor (e.g. resources embedded in an
+ * embedded resource) are got sequentially so the executor cannot deadlock
+ * waiting for itself. When the executor is saturated the calling thread gets
+ * the resources instead.</p>
+ */
+public class ConcurrentResourceRequestHandler extends SequentialResourceRequestHandler {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentResourceRequestHandler.class);
+
+	public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+	private static final ThreadLocal<Boolean> WORKER = new ThreadLocal<Boolean>();
+
+	private final ExecutorService executor;
+	private final long timeoutMillis;
+
+	/**
+	 * Use a bounded pool with twice as many threads as there are available
+	 * processors, as the threads mostly wait for the resources they get.
+	 */
+	public ConcurrentResourceRequestHandler() {
+		this(Runtime.getRuntime().availableProcessors() * 2, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * @param maxThreads the maximum number of resources got at the same time
+	 * @param timeoutMillis time after which a resource not yet returned is cancelled
+	 */
+	public ConcurrentResourceRequestHandler(int maxThreads, long timeoutMillis) {
+		this(createExecutor(maxThreads), timeoutMillis);
+	}
+
+	/**
+	 * @param executor the executor getting the resources, for instance one
+	 *        creating a virtual thread per task when available
+	 * @param timeoutMillis time after which a resource not yet returned is cancelled
+	 */
+	public ConcurrentResourceRequestHandler(ExecutorService executor, long timeoutMillis) {
+		assert(executor != null);
+		this.executor = executor;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	@Override
+	public Map<Transition, ResourceRequestResult> getResources(final HTTPHypermediaRIM rimHandler, final HttpHeaders headers, final InteractionContext ctx, final EntityResource<?> resource, final Object entity, final ResourceRequestConfig config) {
+		assert(config != null);
+		assert(config.getTransitions() != null);
+		List<Transition> transitions = config.getTransitions();
+		if (transitions.size() < 2 || Boolean.TRUE.equals(WORKER.get())) {
+			return super.getResources(rimHandler, headers, ctx, resource, entity, config);
+		}
+
+		final RequestContext requestContext = RequestContext.getRequestContext();
+		// the transitions got by the executor are timed from their submission
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		List<Future<ResourceRequestResult>> futures = new ArrayList<Future<ResourceRequestResult>>(transitions.size());
+		Map<Transition, ResourceRequestResult> resources = new LinkedHashMap<Transition, ResourceRequestResult>();
+		try {
+			// the last transition is got by the calling thread
+			for (final Transition t : transitions.subList(0, transitions.size() - 1)) {
+				futures.add(executor.submit(new Callable<ResourceRequestResult>() {
+					@Override
+					public ResourceRequestResult call() throws Exception {
+						// the calling thread runs this when the executor is saturated
+						RequestContext previousContext = RequestContext.getRequestContext();
+						Boolean previousWorker = WORKER.get();
+						RequestContext.setRequestContext(requestContext);
+						WORKER.set(Boolean.TRUE);
+						try {
+							return getResource(rimHandler, headers, ctx, resource, entity, t, config);
+						} finally {
+							restore(previousContext, previousWorker);
+						}
+					}
+				}));
+			}
+			Transition last = transitions.get(transitions.size() - 1);
+			ResourceRequestResult lastResult = getResource(rimHandler, headers, ctx, resource, entity, last, config);
+
+			for (int i = 0; i < futures.size(); i++) {
+				resources.put(transitions.get(i), waitFor(transitions.get(i), futures.get(i), deadline));
+			}
+			resources.put(last, lastResult);
+			return resources;
+		} finally {
+			for (Future<ResourceRequestResult> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Stop the threads of the executor.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private static void restore(RequestContext previousContext, Boolean previousWorker) {
+		if (previousWorker == null) {
+			WORKER.remove();
+		} else {
+			WORKER.set(previousWorker);
+		}
+		if (previousContext == null) {
+			RequestContext.clearRequestContext();
+		} else {
+			RequestContext.setRequestContext(previousContext);
+		}
+	}
+
+	private ResourceRequestResult waitFor(Transition t, Future<ResourceRequestResult> future, long deadline) {
+		try {
+			return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			LOGGER.error("Timed out after {}ms getting resource for transition [{}]", timeoutMillis, t.getId());
+			future.cancel(true);
+			return new ResourceRequestResult(HttpStatusTypes.GATEWAY_TIMEOUT.getStatusCode(), null);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted getting resource for transition [" + t.getId() + "]", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	private static ExecutorService createExecutor(int maxThreads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(maxThreads * 4), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "iris-resource-request-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+}
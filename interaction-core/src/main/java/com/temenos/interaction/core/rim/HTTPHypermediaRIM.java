@@ -14,6 +14,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import javax.ws.rs.HttpMethod;
 import javax.ws.rs.PathParam;
@@ -35,6 +40,9 @@ import org.slf4j.LoggerFactory;
 
 import com.temenos.interaction.core.MultivaluedMapImpl;
 import com.temenos.interaction.core.cache.Cache;
+import com.temenos.interaction.core.command.AsyncCommandHelper;
+import com.temenos.interaction.core.command.AsyncInteractionCommand;
+import com.temenos.interaction.core.command.BatchInteractionCommand;
 import com.temenos.interaction.core.command.CommandController;
 import com.temenos.interaction.core.command.HttpStatusTypes;
 import com.temenos.interaction.core.command.InteractionCommand;
@@ -66,6 +74,9 @@ import com.temenos.interaction.core.hypermedia.expression.ExpressionEvaluator;
 import com.temenos.interaction.core.hypermedia.transition.AutoTransitioner;
 import com.temenos.interaction.core.hypermedia.validation.HypermediaValidator;
 import com.temenos.interaction.core.hypermedia.validation.LogicalConfigurationListener;
+import com.temenos.interaction.core.metrics.Metrics;
+import com.temenos.interaction.core.metrics.MetricsRecorder.Counter;
+import com.temenos.interaction.core.metrics.MetricsRecorder.Stage;
 import com.temenos.interaction.core.resource.EntityResource;
 import com.temenos.interaction.core.resource.RESTResource;
 import com.temenos.interaction.core.web.RequestContext;
@@ -209,7 +220,8 @@ public class HTTPHypermediaRIM implements HTTPResourceInteractionModel, Expressi
     }
 
     public ResourceRequestHandler getResourceRequestHandler() {
-        return resourceRequestHandler;
+        ResourceRequestHandler handler = hypermediaEngine.getResourceRequestHandler();
+        return handler != null ? handler : resourceRequestHandler;
     }
 
     public String getResourcePath() {
@@ -289,7 +301,23 @@ public class HTTPHypermediaRIM implements HTTPResourceInteractionModel, Expressi
 
     private Response handleRequest(@Context HttpHeaders headers, @Context UriInfo uriInfo, Event event,
             RESTResource resource) {
-        long begin = System.nanoTime();
+        return AsyncCommandHelper.join(handleRequestAsync(headers, uriInfo, event, resource));
+    }
+
+    /**
+     * Handle a request without waiting for the {@link AsyncInteractionCommand}s
+     * of the resource.  The JAX-RS 1.1 methods of this class wait for the
+     * response, a container able to suspend the request can complete it when
+     * the returned stage completes.
+     * @param headers
+     * @param uriInfo
+     * @param event
+     * @param resource the resource of the request, if any
+     * @return the stage of the response
+     */
+    public CompletionStage<Response> handleRequestAsync(HttpHeaders headers, final UriInfo uriInfo, final Event event,
+            RESTResource resource) {
+        final long begin = System.nanoTime();
         // determine action
         InteractionCommand action = hypermediaEngine.determineAction(event, getFQResourcePath());
 
@@ -301,31 +329,96 @@ public class HTTPHypermediaRIM implements HTTPResourceInteractionModel, Expressi
         Response.ResponseBuilder cached = null;
         if (cache != null && event.isSafe()) {
             cached = cache.get(ctx.getUriInfo().getRequestUri().toString());
+            Metrics.increment(cached != null ? Counter.RESPONSE_CACHE_HIT : Counter.RESPONSE_CACHE_MISS, stateName(ctx));
         } else {
             LOGGER.debug("Cannot cache {}", uriInfo.getRequestUri());
         }
-        Response response = null;
+        CompletionStage<Response> response = null;
         if (cached != null) {
-            response = cached.build();
+            response = CompletableFuture.completedFuture(cached.build());
         } else {
-            response = handleRequest(headers, ctx, event, action, resource, null);
+            response = handleRequestAsync(headers, ctx, event, action, resource, null);
         }
-        
-        long end = System.nanoTime();
-        long totalTime = end - begin;
-
-        LOGGER.info(
-                "iris_request IRIS Service RequestTime(ns)={} startTime(ns)={} endTime(ns)={} EntityName={} MethodType={} URI={} {}",
-                totalTime, begin, end, getFQResourcePath(), event.getMethod(), uriInfo.getRequestUri(),
-                cached != null ? " (cached response)" : "");
-
-        return response;
+        final boolean fromCache = cached != null;
+
+        return response.thenApply(new Function<Response, Response>() {
+            @Override
+            public Response apply(Response response) {
+                long end = System.nanoTime();
+                long totalTime = end - begin;
+
+                LOGGER.info(
+                        "iris_request IRIS Service RequestTime(ns)={} startTime(ns)={} endTime(ns)={} EntityName={} MethodType={} URI={} {}",
+                        totalTime, begin, end, getFQResourcePath(), event.getMethod(), uriInfo.getRequestUri(),
+                        fromCache ? " (cached response)" : "");
+                return response;
+            }
+        });
     }
 
     protected Response handleRequest(@Context HttpHeaders headers, InteractionContext initialCtx, Event event,
             InteractionCommand action, RESTResource resource, ResourceRequestConfig config) {
+        return AsyncCommandHelper.join(handleRequestAsync(headers, initialCtx, event, action, resource, config));
+    }
+
+    /**
+     * Handle the requests of several contexts whose target state is served by a
+     * {@link BatchInteractionCommand}.  The command is invoked once for all the
+     * contexts within the interaction workflow, and the response of each context
+     * is built as by
+     * {@link #handleRequest(HttpHeaders, InteractionContext, Event, InteractionCommand, RESTResource, ResourceRequestConfig)}.
+     * @return the response of each context, in the order of the contexts
+     */
+    protected List<Response> handleBatchRequest(HttpHeaders headers, final List<InteractionContext> ctxs, Event event,
+            final BatchInteractionCommand command, ResourceRequestConfig config) {
+        assert (event != null);
+        assert (ctxs != null && !ctxs.isEmpty());
+        for (InteractionContext ctx : ctxs) {
+            initialiseInteractionContext(headers, event, ctx, null);
+        }
+
+        final List<InteractionCommand.Result> results = new ArrayList<InteractionCommand.Result>();
+        InteractionCommand batch = new InteractionCommand() {
+            @Override
+            public Result execute(InteractionContext ctx) throws InteractionException {
+                List<Result> batchResults = command.executeAll(ctxs);
+                if (batchResults == null || batchResults.size() != ctxs.size() || batchResults.contains(null)) {
+                    throw new InteractionException(Status.INTERNAL_SERVER_ERROR,
+                            "BatchInteractionCommand must return a result for each context");
+                }
+                results.clear();
+                results.addAll(batchResults);
+                return Result.SUCCESS;
+            }
+        };
+        InteractionCommand action = hypermediaEngine.getWorkflowCommandBuilder(WorkflowType.INTERACTION)
+                .build(new InteractionCommand[] { batch });
+
+        long begin = System.nanoTime();
+        InteractionCommand.Result result = null;
+        Throwable error = null;
+        try {
+            result = action.execute(ctxs.get(0));
+        } catch (InteractionException ie) {
+            error = ie;
+        }
+        List<Response> responses = new ArrayList<Response>(ctxs.size());
+        for (int i = 0; i < ctxs.size(); i++) {
+            // the workflow result stands for the contexts the batch did not complete
+            InteractionCommand.Result ctxResult = result == Result.SUCCESS && results.size() == ctxs.size()
+                    ? results.get(i) : result;
+            responses.add(completeRequest(headers, ctxs.get(i), event, ctxResult, error, config, begin));
+        }
+        return responses;
+    }
+
+    /**
+     * Execute the action of a request, an {@link AsyncInteractionCommand} is not
+     * waited for, and build the response once it completed.
+     */
+    protected CompletionStage<Response> handleRequestAsync(final HttpHeaders headers, final InteractionContext initialCtx, final Event event,
+            InteractionCommand action, RESTResource resource, final ResourceRequestConfig config) {
         assert (event != null);
-        InteractionContext ctx = initialCtx;
         StatusType status = Status.NOT_FOUND;
 
         if (action == null) {
@@ -333,17 +426,52 @@ public class HTTPHypermediaRIM implements HTTPResourceInteractionModel, Expressi
                 status = HttpStatusTypes.METHOD_NOT_ALLOWED;
             }
 
-            return buildResponse(headers, ctx.getPathParameters(), status, null, getInteractions(), null,
-                    event.isSafe());
+            return CompletableFuture.completedFuture(buildResponse(headers, initialCtx.getPathParameters(), status, null, getInteractions(), null,
+                    event.isSafe()));
         }
 
         // determine current state, target state, and link used
-        initialiseInteractionContext(headers, event, ctx, resource);
+        initialiseInteractionContext(headers, event, initialCtx, resource);
         // execute action
-        InteractionCommand.Result result = null;
+        final long begin = System.nanoTime();
+        final RequestContext requestContext = RequestContext.getRequestContext();
+        return AsyncCommandHelper.executeAsync(action, initialCtx).handle(new BiFunction<InteractionCommand.Result, Throwable, Response>() {
+            @Override
+            public Response apply(InteractionCommand.Result result, Throwable error) {
+                // the action may complete on another thread
+                RequestContext current = RequestContext.getRequestContext();
+                if (current != requestContext) {
+                    RequestContext.setRequestContext(requestContext);
+                }
+                try {
+                    return completeRequest(headers, initialCtx, event, result, error, config, begin);
+                } finally {
+                    if (current == null) {
+                        RequestContext.clearRequestContext();
+                    } else if (current != requestContext) {
+                        RequestContext.setRequestContext(current);
+                    }
+                }
+            }
+        });
+    }
+
+    private Response completeRequest(HttpHeaders headers, InteractionContext initialCtx, Event event,
+            InteractionCommand.Result result, Throwable error, ResourceRequestConfig config, long begin) {
+        InteractionContext ctx = initialCtx;
+        StatusType status = Status.NOT_FOUND;
         try {
-            long begin = System.nanoTime();
-            result = action.execute(ctx);
+            if (error != null) {
+                Throwable cause = AsyncCommandHelper.unwrap(error);
+                if (cause instanceof InteractionException) {
+                    throw (InteractionException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new CompletionException(cause);
+            }
 
             long end = System.nanoTime();
             long totalTime = end - begin;
@@ -351,6 +479,9 @@ public class HTTPHypermediaRIM implements HTTPResourceInteractionModel, Expressi
             LOGGER.info(
                     "iris_request_command CommandExecution RequestTime(ns)={} startTime(ns)={} endTime(ns)={} EntityName={}",
                     totalTime, begin, end, getFQResourcePath());
+            if (Metrics.isEnabled()) {
+                Metrics.getRecorder().recordTime(Stage.COMMAND, stateName(ctx), commandName(ctx, event), totalTime);
+            }
             
             assert (result != null) : "InteractionCommand must return a result";
             status = determineStatus(headers, event, ctx, result);
@@ -364,7 +495,9 @@ public class HTTPHypermediaRIM implements HTTPResourceInteractionModel, Expressi
                         .setParameterResolverProvider(getHypermediaEngine().getParameterResolverProvider())
                         .setWorkflowCommandBuilder(getHypermediaEngine().getWorkflowCommandBuilder(WorkflowType.TRANSITION))
                         .setExpressionEvaluator(this);
+                long start = Metrics.start();
                 AutoTransitioner.Outcome outcome = autoTransitioner.transition();
+                Metrics.stop(Stage.AUTO_TRANSITION, stateName(ctx), null, start);
                 if(outcome.isSuccessful()) {
                     ctx = outcome.getInteractionContext();
                     status = determineStatus(headers, event, ctx, result);
@@ -405,14 +538,18 @@ public class HTTPHypermediaRIM implements HTTPResourceInteractionModel, Expressi
                 /*
                  * Add hypermedia information to this resource
                  */
+                long start = Metrics.start();
                 hypermediaEngine.injectLinks(this, ctx, ctx.getResource(), selfTransition, headers, metadata);
+                Metrics.stop(Stage.INJECT_LINKS, stateName(ctx), null, start);
             }
 
             if (embedResources) {
                 /*
                  * Add embedded resources this resource
                  */
+                long start = Metrics.start();
                 hypermediaEngine.embedResources(this, headers, ctx, ctx.getResource());
+                Metrics.stop(Stage.EMBED_RESOURCES, stateName(ctx), null, start);
             }
 
         }
@@ -421,6 +558,33 @@ public class HTTPHypermediaRIM implements HTTPResourceInteractionModel, Expressi
         return buildResponse(headers, ctx.getPathParameters(), status, ctx.getResource(), null, ctx, event.isSafe());
     }
 
+    private static String stateName(InteractionContext ctx) {
+        return ctx.getCurrentState() != null ? ctx.getCurrentState().getName() : null;
+    }
+
+    /*
+     * The names of the actions of the current state handling the event, the
+     * action itself is usually a workflow of these.
+     */
+    private static String commandName(InteractionContext ctx, Event event) {
+        ResourceState state = ctx.getCurrentState();
+        if (state == null || state.getActions() == null) {
+            return null;
+        }
+        StringBuilder names = new StringBuilder();
+        for (Action action : state.getActions()) {
+            boolean handles = event.isSafe() ? action.getType() == Action.TYPE.VIEW
+                    : action.getType() == Action.TYPE.ENTRY && (action.getMethod() == null || event.getMethod().equals(action.getMethod()));
+            if (handles) {
+                if (names.length() > 0) {
+                    names.append(',');
+                }
+                names.append(action.getName());
+            }
+        }
+        return names.toString();
+    }
+
     private ResourceState initialiseInteractionContext(HttpHeaders headers, Event event, InteractionContext ctx,
             RESTResource resource) {
         // set the resource for the commands to access
@@ -588,7 +752,9 @@ public class HTTPHypermediaRIM implements HTTPResourceInteractionModel, Expressi
     }
 
     private InteractionContext buildInteractionContext(HttpHeaders headers, UriInfo uriInfo, Event event) {
+        long start = Metrics.start();
         ResourceState currentState = hypermediaEngine.determineState(event, getFQResourcePath());
+        Metrics.stop(Stage.DETERMINE_STATE, currentState != null ? currentState.getName() : null, null, start);
         
         if(uriInfo.getPath() != null && currentState != null) {        	
             
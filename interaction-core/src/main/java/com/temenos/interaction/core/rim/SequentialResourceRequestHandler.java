@@ -5,7 +5,9 @@ package com.temenos.interaction.core.rim;
  *******************************************************************************/
 
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.ws.rs.core.GenericEntity;
@@ -14,6 +16,7 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
 import com.temenos.interaction.core.MultivaluedMapImpl;
+import com.temenos.interaction.core.command.BatchInteractionCommand;
 import com.temenos.interaction.core.command.InteractionCommand;
 import com.temenos.interaction.core.command.InteractionContext;
 import com.temenos.interaction.core.hypermedia.Event;
@@ -22,6 +25,8 @@ import com.temenos.interaction.core.hypermedia.LazyResourceState;
 import com.temenos.interaction.core.hypermedia.ResourceState;
 import com.temenos.interaction.core.hypermedia.ResourceStateMachine;
 import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.metrics.Metrics;
+import com.temenos.interaction.core.metrics.MetricsRecorder.Counter;
 import com.temenos.interaction.core.resource.EntityResource;
 import com.temenos.interaction.core.resource.RESTResource;
 
@@ -39,74 +44,134 @@ public class SequentialResourceRequestHandler implements ResourceRequestHandler
 	public Map<Transition, ResourceRequestResult> getResources(HTTPHypermediaRIM rimHandler, HttpHeaders headers, InteractionContext ctx, EntityResource<?> resource, Object entity, ResourceRequestConfig config) {	
 		assert(config != null);
 		assert(config.getTransitions() != null);
-		ResourceStateMachine hypermediaEngine = rimHandler.getHypermediaEngine();
-		Map<Transition, ResourceRequestResult> resources = new HashMap<Transition, ResourceRequestResult>(); 
+		Map<Transition, ResourceRequestResult> resources = new LinkedHashMap<Transition, ResourceRequestResult>(); 
 		for (Transition t : config.getTransitions()) {
-			String method = t.getCommand().getMethod();
-			if ((t.getCommand().getFlags() & Transition.AUTO) == Transition.AUTO) {
-				method = t.getCommand().getMethod();
-			}
-	    	Event event = new Event("", method);
-			// determine action
-	    	ResourceState targetState = t.getTarget();
-			if (targetState instanceof LazyResourceState || targetState instanceof LazyCollectionResourceState) {
-				targetState = rimHandler.getHypermediaEngine().getResourceStateProvider().getResourceState(targetState.getName());
-				t.setTarget(targetState);
-			}
-	    	
-	    	InteractionCommand action = hypermediaEngine.buildWorkflow(event, targetState.getActions());
-	    	
-			MultivaluedMap<String, String> newPathParameters = new MultivaluedMapImpl<String>();
-			newPathParameters.putAll(ctx.getPathParameters());
-			
-            Object resEntity = entity;
-            if (resource != null) {
-                resEntity = ((EntityResource<?>) resource).getEntity();
-            }
-
-            Map<String, Object> transitionProperties = hypermediaEngine.getTransitionProperties(t, resEntity,
-                    ctx.getPathParameters(), ctx.getQueryParameters());
+			resources.put(t, getResource(rimHandler, headers, ctx, resource, entity, t, config));
+		}
+		return resources;
+	}
 
-            for (String key : transitionProperties.keySet()) {
-                if (transitionProperties.get(key) != null) {
-                    newPathParameters.add(key, transitionProperties.get(key).toString());
-                }
-            }			
-			
+	/**
+	 * Get the resource of a single transition.
+	 * 
+	 * @param rimHandler the main handler for our resource requests
+	 * @param headers HttpHeaders
+	 * @param ctx our InteractionContext
+	 * @param resource the request body (POST, PUT)
+	 * @param entity the entity whose properties may hold the filter criteria of the transition
+	 * @param t the transition to the resource we want
+	 * @param config the resources we want, and how shall we process them
+	 * @return the status and resource returned by the target state
+	 */
+	protected ResourceRequestResult getResource(HTTPHypermediaRIM rimHandler, HttpHeaders headers, InteractionContext ctx, EntityResource<?> resource, Object entity, Transition t, ResourceRequestConfig config) {
+		ResourceStateMachine hypermediaEngine = rimHandler.getHypermediaEngine();
+		String method = t.getCommand().getMethod();
+		if ((t.getCommand().getFlags() & Transition.AUTO) == Transition.AUTO) {
+			method = t.getCommand().getMethod();
+		}
+		Event event = new Event("", method);
+		InteractionContext newCtx = createTargetContext(rimHandler, ctx, resource, entity, t);
+		InteractionCommand action = hypermediaEngine.buildWorkflow(event, newCtx.getCurrentState().getActions());
+		Metrics.increment(Counter.SUB_REQUEST, newCtx.getCurrentState().getName());
+		
+		Response response = rimHandler.handleRequest(headers, 
+				newCtx, 
+				event, 
+				action, 
+				resource, 
+				config);
+		RESTResource targetResource = null;
+		if (response.getEntity() != null) {
+			targetResource = (RESTResource) ((GenericEntity<?>) response.getEntity()).getEntity();
+		}
+		return new ResourceRequestResult(response.getStatus(), targetResource);
+	}
 
-			MultivaluedMap<String, String> newQueryParameters = new MultivaluedMapImpl<String>();
-			newQueryParameters.putAll(ctx.getQueryParameters());
-						
-			if (entity != null) {
-				/* Handle cases where we may be embedding a resource that has filter criteria whose values are contained in the current resource's 
-				 * entity properties.				
-				 */				
-                Map<String, Object> transitionPropertiesFilter = hypermediaEngine.getTransitionProperties(t, entity,
-                        ctx.getPathParameters(), ctx.getQueryParameters());
-				
-                for (String key : transitionPropertiesFilter.keySet()) {
-                    if (transitionPropertiesFilter.get(key) != null) {
-                        newQueryParameters.add(key, transitionPropertiesFilter.get(key).toString());
-                    }
-				}
-			}
-			
-			
-	    	InteractionContext newCtx = new InteractionContext(ctx, null, newPathParameters, newQueryParameters, targetState);
-	    	newCtx.setResource(null);
-			Response response = rimHandler.handleRequest(headers, 
-					newCtx, 
-					event, 
-					action, 
-					resource, 
-					config);
+	/**
+	 * Get the resource of a transition for several contexts with one invocation
+	 * of the batch command serving its target state.
+	 * 
+	 * @param rimHandler the main handler for our resource requests
+	 * @param headers HttpHeaders
+	 * @param ctxs the contexts created by {@link #createTargetContext}
+	 * @param t the transition to the resources we want
+	 * @param command the batch command serving the target state of the transition
+	 * @return the status and resource returned for each context, in the order of the contexts
+	 */
+	public List<ResourceRequestResult> getResources(HTTPHypermediaRIM rimHandler, HttpHeaders headers, List<InteractionContext> ctxs, Transition t, BatchInteractionCommand command) {
+		Event event = new Event("", t.getCommand().getMethod());
+		for (InteractionContext ctx : ctxs) {
+			Metrics.increment(Counter.SUB_REQUEST, ctx.getCurrentState().getName());
+		}
+		List<ResourceRequestResult> results = new ArrayList<ResourceRequestResult>(ctxs.size());
+		for (Response response : rimHandler.handleBatchRequest(headers, ctxs, event, command, null)) {
 			RESTResource targetResource = null;
 			if (response.getEntity() != null) {
 				targetResource = (RESTResource) ((GenericEntity<?>) response.getEntity()).getEntity();
 			}
-			resources.put(t, new ResourceRequestResult(response.getStatus(), targetResource));
+			results.add(new ResourceRequestResult(response.getStatus(), targetResource));
 		}
-		return resources;
+		return results;
+	}
+
+	/**
+	 * Create the interaction context used to get the target resource of a transition.
+	 * 
+	 * @param rimHandler the main handler for our resource requests
+	 * @param ctx our InteractionContext
+	 * @param resource the request body (POST, PUT)
+	 * @param entity the entity whose properties may hold the filter criteria of the transition
+	 * @param t the transition to the resource we want
+	 * @return a context whose current state is the target state of the transition
+	 */
+	public InteractionContext createTargetContext(HTTPHypermediaRIM rimHandler, InteractionContext ctx, EntityResource<?> resource, Object entity, Transition t) {
+		ResourceStateMachine hypermediaEngine = rimHandler.getHypermediaEngine();
+		// resolve the target state
+		ResourceState targetState = t.getTarget();
+		if (targetState instanceof LazyResourceState || targetState instanceof LazyCollectionResourceState) {
+			targetState = rimHandler.getHypermediaEngine().getResourceStateProvider().getResourceState(targetState.getName());
+			t.setTarget(targetState);
+		}
+		
+		MultivaluedMap<String, String> newPathParameters = new MultivaluedMapImpl<String>();
+		newPathParameters.putAll(ctx.getPathParameters());
+		
+        Object resEntity = entity;
+        if (resource != null) {
+            resEntity = ((EntityResource<?>) resource).getEntity();
+        }
+
+        Map<String, Object> transitionProperties = hypermediaEngine.getTransitionProperties(t, resEntity,
+                ctx.getPathParameters(), ctx.getQueryParameters());
+
+        for (String key : transitionProperties.keySet()) {
+            if (transitionProperties.get(key) != null) {
+                newPathParameters.add(key, transitionProperties.get(key).toString());
+            }
+        }			
+		
+
+		MultivaluedMap<String, String> newQueryParameters = new MultivaluedMapImpl<String>();
+		newQueryParameters.putAll(ctx.getQueryParameters());
+					
+		if (entity != null) {
+			/* Handle cases where we may be embedding a resource that has filter criteria whose values are contained in the current resource's 
+			 * entity properties.				
+			 */				
+            Map<String, Object> transitionPropertiesFilter = hypermediaEngine.getTransitionProperties(t, entity,
+                    ctx.getPathParameters(), ctx.getQueryParameters());
+			
+            for (String key : transitionPropertiesFilter.keySet()) {
+                if (transitionPropertiesFilter.get(key) != null) {
+                    newQueryParameters.add(key, transitionPropertiesFilter.get(key).toString());
+                }
+			}
+		}
+		
+		
+		InteractionContext newCtx = new InteractionContext(ctx, null, newPathParameters, newQueryParameters, targetState);
+		newCtx.setResource(null);
+		return newCtx;
 	}
 
 }
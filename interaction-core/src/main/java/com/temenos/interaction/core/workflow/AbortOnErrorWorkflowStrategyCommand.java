@@ -7,7 +7,12 @@ package com.temenos.interaction.core.workflow;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
+import com.temenos.interaction.core.command.AsyncCommandHelper;
+import com.temenos.interaction.core.command.AsyncInteractionCommand;
 import com.temenos.interaction.core.command.InteractionCommand;
 import com.temenos.interaction.core.command.InteractionContext;
 import com.temenos.interaction.core.command.InteractionException;
@@ -20,7 +25,7 @@ import com.temenos.interaction.core.command.TransitionCommand;
  * command returns an error, the workflow is aborted.
  * @author aphethean
  */
-public class AbortOnErrorWorkflowStrategyCommand implements WorkflowCommand {
+public class AbortOnErrorWorkflowStrategyCommand implements WorkflowCommand, AsyncInteractionCommand {
 
 	protected List<InteractionCommand> commands = new ArrayList<InteractionCommand>();
 	protected InteractionCommand lastExecutedCommand = null;
@@ -81,4 +86,34 @@ public class AbortOnErrorWorkflowStrategyCommand implements WorkflowCommand {
 		return result;
 	}
 
+	/**
+	 * Execute the commands in sequence, each one once the previous one
+	 * completed with {@link InteractionCommand.Result#SUCCESS}, without waiting
+	 * for the {@link AsyncInteractionCommand}s.
+	 * @see #execute(InteractionContext)
+	 */
+	@Override
+	public CompletionStage<Result> executeAsync(InteractionContext ctx) {
+		assert(commands != null);
+		assert(commands.size() > 0) : "There must be at least one command in the workflow";
+		if (ctx == null)
+			throw new IllegalArgumentException("InteractionContext must be supplied");
+
+		return executeAsync(0, ctx);
+	}
+
+	private CompletionStage<Result> executeAsync(final int index, final InteractionContext ctx) {
+		InteractionCommand command = commands.get(index);
+		lastExecutedCommand = command;
+		return AsyncCommandHelper.executeAsync(command, ctx).thenCompose(new Function<Result, CompletionStage<Result>>() {
+			@Override
+			public CompletionStage<Result> apply(Result result) {
+				if (result != Result.SUCCESS || index + 1 >= commands.size()) {
+					return CompletableFuture.completedFuture(result);
+				}
+				return executeAsync(index + 1, ctx);
+			}
+		});
+	}
+
 }
@@ -0,0 +1,142 @@
+package com.temenos.interaction.core.workflow;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>A circuit breaker guarding the calls to a command.</p>
+ * The circuit opens after a number of consecutive failures, calls are then
+ * rejected without reaching the command until the open duration elapsed.  The
+ * circuit is then half open: a single call probes the command, closing the
+ * circuit if it succeeds and opening it again if it fails.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openDurationNanos;
+
+	private final AtomicReference<State> state = new AtomicReference<State>(State.CLOSED);
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+	private final AtomicBoolean probing = new AtomicBoolean();
+	private volatile long openedAt;
+
+	private final AtomicLong successes = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong rejections = new AtomicLong();
+	private final AtomicLong openings = new AtomicLong();
+
+	/**
+	 * @param failureThreshold consecutive failures opening the circuit
+	 * @param openDurationMillis time the circuit stays open before a call probes the command
+	 */
+	public CircuitBreaker(int failureThreshold, long openDurationMillis) {
+		if (failureThreshold < 1) {
+			throw new IllegalArgumentException("Failure threshold must be at least 1");
+		}
+		this.failureThreshold = failureThreshold;
+		this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+	}
+
+	/**
+	 * Ask for permission to call the command, the outcome of a permitted call
+	 * must be reported with {@link #onSuccess()} or {@link #onFailure()}.
+	 * @return false if the call is rejected
+	 */
+	public boolean tryAcquire() {
+		switch (getState()) {
+		case CLOSED:
+			return true;
+		case HALF_OPEN:
+			if (probing.compareAndSet(false, true)) {
+				return true;
+			}
+			break;
+		default:
+			break;
+		}
+		rejections.incrementAndGet();
+		return false;
+	}
+
+	public void onSuccess() {
+		successes.incrementAndGet();
+		consecutiveFailures.set(0);
+		if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+			probing.set(false);
+		}
+	}
+
+	public void onFailure() {
+		failures.incrementAndGet();
+		if (state.get() == State.HALF_OPEN) {
+			open(State.HALF_OPEN);
+		} else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+			open(State.CLOSED);
+		}
+	}
+
+	private void open(State from) {
+		long now = System.nanoTime();
+		long previous = openedAt;
+		openedAt = now;
+		if (state.compareAndSet(from, State.OPEN)) {
+			openings.incrementAndGet();
+			probing.set(false);
+		} else {
+			openedAt = previous;
+		}
+	}
+
+	/**
+	 * @return the state, turning an open circuit half open once the open duration elapsed
+	 */
+	public State getState() {
+		State current = state.get();
+		if (current == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+			consecutiveFailures.set(0);
+			state.compareAndSet(State.OPEN, State.HALF_OPEN);
+			current = state.get();
+		}
+		return current;
+	}
+
+	public long getSuccessCount() {
+		return successes.get();
+	}
+
+	public long getFailureCount() {
+		return failures.get();
+	}
+
+	/**
+	 * @return the calls rejected because the circuit was open, or half open and probing
+	 */
+	public long getRejectedCount() {
+		return rejections.get();
+	}
+
+	/**
+	 * @return the number of times the circuit opened
+	 */
+	public long getOpenedCount() {
+		return openings.get();
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreaker(state=" + getState() + ", successes=" + getSuccessCount() + ", failures=" + getFailureCount()
+				+ ", rejected=" + getRejectedCount() + ", opened=" + getOpenedCount() + ")";
+	}
+}
@@ -0,0 +1,208 @@
+package com.temenos.interaction.core.workflow;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.Response.Status.Family;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.temenos.interaction.core.command.AsyncCommandHelper;
+import com.temenos.interaction.core.command.AsyncInteractionCommand;
+import com.temenos.interaction.core.command.InteractionCommand;
+import com.temenos.interaction.core.command.InteractionContext;
+import com.temenos.interaction.core.command.InteractionException;
+import com.temenos.interaction.core.command.TransitionCommand;
+import com.temenos.interaction.core.web.RequestContext;
+
+/**
+ * <p>This command implements a workflow that will retry server errors without
+ * sleeping on the calling thread.</p>
+ * The retries are scheduled on a timer after an exponential backoff with full
+ * jitter, run on an executor with the {@link RequestContext} of the first
+ * attempt, and are limited by a {@link RetryBudget}.  A {@link CircuitBreaker}
+ * rejects the calls with a 503 Service Unavailable while the command keeps
+ * failing.  The budget and circuit breaker are shared by the workflows of a
+ * command, see {@link ResilientWorkflowStrategyCommandBuilder}.
+ */
+public class ResilientWorkflowStrategyCommand implements WorkflowCommand, AsyncInteractionCommand {
+	private final static Logger logger = LoggerFactory.getLogger(ResilientWorkflowStrategyCommand.class);
+
+	private final InteractionCommand command;
+	private final int maxRetryCount;
+	private final long retryInterval;
+	private final long maxRetryInterval;
+	private final CircuitBreaker circuitBreaker;
+	private final RetryBudget retryBudget;
+	private final ScheduledExecutorService scheduler;
+	private final Executor executor;
+	protected volatile InteractionCommand lastExecutedCommand;
+
+	/**
+	 * @param command
+	 * @param maxRetryCount
+	 * @param retryInterval base of the backoff (in milliseconds)
+	 * @param maxRetryInterval cap of the backoff (in milliseconds)
+	 * @param circuitBreaker
+	 * @param retryBudget
+	 * @param scheduler timing the retries, which it hands over to the executor
+	 * @param executor running the retries
+	 */
+	public ResilientWorkflowStrategyCommand(InteractionCommand command, int maxRetryCount, long retryInterval, long maxRetryInterval,
+			CircuitBreaker circuitBreaker, RetryBudget retryBudget, ScheduledExecutorService scheduler, Executor executor) {
+		if (command == null)
+			throw new IllegalArgumentException("No commands supplied");
+		this.command = command;
+		this.maxRetryCount = maxRetryCount;
+		this.retryInterval = retryInterval;
+		this.maxRetryInterval = maxRetryInterval;
+		this.circuitBreaker = circuitBreaker;
+		this.retryBudget = retryBudget;
+		this.scheduler = scheduler;
+		this.executor = executor;
+	}
+
+	/**
+	 * Execute the command, waiting for the scheduled retries.
+	 * @throws InteractionException the last error of the command, or a 503
+	 * Service Unavailable if the circuit is open
+	 */
+	@Override
+	public Result execute(InteractionContext ctx) throws InteractionException {
+		if (ctx == null)
+			throw new IllegalArgumentException("InteractionContext must be supplied");
+		return AsyncCommandHelper.await(executeAsync(ctx));
+	}
+
+	/**
+	 * Execute the command, the first attempt on the calling thread and the
+	 * retries on the executor.  An {@link AsyncInteractionCommand} is not
+	 * waited for.
+	 * @param ctx
+	 * @return the result, completed with the last error of the command or a
+	 * 503 Service Unavailable if the circuit is open
+	 */
+	@Override
+	public CompletableFuture<Result> executeAsync(InteractionContext ctx) {
+		CompletableFuture<Result> result = new CompletableFuture<Result>();
+		retryBudget.deposit();
+		attempt(ctx, RequestContext.getRequestContext(), 0, null, result);
+		return result;
+	}
+
+	private void attempt(final InteractionContext ctx, final RequestContext requestContext, final int retryCount, InteractionException lastError, final CompletableFuture<Result> result) {
+		if (!circuitBreaker.tryAcquire()) {
+			result.completeExceptionally(lastError != null ? lastError
+					: new InteractionException(Status.SERVICE_UNAVAILABLE, "Circuit open for command " + command));
+			return;
+		}
+		lastExecutedCommand = command;
+		AsyncCommandHelper.executeAsync(command, ctx).whenComplete(new BiConsumer<Result, Throwable>() {
+			@Override
+			public void accept(Result r, Throwable error) {
+				if (error == null) {
+					circuitBreaker.onSuccess();
+					result.complete(r);
+				} else {
+					onError(ctx, requestContext, retryCount, AsyncCommandHelper.unwrap(error), result);
+				}
+			}
+		});
+	}
+
+	private void onError(final InteractionContext ctx, final RequestContext requestContext, final int retryCount, Throwable error, final CompletableFuture<Result> result) {
+		if (!(error instanceof InteractionException)) {
+			circuitBreaker.onFailure();
+			result.completeExceptionally(error);
+			return;
+		}
+		final InteractionException ex = (InteractionException) error;
+		if (ex.getHttpStatus() == null || !Family.SERVER_ERROR.equals(ex.getHttpStatus().getFamily())) {
+			// the command did reach its backend
+			circuitBreaker.onSuccess();
+			result.completeExceptionally(ex);
+			return;
+		}
+		circuitBreaker.onFailure();
+		if (retryCount >= maxRetryCount || !retryBudget.tryWithdraw()) {
+			result.completeExceptionally(ex);
+			return;
+		}
+		long nextRetry = nextRetryInterval(retryCount);
+		logger.info("iris_request maxRetryCount=" + maxRetryCount + " retryingNumber=" + (retryCount + 1) + " nextRetryIn=" + nextRetry + " milliseconds");
+		final Runnable retry = new Runnable() {
+			@Override
+			public void run() {
+				RequestContext previousContext = RequestContext.getRequestContext();
+				RequestContext.setRequestContext(requestContext);
+				try {
+					attempt(ctx, requestContext, retryCount + 1, ex, result);
+				} finally {
+					if (previousContext == null) {
+						RequestContext.clearRequestContext();
+					} else {
+						RequestContext.setRequestContext(previousContext);
+					}
+				}
+			}
+		};
+		try {
+			// the timer threads only hand the retry over to the executor
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						executor.execute(retry);
+					} catch (RejectedExecutionException e) {
+						result.completeExceptionally(ex);
+					}
+				}
+			}, nextRetry, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(ex);
+		}
+	}
+
+	/*
+	 * Full jitter: a random interval up to the exponential backoff
+	 */
+	long nextRetryInterval(int retryCount) {
+		long backoff = retryInterval << Math.min(retryCount, 30);
+		if (backoff <= 0 || backoff > maxRetryInterval) {
+			backoff = maxRetryInterval;
+		}
+		return backoff > 0 ? ThreadLocalRandom.current().nextLong(backoff + 1) : 0;
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public RetryBudget getRetryBudget() {
+		return retryBudget;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return command instanceof WorkflowCommand && ((WorkflowCommand) command).isEmpty();
+	}
+
+	@Override
+	public ExecutionType getExecutionType() {
+		if (lastExecutedCommand instanceof WorkflowCommand) {
+			return ((WorkflowCommand) lastExecutedCommand).getExecutionType();
+		}
+		return lastExecutedCommand instanceof TransitionCommand ? ExecutionType.TRANSITION : ExecutionType.INTERACTION;
+	}
+}
@@ -0,0 +1,263 @@
+package com.temenos.interaction.core.workflow;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import com.temenos.interaction.core.command.InteractionCommand;
+import com.temenos.interaction.core.hypermedia.Action;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A {@link ResilientWorkflowStrategyCommand} builder wrapping the
+ * {@link WorkflowCommand}s built by another {@link WorkflowCommandBuilder}.
+ * The workflows built for the same commands share a {@link CircuitBreaker}
+ * and a {@link RetryBudget}, which can be looked up by command name to
+ * monitor them.
+ * <p>
+ * To use it, replace a builder of the {@link WorkflowCommandBuilderFactory}:
+ * <pre>
+ * factory.setBuilder(WorkflowType.INTERACTION,
+ *         new ResilientWorkflowStrategyCommandBuilder(factory.getBuilder(WorkflowType.INTERACTION)));
+ * </pre>
+ */
+public class ResilientWorkflowStrategyCommandBuilder implements WorkflowCommandBuilder {
+
+    public static final int DEFAULT_MAX_RETRY_COUNT = 3;
+    public static final long DEFAULT_RETRY_INTERVAL = 100;
+    public static final long DEFAULT_MAX_RETRY_INTERVAL = 5000;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_DURATION = 30000;
+    public static final double DEFAULT_RETRY_RATIO = 0.2;
+    public static final int DEFAULT_MAX_RETRIES = 10;
+
+    private static final int DEFAULT_SCHEDULER_THREADS = 1;
+
+    private final WorkflowCommandBuilder builder;
+    private int maxRetryCount = DEFAULT_MAX_RETRY_COUNT;
+    private long retryInterval = DEFAULT_RETRY_INTERVAL;
+    private long maxRetryInterval = DEFAULT_MAX_RETRY_INTERVAL;
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private long openDuration = DEFAULT_OPEN_DURATION;
+    private double retryRatio = DEFAULT_RETRY_RATIO;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService executor;
+
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+    private final ConcurrentMap<String, RetryBudget> retryBudgets = new ConcurrentHashMap<String, RetryBudget>();
+
+    /**
+     * @param builder building the workflows to make resilient
+     */
+    public ResilientWorkflowStrategyCommandBuilder(WorkflowCommandBuilder builder) {
+        this.builder = builder;
+    }
+
+    /**
+     * Builds a {@link ResilientWorkflowStrategyCommand} wrapping the workflow
+     * of the list of {@link Action}s.
+     *
+     * @param actions   list of {@link Action}s
+     *
+     * @return {@link ResilientWorkflowStrategyCommand}
+     */
+    @Override
+    public WorkflowCommand build(List<Action> actions) {
+        StringBuilder name = new StringBuilder();
+        for (Action action : actions) {
+            if (name.length() > 0) {
+                name.append(',');
+            }
+            name.append(action.getName());
+        }
+        return wrap(name.toString(), builder.build(actions));
+    }
+
+    /**
+     * Builds a {@link ResilientWorkflowStrategyCommand} wrapping the workflow
+     * of a list of {@link InteractionCommand}s.
+     *
+     * @param commands  list of {@link InteractionCommand}s
+     *
+     * @return {@link ResilientWorkflowStrategyCommand}
+     */
+    @Override
+    public WorkflowCommand build(InteractionCommand[] commands) {
+        StringBuilder name = new StringBuilder();
+        for (InteractionCommand command : commands) {
+            if (command != null) {
+                if (name.length() > 0) {
+                    name.append(',');
+                }
+                name.append(command.getClass().getName());
+            }
+        }
+        return wrap(name.toString(), builder.build(commands));
+    }
+
+    private WorkflowCommand wrap(String name, WorkflowCommand workflow) {
+        if (workflow.isEmpty()) {
+            return workflow;
+        }
+        return new ResilientWorkflowStrategyCommand(workflow, maxRetryCount, retryInterval, maxRetryInterval,
+                getCircuitBreaker(name), getRetryBudget(name), getScheduler(), getExecutor());
+    }
+
+    /**
+     * @param name the names of the actions, or class names of the commands, of the workflow separated by ','
+     * @return the circuit breaker shared by the workflows of these commands
+     */
+    public CircuitBreaker getCircuitBreaker(String name) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(name);
+        if (circuitBreaker == null) {
+            circuitBreakers.putIfAbsent(name, new CircuitBreaker(failureThreshold, openDuration));
+            circuitBreaker = circuitBreakers.get(name);
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * @param name the names of the actions, or class names of the commands, of the workflow separated by ','
+     * @return the retry budget shared by the workflows of these commands
+     */
+    public RetryBudget getRetryBudget(String name) {
+        RetryBudget retryBudget = retryBudgets.get(name);
+        if (retryBudget == null) {
+            retryBudgets.putIfAbsent(name, new RetryBudget(retryRatio, maxRetries));
+            retryBudget = retryBudgets.get(name);
+        }
+        return retryBudget;
+    }
+
+    /**
+     * @return the circuit breakers of the workflows built so far
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableMap(circuitBreakers);
+    }
+
+    /**
+     * @return the retry budgets of the workflows built so far
+     */
+    public Map<String, RetryBudget> getRetryBudgets() {
+        return Collections.unmodifiableMap(retryBudgets);
+    }
+
+    public synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = createScheduler();
+        }
+        return scheduler;
+    }
+
+    /**
+     * @param scheduler timing the retries, by default a single daemon thread
+     */
+    public synchronized void setScheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = createExecutor();
+        }
+        return executor;
+    }
+
+    /**
+     * @param executor running the retries, by default a cached pool of daemon
+     *        threads, the number of retries being limited by the retry budgets
+     */
+    public synchronized void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void setMaxRetryCount(int maxRetryCount) {
+        this.maxRetryCount = maxRetryCount;
+    }
+
+    /**
+     * @param retryInterval base of the exponential backoff (in milliseconds)
+     */
+    public void setRetryInterval(long retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    /**
+     * @param maxRetryInterval cap of the exponential backoff (in milliseconds)
+     */
+    public void setMaxRetryInterval(long maxRetryInterval) {
+        this.maxRetryInterval = maxRetryInterval;
+    }
+
+    /**
+     * @param failureThreshold consecutive failures opening a circuit
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @param openDuration time a circuit stays open (in milliseconds)
+     */
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * @param retryRatio retries allowed per call of a command
+     */
+    public void setRetryRatio(double retryRatio) {
+        this.retryRatio = retryRatio;
+    }
+
+    /**
+     * @param maxRetries burst of retries allowed for a command
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(DEFAULT_SCHEDULER_THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "iris-workflow-timer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static ExecutorService createExecutor() {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "iris-workflow-retry-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+}
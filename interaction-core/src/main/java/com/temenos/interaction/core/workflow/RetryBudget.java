@@ -0,0 +1,94 @@
+package com.temenos.interaction.core.workflow;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Caps the retries of a command to a ratio of its calls.</p>
+ * Every call deposits the retry ratio in the budget and every retry withdraws
+ * one from it, so a failing backend receives at most (1 + ratio) times the
+ * calls it would have received without retries rather than (1 + retry count)
+ * times.  The balance is capped, a full budget allows a burst of that many
+ * retries.
+ */
+public class RetryBudget {
+
+	// the balance is kept in thousandths of a retry
+	private static final long UNIT = 1000;
+
+	private final long deposit;
+	private final long maxBalance;
+	private final AtomicLong balance;
+
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong exhausted = new AtomicLong();
+
+	/**
+	 * @param retryRatio retries allowed per call
+	 * @param maxRetries the cap of the balance, also the initial balance
+	 */
+	public RetryBudget(double retryRatio, int maxRetries) {
+		if (retryRatio < 0 || maxRetries < 0) {
+			throw new IllegalArgumentException("Retry ratio and max retries must be positive");
+		}
+		this.deposit = (long) (retryRatio * UNIT);
+		this.maxBalance = maxRetries * UNIT;
+		this.balance = new AtomicLong(maxBalance);
+	}
+
+	/**
+	 * Record a call of the command.
+	 */
+	public void deposit() {
+		long current;
+		do {
+			current = balance.get();
+			if (current >= maxBalance) {
+				return;
+			}
+		} while (!balance.compareAndSet(current, Math.min(maxBalance, current + deposit)));
+	}
+
+	/**
+	 * @return true if the budget allows one more retry, which is withdrawn from it
+	 */
+	public boolean tryWithdraw() {
+		long current;
+		do {
+			current = balance.get();
+			if (current < UNIT) {
+				exhausted.incrementAndGet();
+				return false;
+			}
+		} while (!balance.compareAndSet(current, current - UNIT));
+		retries.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @return the retries currently allowed
+	 */
+	public double getBalance() {
+		return (double) balance.get() / UNIT;
+	}
+
+	public long getRetryCount() {
+		return retries.get();
+	}
+
+	/**
+	 * @return the retries refused because the budget was exhausted
+	 */
+	public long getExhaustedCount() {
+		return exhausted.get();
+	}
+
+	@Override
+	public String toString() {
+		return "RetryBudget(balance=" + getBalance() + ", retries=" + getRetryCount() + ", exhausted=" + getExhaustedCount() + ")";
+	}
+}
@@ -19,6 +19,9 @@ import com.temenos.interaction.core.command.InteractionException;
  * <p>This command implements a workflow that will retry if there is an error.</p>
  * Commands are added to this workflow and then retried according to the retry count
  * and the incremental backoff (configured in milliseconds).
+ * The calling thread sleeps between the retries, see
+ * {@link ResilientWorkflowStrategyCommand} for retries scheduled on a timer
+ * and guarded by a circuit breaker.
  * @author aphethean
  */
 public class RetryWorkflowStrategyCommand implements WorkflowCommand {
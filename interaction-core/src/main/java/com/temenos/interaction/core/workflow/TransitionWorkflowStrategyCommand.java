@@ -5,6 +5,7 @@ package com.temenos.interaction.core.workflow;
  *******************************************************************************/
 
 
+import com.temenos.interaction.core.command.AsyncCommandHelper;
 import com.temenos.interaction.core.command.InteractionCommand;
 import com.temenos.interaction.core.command.InteractionContext;
 import com.temenos.interaction.core.command.InteractionException;
@@ -14,6 +15,9 @@ import com.temenos.interaction.core.hypermedia.Transition;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
 
 /**
@@ -39,6 +43,36 @@ public class TransitionWorkflowStrategyCommand extends AbortOnErrorWorkflowStrat
         return result;
     }
 
+    /**
+     * Execute the commands in sequence as {@link #execute(InteractionContext)}
+     * does, each one once the previous one completed, without waiting for the
+     * {@link com.temenos.interaction.core.command.AsyncInteractionCommand}s.
+     */
+    @Override
+    public CompletionStage<Result> executeAsync(InteractionContext ctx) {
+        if (ctx == null) {
+            throw new IllegalArgumentException("InteractionContext must be supplied");
+        }
+        return executeAsync(0, ctx, null);
+    }
+
+    private CompletionStage<Result> executeAsync(final int index, final InteractionContext ctx, Result previous) {
+        if (index >= commands.size()) {
+            return CompletableFuture.completedFuture(previous);
+        }
+        InteractionCommand command = commands.get(index);
+        lastExecutedCommand = command;
+        return AsyncCommandHelper.executeAsync(command, ctx).thenCompose(new Function<Result, CompletionStage<Result>>() {
+            @Override
+            public CompletionStage<Result> apply(Result result) {
+                if (result != null && !result.equals(Result.SUCCESS)) {
+                    return CompletableFuture.completedFuture(result);
+                }
+                return executeAsync(index + 1, ctx, result);
+            }
+        });
+    }
+
     /**
      * Returns true if all {@link TransitionCommand}s in this workflow are interim
      * otherwise false. It returns false if workflow has no {@link TransitionCommand}s.
@@ -28,6 +28,17 @@ public class WorkflowCommandBuilderFactory implements WorkflowCommandBuilderProv
         this.builderMap = builderMap;
     }
 
+    /**
+     * Replaces the {@link WorkflowCommandBuilder} of a {@link WorkflowType},
+     * e.g. with a {@link ResilientWorkflowStrategyCommandBuilder} wrapping it.
+     *
+     * @param workflowType  the type of workflow
+     * @param builder       the builder of that type of workflow
+     */
+    public void setBuilder(WorkflowType workflowType, WorkflowCommandBuilder builder) {
+        builderMap.put(workflowType, builder);
+    }
+
     @Override
     public WorkflowCommandBuilder getBuilder(WorkflowType workflowType) {
         return builderMap.get(workflowType);
@@ -0,0 +1,105 @@
+package com.temenos.interaction.core.cache;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestLruCacheConcurrentImpl {
+
+    private LruCacheConcurrentImpl<String, String> cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new LruCacheConcurrentImpl<String, String>(10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new LruCacheConcurrentImpl<String, String>(0);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        assertNull(cache.get("example"));
+        cache.put("example", "value");
+        assertFalse(cache.isEmpty());
+        assertEquals("value", cache.get("example"));
+    }
+
+    @Test
+    public void testPutAll() {
+        Map<String, String> example = new HashMap<String, String>();
+        for (int i = 0; i < 5; i++) {
+            example.put("example_" + i, "value_" + i);
+        }
+        cache.putAll(example);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("value_" + i, cache.get("example_" + i));
+        }
+    }
+
+    @Test
+    public void testPutWithAge() {
+        cache.put("live", "value", 10);
+        cache.put("expired", "value", 0);
+        assertEquals("value", cache.get("live"));
+        assertNull(cache.get("expired"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            cache.put("example_" + i, "value_" + i);
+            Thread.sleep(1);
+        }
+        // read the oldest entry so that it becomes the most recently used
+        assertEquals("value_0", cache.get("example_0"));
+        cache.put("example_10", "value_10");
+
+        assertEquals(9, cache.size());
+        assertEquals("value_0", cache.get("example_0"));
+        assertEquals("value_10", cache.get("example_10"));
+        assertNull(cache.get("example_1"));
+        assertNull(cache.get("example_2"));
+    }
+
+    @Test
+    public void testRemove() {
+        cache.put("example", "value");
+        cache.remove("example");
+        assertTrue(cache.isEmpty());
+        assertNull(cache.get("example"));
+    }
+
+    @Test
+    public void testRemoveAll() {
+        for (int i = 0; i < 5; i++) {
+            cache.put("example_" + i, "value_" + i);
+        }
+        cache.removeAll();
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testStatistics() {
+        cache.put("example", "value");
+        cache.get("example");
+        cache.get("missing");
+        for (int i = 0; i < 10; i++) {
+            cache.put("example_" + i, "value_" + i);
+        }
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getEvictionCount());
+        // the entry which was read survives the entries never read
+        assertEquals("value", cache.get("example"));
+    }
+}
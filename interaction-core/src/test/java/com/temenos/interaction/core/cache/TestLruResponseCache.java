@@ -0,0 +1,71 @@
+package com.temenos.interaction.core.cache;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import javax.ws.rs.core.Response;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLruResponseCache {
+
+    private LruResponseCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new LruResponseCache(2);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        cache.put("/customers", Response.ok("body").header("Cache-Control", "max-age=10"), 10);
+
+        Response response = cache.get("/customers").build();
+        assertEquals(200, response.getStatus());
+        assertEquals("body", response.getEntity());
+        assertEquals("max-age=10", response.getMetadata().getFirst("Cache-Control"));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testCallerBuilderLeftIntact() {
+        Response.ResponseBuilder builder = Response.ok("body");
+        cache.put("/customers", builder, 10);
+        assertEquals("body", builder.build().getEntity());
+    }
+
+    @Test
+    public void testEachHitGetsOwnBuilder() {
+        cache.put("/customers", Response.ok("body"), 10);
+        Response.ResponseBuilder first = cache.get("/customers");
+        Response.ResponseBuilder second = cache.get("/customers");
+        assertNotSame(first, second);
+        first.status(500);
+        assertEquals(200, second.build().getStatus());
+    }
+
+    @Test
+    public void testNotCachedWithoutMaxAge() {
+        cache.put("/customers", Response.ok("body"), 0);
+        assertNull(cache.get("/customers"));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testBoundedNumberOfEntries() {
+        cache.put("/customers('1')", Response.ok("1"), 10);
+        cache.put("/customers('2')", Response.ok("2"), 10);
+        cache.get("/customers('1')");
+        cache.put("/customers('3')", Response.ok("3"), 10);
+
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals("3", cache.get("/customers('3')").build().getEntity());
+    }
+}
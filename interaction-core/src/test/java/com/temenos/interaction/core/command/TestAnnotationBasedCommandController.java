@@ -0,0 +1,203 @@
+package com.temenos.interaction.core.command;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.temenos.interaction.core.command.annotation.InteractionCommandIndexProcessor;
+
+public class TestAnnotationBasedCommandController {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File classes;
+
+	/*
+	 * Compile annotated commands with the index processor
+	 */
+	@Before
+	public void compileCommands() throws Exception {
+		File sources = folder.newFolder("src");
+		classes = folder.newFolder("classes");
+		List<File> files = new ArrayList<File>();
+		files.add(writeSource(sources, "FirstCommand", "@InteractionCommandImpl(name = \"first\") public class FirstCommand implements InteractionCommand {"
+				+ " public Result execute(InteractionContext ctx) { return Result.SUCCESS; } }"));
+		files.add(writeSource(sources, "SecondCommand", "@InteractionCommandImpl(name = \"second\") public class SecondCommand implements InteractionCommand {"
+				+ " public static class Nested implements InteractionCommand { public Result execute(InteractionContext ctx) { return Result.SUCCESS; } }"
+				+ " public Result execute(InteractionContext ctx) { return Result.SUCCESS; } }"));
+		files.add(writeSource(sources, "NotACommand", "@InteractionCommandImpl(name = \"notacommand\") public class NotACommand { }"));
+		compile(files, classes, true);
+	}
+
+	private void compile(List<File> files, File output, boolean index) throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+		String classpath = new File(InteractionCommand.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath()
+				+ File.pathSeparator + System.getProperty("java.class.path");
+		List<String> options = new ArrayList<String>(Arrays.asList("-classpath", classpath, "-d", output.getPath()));
+		if (!index) {
+			options.add("-proc:none");
+		}
+		JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null,
+				fileManager.getJavaFileObjectsFromFiles(files));
+		if (index) {
+			task.setProcessors(Collections.singletonList(new InteractionCommandIndexProcessor()));
+		}
+		assertTrue(task.call());
+		fileManager.close();
+	}
+
+	private File writeSource(File sources, String className, String body) throws Exception {
+		File dir = new File(sources, "indexed");
+		dir.mkdirs();
+		File source = new File(dir, className + ".java");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(source), "UTF-8");
+		try {
+			writer.write("package indexed;\n"
+					+ "import com.temenos.interaction.core.command.*;\n"
+					+ "import com.temenos.interaction.core.command.annotation.InteractionCommandImpl;\n"
+					+ body);
+		} finally {
+			writer.close();
+		}
+		return source;
+	}
+
+	@Test
+	public void testProcessorWritesIndex() throws Exception {
+		Properties index = new Properties();
+		InputStream in = new FileInputStream(new File(classes, InteractionCommandIndexProcessor.INDEX_RESOURCE));
+		try {
+			index.load(in);
+		} finally {
+			in.close();
+		}
+		assertEquals(2, index.size());
+		assertEquals("indexed.FirstCommand", index.getProperty("first"));
+		assertEquals("indexed.SecondCommand", index.getProperty("second"));
+	}
+
+	@Test
+	public void testCommandsInstantiatedOnFirstUse() throws Exception {
+		CacheExposingController controller = new CacheExposingController(new URLClassLoader(new URL[] { classes.toURI().toURL() }, getClass().getClassLoader()));
+		InteractionCommand first = controller.fetchCommand("first");
+		assertNotNull(first);
+		assertEquals("indexed.FirstCommand", first.getClass().getName());
+		assertEquals(1, controller.getCachedCommands().size());
+		assertSame(first, controller.fetchCommand("first"));
+		assertTrue(controller.isValidCommand("second"));
+		assertEquals(2, controller.getCachedCommands().size());
+		assertFalse(controller.isValidCommand("notacommand"));
+	}
+
+	@Test
+	public void testPackagesToScan() throws Exception {
+		AnnotationBasedCommandController controller = new AnnotationBasedCommandController(new URLClassLoader(new URL[] { classes.toURI().toURL() }, getClass().getClassLoader()));
+		controller.setPackagesToScan(Collections.singleton("other"));
+		assertNull(controller.fetchCommand("first"));
+		controller.setPackagesToScan(Collections.singleton("indexed"));
+		assertNotNull(controller.fetchCommand("first"));
+	}
+
+	@Test
+	public void testScanWithoutIndex() throws Exception {
+		File index = new File(classes, InteractionCommandIndexProcessor.INDEX_RESOURCE);
+		assertTrue(index.delete());
+		URL url = classes.toURI().toURL();
+		CacheExposingController controller = new CacheExposingController(new URLClassLoader(new URL[] { url }, getClass().getClassLoader()));
+		controller.setJarsToScan(Collections.singleton(url));
+		assertNotNull(controller.fetchCommand("first"));
+		// scanning instantiates every command
+		assertEquals(2, controller.getCachedCommands().size());
+	}
+
+	@Test
+	public void testIndexDisabled() throws Exception {
+		URL url = classes.toURI().toURL();
+		CacheExposingController controller = new CacheExposingController(new URLClassLoader(new URL[] { url }, getClass().getClassLoader()));
+		controller.setJarsToScan(Collections.singleton(url));
+		controller.setUseCommandIndex(false);
+		assertNotNull(controller.fetchCommand("first"));
+		assertEquals(2, controller.getCachedCommands().size());
+	}
+
+	@Test
+	public void testIndexedAndUnindexedPackageLocations() throws Exception {
+		CacheExposingController controller = new CacheExposingController(mixedLocationsClassLoader());
+		controller.setPackagesToScan(Collections.singleton("indexed"));
+		assertIndexedAndUnindexedCommandsFound(controller);
+	}
+
+	@Test
+	public void testIndexedAndUnindexedJars() throws Exception {
+		URLClassLoader loader = mixedLocationsClassLoader();
+		CacheExposingController controller = new CacheExposingController(loader);
+		controller.setJarsToScan(Arrays.asList(loader.getURLs()));
+		assertIndexedAndUnindexedCommandsFound(controller);
+	}
+
+	/*
+	 * Adds a location holding a command compiled without the index processor
+	 */
+	private URLClassLoader mixedLocationsClassLoader() throws Exception {
+		File unindexed = folder.newFolder("unindexed");
+		compile(Collections.singletonList(writeSource(folder.newFolder("src-unindexed"), "ThirdCommand",
+				"@InteractionCommandImpl(name = \"third\") public class ThirdCommand implements InteractionCommand {"
+				+ " public Result execute(InteractionContext ctx) { return Result.SUCCESS; } }")), unindexed, false);
+		assertFalse(new File(unindexed, InteractionCommandIndexProcessor.INDEX_RESOURCE).exists());
+		return new URLClassLoader(new URL[] { classes.toURI().toURL(), unindexed.toURI().toURL() }, getClass().getClassLoader());
+	}
+
+	private void assertIndexedAndUnindexedCommandsFound(CacheExposingController controller) {
+		assertNotNull(controller.fetchCommand("third"));
+		// only the location without an index was scanned
+		assertEquals(1, controller.getCachedCommands().size());
+		assertNotNull(controller.fetchCommand("first"));
+		assertTrue(controller.isValidCommand("second"));
+		assertEquals(3, controller.getCachedCommands().size());
+	}
+
+	private static class CacheExposingController extends AnnotationBasedCommandController {
+
+		CacheExposingController(ClassLoader classloader) {
+			super(classloader);
+		}
+
+		Map<String, InteractionCommand> getCachedCommands() {
+			return cache;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.temenos.interaction.core.command;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Test;
+
+import com.temenos.interaction.core.command.InteractionCommand.Result;
+import com.temenos.interaction.core.web.RequestContext;
+
+public class TestAsyncCommandHelper {
+
+	@Test
+	public void testBlockingCommandExecutedOnCallingThread() throws Exception {
+		InteractionCommand command = mock(InteractionCommand.class);
+		when(command.execute(any(InteractionContext.class))).thenReturn(Result.SUCCESS);
+		CompletionStage<Result> result = AsyncCommandHelper.executeAsync(command, mock(InteractionContext.class));
+		assertTrue(result.toCompletableFuture().isDone());
+		assertEquals(Result.SUCCESS, AsyncCommandHelper.await(result));
+	}
+
+	@Test
+	public void testAwaitThrowsCommandException() throws Exception {
+		InteractionException notFound = new InteractionException(Status.NOT_FOUND);
+		InteractionCommand command = mock(InteractionCommand.class);
+		when(command.execute(any(InteractionContext.class))).thenThrow(notFound);
+		try {
+			AsyncCommandHelper.await(AsyncCommandHelper.executeAsync(command, mock(InteractionContext.class)));
+			fail("InteractionException expected");
+		} catch (InteractionException e) {
+			assertSame(notFound, e);
+		}
+	}
+
+	@Test
+	public void testAdapterExecutor() throws Exception {
+		final Thread caller = Thread.currentThread();
+		InteractionCommand command = new InteractionCommand() {
+			@Override
+			public Result execute(InteractionContext ctx) {
+				return Thread.currentThread() != caller ? Result.SUCCESS : Result.FAILURE;
+			}
+		};
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CompletionStage<Result> result = new BlockingCommandAdapter(command, executor).executeAsync(mock(InteractionContext.class));
+			assertEquals(Result.SUCCESS, AsyncCommandHelper.await(result));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testAdapterKeepsRequestContextOnCallingThread() throws Exception {
+		final RequestContext requestContext = new RequestContext("/base", "/base/a", null);
+		final RequestContext[] seen = new RequestContext[1];
+		InteractionCommand command = new InteractionCommand() {
+			@Override
+			public Result execute(InteractionContext ctx) {
+				seen[0] = RequestContext.getRequestContext();
+				return Result.SUCCESS;
+			}
+		};
+		Executor sameThread = new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				task.run();
+			}
+		};
+		RequestContext.setRequestContext(requestContext);
+		try {
+			CompletionStage<Result> result = new BlockingCommandAdapter(command, sameThread).executeAsync(mock(InteractionContext.class));
+			assertEquals(Result.SUCCESS, AsyncCommandHelper.await(result));
+			assertSame(requestContext, seen[0]);
+			assertSame(requestContext, RequestContext.getRequestContext());
+		} finally {
+			RequestContext.clearRequestContext();
+		}
+	}
+}
@@ -5,6 +5,10 @@ package com.temenos.interaction.core.command;
  *******************************************************************************/
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Matchers.startsWith;
 import static org.hamcrest.CoreMatchers.notNullValue;
@@ -12,6 +16,7 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.CoreMatchers.equalTo;
 
 import java.util.Arrays;
+import java.util.Collections;
 
 import org.junit.After;
 import org.junit.Before;
@@ -69,4 +74,78 @@ public class TestChainingCommandController {
 		assertThat(this.controller.isValidCommand("notAValidCommand"), equalTo(false));
 	}
 	
+	@Test
+	public void testResolvedControllerCached() {
+		CommandController other = mock(CommandController.class);
+		this.controller.setCommandControllers(Arrays.asList(other, this.commandController));
+		assertThat(this.controller.fetchCommand("testCommand1"), notNullValue());
+		assertThat(this.controller.fetchCommand("testCommand1"), notNullValue());
+		assertThat(this.controller.isValidCommand("testCommand1"), equalTo(true));
+		verify(other, times(1)).fetchCommand("testCommand1");
+		verify(other, never()).isValidCommand("testCommand1");
+		verify(this.commandController, times(2)).fetchCommand("testCommand1");
+		verify(this.commandController, times(1)).isValidCommand("testCommand1");
+	}
+
+	@Test
+	public void testMissingCommandCached() {
+		assertThat(this.controller.fetchCommand("notAValidCommand"), nullValue());
+		assertThat(this.controller.fetchCommand("notAValidCommand"), nullValue());
+		assertThat(this.controller.isValidCommand("notAValidCommand"), equalTo(false));
+		verify(this.commandController, times(1)).fetchCommand("notAValidCommand");
+		verify(this.commandController, never()).isValidCommand("notAValidCommand");
+	}
+
+	@Test
+	public void testCommandRegisteredAfterMiss() {
+		MapBasedCommandController mapController = new MapBasedCommandController();
+		this.controller.setCommandControllers(Arrays.asList(mapController, this.commandController));
+		assertThat(this.controller.fetchCommand("newCommand"), nullValue());
+		assertThat(this.controller.isValidCommand("newCommand"), equalTo(false));
+		mapController.getCommandMap().put("newCommand", new TestCommand());
+		this.controller.refresh(null);
+		assertThat(this.controller.isValidCommand("newCommand"), equalTo(true));
+		assertThat(this.controller.fetchCommand("newCommand"), notNullValue());
+	}
+
+	@Test
+	public void testCommandControllerAddedAfterMiss() {
+		assertThat(this.controller.fetchCommand("newCommand"), nullValue());
+		MapBasedCommandController mapController = new MapBasedCommandController(
+				Collections.<String, InteractionCommand>singletonMap("newCommand", new TestCommand()));
+		this.controller.setCommandControllers(Arrays.asList(mapController, this.commandController));
+		assertThat(this.controller.fetchCommand("newCommand"), notNullValue());
+	}
+
+	@Test
+	public void testRemovedCommandNotCached() {
+		assertThat(this.controller.isValidCommand("testCommand1"), equalTo(true));
+		assertThat(this.controller.fetchCommand("testCommand1"), notNullValue());
+		when(this.commandController.isValidCommand("testCommand1")).thenReturn(false);
+		when(this.commandController.fetchCommand("testCommand1")).thenReturn(null);
+		assertThat(this.controller.isValidCommand("testCommand1"), equalTo(false));
+		assertThat(this.controller.fetchCommand("testCommand1"), nullValue());
+	}
+
+	@Test
+	public void testRefresh() {
+		CommandController first = mock(CommandController.class);
+		this.controller.setCommandControllers(Arrays.asList(first, this.commandController));
+		assertThat(this.controller.isValidCommand("testCommand1"), equalTo(true));
+		when(first.isValidCommand("testCommand1")).thenReturn(true);
+		this.controller.isValidCommand("testCommand1");
+		verify(first, times(1)).isValidCommand("testCommand1");
+		this.controller.refresh(null);
+		assertThat(this.controller.isValidCommand("testCommand1"), equalTo(true));
+		verify(first, times(2)).isValidCommand("testCommand1");
+	}
+
+	@Test
+	public void testSetCommandControllersDropsCache() {
+		assertThat(this.controller.isValidCommand("testCommand1"), equalTo(true));
+		this.controller.setCommandControllers(Collections.<CommandController>emptyList());
+		assertThat(this.controller.isValidCommand("testCommand1"), equalTo(false));
+		assertThat(this.controller.fetchCommand("testCommand1"), nullValue());
+	}
+
 }
@@ -107,4 +107,51 @@ public class PathTreeTest {
         
         pathTree.remove("/{id}/profile", "POST");
     }        
-}
\ No newline at end of file
+
+    @Test
+    public void testGetAfterPut() {
+        PathTree pathTree = new PathTree();
+        pathTree.put("/{id}/profile", "GET", "Profile Resource");
+        assertNull(pathTree.get("/123/details"));
+        
+        pathTree.put("/{id}/details", "GET", "Details Resource");
+        
+        assertEquals("Details Resource", pathTree.get("/123/details").get("GET"));
+        assertEquals("Profile Resource", pathTree.get("/123/profile").get("GET"));
+    }
+
+    @Test
+    public void testGetAfterRemove() {
+        PathTree pathTree = new PathTree();
+        pathTree.put("/customers('{id}')", "GET", "Customer");
+        pathTree.put("/customers('{id}')", "PUT", "Update Customer");
+        assertEquals(2, pathTree.get("/customers('100')").size());
+        
+        pathTree.remove("/customers('{id}')", "PUT");
+        
+        Map<String,String> httpMethodToState = pathTree.get("/customers('100')");
+        assertEquals(1, httpMethodToState.size());
+        assertEquals("Customer", httpMethodToState.get("GET"));
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testResultIsUnmodifiable() {
+        PathTree pathTree = new PathTree();
+        pathTree.put("/europe/uk/london", "GET", "London");
+        pathTree.get("/europe/uk/london").remove("GET");
+    }
+
+    @Test
+    public void testLiteralsResolvedRegardlessOfInsertionOrder() {
+        PathTree pathTree = new PathTree(2);
+        pathTree.put("/zoo", "GET", "Zoo");
+        pathTree.put("/apple", "GET", "Apple");
+        pathTree.put("/mango", "GET", "Mango");
+        
+        for (int i = 0; i < 3; i++) {
+            assertEquals("Zoo", pathTree.get("/zoo").get("GET"));
+            assertEquals("Apple", pathTree.get("/apple").get("GET"));
+            assertEquals("Mango", pathTree.get("/mango").get("GET"));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.temenos.interaction.core.hypermedia;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TestBeanAccessors {
+
+	@Test
+	public void testSameAccessorsForClass() {
+		assertSame(BeanAccessors.of(TestBean.class), BeanAccessors.of(TestBean.class));
+	}
+
+	@Test
+	public void testReadMethods() throws Exception {
+		Map<String, Method> readMethods = BeanAccessors.of(Booking.class).getReadMethods();
+		assertTrue(readMethods.containsKey("bookingId"));
+		assertTrue(readMethods.containsKey("class"));
+		assertEquals("123", readMethods.get("bookingId").invoke(new Booking("123")));
+	}
+
+	@Test
+	public void testGetMethod() throws Exception {
+		BeanAccessors accessors = BeanAccessors.of(Booking.class);
+		Method method = accessors.getMethod("getBookingId");
+		assertSame(method, accessors.getMethod("getBookingId"));
+		assertEquals("123", method.invoke(new Booking("123")));
+		assertEquals("toString", accessors.getMethod("toString").getName());
+	}
+
+	@Test(expected = NoSuchMethodException.class)
+	public void testGetMissingMethod() throws Exception {
+		BeanAccessors accessors = BeanAccessors.of(Booking.class);
+		try {
+			accessors.getMethod("getNothing");
+		} catch (NoSuchMethodException e) {
+			assertFalse(e.getMessage().isEmpty());
+		}
+		// the missing method is cached too
+		accessors.getMethod("getNothing");
+	}
+}
@@ -0,0 +1,93 @@
+package com.temenos.interaction.core.hypermedia;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.ws.rs.core.UriBuilder;
+
+import org.junit.Test;
+
+public class TestLinkTemplate {
+
+	/*
+	 * Compiled paths must render the same href as the UriBuilder.
+	 */
+	@Test
+	public void testAppendPathSameAsUriBuilder() throws Exception {
+		String[] basePaths = { "/baseuri", "/baseuri/", "http://localhost:8080/example/api", "http://localhost:8080/example/api/" };
+		String[] paths = { "/notes", "notes", "/notes/{id}", "/notes({id})/notes({noteId})/", "/", "/a;b=c/{id}" };
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("id", URLEncoder.encode("A B/C'(1)+é", "UTF-8"));
+		values.put("noteId", URLEncoder.encode("123", "UTF-8"));
+		for (String basePath : basePaths) {
+			for (String path : paths) {
+				LinkTemplate template = new LinkTemplate(path, null);
+				assertTrue(template.isCompiled());
+				StringBuilder href = new StringBuilder(basePath);
+				assertTrue(template.appendPath(href, values));
+				String expected = UriBuilder.fromUri(basePath).path(path).buildFromEncodedMap(values).toASCIIString();
+				assertEquals(expected, href.toString());
+			}
+		}
+	}
+
+	@Test
+	public void testAppendPathMissingValue() {
+		LinkTemplate template = new LinkTemplate("/notes/{id}", null);
+		assertFalse(template.appendPath(new StringBuilder("/baseuri"), new HashMap<String, Object>()));
+	}
+
+	@Test
+	public void testNotCompiled() {
+		assertFalse(new LinkTemplate("/notes/{id: [0-9]+}", null).isCompiled());
+		assertFalse(new LinkTemplate("/notes with space/{id}", null).isCompiled());
+		assertFalse(new LinkTemplate(null, null).isCompiled());
+	}
+
+	@Test
+	public void testQueryParameters() {
+		Map<String, String> uriParameters = new LinkedHashMap<String, String>();
+		uriParameters.put("id", "{noteId}");
+		uriParameters.put("filter", "title eq '{title}'");
+		uriParameters.put("type", "note");
+		LinkTemplate template = new LinkTemplate("/notes/{id}", uriParameters);
+
+		assertTrue(template.isPathVariable("id"));
+		assertFalse(template.isPathVariable("filter"));
+		assertEquals(Arrays.asList("filter", "type"), new ArrayList<String>(template.getQueryParameters().keySet()));
+
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put("title", "abc");
+		assertEquals("title eq 'abc'", template.resolveQueryParameter("filter", properties));
+		assertEquals("note", template.resolveQueryParameter("type", properties));
+	}
+
+	@Test
+	public void testTransitionRecompilesOnNewTarget() {
+		ResourceState notes = new ResourceState("NOTE", "notes", new ArrayList<Action>(), "/notes");
+		ResourceState note = new ResourceState("NOTE", "note", new ArrayList<Action>(), "/notes/{id}");
+		Transition t = new Transition.Builder().source(notes).target(notes).build();
+
+		LinkTemplate first = t.getLinkTemplate();
+		assertSame(first, t.getLinkTemplate());
+		t.setTarget(note);
+		LinkTemplate second = t.getLinkTemplate();
+		assertNotSame(first, second);
+		assertEquals("/notes/{id}", second.getPath());
+	}
+}
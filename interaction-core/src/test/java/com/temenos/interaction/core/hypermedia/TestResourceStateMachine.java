@@ -8,6 +8,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyObject;
@@ -47,6 +48,7 @@ import org.odata4j.edm.EdmComplexType;
 import org.odata4j.edm.EdmEntitySet;
 
 import com.temenos.interaction.core.MultivaluedMapImpl;
+import com.temenos.interaction.core.command.BatchInteractionCommand;
 import com.temenos.interaction.core.command.CommandController;
 import com.temenos.interaction.core.command.InteractionCommand;
 import com.temenos.interaction.core.command.InteractionCommand.Result;
@@ -580,6 +582,26 @@ public class TestResourceStateMachine {
         assertTrue(stateMap.get("/entity/draft").contains(draftDeleted));
     }
 
+    @Test
+    public void testGetResourceStatesByPathRepublishesChangedPaths() {
+        ResourceState initial = new ResourceState("", "initial", new ArrayList<Action>(), "/entity");
+        ResourceState draft = new ResourceState(initial, "draft", new ArrayList<Action>(), "/draft");
+        initial.addTransition(new Transition.Builder().method("PUT").target(draft).build());
+        ResourceStateMachine sm = new ResourceStateMachine(initial);
+
+        // nothing to republish for states already registered
+        Map<String, Set<ResourceState>> stateMap = sm.getResourceStatesByPath(initial);
+        assertSame(stateMap, sm.getResourceStatesByPath(draft));
+
+        // only the path of the new state changes
+        ResourceState other = new ResourceState("", "other", new ArrayList<Action>(), "/other");
+        Map<String, Set<ResourceState>> otherMap = sm.getResourceStatesByPath(other);
+        assertEquals(3, otherMap.size());
+        assertTrue(otherMap.containsKey("/other"));
+        assertSame(stateMap.get("/entity"), otherMap.get("/entity"));
+        assertSame(stateMap.get("/entity/draft"), otherMap.get("/entity/draft"));
+    }
+
     @Test
     public void testGetInteractionsByState() {
         String entityName = "Note";
@@ -1576,6 +1598,142 @@ public class TestResourceStateMachine {
         assertEquals("BOOKING.initial>PUT>BOOKING.psuedo_assignroom", links.get(2).getId());
     }
 
+    /*
+     * Test the resources embedded in each entity of a collection are obtained with one invocation of a batch command
+     * per batch of entities.
+     */
+    @Test
+    public void testEmbeddedForEachBatch() {
+        ResourceState noteResource = new ResourceState("NOTE", "item", mockActions(new Action("GETNote", Action.TYPE.VIEW)), "/notes/{noteId}", "item".split(" "));
+        CountingBatchCommand batchCommand = new CountingBatchCommand();
+        List<EntityResource<Entity>> entities = new ArrayList<EntityResource<Entity>>();
+        ResourceStateMachine stateMachine = createEmbeddedForEachStateMachine(noteResource, batchCommand, entities);
+        stateMachine.setEmbedBatchSize(2);
+        CommandController commandController = new MapBasedCommandController(Collections.<String, InteractionCommand>singletonMap("GETNote", batchCommand));
+        HTTPHypermediaRIM rimHandler = new HTTPHypermediaRIM(commandController, stateMachine, mockNoteMetadata());
+
+        CollectionResource<Entity> collection = new CollectionResource<Entity>("notes", entities);
+        stateMachine.injectLinks(rimHandler, createMockInteractionContext(stateMachine.getInitial()), collection, mock(HttpHeaders.class), mockNoteMetadata());
+
+        assertEquals(2, batchCommand.batches);
+        assertEquals(0, batchCommand.singles);
+        for (EntityResource<Entity> er : entities) {
+            assertNotNull(er.getEmbedded());
+            assertEquals(1, er.getEmbedded().size());
+            Entity embedded = (Entity) ((EntityResource<?>) er.getEmbedded().values().iterator().next()).getEntity();
+            assertEquals(er.getEntity().getProperties().getProperty("noteId").getValue(), embedded.getProperties().getProperty("noteId").getValue());
+        }
+    }
+
+    /*
+     * Test the resources embedded in each entity of a collection are requested in turn when the target state has
+     * more than one action.
+     */
+    @Test
+    public void testEmbeddedForEachSingle() {
+        ResourceState noteResource = new ResourceState("NOTE", "item", mockActions(new Action("GETNote", Action.TYPE.VIEW), new Action("GETNote", Action.TYPE.VIEW)), "/notes/{noteId}", "item".split(" "));
+        CountingBatchCommand batchCommand = new CountingBatchCommand();
+        List<EntityResource<Entity>> entities = new ArrayList<EntityResource<Entity>>();
+        ResourceStateMachine stateMachine = createEmbeddedForEachStateMachine(noteResource, batchCommand, entities);
+        CommandController commandController = new MapBasedCommandController(Collections.<String, InteractionCommand>singletonMap("GETNote", batchCommand));
+        HTTPHypermediaRIM rimHandler = new HTTPHypermediaRIM(commandController, stateMachine, mockNoteMetadata());
+
+        CollectionResource<Entity> collection = new CollectionResource<Entity>("notes", entities);
+        stateMachine.injectLinks(rimHandler, createMockInteractionContext(stateMachine.getInitial()), collection, mock(HttpHeaders.class), mockNoteMetadata());
+
+        assertEquals(0, batchCommand.batches);
+        assertEquals(6, batchCommand.singles);
+        for (EntityResource<Entity> er : entities) {
+            assertNotNull(er.getEmbedded());
+            assertEquals(1, er.getEmbedded().size());
+        }
+    }
+
+    /*
+     * Test a batch command not returning a result for each entity fails the batch rather than the request.
+     */
+    @Test
+    public void testEmbeddedForEachBatchMissingResults() {
+        ResourceState noteResource = new ResourceState("NOTE", "item", mockActions(new Action("GETNote", Action.TYPE.VIEW)), "/notes/{noteId}", "item".split(" "));
+        CountingBatchCommand batchCommand = new CountingBatchCommand() {
+            @Override
+            public List<Result> executeAll(List<InteractionContext> ctxs) {
+                return super.executeAll(ctxs).subList(1, ctxs.size());
+            }
+        };
+        List<EntityResource<Entity>> entities = new ArrayList<EntityResource<Entity>>();
+        ResourceStateMachine stateMachine = createEmbeddedForEachStateMachine(noteResource, batchCommand, entities);
+        CommandController commandController = new MapBasedCommandController(Collections.<String, InteractionCommand>singletonMap("GETNote", batchCommand));
+        HTTPHypermediaRIM rimHandler = new HTTPHypermediaRIM(commandController, stateMachine, mockNoteMetadata());
+
+        CollectionResource<Entity> collection = new CollectionResource<Entity>("notes", entities);
+        stateMachine.injectLinks(rimHandler, createMockInteractionContext(stateMachine.getInitial()), collection, mock(HttpHeaders.class), mockNoteMetadata());
+
+        assertEquals(1, batchCommand.batches);
+        for (EntityResource<Entity> er : entities) {
+            assertNull(er.getEmbedded());
+        }
+    }
+
+    private ResourceStateMachine createEmbeddedForEachStateMachine(ResourceState noteResource, CountingBatchCommand batchCommand, List<EntityResource<Entity>> entities) {
+        CollectionResourceState notesResource = new CollectionResourceState("NOTE", "collection", new ArrayList<Action>(), "/notes");
+        Map<String, String> uriLinkageMap = new HashMap<String, String>();
+        uriLinkageMap.put("noteId", "{noteId}");
+        notesResource.addTransition(new Transition.Builder().flags(Transition.FOR_EACH_EMBEDDED).method("GET").target(noteResource).uriParameters(uriLinkageMap).build());
+        for (String id : "1 2 6".split(" ")) {
+            EntityProperties properties = new EntityProperties();
+            properties.setProperty(new EntityProperty("noteId", id));
+            entities.add(new EntityResource<Entity>(new Entity("NOTE", properties)));
+        }
+        return new ResourceStateMachine(notesResource, new EntityTransformer());
+    }
+
+    private Metadata mockNoteMetadata() {
+        EntityMetadata entityMetadata = mock(EntityMetadata.class);
+        when(entityMetadata.getIdFields()).thenReturn(Collections.singletonList("noteId"));
+        Metadata metadata = mock(Metadata.class);
+        when(metadata.getEntityMetadata(anyString())).thenReturn(entityMetadata);
+        return metadata;
+    }
+
+    private List<Action> mockActions(Action... actions) {
+        List<Action> list = new ArrayList<Action>();
+        Collections.addAll(list, actions);
+        return list;
+    }
+
+    /*
+     * Returns an entity holding the id of the requested note.
+     */
+    private static class CountingBatchCommand implements BatchInteractionCommand {
+        int batches;
+        int singles;
+
+        @Override
+        public Result execute(InteractionContext ctx) {
+            singles++;
+            setNote(ctx);
+            return Result.SUCCESS;
+        }
+
+        @Override
+        public List<Result> executeAll(List<InteractionContext> ctxs) {
+            batches++;
+            List<Result> results = new ArrayList<Result>();
+            for (InteractionContext ctx : ctxs) {
+                setNote(ctx);
+                results.add(Result.SUCCESS);
+            }
+            return results;
+        }
+
+        private void setNote(InteractionContext ctx) {
+            EntityProperties properties = new EntityProperties();
+            properties.setProperty(new EntityProperty("noteId", ctx.getPathParameters().getFirst("noteId")));
+            ctx.setResource(new EntityResource<Entity>(new Entity("NOTE", properties)));
+        }
+    }
+
     /*
      * We use links (hypermedia) for controlling / describing application state. Test we return the links for the
      * collection itself.
@@ -2190,6 +2348,36 @@ public class TestResourceStateMachine {
         assertEquals("created", sm.determineState(new Event("POST", "POST"), "/entity/created").getName());
     }
 
+    @Test
+    public void testDetermineStateAfterRegisterAndUnregister() {
+        String ENTITY_NAME = "";
+        ResourceState initial = new ResourceState(ENTITY_NAME, "initial", new ArrayList<Action>(), "/entity");
+        List<Action> actions = new ArrayList<Action>();
+        actions.add(new Action("GETEntity", Action.TYPE.VIEW));
+        actions.add(new Action("UpdateEntity", Action.TYPE.ENTRY));
+        ResourceState note = new ResourceState(ENTITY_NAME, "note", actions, "/notes('{id}')");
+
+        ResourceStateMachine sm = new ResourceStateMachine(initial);
+        assertNull(sm.determineState(new Event("GET", "GET"), "/notes('{id}')"));
+        assertNull(sm.determineAction(new Event("GET", "GET"), "/notes('{id}')"));
+
+        sm.register(note, "PUT");
+        assertEquals(note, sm.determineState(new Event("PUT", "PUT"), "/notes('{id}')"));
+        assertNull(sm.determineState(new Event("GET", "GET"), "/notes('{id}')"));
+        assertEquals(1, sm.getResourceStatesForPath("/notes('{id}')").size());
+
+        sm.unregister(note, "PUT");
+        assertNull(sm.determineState(new Event("PUT", "PUT"), "/notes('{id}')"));
+        assertEquals(0, sm.getResourceStatesForPath("/notes('{id}')").size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testResourceStatesByPathIsUnmodifiable() {
+        ResourceState initial = new ResourceState("", "initial", new ArrayList<Action>(), "/entity");
+        ResourceStateMachine sm = new ResourceStateMachine(initial);
+        sm.getResourceStatesByPath().remove("/entity");
+    }
+
     @Test
     public void testGetTransitionProperties() {
         // Create RSM
@@ -5,14 +5,18 @@ package com.temenos.interaction.core.hypermedia.expression;
  *******************************************************************************/
 
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +37,8 @@ import com.temenos.interaction.core.command.InteractionContext;
 import com.temenos.interaction.core.command.InteractionException;
 import com.temenos.interaction.core.command.NewCommandController;
 import com.temenos.interaction.core.command.NoopGETCommand;
+import com.temenos.interaction.core.entity.Entity;
+import com.temenos.interaction.core.entity.EntityProperties;
 import com.temenos.interaction.core.entity.EntityMetadata;
 import com.temenos.interaction.core.entity.Metadata;
 import com.temenos.interaction.core.hypermedia.Action;
@@ -41,6 +47,7 @@ import com.temenos.interaction.core.hypermedia.ResourceState;
 import com.temenos.interaction.core.hypermedia.ResourceStateMachine;
 import com.temenos.interaction.core.hypermedia.Transition;
 import com.temenos.interaction.core.hypermedia.expression.ResourceGETExpression.Function;
+import com.temenos.interaction.core.resource.EntityResource;
 import com.temenos.interaction.core.rim.HTTPHypermediaRIM;
 import com.temenos.interaction.core.web.RequestContext;
 
@@ -159,4 +166,45 @@ public class TestResourceGETExpression {
 		assertFalse("We did a GET on 'pconfirmed' and it was OK(200), therefore NOT_FOUND link condition evaluates to 'false'", result2);
 	}
 	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testIdenticalProbesGETOnce() throws InteractionException {
+		HTTPHypermediaRIM rimHandler = mockRimHandler();
+		ResourceStateMachine rsm = rimHandler.getHypermediaEngine();
+		NewCommandController cc = new NewCommandController();
+		InteractionCommand notfound = mock(InteractionCommand.class);
+		when(notfound.execute(any(InteractionContext.class))).thenReturn(Result.FAILURE);
+		cc.addCommand("notfound", notfound);
+		rsm.setCommandController(cc);
+		InteractionContext ctx = new InteractionContext(mock(UriInfo.class), mock(HttpHeaders.class), mock(MultivaluedMap.class), mock(MultivaluedMap.class), rsm.getInitial(), mock(Metadata.class));
+
+		ResourceGETExpression rgeOK = new ResourceGETExpression(rsm.getResourceStateByName("pwaiting"), Function.OK);
+		ResourceGETExpression rgeNOT_FOUND = new ResourceGETExpression(rsm.getResourceStateByName("pwaiting"), Function.NOT_FOUND);
+		assertFalse(rgeOK.evaluate(rimHandler, ctx, null));
+		assertTrue(rgeNOT_FOUND.evaluate(rimHandler, ctx, null));
+		verify(notfound, times(1)).execute(any(InteractionContext.class));
+		assertEquals(1, ExpressionEvaluationCache.get(ctx).size());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testEvaluateAll() throws InteractionException {
+		HTTPHypermediaRIM rimHandler = mockRimHandler();
+		ResourceStateMachine rsm = rimHandler.getHypermediaEngine();
+		NewCommandController cc = new NewCommandController();
+		InteractionCommand notfound = mock(InteractionCommand.class);
+		when(notfound.execute(any(InteractionContext.class))).thenReturn(Result.FAILURE);
+		cc.addCommand("notfound", notfound);
+		rsm.setCommandController(cc);
+		InteractionContext ctx = new InteractionContext(mock(UriInfo.class), mock(HttpHeaders.class), mock(MultivaluedMap.class), mock(MultivaluedMap.class), rsm.getInitial(), mock(Metadata.class));
+
+		List<EntityResource<Entity>> entities = Arrays.asList(
+				new EntityResource<Entity>(new Entity("Booking", new EntityProperties())),
+				new EntityResource<Entity>(new Entity("Booking", new EntityProperties())),
+				new EntityResource<Entity>(new Entity("Booking", new EntityProperties())));
+		ResourceGETExpression rgeNOT_FOUND = new ResourceGETExpression(rsm.getResourceStateByName("pwaiting"), Function.NOT_FOUND);
+		assertEquals(Arrays.asList(true, true, true), rgeNOT_FOUND.evaluateAll(rimHandler, ctx, entities));
+		verify(notfound, times(1)).execute(any(InteractionContext.class));
+	}
+
 }
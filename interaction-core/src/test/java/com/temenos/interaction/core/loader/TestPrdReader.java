@@ -0,0 +1,223 @@
+package com.temenos.interaction.core.loader;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import com.temenos.interaction.core.hypermedia.Action;
+import com.temenos.interaction.core.hypermedia.CollectionResourceState;
+import com.temenos.interaction.core.hypermedia.DynamicResourceState;
+import com.temenos.interaction.core.hypermedia.LazyResourceState;
+import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.hypermedia.expression.SimpleLogicalExpressionEvaluator;
+import com.temenos.interaction.core.loader.PrdReader.UnsupportedPrdException;
+
+public class TestPrdReader {
+
+    static final String GENERATED_BEANS =
+            "<bean id=\"Test-accounts\" class=\"com.temenos.interaction.core.hypermedia.CollectionResourceState\">"
+            + "  <constructor-arg name=\"entityName\" value=\"Account\" />"
+            + "  <constructor-arg name=\"name\" value=\"accounts\" />"
+            + "  <constructor-arg><list>"
+            + "    <bean class=\"com.temenos.interaction.core.hypermedia.Action\">"
+            + "      <constructor-arg value=\"GETEntities\" /><constructor-arg value=\"VIEW\" />"
+            + "      <constructor-arg><props><prop key=\"filter\">  Id eq '1'  </prop></props></constructor-arg>"
+            + "    </bean>"
+            + "    <bean class=\"com.temenos.interaction.core.hypermedia.Action\">"
+            + "      <constructor-arg name=\"name\" value=\"CreateEntity\" /><constructor-arg name=\"type\" value=\"ENTRY\" />"
+            + "      <constructor-arg name=\"props\"><null /></constructor-arg><constructor-arg name=\"method\" value=\"POST\" />"
+            + "    </bean>"
+            + "  </list></constructor-arg>"
+            + "  <constructor-arg name=\"path\" value=\"/Accounts\" />"
+            + "  <constructor-arg name=\"rels\"><null /></constructor-arg>"
+            + "  <constructor-arg name=\"uriSpec\"><bean class=\"com.temenos.interaction.core.hypermedia.UriSpecification\">"
+            + "    <constructor-arg name=\"name\" value=\"accounts\" /><constructor-arg name=\"template\" value=\"/Accounts\" />"
+            + "  </bean></constructor-arg>"
+            + "  <property name=\"initial\" value=\"true\" />"
+            + "  <property name=\"errorState\" ref=\"Test-error\" />"
+            + "  <property name=\"maxAge\" value=\"60\" />"
+            + "  <property name=\"transitions\"><list>"
+            + "    <bean class=\"com.temenos.interaction.springdsl.TransitionFactoryBean\">"
+            + "      <property name=\"flags\"><util:constant static-field=\"com.temenos.interaction.core.hypermedia.Transition.FOR_EACH\"/></property>"
+            + "      <property name=\"method\" value=\"GET\" />"
+            + "      <property name=\"target\"><bean class=\"com.temenos.interaction.core.hypermedia.LazyResourceState\">"
+            + "        <constructor-arg name=\"name\" value=\"Test-account\" /></bean></property>"
+            + "      <property name=\"uriParameters\"><util:map><entry key=\"id\" value=\"{Id}\"/></util:map></property>"
+            + "      <property name=\"evaluation\">"
+            + "        <bean class=\"com.temenos.interaction.core.hypermedia.expression.SimpleLogicalExpressionEvaluator\">"
+            + "          <constructor-arg name=\"expressions\"><util:list>"
+            + "            <bean class=\"com.temenos.interaction.core.hypermedia.expression.ResourceGETExpression\">"
+            + "              <constructor-arg name=\"target\"><bean class=\"com.temenos.interaction.core.hypermedia.LazyResourceState\">"
+            + "                <constructor-arg name=\"name\" value=\"Test-account\" /></bean></constructor-arg>"
+            + "              <constructor-arg name=\"function\"><util:constant static-field=\"com.temenos.interaction.core.hypermedia.expression.ResourceGETExpression.Function.OK\"/></constructor-arg>"
+            + "            </bean>"
+            + "          </util:list></constructor-arg>"
+            + "        </bean>"
+            + "      </property>"
+            + "      <property name=\"label\" value=\"account\" />"
+            + "      <property name=\"linkId\" value=\"123\" />"
+            + "    </bean>"
+            + "    <bean class=\"com.temenos.interaction.springdsl.TransitionFactoryBean\">"
+            + "      <property name=\"method\" value=\"GET\" />"
+            + "      <property name=\"target\"><bean class=\"com.temenos.interaction.core.hypermedia.DynamicResourceState\">"
+            + "        <constructor-arg name=\"entityName\" value=\"Account\" /><constructor-arg name=\"name\" value=\"dynamic\" />"
+            + "        <constructor-arg name=\"resourceLocatorName\" value=\"locator\" />"
+            + "        <constructor-arg name=\"resourceLocatorArgs\"><value type=\"java.lang.String[]\">a,b</value></constructor-arg>"
+            + "      </bean></property>"
+            + "      <property name=\"uriParameters\" ref=\"uriLinkageMap\" />"
+            + "    </bean>"
+            + "  </list></property>"
+            + "</bean>"
+            + "<util:map id=\"uriLinkageMap\"><entry key=\"id\" value=\"{id}\"/></util:map>"
+            + "<bean id=\"Test-error\" class=\"com.temenos.interaction.core.hypermedia.ResourceState\">"
+            + "  <constructor-arg name=\"entityName\" value=\"Error\" />"
+            + "  <constructor-arg name=\"name\" value=\"error\" />"
+            + "  <constructor-arg><list/></constructor-arg>"
+            + "  <constructor-arg name=\"path\" value=\"/Error\" />"
+            + "  <constructor-arg name=\"rels\"><array><value><![CDATA[http://temenostech.temenos.com/rels/error]]></value></array></constructor-arg>"
+            + "  <property name=\"exception\" value=\"true\" />"
+            + "  <property name=\"transitions\"><list>"
+            + "    <bean class=\"com.temenos.interaction.springdsl.TransitionFactoryBean\">"
+            + "      <property name=\"method\" value=\"GET\" />"
+            + "      <property name=\"target\" ref=\"Test-accounts\" />"
+            + "    </bean>"
+            + "  </list></property>"
+            + "</bean>";
+
+    @Test
+    public void testReadGeneratedPrd() throws UnsupportedPrdException {
+        Map<String, ResourceState> states = PrdReader.read(prd(GENERATED_BEANS));
+        assertEquals(Arrays.asList("Test-accounts", "Test-error"), Arrays.asList(states.keySet().toArray()));
+
+        ResourceState accounts = states.get("Test-accounts");
+        assertTrue(accounts instanceof CollectionResourceState);
+        assertEquals("Account", accounts.getEntityName());
+        assertEquals("accounts", accounts.getName());
+        assertEquals("/Accounts", accounts.getPath());
+        assertEquals("collection", accounts.getRel());
+        assertEquals("/Accounts", accounts.getUriSpecification().getTemplate());
+        assertTrue(accounts.isInitial());
+        assertEquals(60, accounts.getMaxAge());
+
+        Action view = accounts.getActions().get(0);
+        assertEquals(Action.TYPE.VIEW, view.getType());
+        // Spring trims props
+        assertEquals("Id eq '1'", view.getProperties().getProperty("filter"));
+        Action create = accounts.getActions().get(1);
+        assertEquals("CreateEntity", create.getName());
+        assertEquals("POST", create.getMethod());
+        assertNull(create.getProperties());
+
+        Transition item = accounts.getTransitions().get(0);
+        assertSame(accounts, item.getSource());
+        assertEquals(Transition.FOR_EACH, item.getCommand().getFlags());
+        assertEquals("GET", item.getCommand().getMethod());
+        assertTrue(item.getTarget() instanceof LazyResourceState);
+        assertEquals("Test-account", item.getTarget().getName());
+        assertEquals(Collections.singletonMap("id", "{Id}"), item.getCommand().getUriParameters());
+        assertTrue(item.getCommand().getEvaluation() instanceof SimpleLogicalExpressionEvaluator);
+        assertEquals("account", item.getLabel());
+        assertEquals("123", item.getLinkId());
+
+        Transition dynamic = accounts.getTransitions().get(1);
+        assertTrue(dynamic.getTarget() instanceof DynamicResourceState);
+        assertArrayEquals(new String[] { "a", "b" }, ((DynamicResourceState) dynamic.getTarget()).getResourceLocatorArgs());
+        assertEquals(Collections.singletonMap("id", "{id}"), dynamic.getCommand().getUriParameters());
+
+        // References resolve to the same instances, even when circular
+        // through properties
+        ResourceState error = states.get("Test-error");
+        assertSame(error, accounts.getErrorState());
+        assertSame(accounts, error.getTransitions().get(0).getTarget());
+        assertTrue(error.isException());
+        assertEquals("http://temenostech.temenos.com/rels/error", error.getRel());
+    }
+
+    @Test
+    public void testLaterDefinitionsReplaceEarlierOnes() throws UnsupportedPrdException {
+        String first = state("Test-a", "first");
+        String second = state("Test-a", "second") + state("Test-b", "b");
+        Map<String, ResourceState> states = PrdReader.read(prd(first), prd(second));
+        assertEquals(2, states.size());
+        assertEquals("second", states.get("Test-a").getName());
+    }
+
+    @Test(expected = UnsupportedPrdException.class)
+    public void testUnsupportedBeanAttribute() throws UnsupportedPrdException {
+        PrdReader.read(prd("<bean id=\"a\" class=\"com.temenos.interaction.core.hypermedia.ResourceState\""
+                + " factory-method=\"create\" />"));
+    }
+
+    @Test(expected = UnsupportedPrdException.class)
+    public void testUnsupportedClass() throws UnsupportedPrdException {
+        PrdReader.read(prd("<bean id=\"a\" class=\"java.util.Date\" />"));
+    }
+
+    @Test(expected = UnsupportedPrdException.class)
+    public void testUnsupportedElement() throws UnsupportedPrdException {
+        PrdReader.read(prd("<import resource=\"other.xml\" />" + state("Test-a", "a")));
+    }
+
+    @Test(expected = UnsupportedPrdException.class)
+    public void testUndefinedReference() throws UnsupportedPrdException {
+        PrdReader.read(prd(state("Test-a", "a").replace("<property name=\"initial\" value=\"false\" />",
+                "<property name=\"errorState\" ref=\"missing\" />")));
+    }
+
+    @Test(expected = UnsupportedPrdException.class)
+    public void testAmbiguousConstructor() throws UnsupportedPrdException {
+        // A fifth argument without a name may be the path id parameter
+        PrdReader.read(prd(state("Test-a", "a").replace("<property",
+                "<constructor-arg type=\"java.lang.String\" index=\"4\" value=\"id\" /><property")));
+    }
+
+    @Test(expected = UnsupportedPrdException.class)
+    public void testCircularConstructorReference() throws UnsupportedPrdException {
+        // Spring fails the same way
+        PrdReader.read(prd(GENERATED_BEANS.replace("<property name=\"errorState\" ref=\"Test-error\" />", "")
+                .replace("<constructor-arg name=\"path\" value=\"/Accounts\" />",
+                        "<constructor-arg name=\"path\" value=\"/Accounts\" />"
+                        + "<constructor-arg name=\"errorState\" ref=\"Test-error\" />")));
+    }
+
+    @Test(expected = UnsupportedPrdException.class)
+    public void testMalformedXml() throws UnsupportedPrdException {
+        PrdReader.read(prd("<bean id=\"a\">"));
+    }
+
+    private static String state(String id, String name) {
+        return "<bean id=\"" + id + "\" class=\"com.temenos.interaction.core.hypermedia.ResourceState\">"
+                + "<constructor-arg index=\"0\" type=\"java.lang.String\" value=\"Test\" />"
+                + "<constructor-arg index=\"1\" type=\"java.lang.String\" value=\"" + name + "\" />"
+                + "<constructor-arg index=\"2\" type=\"java.util.List\"><util:list/></constructor-arg>"
+                + "<constructor-arg index=\"3\" type=\"java.lang.String\" value=\"/\" />"
+                + "<property name=\"initial\" value=\"false\" />"
+                + "</bean>";
+    }
+
+    static ByteArrayResource prd(String beans) {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<beans xmlns=\"http://www.springframework.org/schema/beans\""
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " xmlns:util=\"http://www.springframework.org/schema/util\""
+                + " xsi:schemaLocation=\"http://www.springframework.org/schema/beans"
+                + " http://www.springframework.org/schema/beans/spring-beans-3.0.xsd\""
+                + " default-lazy-init=\"true\">" + beans + "</beans>";
+        return new ByteArrayResource(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
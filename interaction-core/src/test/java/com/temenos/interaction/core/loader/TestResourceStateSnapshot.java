@@ -0,0 +1,193 @@
+package com.temenos.interaction.core.loader;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.temenos.interaction.core.hypermedia.Action;
+import com.temenos.interaction.core.hypermedia.DynamicResourceState;
+import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.hypermedia.expression.ResourceGETExpression;
+import com.temenos.interaction.core.hypermedia.expression.SimpleLogicalExpressionEvaluator;
+
+public class TestResourceStateSnapshot {
+
+    private static final String FILE_NAME = "IRIS-Test-PRD.xml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] xml = TestPrdReader.prd(TestPrdReader.GENERATED_BEANS).getByteArray();
+        Map<String, ResourceState> expected = PrdReader.read(TestPrdReader.prd(TestPrdReader.GENERATED_BEANS));
+        Properties bindings = new Properties();
+        bindings.setProperty("Test-accounts", "GET,POST /Accounts");
+        ResourceStateSnapshotWriter writer = new ResourceStateSnapshotWriter();
+        assertTrue(writer.addFile(FILE_NAME, xml, expected));
+        writer.addBindings(bindings);
+
+        ResourceStateSnapshot snapshot = ResourceStateSnapshot.open(write(writer));
+        assertEquals(Collections.singleton(FILE_NAME), snapshot.getFileNames());
+        assertEquals(bindings, snapshot.getBindings());
+        assertNull(snapshot.read("IRIS-Other-PRD.xml"));
+
+        Map<String, ResourceState> actual = snapshot.read(FILE_NAME);
+        assertEquals(new ArrayList<String>(expected.keySet()), new ArrayList<String>(actual.keySet()));
+        for (String id : expected.keySet()) {
+            assertSameState(expected.get(id), actual.get(id));
+        }
+
+        ResourceState accounts = actual.get("Test-accounts");
+        ResourceState error = actual.get("Test-error");
+        assertSame(error, accounts.getErrorState());
+        assertSame(accounts, error.getTransitions().get(0).getTarget());
+        Transition item = accounts.getTransitions().get(0);
+        SimpleLogicalExpressionEvaluator evaluation = (SimpleLogicalExpressionEvaluator) item.getCommand()
+                .getEvaluation();
+        ResourceGETExpression get = (ResourceGETExpression) evaluation.getExpressions().get(0);
+        assertEquals(ResourceGETExpression.Function.OK, get.getFunction());
+        assertEquals("Test-account", get.getState());
+        assertArrayEquals(new String[] { "a", "b" },
+                ((DynamicResourceState) accounts.getTransitions().get(1).getTarget()).getResourceLocatorArgs());
+
+        // Each read creates new resource states
+        assertNotSame(accounts, snapshot.read(FILE_NAME).get("Test-accounts"));
+    }
+
+    @Test
+    public void testIsCurrent() throws Exception {
+        byte[] xml = TestPrdReader.prd(TestPrdReader.GENERATED_BEANS).getByteArray();
+        ResourceStateSnapshotWriter writer = new ResourceStateSnapshotWriter();
+        writer.addFile(FILE_NAME, xml, PrdReader.read(TestPrdReader.prd(TestPrdReader.GENERATED_BEANS)));
+        ResourceStateSnapshot snapshot = ResourceStateSnapshot.open(write(writer).toURI().toURL());
+
+        assertTrue(snapshot.isCurrent(FILE_NAME, new ByteArrayInputStream(xml)));
+        byte[] changed = new String(xml, StandardCharsets.UTF_8).replace("/Accounts", "/Accountz")
+                .getBytes(StandardCharsets.UTF_8);
+        assertFalse(snapshot.isCurrent(FILE_NAME, new ByteArrayInputStream(changed)));
+        assertFalse(snapshot.isCurrent("IRIS-Other-PRD.xml", new ByteArrayInputStream(xml)));
+    }
+
+    @Test
+    public void testUnsupportedStateLeftOut() throws Exception {
+        List<Action> actions = new ArrayList<Action>();
+        Properties properties = new Properties();
+        properties.put("filter", new Object());
+        actions.add(new Action("GETEntities", Action.TYPE.VIEW, properties));
+        Map<String, ResourceState> states = Collections.singletonMap("Test-a",
+                new ResourceState("Test", "a", actions, "/a"));
+
+        ResourceStateSnapshotWriter writer = new ResourceStateSnapshotWriter();
+        assertFalse(writer.addFile(FILE_NAME, new byte[0], states));
+        assertFalse(writer.addFile(FILE_NAME, new byte[0], Collections.<String, ResourceState> singletonMap(
+                "Test-b", new ResourceState("Test", "b", new ArrayList<Action>(), "/b") {
+                })));
+        assertTrue(ResourceStateSnapshot.open(write(writer)).getFileNames().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptEntry() throws Exception {
+        ResourceStateSnapshotWriter writer = new ResourceStateSnapshotWriter();
+        writer.addFile(FILE_NAME, new byte[0], PrdReader.read(TestPrdReader.prd(TestPrdReader.GENERATED_BEANS)));
+        File file = write(writer);
+        corrupt(file, file.length() - 1);
+        // The table is intact
+        ResourceStateSnapshot snapshot = ResourceStateSnapshot.open(file);
+        assertTrue(snapshot.contains(FILE_NAME));
+        snapshot.read(FILE_NAME);
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptTable() throws Exception {
+        ResourceStateSnapshotWriter writer = new ResourceStateSnapshotWriter();
+        writer.addFile(FILE_NAME, new byte[0], PrdReader.read(TestPrdReader.prd(TestPrdReader.GENERATED_BEANS)));
+        File file = write(writer);
+        corrupt(file, ResourceStateSnapshot.HEADER_LENGTH + 5);
+        ResourceStateSnapshot.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotASnapshot() throws Exception {
+        File file = folder.newFile();
+        ResourceStateSnapshot.open(file);
+    }
+
+    private File write(ResourceStateSnapshotWriter writer) throws IOException {
+        File file = folder.newFile(ResourceStateSnapshot.FILE_NAME);
+        writer.write(file);
+        return file;
+    }
+
+    private void corrupt(File file, long position) throws IOException {
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        try {
+            data.seek(position);
+            int value = data.read();
+            data.seek(position);
+            data.write(value ^ 0xFF);
+        } finally {
+            data.close();
+        }
+    }
+
+    private void assertSameState(ResourceState expected, ResourceState actual) {
+        String id = expected.getId();
+        assertSame(id, expected.getClass(), actual.getClass());
+        // Compares names, paths and transitions
+        assertEquals(id, expected, actual);
+        assertArrayEquals(id, expected.getRels(), actual.getRels());
+        assertEquals(id, expected.getUriSpecification() == null, actual.getUriSpecification() == null);
+        if (expected.getUriSpecification() != null) {
+            assertEquals(id, expected.getUriSpecification().getTemplate(), actual.getUriSpecification().getTemplate());
+        }
+        assertEquals(id, expected.isInitial(), actual.isInitial());
+        assertEquals(id, expected.isException(), actual.isException());
+        assertEquals(id, expected.getMaxAge(), actual.getMaxAge());
+        assertEquals(id, actions(expected), actions(actual));
+        for (int i = 0; i < expected.getTransitions().size(); i++) {
+            Transition expectedTransition = expected.getTransitions().get(i);
+            Transition actualTransition = actual.getTransitions().get(i);
+            assertSame(id, expectedTransition.getTarget().getClass(), actualTransition.getTarget().getClass());
+            assertSame(id, actual, actualTransition.getSource());
+            assertEquals(id, String.valueOf(expectedTransition.getCommand().getEvaluation()),
+                    String.valueOf(actualTransition.getCommand().getEvaluation()));
+        }
+    }
+
+    private List<String> actions(ResourceState state) {
+        List<String> actions = new ArrayList<String>();
+        if (state.getActions() != null) {
+            for (Action action : state.getActions()) {
+                actions.add(Arrays.asList(action.getName(), action.getType(), action.getMethod(),
+                        action.getProperties()).toString());
+            }
+        }
+        return actions;
+    }
+}
@@ -0,0 +1,119 @@
+package com.temenos.interaction.core.metrics;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.temenos.interaction.core.metrics.MetricsRecorder.Counter;
+import com.temenos.interaction.core.metrics.MetricsRecorder.Stage;
+
+public class TestInMemoryMetricsRecorder {
+
+	@After
+	public void tearDown() {
+		Metrics.setRecorder(null);
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		assertFalse(Metrics.isEnabled());
+		assertEquals(Metrics.NOT_STARTED, Metrics.start());
+		// nothing to record to
+		Metrics.stop(Stage.COMMAND, "state", "GET", Metrics.NOT_STARTED);
+		Metrics.increment(Counter.SUB_REQUEST, "state");
+	}
+
+	@Test
+	public void testRecordTimers() {
+		InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+		Metrics.setRecorder(recorder);
+		long start = Metrics.start();
+		Metrics.stop(Stage.COMMAND, "state", "GET", start);
+		Metrics.stop(Stage.COMMAND, "state", "GET", start);
+		Metrics.stop(Stage.COMMAND, "other", "GET", start);
+
+		assertEquals(2, recorder.getTimer(Stage.COMMAND, "state", "GET").getCount());
+		assertEquals(1, recorder.getTimer(Stage.COMMAND, "other", "GET").getCount());
+		assertNull(recorder.getTimer(Stage.INJECT_LINKS, "state", null));
+		assertEquals(2, recorder.getTimers().size());
+	}
+
+	@Test
+	public void testCounters() {
+		InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+		Metrics.setRecorder(recorder);
+		Metrics.increment(Counter.RESPONSE_CACHE_HIT, "state");
+		Metrics.increment(Counter.RESPONSE_CACHE_HIT, "state");
+		Metrics.increment(Counter.RESPONSE_CACHE_HIT, null);
+
+		assertEquals(2, recorder.getCount(Counter.RESPONSE_CACHE_HIT, "state"));
+		assertEquals(3, recorder.getCount(Counter.RESPONSE_CACHE_HIT));
+		assertEquals(0, recorder.getCount(Counter.SUB_REQUEST));
+
+		recorder.setEnabled(false);
+		assertEquals(Metrics.NOT_STARTED, Metrics.start());
+		Metrics.increment(Counter.RESPONSE_CACHE_HIT, "state");
+		assertEquals(2, recorder.getCount(Counter.RESPONSE_CACHE_HIT, "state"));
+
+		recorder.reset();
+		assertTrue(recorder.getCounters().isEmpty());
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentileNanos(50));
+		for (int i = 0; i < 99; i++) {
+			histogram.record(1000);
+		}
+		histogram.record(1000000);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(99 * 1000 + 1000000, histogram.getTotalNanos());
+		assertEquals(1000000, histogram.getMaxNanos());
+		// 1000 falls in [512, 1024)
+		assertEquals(1023, histogram.getPercentileNanos(50));
+		assertEquals(1023, histogram.getPercentileNanos(99));
+		assertEquals(1000000, histogram.getPercentileNanos(100));
+	}
+
+	@Test
+	public void testJmxExport() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		JmxMetricsExporter exporter = new JmxMetricsExporter(new InMemoryMetricsRecorder(), server);
+		exporter.setObjectName("com.temenos.interaction:type=Metrics,name=test");
+		exporter.register();
+		try {
+			assertSame(exporter.getRecorder(), Metrics.getRecorder());
+			Metrics.stop(Stage.INJECT_LINKS, "state", null, Metrics.start());
+
+			ObjectName name = new ObjectName("com.temenos.interaction:type=Metrics,name=test");
+			CompositeData[] timers = (CompositeData[]) server.getAttribute(name, "Timers");
+			assertEquals(1, timers.length);
+			assertEquals("INJECT_LINKS", timers[0].get("stage"));
+			assertEquals(1L, timers[0].get("count"));
+			List<TimerSnapshot> snapshots = exporter.getTimers();
+			assertEquals("state", snapshots.get(0).getResourceState());
+		} finally {
+			exporter.unregister();
+		}
+		assertFalse(Metrics.isEnabled());
+		assertFalse(server.isRegistered(new ObjectName("com.temenos.interaction:type=Metrics,name=test")));
+	}
+}
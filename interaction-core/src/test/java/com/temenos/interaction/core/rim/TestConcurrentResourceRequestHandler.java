@@ -0,0 +1,317 @@
+package com.temenos.interaction.core.rim;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.temenos.interaction.core.MultivaluedMapImpl;
+import com.temenos.interaction.core.command.HttpStatusTypes;
+import com.temenos.interaction.core.command.InteractionCommand;
+import com.temenos.interaction.core.command.InteractionContext;
+import com.temenos.interaction.core.entity.Metadata;
+import com.temenos.interaction.core.hypermedia.BeanTransformer;
+import com.temenos.interaction.core.hypermedia.Event;
+import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.hypermedia.ResourceStateMachine;
+import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.resource.EntityResource;
+import com.temenos.interaction.core.web.RequestContext;
+
+/**
+ * Test Cases for ConcurrentResourceRequestHandler
+ */
+public class TestConcurrentResourceRequestHandler {
+
+    private ConcurrentResourceRequestHandler handler;
+
+    @Before
+    public void setUp() {
+        handler = new ConcurrentResourceRequestHandler(4, 5000);
+    }
+
+    @After
+    public void tearDown() {
+        handler.shutdown();
+        RequestContext.clearRequestContext();
+    }
+
+    @Test
+    public void testResourcesReturnedInTransitionOrder() {
+        HTTPHypermediaRIM rimHandler = mockRimHandler(new SlowAnswer(100));
+        ResourceRequestConfig config = new ResourceRequestConfig.Builder()
+                .transition(transition("/a"))
+                .transition(transition("/b"))
+                .transition(transition("/c"))
+                .build();
+
+        long start = System.currentTimeMillis();
+        Map<Transition, ResourceRequestResult> results = handler.getResources(rimHandler, mock(HttpHeaders.class),
+                context(), null, config);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(config.getTransitions(), new ArrayList<Transition>(results.keySet()));
+        for (Transition t : config.getTransitions()) {
+            ResourceRequestResult result = results.get(t);
+            assertEquals(200, result.getStatus());
+            assertEquals(t.getTarget().getPath(), ((EntityResource<?>) result.getResource()).getEntity());
+        }
+        assertTrue("Resources were not got concurrently, took " + elapsed + "ms", elapsed < 250);
+    }
+
+    @Test
+    public void testRequestContextPropagated() {
+        final RequestContext requestContext = new RequestContext("/base", "/base/a", null);
+        RequestContext.setRequestContext(requestContext);
+        final List<RequestContext> seen = Collections.synchronizedList(new ArrayList<RequestContext>());
+        HTTPHypermediaRIM rimHandler = mockRimHandler(new SlowAnswer(0) {
+            @Override
+            public Response answer(InvocationOnMock invocation) throws Throwable {
+                seen.add(RequestContext.getRequestContext());
+                return super.answer(invocation);
+            }
+        });
+        ResourceRequestConfig config = new ResourceRequestConfig.Builder()
+                .transition(transition("/a"))
+                .transition(transition("/b"))
+                .build();
+
+        handler.getResources(rimHandler, mock(HttpHeaders.class), context(), null, config);
+
+        assertEquals(2, seen.size());
+        for (RequestContext rc : seen) {
+            assertSame(requestContext, rc);
+        }
+        assertSame(requestContext, RequestContext.getRequestContext());
+    }
+
+    @Test
+    public void testTimeoutReturnsGatewayTimeout() {
+        handler.shutdown();
+        handler = new ConcurrentResourceRequestHandler(4, 100);
+        HTTPHypermediaRIM rimHandler = mockRimHandler(new SlowAnswer(0) {
+            @Override
+            public Response answer(InvocationOnMock invocation) throws Throwable {
+                InteractionContext ctx = (InteractionContext) invocation.getArguments()[1];
+                if ("/slow".equals(ctx.getCurrentState().getPath())) {
+                    Thread.sleep(2000);
+                }
+                return super.answer(invocation);
+            }
+        });
+        Transition slow = transition("/slow");
+        Transition fast = transition("/fast");
+        ResourceRequestConfig config = new ResourceRequestConfig.Builder()
+                .transition(slow)
+                .transition(fast)
+                .build();
+
+        Map<Transition, ResourceRequestResult> results = handler.getResources(rimHandler, mock(HttpHeaders.class),
+                context(), null, config);
+
+        assertEquals(HttpStatusTypes.GATEWAY_TIMEOUT.getStatusCode(), results.get(slow).getStatus());
+        assertNull(results.get(slow).getResource());
+        assertEquals(200, results.get(fast).getStatus());
+    }
+
+    @Test
+    public void testTimeoutIncludesCallingThread() {
+        handler.shutdown();
+        handler = new ConcurrentResourceRequestHandler(4, 300);
+        HTTPHypermediaRIM rimHandler = mockRimHandler(new SlowAnswer(0) {
+            @Override
+            public Response answer(InvocationOnMock invocation) throws Throwable {
+                InteractionContext ctx = (InteractionContext) invocation.getArguments()[1];
+                Thread.sleep("/slow".equals(ctx.getCurrentState().getPath()) ? 1000 : 250);
+                return super.answer(invocation);
+            }
+        });
+        Transition slow = transition("/slow");
+        ResourceRequestConfig config = new ResourceRequestConfig.Builder()
+                .transition(slow)
+                .transition(transition("/caller"))
+                .build();
+
+        long start = System.currentTimeMillis();
+        Map<Transition, ResourceRequestResult> results = handler.getResources(rimHandler, mock(HttpHeaders.class),
+                context(), null, config);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(HttpStatusTypes.GATEWAY_TIMEOUT.getStatusCode(), results.get(slow).getStatus());
+        assertTrue("Timeout not measured from submission, took " + elapsed + "ms", elapsed < 500);
+    }
+
+    @Test
+    public void testRequestContextKeptWhenCallerRuns() {
+        handler.shutdown();
+        handler = new ConcurrentResourceRequestHandler(new CallerRunsExecutor(), 5000);
+        final RequestContext requestContext = new RequestContext("/base", "/base/a", null);
+        RequestContext.setRequestContext(requestContext);
+        final List<RequestContext> seen = Collections.synchronizedList(new ArrayList<RequestContext>());
+        HTTPHypermediaRIM rimHandler = mockRimHandler(new SlowAnswer(0) {
+            @Override
+            public Response answer(InvocationOnMock invocation) throws Throwable {
+                seen.add(RequestContext.getRequestContext());
+                return super.answer(invocation);
+            }
+        });
+        ResourceRequestConfig config = new ResourceRequestConfig.Builder()
+                .transition(transition("/a"))
+                .transition(transition("/b"))
+                .transition(transition("/c"))
+                .build();
+
+        Map<Transition, ResourceRequestResult> results = handler.getResources(rimHandler, mock(HttpHeaders.class),
+                context(), null, config);
+
+        assertEquals(3, results.size());
+        assertEquals(3, seen.size());
+        for (RequestContext rc : seen) {
+            assertSame(requestContext, rc);
+        }
+        assertSame(requestContext, RequestContext.getRequestContext());
+    }
+
+    @Test
+    public void testExceptionRethrown() {
+        HTTPHypermediaRIM rimHandler = mockRimHandler(new SlowAnswer(0) {
+            @Override
+            public Response answer(InvocationOnMock invocation) throws Throwable {
+                InteractionContext ctx = (InteractionContext) invocation.getArguments()[1];
+                if ("/a".equals(ctx.getCurrentState().getPath())) {
+                    throw new IllegalStateException("failed");
+                }
+                return super.answer(invocation);
+            }
+        });
+        ResourceRequestConfig config = new ResourceRequestConfig.Builder()
+                .transition(transition("/a"))
+                .transition(transition("/b"))
+                .build();
+
+        try {
+            handler.getResources(rimHandler, mock(HttpHeaders.class), context(), null, config);
+            fail("Expected exception not thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testHandlerSelectedByStateMachine() {
+        ResourceStateMachine engine = new ResourceStateMachine.Builder()
+                .initial(new ResourceState("entity", "initial", new ArrayList<com.temenos.interaction.core.hypermedia.Action>(), "/"))
+                .transformer(new BeanTransformer())
+                .resourceRequestHandler(handler)
+                .build();
+        assertSame(handler, engine.getResourceRequestHandler());
+    }
+
+    private HTTPHypermediaRIM mockRimHandler(Answer<Response> answer) {
+        HTTPHypermediaRIM rimHandler = mock(HTTPHypermediaRIM.class);
+        ResourceStateMachine engine = new ResourceStateMachine(mock(ResourceState.class), new BeanTransformer());
+        when(rimHandler.getHypermediaEngine()).thenReturn(engine);
+        when(rimHandler.handleRequest(any(HttpHeaders.class), any(InteractionContext.class), any(Event.class),
+                any(InteractionCommand.class), any(EntityResource.class), any(ResourceRequestConfig.class)))
+                .thenAnswer(answer);
+        return rimHandler;
+    }
+
+    private InteractionContext context() {
+        return new InteractionContext(mock(UriInfo.class), null, new MultivaluedMapImpl<String>(),
+                new MultivaluedMapImpl<String>(), mock(ResourceState.class), mock(Metadata.class));
+    }
+
+    private Transition transition(String path) {
+        ResourceState target = mock(ResourceState.class);
+        when(target.getName()).thenReturn(path.substring(1));
+        when(target.getPath()).thenReturn(path);
+        when(target.getRel()).thenReturn("item");
+        return new Transition.Builder().target(target).build();
+    }
+
+    /*
+     * Runs every task on the submitting thread, as a saturated executor does.
+     */
+    private static class CallerRunsExecutor extends AbstractExecutorService {
+        private volatile boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+    }
+
+    /*
+     * Returns a resource holding the path of the requested state after a delay.
+     */
+    private static class SlowAnswer implements Answer<Response> {
+        private final long delay;
+
+        SlowAnswer(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public Response answer(InvocationOnMock invocation) throws Throwable {
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            InteractionContext ctx = (InteractionContext) invocation.getArguments()[1];
+            return Response.ok(new GenericEntity<EntityResource<String>>(
+                    new EntityResource<String>(ctx.getCurrentState().getPath()), EntityResource.class)).build();
+        }
+    }
+}
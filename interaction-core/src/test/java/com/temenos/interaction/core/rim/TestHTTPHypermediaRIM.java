@@ -7,6 +7,7 @@ package com.temenos.interaction.core.rim;
 import static junit.framework.Assert.assertTrue;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
@@ -30,7 +31,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
@@ -47,6 +52,8 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import com.temenos.interaction.core.MultivaluedMapImpl;
+import com.temenos.interaction.core.command.AsyncCommandHelper;
+import com.temenos.interaction.core.command.AsyncInteractionCommand;
 import com.temenos.interaction.core.command.CommandController;
 import com.temenos.interaction.core.command.InteractionCommand;
 import com.temenos.interaction.core.command.InteractionCommand.Result;
@@ -56,14 +63,19 @@ import com.temenos.interaction.core.command.MapBasedCommandController;
 import com.temenos.interaction.core.command.TransitionCommand;
 import com.temenos.interaction.core.entity.Entity;
 import com.temenos.interaction.core.entity.EntityMetadata;
+import com.temenos.interaction.core.entity.EntityProperties;
 import com.temenos.interaction.core.entity.Metadata;
 import com.temenos.interaction.core.hypermedia.Action;
 import com.temenos.interaction.core.hypermedia.BeanTransformer;
+import com.temenos.interaction.core.hypermedia.Event;
 import com.temenos.interaction.core.hypermedia.ParameterAndValue;
 import com.temenos.interaction.core.hypermedia.ResourceState;
 import com.temenos.interaction.core.hypermedia.ResourceStateAndParameters;
 import com.temenos.interaction.core.hypermedia.ResourceStateMachine;
 import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.metrics.InMemoryMetricsRecorder;
+import com.temenos.interaction.core.metrics.Metrics;
+import com.temenos.interaction.core.metrics.MetricsRecorder.Stage;
 import com.temenos.interaction.core.resource.EntityResource;
 import com.temenos.interaction.core.web.RequestContext;
 import com.temenos.interaction.core.workflow.WorkflowCommandBuilderFactory;
@@ -147,6 +159,66 @@ public class TestHTTPHypermediaRIM {
         assertEquals("/notes/{id}", resource.getResourcePath());
     }
 
+    /*
+     * The response of an async command is built once the command completed,
+     * here on another thread.
+     */
+    @Test
+    public void testAsyncCommandCompletesResponse() throws Exception {
+        final CompletableFuture<Result> pending = new CompletableFuture<Result>();
+        AsyncInteractionCommand command = new AsyncInteractionCommand() {
+            public Result execute(InteractionContext ctx) throws InteractionException {
+                return AsyncCommandHelper.await(executeAsync(ctx));
+            }
+
+            public CompletionStage<Result> executeAsync(final InteractionContext ctx) {
+                return pending.thenApply(new Function<Result, Result>() {
+                    public Result apply(Result result) {
+                        ctx.setResource(new EntityResource<Entity>("entity", new Entity("entity", new EntityProperties())));
+                        return result;
+                    }
+                });
+            }
+        };
+        ResourceState initialState = new ResourceState("entity", "state", mockActions(), "/test");
+        HTTPHypermediaRIM rim = new HTTPHypermediaRIM(mockCommandController(command), new ResourceStateMachine(
+                initialState), createMockMetadata());
+        UriInfo uriInfo = mock(UriInfo.class);
+        when(uriInfo.getPathParameters(anyBoolean())).thenReturn(new MultivaluedMapImpl<String>());
+        when(uriInfo.getQueryParameters(anyBoolean())).thenReturn(new MultivaluedMapImpl<String>());
+
+        CompletionStage<Response> response = rim.handleRequestAsync(mock(HttpHeaders.class), uriInfo, new Event("GET", HttpMethod.GET), null);
+        assertFalse(response.toCompletableFuture().isDone());
+        Thread backend = new Thread(new Runnable() {
+            public void run() {
+                pending.complete(Result.SUCCESS);
+            }
+        });
+        backend.start();
+        backend.join();
+        assertEquals(Status.OK.getStatusCode(), response.toCompletableFuture().get().getStatus());
+    }
+
+    @Test
+    public void testMetricsRecordStages() throws Exception {
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        Metrics.setRecorder(recorder);
+        try {
+            ResourceState initialState = new ResourceState("entity", "state", mockActions(), "/test");
+            HTTPHypermediaRIM rim = new HTTPHypermediaRIM(mockCommandController(), new ResourceStateMachine(
+                    initialState), createMockMetadata());
+            UriInfo uriInfo = mock(UriInfo.class);
+            when(uriInfo.getPathParameters(anyBoolean())).thenReturn(new MultivaluedMapImpl<String>());
+            when(uriInfo.getQueryParameters(anyBoolean())).thenReturn(new MultivaluedMapImpl<String>());
+            rim.get(mock(HttpHeaders.class), "id", uriInfo);
+
+            assertEquals(1, recorder.getTimer(Stage.DETERMINE_STATE, "state", null).getCount());
+            assertEquals(1, recorder.getTimer(Stage.COMMAND, "state", "GET").getCount());
+        } finally {
+            Metrics.setRecorder(null);
+        }
+    }
+
     /* We decode the query parameters to workaround an issue in Wink */
     @SuppressWarnings({ "unchecked" })
     @Test
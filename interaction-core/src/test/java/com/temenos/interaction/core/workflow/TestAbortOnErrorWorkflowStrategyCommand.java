@@ -6,17 +6,23 @@ package com.temenos.interaction.core.workflow;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import org.junit.Test;
 
+import com.temenos.interaction.core.command.AsyncInteractionCommand;
 import com.temenos.interaction.core.command.InteractionCommand;
 import com.temenos.interaction.core.command.InteractionCommand.Result;
 import com.temenos.interaction.core.command.InteractionContext;
@@ -116,5 +122,40 @@ public class TestAbortOnErrorWorkflowStrategyCommand {
 		new AbortOnErrorWorkflowStrategyCommand().addCommand(null);
 	}
 
+	@Test
+	public void testExecuteAsyncWaitsForAsyncCommand() throws Exception {
+		final CompletableFuture<Result> pending = new CompletableFuture<Result>();
+		AsyncInteractionCommand command1 = mock(AsyncInteractionCommand.class);
+		when(command1.executeAsync(any(InteractionContext.class))).thenReturn(pending);
+		InteractionCommand command2 = mock(InteractionCommand.class);
+		when(command2.execute(any(InteractionContext.class))).thenReturn(Result.CREATED);
+		InteractionContext ctx = mock(InteractionContext.class);
+
+		AbortOnErrorWorkflowStrategyCommand w = new AbortOnErrorWorkflowStrategyCommand();
+		w.addCommand(command1);
+		w.addCommand(command2);
+
+		CompletionStage<Result> result = w.executeAsync(ctx);
+		assertFalse(result.toCompletableFuture().isDone());
+		verify(command2, never()).execute(ctx);
+		pending.complete(Result.SUCCESS);
+		assertTrue(result.toCompletableFuture().isDone());
+		assertEquals(Result.CREATED, result.toCompletableFuture().get());
+		verify(command1, never()).execute(ctx);
+	}
 
+	@Test
+	public void testExecuteAsyncShortCircuit() throws Exception {
+		AsyncInteractionCommand command1 = mock(AsyncInteractionCommand.class);
+		when(command1.executeAsync(any(InteractionContext.class))).thenReturn(CompletableFuture.completedFuture(Result.FAILURE));
+		InteractionCommand command2 = mock(InteractionCommand.class);
+		InteractionContext ctx = mock(InteractionContext.class);
+
+		AbortOnErrorWorkflowStrategyCommand w = new AbortOnErrorWorkflowStrategyCommand();
+		w.addCommand(command1);
+		w.addCommand(command2);
+
+		assertEquals(Result.FAILURE, w.executeAsync(ctx).toCompletableFuture().get());
+		verify(command2, never()).execute(ctx);
+	}
 }
@@ -0,0 +1,64 @@
+package com.temenos.interaction.core.workflow;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestCircuitBreaker {
+
+	@Test
+	public void testOpensAfterConsecutiveFailures() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(3, 60000);
+		circuitBreaker.onFailure();
+		circuitBreaker.onFailure();
+		circuitBreaker.onSuccess();
+		circuitBreaker.onFailure();
+		circuitBreaker.onFailure();
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		circuitBreaker.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.tryAcquire());
+		assertEquals(1, circuitBreaker.getOpenedCount());
+	}
+
+	@Test
+	public void testHalfOpenProbeCloses() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0);
+		circuitBreaker.onFailure();
+		assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		assertTrue(circuitBreaker.tryAcquire());
+		// a single probe at a time
+		assertFalse(circuitBreaker.tryAcquire());
+		circuitBreaker.onSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertTrue(circuitBreaker.tryAcquire());
+	}
+
+	@Test
+	public void testHalfOpenProbeFailureReopens() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0);
+		circuitBreaker.onFailure();
+		assertTrue(circuitBreaker.tryAcquire());
+		circuitBreaker.onFailure();
+		assertEquals(2, circuitBreaker.getOpenedCount());
+	}
+
+	@Test
+	public void testRetryBudget() {
+		RetryBudget retryBudget = new RetryBudget(0.5, 1);
+		assertTrue(retryBudget.tryWithdraw());
+		assertFalse(retryBudget.tryWithdraw());
+		retryBudget.deposit();
+		assertFalse(retryBudget.tryWithdraw());
+		retryBudget.deposit();
+		assertTrue(retryBudget.tryWithdraw());
+		assertEquals(2, retryBudget.getRetryCount());
+		assertEquals(2, retryBudget.getExhaustedCount());
+	}
+}
@@ -0,0 +1,225 @@
+package com.temenos.interaction.core.workflow;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.temenos.interaction.core.command.InteractionCommand;
+import com.temenos.interaction.core.command.InteractionCommand.Result;
+import com.temenos.interaction.core.command.InteractionContext;
+import com.temenos.interaction.core.command.InteractionException;
+import com.temenos.interaction.core.command.MapBasedCommandController;
+import com.temenos.interaction.core.hypermedia.Action;
+import com.temenos.interaction.core.web.RequestContext;
+
+/**
+ * Test for ResilientWorkflowStrategyCommand
+ */
+public class TestResilientWorkflowStrategyCommand {
+
+	private ScheduledExecutorService scheduler;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdownNow();
+		executor.shutdownNow();
+		RequestContext.clearRequestContext();
+	}
+
+	private ResilientWorkflowStrategyCommand resilient(InteractionCommand command, int maxRetryCount, CircuitBreaker circuitBreaker, RetryBudget retryBudget) {
+		return new ResilientWorkflowStrategyCommand(command, maxRetryCount, 1, 5, circuitBreaker, retryBudget, scheduler, executor);
+	}
+
+	@Test
+	public void testCommandSuccessExecution() throws InteractionException {
+		InteractionCommand mockCommand = mock(InteractionCommand.class);
+		when(mockCommand.execute(any(InteractionContext.class))).thenReturn(Result.SUCCESS);
+		CircuitBreaker circuitBreaker = new CircuitBreaker(2, 60000);
+
+		InteractionContext ctx = mock(InteractionContext.class);
+		assertEquals(Result.SUCCESS, resilient(mockCommand, 3, circuitBreaker, new RetryBudget(0.2, 10)).execute(ctx));
+		verify(mockCommand, times(1)).execute(ctx);
+		assertEquals(1, circuitBreaker.getSuccessCount());
+	}
+
+	@Test
+	public void testCommandRetryExecution() throws InteractionException {
+		InteractionCommand mockCommand = mock(InteractionCommand.class);
+		when(mockCommand.execute(any(InteractionContext.class)))
+				.thenThrow(new InteractionException(Status.INTERNAL_SERVER_ERROR, "Test Exception"))
+				.thenThrow(new InteractionException(Status.INTERNAL_SERVER_ERROR, "Test Exception"))
+				.thenReturn(Result.SUCCESS);
+		RetryBudget retryBudget = new RetryBudget(0.2, 10);
+
+		assertEquals(Result.SUCCESS, resilient(mockCommand, 3, new CircuitBreaker(5, 60000), retryBudget).execute(mock(InteractionContext.class)));
+		verify(mockCommand, times(3)).execute(any(InteractionContext.class));
+		assertEquals(2, retryBudget.getRetryCount());
+	}
+
+	@Test
+	public void testRetryRunsOnExecutorWithRequestContext() throws Exception {
+		final RequestContext requestContext = new RequestContext("/base", "/base/a", null);
+		RequestContext.setRequestContext(requestContext);
+		final List<Thread> threads = new ArrayList<Thread>();
+		final List<RequestContext> contexts = new ArrayList<RequestContext>();
+		InteractionCommand mockCommand = mock(InteractionCommand.class);
+		when(mockCommand.execute(any(InteractionContext.class))).thenAnswer(new Answer<Result>() {
+			@Override
+			public Result answer(InvocationOnMock invocation) throws Throwable {
+				threads.add(Thread.currentThread());
+				contexts.add(RequestContext.getRequestContext());
+				if (threads.size() == 1) {
+					throw new InteractionException(Status.INTERNAL_SERVER_ERROR, "Test Exception");
+				}
+				return Result.SUCCESS;
+			}
+		});
+		Thread timer = scheduler.submit(new Callable<Thread>() {
+			@Override
+			public Thread call() {
+				return Thread.currentThread();
+			}
+		}).get();
+
+		assertEquals(Result.SUCCESS, resilient(mockCommand, 1, new CircuitBreaker(5, 60000), new RetryBudget(0.2, 10)).execute(mock(InteractionContext.class)));
+		assertEquals(2, threads.size());
+		assertSame(Thread.currentThread(), threads.get(0));
+		// the retry runs on neither the calling thread nor the timer
+		assertNotSame(Thread.currentThread(), threads.get(1));
+		assertNotSame(timer, threads.get(1));
+		assertSame(requestContext, contexts.get(0));
+		assertSame(requestContext, contexts.get(1));
+		assertSame(requestContext, RequestContext.getRequestContext());
+	}
+
+	@Test
+	public void testClientErrorNotRetried() throws InteractionException {
+		InteractionCommand mockCommand = mock(InteractionCommand.class);
+		InteractionException notFound = new InteractionException(Status.NOT_FOUND, "Test Exception");
+		when(mockCommand.execute(any(InteractionContext.class))).thenThrow(notFound);
+		try {
+			resilient(mockCommand, 3, new CircuitBreaker(1, 60000), new RetryBudget(0.2, 10)).execute(mock(InteractionContext.class));
+			fail("InteractionException expected");
+		} catch (InteractionException e) {
+			assertSame(notFound, e);
+		}
+		verify(mockCommand, times(1)).execute(any(InteractionContext.class));
+	}
+
+	@Test
+	public void testRetryBudgetExhausted() throws InteractionException {
+		InteractionCommand mockCommand = mock(InteractionCommand.class);
+		when(mockCommand.execute(any(InteractionContext.class))).thenThrow(
+				new InteractionException(Status.INTERNAL_SERVER_ERROR, "Test Exception"));
+		RetryBudget retryBudget = new RetryBudget(0, 2);
+		try {
+			resilient(mockCommand, 5, new CircuitBreaker(100, 60000), retryBudget).execute(mock(InteractionContext.class));
+			fail("InteractionException expected");
+		} catch (InteractionException e) {
+			assertEquals(Status.INTERNAL_SERVER_ERROR, e.getHttpStatus());
+		}
+		// the first attempt and the two retries of the budget
+		verify(mockCommand, times(3)).execute(any(InteractionContext.class));
+		assertEquals(1, retryBudget.getExhaustedCount());
+	}
+
+	@Test
+	public void testOpenCircuitRejects() throws InteractionException {
+		InteractionCommand mockCommand = mock(InteractionCommand.class);
+		when(mockCommand.execute(any(InteractionContext.class))).thenThrow(
+				new InteractionException(Status.SERVICE_UNAVAILABLE, "Test Exception"));
+		CircuitBreaker circuitBreaker = new CircuitBreaker(2, 60000);
+		ResilientWorkflowStrategyCommand w = resilient(mockCommand, 0, circuitBreaker, new RetryBudget(0.2, 10));
+		for (int i = 0; i < 3; i++) {
+			try {
+				w.execute(mock(InteractionContext.class));
+				fail("InteractionException expected");
+			} catch (InteractionException e) {
+				assertEquals(Status.SERVICE_UNAVAILABLE, e.getHttpStatus());
+			}
+		}
+		// the third call did not reach the command
+		verify(mockCommand, times(2)).execute(any(InteractionContext.class));
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertEquals(1, circuitBreaker.getRejectedCount());
+	}
+
+	@Test
+	public void testExecuteAsyncDoesNotWaitForRetry() throws Exception {
+		InteractionCommand mockCommand = mock(InteractionCommand.class);
+		when(mockCommand.execute(any(InteractionContext.class)))
+				.thenThrow(new InteractionException(Status.INTERNAL_SERVER_ERROR, "Test Exception"))
+				.thenReturn(Result.SUCCESS);
+		ResilientWorkflowStrategyCommand w = new ResilientWorkflowStrategyCommand(mockCommand, 1, 60000, 60000,
+				new CircuitBreaker(5, 60000), new RetryBudget(0.2, 10), scheduler, executor);
+		CompletableFuture<Result> result = w.executeAsync(mock(InteractionContext.class));
+		// the retry is scheduled up to a minute later
+		assertFalse(result.isDone());
+		verify(mockCommand, times(1)).execute(any(InteractionContext.class));
+	}
+
+	@Test
+	public void testNextRetryInterval() {
+		ResilientWorkflowStrategyCommand w = new ResilientWorkflowStrategyCommand(mock(InteractionCommand.class), 10, 100, 1000,
+				new CircuitBreaker(5, 60000), new RetryBudget(0.2, 10), scheduler, executor);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(w.nextRetryInterval(0) <= 100);
+			assertTrue(w.nextRetryInterval(2) <= 400);
+			assertTrue(w.nextRetryInterval(40) <= 1000);
+		}
+	}
+
+	@Test
+	public void testBuilderSharesCircuitBreaker() {
+		InteractionCommand mockCommand = mock(InteractionCommand.class);
+		MapBasedCommandController commandController = new MapBasedCommandController();
+		commandController.getCommandMap().put("GETEntity", mockCommand);
+		ResilientWorkflowStrategyCommandBuilder builder = new ResilientWorkflowStrategyCommandBuilder(
+				new AbortOnErrorWorkflowStrategyCommandBuilder(commandController));
+		builder.setScheduler(scheduler);
+		builder.setExecutor(executor);
+
+		WorkflowCommand first = builder.build(Collections.singletonList(new Action("GETEntity", Action.TYPE.VIEW)));
+		WorkflowCommand second = builder.build(Collections.singletonList(new Action("GETEntity", Action.TYPE.VIEW)));
+		assertTrue(first instanceof ResilientWorkflowStrategyCommand);
+		assertSame(((ResilientWorkflowStrategyCommand) first).getCircuitBreaker(), ((ResilientWorkflowStrategyCommand) second).getCircuitBreaker());
+		assertSame(builder.getCircuitBreaker("GETEntity"), ((ResilientWorkflowStrategyCommand) first).getCircuitBreaker());
+		assertEquals(1, builder.getRetryBudgets().size());
+	}
+}
@@ -0,0 +1,99 @@
+package com.temenos.interaction.core.workflow;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import org.junit.Test;
+
+import com.temenos.interaction.core.command.AsyncInteractionCommand;
+import com.temenos.interaction.core.command.InteractionCommand;
+import com.temenos.interaction.core.command.InteractionCommand.Result;
+import com.temenos.interaction.core.command.InteractionContext;
+import com.temenos.interaction.core.command.InteractionException;
+
+public class TestTransitionWorkflowStrategyCommand {
+
+	@Test
+	public void testEmptyWorkflow() throws Exception {
+		TransitionWorkflowStrategyCommand w = new TransitionWorkflowStrategyCommand();
+		InteractionContext ctx = mock(InteractionContext.class);
+
+		assertNull(w.execute(ctx));
+		assertNull(w.executeAsync(ctx).toCompletableFuture().get());
+	}
+
+	@Test
+	public void testExecuteAsyncContinuesAfterNullResult() throws Exception {
+		InteractionCommand command1 = mock(InteractionCommand.class);
+		when(command1.execute(any(InteractionContext.class))).thenReturn(null);
+		InteractionCommand command2 = mock(InteractionCommand.class);
+		when(command2.execute(any(InteractionContext.class))).thenReturn(Result.SUCCESS);
+		InteractionContext ctx = mock(InteractionContext.class);
+
+		TransitionWorkflowStrategyCommand w = new TransitionWorkflowStrategyCommand();
+		w.addCommand(command1);
+		w.addCommand(command2);
+
+		assertEquals(Result.SUCCESS, w.executeAsync(ctx).toCompletableFuture().get());
+		verify(command1, times(1)).execute(ctx);
+		verify(command2, times(1)).execute(ctx);
+		assertEquals(w.execute(ctx), w.executeAsync(ctx).toCompletableFuture().get());
+	}
+
+	@Test
+	public void testExecuteAsyncShortCircuit() throws Exception {
+		InteractionCommand command1 = mock(InteractionCommand.class);
+		when(command1.execute(any(InteractionContext.class))).thenReturn(Result.FAILURE);
+		InteractionCommand command2 = mock(InteractionCommand.class);
+		InteractionContext ctx = mock(InteractionContext.class);
+
+		TransitionWorkflowStrategyCommand w = new TransitionWorkflowStrategyCommand();
+		w.addCommand(command1);
+		w.addCommand(command2);
+
+		assertEquals(Result.FAILURE, w.executeAsync(ctx).toCompletableFuture().get());
+		verify(command2, never()).execute(ctx);
+	}
+
+	@Test
+	public void testExecuteAsyncWaitsForAsyncCommand() throws Exception {
+		final CompletableFuture<Result> pending = new CompletableFuture<Result>();
+		AsyncInteractionCommand command1 = mock(AsyncInteractionCommand.class);
+		when(command1.executeAsync(any(InteractionContext.class))).thenReturn(pending);
+		InteractionCommand command2 = mock(InteractionCommand.class);
+		when(command2.execute(any(InteractionContext.class))).thenReturn(Result.SUCCESS);
+		InteractionContext ctx = mock(InteractionContext.class);
+
+		TransitionWorkflowStrategyCommand w = new TransitionWorkflowStrategyCommand();
+		w.addCommand(command1);
+		w.addCommand(command2);
+
+		CompletionStage<Result> result = w.executeAsync(ctx);
+		assertFalse(result.toCompletableFuture().isDone());
+		verify(command2, never()).execute(ctx);
+		pending.complete(null);
+		assertTrue(result.toCompletableFuture().isDone());
+		assertEquals(Result.SUCCESS, result.toCompletableFuture().get());
+		verify(command1, never()).execute(ctx);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecuteAsyncNullContext() throws InteractionException {
+		new TransitionWorkflowStrategyCommand().executeAsync(null);
+	}
+}
@@ -16,6 +16,10 @@ import org.springframework.core.io.support.ResourcePatternResolver;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 
 import static com.temenos.interaction.core.loader.ResourceStateLoadingStrategy.ResourceStateResult;
 
@@ -25,6 +29,12 @@ import static com.temenos.interaction.core.loader.ResourceStateLoadingStrategy.R
  * cache strategies, as well as loading strategies (although the only loading
  * strategy that makes sense here is a Spring one).
  * 
+ * With a parallelism greater than one the PRD files are parsed on a fork-join
+ * pool of that many threads. The results are still put in the cache one file
+ * at a time, in the order the files were discovered, so a resource state
+ * defined in several files is taken from the same file as when loading them
+ * one at a time.
+ * 
  * The class currently extends SpringDSLResourceStateProvider for code re-usage.
  * This is a temporary solution until major re-factoring is done. 
  * 
@@ -39,16 +49,27 @@ public class EagerSpringDSLResourceStateProvider extends SpringDSLResourceStateP
     private final String antStylePattern;
     private Set<String> PRDconfigurationFileSources;
     private ResourceStateLoadingStrategy<String> loadingStrategy;
+    private final int parallelism;
 
     public EagerSpringDSLResourceStateProvider(String antStylePattern, ResourceStateLoadingStrategy<String> loadingStrategy, CacheExtended<String, ResourceState> cache) {
         this(antStylePattern, loadingStrategy, cache, null);
     }
 
     public EagerSpringDSLResourceStateProvider(String antStylePattern, ResourceStateLoadingStrategy<String> loadingStrategy, CacheExtended<String, ResourceState> cache, Properties beanMap) {
+        this(antStylePattern, loadingStrategy, cache, beanMap, 1);
+    }
+
+    /**
+     * @param parallelism
+     *            the number of threads parsing PRD files, one or less to load
+     *            them on the calling thread
+     */
+    public EagerSpringDSLResourceStateProvider(String antStylePattern, ResourceStateLoadingStrategy<String> loadingStrategy, CacheExtended<String, ResourceState> cache, Properties beanMap, int parallelism) {
         super(beanMap);
         this.antStylePattern = antStylePattern;
         this.loadingStrategy = loadingStrategy;
         this.cache = cache;
+        this.parallelism = parallelism;
         PRDconfigurationFileSources = new LinkedHashSet();
         discoverAllPrdFilesNames();
         loadAllResourceStates();
@@ -140,8 +161,47 @@ public class EagerSpringDSLResourceStateProvider extends SpringDSLResourceStateP
     private synchronized void loadAllResourceStates() {
         cache.removeAll();
 
-        for (String locationOfPRD : PRDconfigurationFileSources) {
-            loadResourceStatesFromPRD(locationOfPRD);
+        long start = System.nanoTime();
+        if (parallelism > 1 && PRDconfigurationFileSources.size() > 1) {
+            loadAllResourceStatesInParallel();
+        } else {
+            for (String locationOfPRD : PRDconfigurationFileSources) {
+                loadResourceStatesFromPRD(locationOfPRD);
+            }
+        }
+        logger.info(String.format("Loaded %d PRD files in %d ms", PRDconfigurationFileSources.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    /* Parse the prd files concurrently then merge them into the cache in discovery order */
+    private void loadAllResourceStatesInParallel() {
+        List<String> prdNames = new ArrayList<String>(PRDconfigurationFileSources);
+        // Spring resolves the PRD files with the context class loader, which
+        // pool threads do not necessarily share with this one
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, prdNames.size()));
+        try {
+            List<ForkJoinTask<List<ResourceStateResult>>> tasks = new ArrayList<ForkJoinTask<List<ResourceStateResult>>>(prdNames.size());
+            for (final String prdName : prdNames) {
+                tasks.add(pool.submit(new Callable<List<ResourceStateResult>>() {
+                    @Override
+                    public List<ResourceStateResult> call() {
+                        Thread thread = Thread.currentThread();
+                        ClassLoader previous = thread.getContextClassLoader();
+                        thread.setContextClassLoader(classLoader);
+                        try {
+                            return loadResourceStates(prdName);
+                        } finally {
+                            thread.setContextClassLoader(previous);
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < prdNames.size(); i++) {
+                putResourceStates(prdNames.get(i), tasks.get(i).join());
+            }
+        } finally {
+            pool.shutdownNow();
         }
     }
 
@@ -167,14 +227,24 @@ public class EagerSpringDSLResourceStateProvider extends SpringDSLResourceStateP
     }
 
     private boolean loadResourceStatesFromPRD(String prdName) {
-        List<ResourceStateResult> resourceStates = null;
-        Map<String, ResourceState> tmp = new HashMap<String, ResourceState>();
-
         if (prdName == null) {
             return false;
         }
+        return putResourceStates(prdName, loadResourceStates(prdName));
+    }
+
+    private List<ResourceStateResult> loadResourceStates(String prdName) {
         logger.info("Loading PRD file: " + prdName);
-        resourceStates = loadingStrategy.load(prdName);
+        long start = System.nanoTime();
+        List<ResourceStateResult> resourceStates = loadingStrategy.load(prdName);
+        logger.info(String.format("Loaded PRD file: %s in %d ms", prdName,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        return resourceStates;
+    }
+
+    private boolean putResourceStates(String prdName, List<ResourceStateResult> resourceStates) {
+        Map<String, ResourceState> tmp = new HashMap<String, ResourceState>();
+
         if (resourceStates == null) {
             logger.warn("Could not find any resources with name: " + prdName);
             return false;
@@ -2,6 +2,7 @@ package com.temenos.interaction.springdsl;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.DirectoryStream;
@@ -11,6 +12,8 @@ import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -24,13 +27,19 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.context.support.FileSystemXmlApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.ClassUtils;
 
 import com.temenos.interaction.core.hypermedia.MethodNotAllowedException;
 import com.temenos.interaction.core.hypermedia.PathTree;
 import com.temenos.interaction.core.hypermedia.ResourceState;
 import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.loader.PrdReader;
+import com.temenos.interaction.core.loader.PrdReader.UnsupportedPrdException;
+import com.temenos.interaction.core.loader.ResourceStateSnapshot;
 import com.temenos.interaction.core.resource.AbstractConfigLoaders;
 import com.temenos.interaction.core.resource.ConfigLoader;
 
@@ -49,6 +58,7 @@ public class FileSystemResourceStateLoader extends SpringDSLResourceStateProvide
     protected ConcurrentMap<String, ResourceState> resources;
 
     private AbstractConfigLoaders configLoader;
+    private volatile List<ResourceStateSnapshot> snapshots;
 
     @Override
     public void initialise(Properties beanMap, ConcurrentMap<String, ResourceState> resources, ResourceState result, PathTree pathTree) {
@@ -142,9 +152,7 @@ public class FileSystemResourceStateLoader extends SpringDSLResourceStateProvide
         }
     }
 
-    private ResourceState loadAllResourceStatesFromFile(ApplicationContext context, String resourceState) {
-        Map<String, ResourceState> tmpResources = context.getBeansOfType(ResourceState.class);
-
+    private ResourceState loadAllResourceStatesFromFile(Map<String, ResourceState> tmpResources, String resourceState) {
         // Save all the loaded resources into the main resource state cache
         resources.putAll(tmpResources);
 
@@ -162,8 +170,7 @@ public class FileSystemResourceStateLoader extends SpringDSLResourceStateProvide
         if (timestampledFiles.size() == 0) {
             return null;
         }
-        ApplicationContext beanContext = createApplicationContext(timestampledFiles.get(0));
-        Map<String, ResourceState> fileResources = beanContext.getBeansOfType(ResourceState.class);
+        Map<String, ResourceState> fileResources = loadResourceStates(timestampledFiles.get(0));
         ResourceState resource = loadAllResourceStatesFromTimeStampedResourceState(resourceState,
                 timestampledFiles.subList(1, timestampledFiles.size()));
         if (resource == null) {
@@ -211,6 +218,151 @@ public class FileSystemResourceStateLoader extends SpringDSLResourceStateProvide
         return filename;
     }
 
+    /**
+     * Load the resource states of a PRD file, from a resource state snapshot
+     * when one was written from the same file, reading it with a PrdReader
+     * when it only uses the part of the Spring schema generated for PRD files
+     * and through a Spring context otherwise.
+     * 
+     * @param beanXml
+     *            the filename to locate
+     * @return the resource states by bean name, null if the file is not found
+     */
+    protected Map<String, ResourceState> loadResourceStates(String beanXml) {
+        Map<String, ResourceState> resourceStates = readResourceStates(beanXml);
+        if (resourceStates != null) {
+            return resourceStates;
+        }
+        ApplicationContext context = createApplicationContext(beanXml);
+        return context == null ? null : context.getBeansOfType(ResourceState.class);
+    }
+
+    /*
+     * Read the files createApplicationContext would load without Spring, null
+     * if they are not found or use features neither a snapshot nor the PRD
+     * reader handle.
+     */
+    private Map<String, ResourceState> readResourceStates(String beanXml) {
+        List<Resource> prdResources = new ArrayList<Resource>();
+        List<String> locations = new ArrayList<String>();
+        String location = null;
+        if (configLoader == null || ((ConfigLoader) configLoader).getIrisConfigDirPaths().isEmpty()) {
+            location = "classpath:" + beanXml;
+            locations.add(location);
+            for (String contextFile : getClassPathContextFileNames(beanXml)) {
+                prdResources.add(new ClassPathResource(contextFile, ClassUtils.getDefaultClassLoader()));
+            }
+        } else {
+            for (String directoryPath : ((ConfigLoader) configLoader).getIrisConfigDirPaths()) {
+                File file = new File(Paths.get(directoryPath, beanXml).toString());
+                URL fileURL = resolveFileURL(file);
+                if (fileURL == null) {
+                    return null;
+                }
+                locations.add(fileURL.toString());
+                if (file.exists()) {
+                    location = fileURL.toString();
+                    prdResources.add(new FileSystemResource(file));
+                    break;
+                }
+            }
+        }
+        if (prdResources.isEmpty()) {
+            return null;
+        }
+        if (prdResources.size() == 1 && beanXml.equals(prdResources.get(0).getFilename())) {
+            Map<String, ResourceState> resourceStates = readSnapshot(beanXml, prdResources.get(0));
+            if (resourceStates != null) {
+                attempts.addAll(locations);
+                return resourceStates;
+            }
+        }
+        try {
+            Map<String, ResourceState> resourceStates = PrdReader.read(prdResources);
+            attempts.addAll(locations);
+            foundFile = location;
+            return resourceStates;
+        } catch (UnsupportedPrdException e) {
+            logger.debug("Loading " + beanXml + " through Spring: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+     * The resource states of a PRD file from a snapshot, null if no snapshot
+     * has them or the file changed since it was written.
+     */
+    private Map<String, ResourceState> readSnapshot(String beanXml, Resource prdResource) {
+        for (ResourceStateSnapshot snapshot : getSnapshots()) {
+            if (!snapshot.contains(beanXml)) {
+                continue;
+            }
+            try {
+                InputStream xml = prdResource.getInputStream();
+                try {
+                    if (!snapshot.isCurrent(beanXml, xml)) {
+                        logger.debug("Snapshot " + snapshot.getLocation() + " is stale for " + beanXml);
+                        return null;
+                    }
+                } finally {
+                    xml.close();
+                }
+                Map<String, ResourceState> resourceStates = snapshot.read(beanXml);
+                foundFile = snapshot.getLocation() + "!" + beanXml;
+                return resourceStates;
+            } catch (IOException e) {
+                logger.warn("Failed to read " + beanXml + " from snapshot " + snapshot.getLocation(), e);
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * The snapshots in the IRIS configuration directories, or on the
+     * classpath when there are none, opened on first use.
+     */
+    private List<ResourceStateSnapshot> getSnapshots() {
+        List<ResourceStateSnapshot> result = snapshots;
+        if (result != null) {
+            return result;
+        }
+        result = new ArrayList<ResourceStateSnapshot>();
+        try {
+            if (configLoader == null || ((ConfigLoader) configLoader).getIrisConfigDirPaths().isEmpty()) {
+                Enumeration<URL> urls = ClassUtils.getDefaultClassLoader().getResources(
+                        "META-INF/" + ResourceStateSnapshot.FILE_NAME);
+                while (urls.hasMoreElements()) {
+                    result.add(openSnapshot(urls.nextElement()));
+                }
+            } else {
+                for (String directoryPath : ((ConfigLoader) configLoader).getIrisConfigDirPaths()) {
+                    File file = new File(directoryPath, ResourceStateSnapshot.FILE_NAME);
+                    if (file.exists()) {
+                        result.add(openSnapshot(file.toURI().toURL()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Unable to find the resource state snapshots", e);
+        }
+        result.removeAll(Collections.singleton(null));
+        snapshots = result;
+        return result;
+    }
+
+    private ResourceStateSnapshot openSnapshot(URL url) {
+        try {
+            ResourceStateSnapshot snapshot = ResourceStateSnapshot.open(url);
+            logger.info("Opened resource state snapshot " + url + " of " + snapshot.getFileNames().size()
+                    + " PRD files");
+            return snapshot;
+        } catch (IOException e) {
+            logger.warn("Ignoring resource state snapshot " + url, e);
+            return null;
+        }
+    }
+
     /**
      * @param beanXml
      *            the filename to locate
@@ -297,24 +449,24 @@ public class FileSystemResourceStateLoader extends SpringDSLResourceStateProvide
 
         String beanXml = "IRIS-" + tmpResourceName + "-PRD.xml";
 
-        // Attempt to create Spring context based on current resource filename
-        // pattern
-        ApplicationContext context = createApplicationContext(beanXml);
+        // Attempt to load the resource states based on current resource
+        // filename pattern
+        Map<String, ResourceState> fileResources = loadResourceStates(beanXml);
 
-        if (context == null) {
-            // Failed to create Spring context using current resource filename
-            // pattern so use old pattern
+        if (fileResources == null) {
+            // Failed to load the resource states using current resource
+            // filename pattern so use old pattern
             int pos = tmpResourceName.lastIndexOf("_");
 
             if (pos > 3) {
                 tmpResourceName = tmpResourceName.substring(0, pos);
                 beanXml = "IRIS-" + tmpResourceName + "-PRD.xml";
 
-                context = createApplicationContext(beanXml);
+                fileResources = loadResourceStates(beanXml);
 
-                if (context != null) {
-                    // Successfully created Spring context using old resource
-                    // filename pattern
+                if (fileResources != null) {
+                    // Successfully loaded the resource states using old
+                    // resource filename pattern
 
                     // Convert resource state name to old resource name format
                     pos = tmpResourceStateName.lastIndexOf("-");
@@ -331,8 +483,8 @@ public class FileSystemResourceStateLoader extends SpringDSLResourceStateProvide
             }
         }
 
-        if (context != null) {
-            result = loadAllResourceStatesFromFile(context, tmpResourceStateName);
+        if (fileResources != null) {
+            result = loadAllResourceStatesFromFile(fileResources, tmpResourceStateName);
         }
         if (result == null) {
             List<String> timestampedFiles = getTimestampedResourceStateFileLists(tmpResourceName);
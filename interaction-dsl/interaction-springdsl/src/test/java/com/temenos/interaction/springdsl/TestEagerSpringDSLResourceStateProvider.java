@@ -10,6 +10,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -20,6 +22,7 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 import com.temenos.interaction.core.cache.CacheConcurrentImpl;
 import com.temenos.interaction.core.cache.CacheExtended;
+import com.temenos.interaction.core.hypermedia.Action;
 import com.temenos.interaction.core.hypermedia.ResourceState;
 import com.temenos.interaction.core.hypermedia.ResourceStateProvider;
 import com.temenos.interaction.core.loader.ResourceStateLoadingStrategy;
@@ -95,6 +98,46 @@ public class TestEagerSpringDSLResourceStateProvider extends TestSpringDSLResour
         assertEquals("SimpleModel_Home_home", statesByPath.get("/test").toArray()[0]);
     }
 
+    @Test
+    public void testParallelLoading() {
+        EagerSpringDSLResourceStateProvider parallel = new EagerSpringDSLResourceStateProvider(
+                "classpath*:/**/IRIS-*-PRD.xml", new SpringResourceStateLoadingStrategy(), new CacheConcurrentImpl(), null, 4);
+        EagerSpringDSLResourceStateProvider sequential = getDefaultClass();
+        ResourceState resourceState = parallel.getResourceState("SimpleModel_Home_home");
+        assertNotNull(resourceState);
+        assertEquals(sequential.getResourceState("SimpleModel_Home_home").getName(), resourceState.getName());
+    }
+
+    @Test
+    public void testParallelLoadingOverridesInDiscoveryOrder() {
+        // Every file defines the same state, the first files are the slowest to load
+        final List<String> loaded = new ArrayList<String>();
+        ResourceStateLoadingStrategy<String> loadingStrategy = new ResourceStateLoadingStrategy<String>() {
+            @Override
+            public List<ResourceStateResult> load(String prdName) {
+                synchronized (loaded) {
+                    loaded.add(prdName);
+                }
+                try {
+                    Thread.sleep(Math.max(0, 50 - loaded.size() * 10));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                List<ResourceStateResult> results = new ArrayList<ResourceStateResult>();
+                results.add(new ResourceStateResult("shared", new ResourceState("Entity", prdName, new ArrayList<Action>(), "/")));
+                return results;
+            }
+        };
+        String sequentialName = new EagerSpringDSLResourceStateProvider("classpath*:/**/IRIS-*-PRD.xml", loadingStrategy,
+                new CacheConcurrentImpl(), null, 1).getResourceState("shared").getName();
+        loaded.clear();
+        String parallelName = new EagerSpringDSLResourceStateProvider("classpath*:/**/IRIS-*-PRD.xml", loadingStrategy,
+                new CacheConcurrentImpl(), null, 4).getResourceState("shared").getName();
+
+        assertTrue(loaded.size() > 1);
+        assertEquals(sequentialName, parallelName);
+    }
+
     private EagerSpringDSLResourceStateProvider getDefaultClass() {
         return getDefaultClass(null);
     }
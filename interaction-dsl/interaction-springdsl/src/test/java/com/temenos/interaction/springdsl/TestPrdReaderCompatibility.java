@@ -0,0 +1,91 @@
+package com.temenos.interaction.springdsl;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+
+import com.temenos.interaction.core.hypermedia.Action;
+import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.loader.PrdReader;
+
+/**
+ * Checks that the PRD reader creates the same resource states as Spring does
+ * from the same files.
+ */
+public class TestPrdReaderCompatibility {
+
+	@Test
+	public void testSimpleModel() throws Exception {
+		assertSameAsSpring("IRIS-SimpleModel_Home-PRD.xml");
+		assertSameAsSpring("IRIS-SimpleModel_Home_home-PRD.xml");
+		assertSameAsSpring("IRIS-SimpleModel_Home_TestTransition-PRD.xml");
+	}
+
+	@Test
+	public void testGeneratedFiles() throws Exception {
+		assertSameAsSpring("PRDFiles/IRIS-Tst_Twins_1494662578833-PRD.xml");
+		assertSameAsSpring("PRDFiles/IRIS-Tst_Twins_Foldername_10-PRD.xml");
+	}
+
+	private void assertSameAsSpring(String file) throws Exception {
+		Map<String, ResourceState> read = PrdReader.read(new ClassPathResource(file));
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(file);
+		try {
+			Map<String, ResourceState> created = context.getBeansOfType(ResourceState.class);
+			assertEquals(file, new ArrayList<String>(created.keySet()), new ArrayList<String>(read.keySet()));
+			for (String id : created.keySet()) {
+				assertSameState(created.get(id), read.get(id));
+			}
+		} finally {
+			context.close();
+		}
+	}
+
+	private void assertSameState(ResourceState expected, ResourceState actual) {
+		String id = expected.getId();
+		assertSame(id, expected.getClass(), actual.getClass());
+		// Compares names, paths and transitions
+		assertEquals(id, expected, actual);
+		assertArrayEquals(id, expected.getRels(), actual.getRels());
+		assertEquals(id, expected.getUriSpecification() == null, actual.getUriSpecification() == null);
+		if (expected.getUriSpecification() != null) {
+			assertEquals(id, expected.getUriSpecification().getTemplate(), actual.getUriSpecification().getTemplate());
+		}
+		assertEquals(id, expected.isInitial(), actual.isInitial());
+		assertEquals(id, expected.isException(), actual.isException());
+		assertEquals(id, expected.getMaxAge(), actual.getMaxAge());
+		assertEquals(id, String.valueOf(expected.getErrorState()), String.valueOf(actual.getErrorState()));
+		assertEquals(id, actions(expected), actions(actual));
+		for (int i = 0; i < expected.getTransitions().size(); i++) {
+			Transition expectedTransition = expected.getTransitions().get(i);
+			Transition actualTransition = actual.getTransitions().get(i);
+			assertSame(id, expectedTransition.getTarget().getClass(), actualTransition.getTarget().getClass());
+			assertTrue(id, actualTransition.getSource() == actual);
+		}
+	}
+
+	private List<String> actions(ResourceState state) {
+		List<String> actions = new ArrayList<String>();
+		if (state.getActions() != null) {
+			for (Action action : state.getActions()) {
+				actions.add(action.getName() + " " + action.getType() + " " + action.getMethod() + " "
+						+ action.getProperties());
+			}
+		}
+		return actions;
+	}
+}
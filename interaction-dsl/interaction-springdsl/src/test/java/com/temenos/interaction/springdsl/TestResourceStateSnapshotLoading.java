@@ -0,0 +1,104 @@
+package com.temenos.interaction.springdsl;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileCopyUtils;
+
+import com.temenos.interaction.core.hypermedia.PathTree;
+import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.loader.PrdReader;
+import com.temenos.interaction.core.loader.ResourceStateSnapshot;
+import com.temenos.interaction.core.loader.ResourceStateSnapshotWriter;
+
+/**
+ * Loading resource states from a snapshot written from the PRD files, and
+ * from the PRD files when the snapshot is stale or corrupt.
+ */
+public class TestResourceStateSnapshotLoading {
+
+    private static final String STATE = "SimpleModel_Home_TestTransition";
+    private static final String PRD_FILE = "IRIS-" + STATE + "-PRD.xml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] xml;
+    private File snapshotFile;
+
+    @Before
+    public void setUp() throws Exception {
+        xml = FileCopyUtils.copyToByteArray(new ClassPathResource(PRD_FILE).getInputStream());
+        Files.write(new File(folder.getRoot(), PRD_FILE).toPath(), xml);
+        ResourceStateSnapshotWriter writer = new ResourceStateSnapshotWriter();
+        assertTrue(writer.addFile(PRD_FILE, xml, PrdReader.read(new ByteArrayResource(xml))));
+        snapshotFile = new File(folder.getRoot(), ResourceStateSnapshot.FILE_NAME);
+        writer.write(snapshotFile);
+    }
+
+    @Test
+    public void testLoadFromSnapshot() {
+        FileSystemResourceStateLoader loader = load();
+        assertTrue(loader.isLoaded());
+        assertTrue(loader.toString(), loader.toString().contains(ResourceStateSnapshot.FILE_NAME));
+        ResourceState state = loader.loaded();
+        assertEquals("TestTransition", state.getName());
+        assertEquals("link to home", state.getTransitions().get(0).getLabel());
+    }
+
+    @Test
+    public void testStaleSnapshot() throws Exception {
+        String changed = new String(xml, StandardCharsets.UTF_8).replace("link to home", "home");
+        Files.write(new File(folder.getRoot(), PRD_FILE).toPath(), changed.getBytes(StandardCharsets.UTF_8));
+
+        FileSystemResourceStateLoader loader = load();
+        assertTrue(loader.isLoaded());
+        assertFalse(loader.toString(), loader.toString().contains(ResourceStateSnapshot.FILE_NAME));
+        assertEquals("home", loader.loaded().getTransitions().get(0).getLabel());
+    }
+
+    @Test
+    public void testCorruptSnapshot() throws IOException {
+        RandomAccessFile data = new RandomAccessFile(snapshotFile, "rw");
+        try {
+            data.seek(data.length() - 1);
+            int last = data.read();
+            data.seek(data.length() - 1);
+            data.write(~last);
+        } finally {
+            data.close();
+        }
+
+        FileSystemResourceStateLoader loader = load();
+        assertTrue(loader.isLoaded());
+        assertFalse(loader.toString(), loader.toString().contains(ResourceStateSnapshot.FILE_NAME));
+        assertEquals("link to home", loader.loaded().getTransitions().get(0).getLabel());
+    }
+
+    private FileSystemResourceStateLoader load() {
+        FileSystemResourceStateLoader loader = new FileSystemResourceStateLoader();
+        loader.setIrisConfigDirPath(folder.getRoot().getAbsolutePath());
+        loader.initialise(new Properties(), new ConcurrentHashMap<String, ResourceState>(), null, new PathTree());
+        loader.load(STATE);
+        return loader;
+    }
+}
@@ -148,11 +148,12 @@ public class SpringBasedLoaderAction implements Action<FileEvent<File>>, Applica
                 if (cc != null) {
                     LOGGER.debug("Adding newly created CommandController to ChainingCommandController");
                     newCommandControllers.add(0, cc);
-                    parentChainingCommandController.setCommandControllers(newCommandControllers);
                     previouslyAddedCommandController = cc;
                 } else {
                     previouslyAddedCommandController = null;
                 }
+                // also drops the commands resolved by the chain before the reload
+                parentChainingCommandController.setCommandControllers(newCommandControllers);
             } else {
                 LOGGER.debug("No ChainingCommandController set to add newly created CommandController to - skipping action");
             }
@@ -14,6 +14,9 @@ public final class JDBCProducerConstants {
 
     public static final String SELECT_FIELD_NAME_ALIAS_SEP = "__AS__";
     public static final int SELECT_FIELD_NAME_ALIAS_SEP_LEN = SELECT_FIELD_NAME_ALIAS_SEP.length();
+
+    // Query parameter holding a keyset pagination continuation token.
+    public static final String SKIPTOKEN_KEY = "$skiptoken";
     
     private JDBCProducerConstants() {        
     }
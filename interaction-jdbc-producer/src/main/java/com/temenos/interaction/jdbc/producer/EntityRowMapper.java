@@ -0,0 +1,74 @@
+package com.temenos.interaction.jdbc.producer;
+
+/*
+ * Maps result set rows to entities.
+ *
+ * Used to build a collection straight from a forward only cursor rather than
+ * from a disconnected copy of the whole result. A new mapper must be used for
+ * each query.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import com.temenos.interaction.core.entity.Entity;
+import com.temenos.interaction.core.entity.EntityProperties;
+import com.temenos.interaction.core.entity.EntityProperty;
+import com.temenos.interaction.core.resource.EntityResource;
+
+public class EntityRowMapper implements RowMapper<EntityResource<Entity>> {
+
+    private final String entityType;
+
+    // Returned column names, read from the metadata of the first row. May be a
+    // subset of the ones requested.
+    private String[] columnNames;
+
+    public EntityRowMapper(String entityType) {
+        this.entityType = entityType;
+    }
+
+    @Override
+    public EntityResource<Entity> mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (null == columnNames) {
+            columnNames = readColumnNames(rs.getMetaData());
+        }
+
+        EntityProperties properties = new EntityProperties();
+
+        // For all columns in this row.
+        for (int i = 0; i < columnNames.length; i++) {
+            Object value = rs.getObject(i + 1);
+
+            // Only return non null values
+            if (null != value) {
+                // Add object to the property. getObject() returns an object
+                // with the correct java type for each sql type. So we don't
+                // need to cast.
+                properties.setProperty(new EntityProperty(columnNames[i], value));
+            }
+        }
+
+        // Create entity.
+        // Note: Despite the variable name the first arg of both these is
+        // the entity type name. Not it's key.
+        Entity entity = new Entity(entityType, properties);
+        return new EntityResource<Entity>(entity.getName(), entity);
+    }
+
+    private static String[] readColumnNames(ResultSetMetaData metaData) throws SQLException {
+        String[] names = new String[metaData.getColumnCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = JdbcUtils.lookupColumnName(metaData, i + 1);
+        }
+        return names;
+    }
+}
@@ -26,19 +26,28 @@ import org.odata4j.producer.EntityQueryInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlRowSetResultSetExtractor;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 
+import com.temenos.interaction.core.cache.LruCacheConcurrentImpl;
 import com.temenos.interaction.core.command.InteractionContext;
 import com.temenos.interaction.core.entity.Entity;
 import com.temenos.interaction.core.entity.EntityProperties;
 import com.temenos.interaction.core.entity.EntityProperty;
 import com.temenos.interaction.core.resource.CollectionResource;
 import com.temenos.interaction.core.resource.EntityResource;
+import com.temenos.interaction.jdbc.JDBCProducerConstants;
 import com.temenos.interaction.jdbc.ServerMode;
 import com.temenos.interaction.jdbc.exceptions.JdbcException;
 import com.temenos.interaction.jdbc.producer.sql.ColumnTypesMap;
+import com.temenos.interaction.jdbc.producer.sql.ColumnTypesMapCache;
+import com.temenos.interaction.jdbc.producer.sql.KeysetToken;
 import com.temenos.interaction.jdbc.producer.sql.SqlBuilder;
 import com.temenos.interaction.jdbc.producer.sql.SqlBuilderFactory;
+import com.temenos.interaction.jdbc.producer.sql.SqlCommand;
 import com.temenos.interaction.odataext.odataparser.ODataParser;
 import com.temenos.interaction.odataext.odataparser.ODataParser.UnsupportedQueryOperationException;
 import com.temenos.interaction.odataext.odataparser.data.AccessProfile;
@@ -54,6 +63,24 @@ public class JdbcProducer {
     private ServerMode serverMode;
     private ServerMode h2ServerMode = null;
 
+    // Table metadata, read once rather than on every query.
+    private ColumnTypesMapCache columnTypesMapCache = new ColumnTypesMapCache();
+
+    // Page collections by keyset rather than by row number.
+    private boolean keysetPagination = false;
+
+    // Default number of rows fetched in each round trip.
+    public static final int DEFAULT_FETCH_SIZE = 100;
+
+    // Default maximum number of statement shapes held.
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 256;
+
+    // Prepared statement factories keyed by command shape. Enquiries differing
+    // only in their values share a factory and send the database identical
+    // SQL, so its plan, and any pooled statement, is reused.
+    private final LruCacheConcurrentImpl<String, PreparedStatementCreatorFactory> statementCache = new LruCacheConcurrentImpl<String, PreparedStatementCreatorFactory>(
+            DEFAULT_STATEMENT_CACHE_SIZE);
+
     private static final Logger LOGGER = LoggerFactory.getLogger(JdbcProducer.class);
 
     /*
@@ -69,6 +96,7 @@ public class JdbcProducer {
      */
     public JdbcProducer(DataSource dataSource) throws ClassNotFoundException, JdbcException {
         template = new JdbcTemplate(dataSource);
+        template.setFetchSize(DEFAULT_FETCH_SIZE);
         serverMode = getServerMode();
     }
 
@@ -82,6 +110,7 @@ public class JdbcProducer {
      */
     public JdbcProducer(DataSource dataSource, ServerMode h2ServerMode) throws ClassNotFoundException, JdbcException {
         template = new JdbcTemplate(dataSource);
+        template.setFetchSize(DEFAULT_FETCH_SIZE);
         this.h2ServerMode = h2ServerMode;
         serverMode = getServerMode();
     }
@@ -93,14 +122,69 @@ public class JdbcProducer {
         return template.queryForRowSet(command);
     }
 
+    /*
+     * Query method for parameterized SQL commands
+     */
+    public SqlRowSet query(SqlCommand command) {
+        return template.query(getStatementCreator(command), new SqlRowSetResultSetExtractor());
+    }
+
+    /*
+     * Query method for parameterized SQL commands mapping each row as it is
+     * read from the cursor.
+     */
+    public <T> List<T> query(SqlCommand command, RowMapper<T> rowMapper) {
+        return template.query(getStatementCreator(command), rowMapper);
+    }
+
+    /*
+     * Number of rows fetched from the database in each round trip when
+     * reading a result.
+     */
+    public int getFetchSize() {
+        return template.getFetchSize();
+    }
+
+    public void setFetchSize(int fetchSize) {
+        template.setFetchSize(fetchSize);
+    }
+
+    private PreparedStatementCreator getStatementCreator(SqlCommand command) {
+        String shape = command.getShape();
+        PreparedStatementCreatorFactory factory = statementCache.get(shape);
+        if (null == factory) {
+            factory = new PreparedStatementCreatorFactory(command.getSql(), command.getParameterTypes());
+            statementCache.put(shape, factory);
+        }
+        return factory.newPreparedStatementCreator(command.getParameterValues());
+    }
+
     /*
      * Query method for interaction context parameters returning collection of
      * entities.
      */
     public CollectionResource<Entity> queryEntities(String tableName, InteractionContext ctx, String returnEntityType)
             throws UnsupportedQueryOperationException, JdbcException, Exception {
-        SqlRowSet rowSet = query(tableName, null, ctx);
-        return buildCollectionResource(returnEntityType, rowSet);
+        // Read the rows straight from a forward only cursor, fetchSize rows at
+        // a time, rather than through a disconnected copy of the whole result.
+        // The connection is released once the last row has been read.
+        SqlBuilder sqlBuilder = getSqlBuilder(tableName, null, ctx);
+        List<EntityResource<Entity>> results = query(getSqlCommand(sqlBuilder), new EntityRowMapper(
+                returnEntityType));
+
+        // Note: This line looks a bit odd but the {} at the end is required.
+        CollectionResource<Entity> collection = new CollectionResource<Entity>(results) {
+        };
+
+        if (keysetPagination) {
+            String token = getContinuationToken(sqlBuilder, results,
+                    ctx.getQueryParameters().getFirst(ODataParser.TOP_KEY));
+            if (null != token) {
+                // The skip token is the second term of the collection token.
+                collection.setSkipToken(JDBCProducerConstants.SKIPTOKEN_KEY + " & " + token);
+            }
+        }
+        return collection;
     }
 
     /*
@@ -122,6 +206,24 @@ public class JdbcProducer {
      */
     public SqlRowSet query(String tableName, String key, InteractionContext ctx)
             throws UnsupportedQueryOperationException, JdbcException, Exception {
+        return query(getSqlCommand(getSqlBuilder(tableName, key, ctx)));
+    }
+
+    /*
+     * Build the parameterized SQL command of a builder.
+     */
+    private SqlCommand getSqlCommand(SqlBuilder sqlBuilder) {
+        SqlCommand sqlCommand = sqlBuilder.getParameterizedCommand();
+
+        LOGGER.info("Jdbc producer about to execute \"" + sqlCommand + "\"");
+        return sqlCommand;
+    }
+
+    /*
+     * Get a SQL builder for interaction context parameters.
+     */
+    private SqlBuilder getSqlBuilder(String tableName, String key, InteractionContext ctx)
+            throws UnsupportedQueryOperationException, JdbcException, Exception {
         // Not much point selecting from a null table
         if (null == tableName) {
             LOGGER.error("Jdbc producer cannot select from null table.");
@@ -131,7 +233,7 @@ public class JdbcProducer {
         // Get column types from Jdbc. We need these both for constructing the
         // command and processing it's result set.
         // We need the primary key for row ordering.
-        ColumnTypesMap colTypesMap = new ColumnTypesMap(this, tableName, true);
+        ColumnTypesMap colTypesMap = columnTypesMapCache.get(getDataSource(), tableName);
 
         // Unpack the commands $filter and $select terms.
         AccessProfile accessProfile = getAccessProfile(ctx);
@@ -141,23 +243,111 @@ public class JdbcProducer {
         String top = queryParams.getFirst(ODataParser.TOP_KEY);
         String skip = queryParams.getFirst(ODataParser.SKIP_KEY);
 
-        List<OrderBy> orderBy = ODataParser.parseOrderBy(queryParams.getFirst(ODataParser.ORDERBY_KEY));
+        List<OrderBy> orderBy = ODataParser.getOrderBy(ctx);
+
+        // A continuation token replaces $skip. It is carried over to the next
+        // page link together with the other query parameters.
+        KeysetToken seekAfter = null;
+        if (keysetPagination && null == key) {
+            String token = queryParams.getFirst(JDBCProducerConstants.SKIPTOKEN_KEY);
+            if (null != token) {
+                seekAfter = KeysetToken.decode(token);
+                skip = null;
+            }
+        }
 
         // Build an SQL command from an appropriate builder
         SqlBuilder sqlBuilder = SqlBuilderFactory.getSqlBuilder(tableName, key, accessProfile, colTypesMap, top, skip,
                 orderBy, serverMode);
-        String sqlCommand = sqlBuilder.getCommand();
+        if (keysetPagination && null == key) {
+            sqlBuilder.setKeysetPagination(true);
+            if (null != seekAfter) {
+                sqlBuilder.setSeekAfter(seekAfter);
+            }
+        }
+        return sqlBuilder;
+    }
 
-        LOGGER.info("Jdbc producer about to execute \"" + sqlCommand + "\"");
+    /*
+     * Get the token continuing a collection after its last row. Null if the
+     * collection is not paged or is the last page.
+     * 
+     * If the last row does not hold all the sort columns, because they are
+     * null or were not selected, its position cannot be taken. The token then
+     * continues from where this page started, skipping the rows it holds.
+     */
+    private String getContinuationToken(SqlBuilder sqlBuilder, List<EntityResource<Entity>> results, String top) {
+        if (null == top || results.isEmpty() || results.size() < Integer.parseInt(top)) {
+            return null;
+        }
+
+        EntityProperties lastRow = results.get(results.size() - 1).getEntity().getProperties();
+        List<String> columnNames = new ArrayList<String>();
+        List<Object> values = new ArrayList<Object>();
+        for (OrderBy order : sqlBuilder.getSortColumns()) {
+            String columnName = order.getFieldName().getName();
+            EntityProperty property = lastRow.getProperty(columnName);
+            columnNames.add(columnName);
+            if (null == property || null == property.getValue()) {
+                LOGGER.debug("Sort column \"" + columnName + "\" not selected or null. Continuing by row count.");
+                values = null;
+            } else if (null != values) {
+                values.add(property.getValue());
+            }
+        }
+        if (null != values) {
+            return new KeysetToken(columnNames, values).encode();
+        }
+        KeysetToken seekAfter = sqlBuilder.getSeekAfter();
+        return new KeysetToken(columnNames, null == seekAfter ? null : seekAfter.getValues(),
+                sqlBuilder.getSkipCount() + results.size()).encode();
+    }
 
-        // Execute the SQL command
-        return query(sqlCommand);
+    public boolean isKeysetPagination() {
+        return keysetPagination;
+    }
+
+    /*
+     * Page collections by keyset rather than by row number. A page holding
+     * $top rows then carries a continuation token, and the next page is
+     * selected by the values of its sort columns rather than by skipping the
+     * rows before it, so deep pages cost no more than the first one.
+     */
+    public void setKeysetPagination(boolean keysetPagination) {
+        this.keysetPagination = keysetPagination;
     }
 
     public DataSource getDataSource() {
         return template.getDataSource();
     }
 
+    public ColumnTypesMapCache getColumnTypesMapCache() {
+        return columnTypesMapCache;
+    }
+
+    /*
+     * Replace the table metadata cache, for instance with one shared by
+     * several producers.
+     */
+    public void setColumnTypesMapCache(ColumnTypesMapCache columnTypesMapCache) {
+        this.columnTypesMapCache = columnTypesMapCache;
+    }
+
+    /*
+     * Read the metadata of the given tables at startup rather than on their
+     * first query.
+     */
+    public void setWarmTables(List<String> tableNames) {
+        columnTypesMapCache.warm(getDataSource(), tableNames);
+    }
+
+    /*
+     * Forget the metadata of a table so it is read again on its next query.
+     */
+    public void invalidateColumnTypes(String tableName) {
+        columnTypesMapCache.invalidate(getDataSource(), tableName);
+    }
+
     /*
      * Unpack a contexts $filter and $select terms.
      */
@@ -213,45 +403,6 @@ public class JdbcProducer {
         return entityResource;
     }
 
-    /*
-     * Convert result set into a collection of entities.
-     */
-    private CollectionResource<Entity> buildCollectionResource(String entityType, SqlRowSet rowSet) {
-        List<EntityResource<Entity>> results = new ArrayList<EntityResource<Entity>>();
-
-        // Extract the returned column names. May be a subset of the ones
-        // requested.
-        String[] columnNames = rowSet.getMetaData().getColumnNames();
-
-        // For all rows returned add an entity to the collection.
-        while (rowSet.next()) {
-            EntityProperties properties = new EntityProperties();
-
-            // For all columns in this row.
-            for (String columnName : columnNames) {
-                Object value = rowSet.getObject(columnName);
-
-                // Only return non null values
-                if (null != value) {
-                    // Add object to the property. getObject() returns an object
-                    // with the correct java type for each sql type. So we don't
-                    // need to cast.
-                    properties.setProperty(new EntityProperty(columnName, value));
-                }
-            }
-
-            // Create entity.
-            // Note: Despite the variable name the first arg of both these is
-            // the entity type name. Not it's key.
-            Entity entity = new Entity(entityType, properties);
-            results.add(new EntityResource<Entity>(entity.getName(), entity));
-        }
-
-        // Note: This line looks a bit odd but the {} at the end is required.
-        return new CollectionResource<Entity>(results) {
-        };
-    }
-
     /*
      * Utility to work out the current server mode.
      * 
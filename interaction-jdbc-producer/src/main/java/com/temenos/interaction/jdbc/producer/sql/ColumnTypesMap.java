@@ -47,34 +47,28 @@ public class ColumnTypesMap {
     private String primaryKeyName;
 
     public ColumnTypesMap(JdbcProducer producer, String tableName, boolean primaryKeyNameRequired) throws SQLException, JdbcException {
+        this(producer.getDataSource(), tableName, primaryKeyNameRequired);
+    }
+
+    public ColumnTypesMap(DataSource ds, String tableName, boolean primaryKeyNameRequired) throws SQLException, JdbcException {
         // This will open a new connection. Remember to close it latter.
-        DataSource ds = producer.getDataSource();
         Connection conn = ds.getConnection();
 
-        // Get the metadata
-        DatabaseMetaData dsMetaData = conn.getMetaData();
+        try {
+            // Get the metadata
+            DatabaseMetaData dsMetaData = conn.getMetaData();
 
-        // Read the initial map.
-        this.typesMap = readColumnTypes(dsMetaData, tableName);
+            // Read the initial map.
+            this.typesMap = readColumnTypes(dsMetaData, tableName);
 
-        // If required obtain the primary key.
-        if (primaryKeyNameRequired) {
-            try {
+            // If required obtain the primary key.
+            if (primaryKeyNameRequired) {
                 this.primaryKeyName = readPrimaryKey(dsMetaData, tableName);
-            } catch (SQLException sqlException) {
-                // Re-throw
-                throw sqlException;
-            } catch (JdbcException jdbcException) {
-                // Re-throw
-                throw jdbcException;
-            } finally {
-                // Remember to close the connection
-                conn.close();                
             }
+        } finally {
+            // Remember to close the connection
+            conn.close();
         }
-
-        // Close the connection
-        conn.close();
     }
 
     /*
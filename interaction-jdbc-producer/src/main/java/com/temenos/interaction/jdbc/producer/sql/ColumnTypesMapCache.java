@@ -0,0 +1,137 @@
+package com.temenos.interaction.jdbc.producer.sql;
+
+/*
+ * Cache of table column types and primary keys.
+ *
+ * Reading the column types and primary key of a table opens a connection and
+ * makes several DatabaseMetaData round trips, which on some servers costs more
+ * than the query itself. Table metadata changes very rarely so it is read once
+ * and kept until it is invalidated or its refresh period has expired.
+ *
+ * The cache is keyed by data source and table name, so it may be shared by
+ * several producers.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.sql.SQLException;
+import java.util.Collection;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.temenos.interaction.core.cache.LruCacheConcurrentImpl;
+import com.temenos.interaction.jdbc.exceptions.JdbcException;
+
+public class ColumnTypesMapCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ColumnTypesMapCache.class);
+
+    // Default maximum number of tables held.
+    public static final int DEFAULT_MAX_TABLES = 1000;
+
+    // Default time, in seconds, after which table metadata is read again.
+    public static final int DEFAULT_REFRESH_SECONDS = 300;
+
+    private final LruCacheConcurrentImpl<TableKey, ColumnTypesMap> cache;
+    private final int refreshSeconds;
+
+    public ColumnTypesMapCache() {
+        this(DEFAULT_MAX_TABLES, DEFAULT_REFRESH_SECONDS);
+    }
+
+    /*
+     * Create a cache holding up to maxTables tables, read again after
+     * refreshSeconds. A refresh of zero or less keeps entries until they are
+     * invalidated.
+     */
+    public ColumnTypesMapCache(int maxTables, int refreshSeconds) {
+        this.cache = new LruCacheConcurrentImpl<TableKey, ColumnTypesMap>(maxTables);
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    /*
+     * Get the column types and primary key of a table, reading them from the
+     * data source if not already cached.
+     */
+    public ColumnTypesMap get(DataSource dataSource, String tableName) throws SQLException, JdbcException {
+        TableKey key = new TableKey(dataSource, tableName);
+        ColumnTypesMap colTypesMap = cache.get(key);
+        if (null == colTypesMap) {
+            // Concurrent misses may read the same table twice, the result is
+            // the same so there is no need to serialise them.
+            colTypesMap = new ColumnTypesMap(dataSource, tableName, true);
+            if (refreshSeconds > 0) {
+                cache.put(key, colTypesMap, refreshSeconds);
+            } else {
+                cache.put(key, colTypesMap);
+            }
+        }
+        return colTypesMap;
+    }
+
+    /*
+     * Read the metadata of the given tables ahead of the first request. Tables
+     * which cannot be read are logged and skipped.
+     */
+    public void warm(DataSource dataSource, Collection<String> tableNames) {
+        for (String tableName : tableNames) {
+            try {
+                get(dataSource, tableName);
+            } catch (Exception e) {
+                LOGGER.warn("Could not read column types of table \"" + tableName + "\".", e);
+            }
+        }
+    }
+
+    /*
+     * Forget the metadata of a table, for instance after it has been altered.
+     */
+    public void invalidate(DataSource dataSource, String tableName) {
+        cache.remove(new TableKey(dataSource, tableName));
+    }
+
+    /*
+     * Forget the metadata of all tables.
+     */
+    public void invalidateAll() {
+        cache.removeAll();
+    }
+
+    /*
+     * Get the number of tables currently cached.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /*
+     * Cache key. Data sources are compared by identity.
+     */
+    private static final class TableKey {
+        private final DataSource dataSource;
+        private final String tableName;
+
+        TableKey(DataSource dataSource, String tableName) {
+            this.dataSource = dataSource;
+            this.tableName = tableName;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TableKey)) {
+                return false;
+            }
+            TableKey other = (TableKey) obj;
+            return dataSource == other.dataSource && tableName.equals(other.tableName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(dataSource) + tableName.hashCode();
+        }
+    }
+}
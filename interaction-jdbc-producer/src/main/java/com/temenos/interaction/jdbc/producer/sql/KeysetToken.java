@@ -0,0 +1,193 @@
+package com.temenos.interaction.jdbc.producer.sql;
+
+/*
+ * Continuation token for keyset pagination.
+ *
+ * Holds the names of the columns a collection is sorted on and their values in
+ * the last row of a page. The next page starts after that row. The token is
+ * passed to clients as an opaque, URL safe string.
+ *
+ * When the last row of a page does not hold all its sort values (they are
+ * null or were not selected) the token instead holds the number of rows to
+ * skip after the position the page itself started from, if any.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.Response.Status;
+
+import com.temenos.interaction.jdbc.exceptions.JdbcException;
+
+public class KeysetToken {
+
+    // Token format version.
+    private static final int VERSION = 1;
+
+    // Value type tags.
+    private static final char STRING = 'S';
+    private static final char INTEGER = 'I';
+    private static final char LONG = 'L';
+    private static final char DECIMAL = 'N';
+    private static final char DOUBLE = 'F';
+    private static final char TIMESTAMP = 'T';
+    private static final char DATE = 'D';
+    private static final char TIME = 'H';
+
+    private final List<String> columnNames;
+    private final List<Object> values;
+    private final int skip;
+
+    public KeysetToken(List<String> columnNames, List<Object> values) {
+        this(columnNames, values, 0);
+    }
+
+    /*
+     * Values may be null if there are only rows to skip, from the start of the
+     * collection.
+     */
+    public KeysetToken(List<String> columnNames, List<Object> values, int skip) {
+        if (null != values && columnNames.size() != values.size()) {
+            throw new IllegalArgumentException("A value is needed for each column.");
+        }
+        if (skip < 0) {
+            throw new IllegalArgumentException("Cannot skip " + skip + " rows.");
+        }
+        this.columnNames = Collections.unmodifiableList(new ArrayList<String>(columnNames));
+        this.values = null == values ? null : Collections.unmodifiableList(new ArrayList<Object>(values));
+        this.skip = skip;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /*
+     * The sort values of the row to start after. Null to start from the first
+     * row.
+     */
+    public List<Object> getValues() {
+        return values;
+    }
+
+    /*
+     * The number of rows to skip after the start position.
+     */
+    public int getSkip() {
+        return skip;
+    }
+
+    /*
+     * Encode the token as an opaque URL safe string.
+     */
+    public String encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeShort(columnNames.size());
+            out.writeBoolean(null != values);
+            for (int i = 0; i < columnNames.size(); i++) {
+                out.writeUTF(columnNames.get(i));
+                if (null != values) {
+                    writeValue(out, values.get(i));
+                }
+            }
+            out.writeInt(skip);
+            out.flush();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new JdbcException(Status.INTERNAL_SERVER_ERROR, "Could not encode keyset token.", e);
+        }
+    }
+
+    /*
+     * Decode a token produced by encode().
+     */
+    public static KeysetToken decode(String token) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)));
+            int version = in.readByte();
+            if (VERSION != version) {
+                throw new JdbcException(Status.BAD_REQUEST, "Invalid $skiptoken \"" + token + "\".");
+            }
+            int count = in.readShort();
+            boolean hasValues = in.readBoolean();
+            List<String> columnNames = new ArrayList<String>(count);
+            List<Object> values = hasValues ? new ArrayList<Object>(count) : null;
+            for (int i = 0; i < count; i++) {
+                columnNames.add(in.readUTF());
+                if (hasValues) {
+                    values.add(readValue(in));
+                }
+            }
+            int skip = in.readInt();
+            return new KeysetToken(columnNames, values, skip);
+        } catch (IOException e) {
+            throw new JdbcException(Status.BAD_REQUEST, "Invalid $skiptoken \"" + token + "\".", e);
+        } catch (IllegalArgumentException e) {
+            throw new JdbcException(Status.BAD_REQUEST, "Invalid $skiptoken \"" + token + "\".", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        char type = STRING;
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            type = INTEGER;
+        } else if (value instanceof Long) {
+            type = LONG;
+        } else if (value instanceof BigDecimal) {
+            type = DECIMAL;
+        } else if (value instanceof Double || value instanceof Float) {
+            type = DOUBLE;
+        } else if (value instanceof Timestamp) {
+            type = TIMESTAMP;
+        } else if (value instanceof Date) {
+            type = DATE;
+        } else if (value instanceof Time) {
+            type = TIME;
+        }
+        out.writeChar(type);
+        out.writeUTF(String.valueOf(value));
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        char type = in.readChar();
+        String value = in.readUTF();
+        switch (type) {
+        case STRING:
+            return value;
+        case INTEGER:
+            return Integer.valueOf(value);
+        case LONG:
+            return Long.valueOf(value);
+        case DECIMAL:
+            return new BigDecimal(value);
+        case DOUBLE:
+            return Double.valueOf(value);
+        case TIMESTAMP:
+            return Timestamp.valueOf(value);
+        case DATE:
+            return Date.valueOf(value);
+        case TIME:
+            return Time.valueOf(value);
+        default:
+            throw new IllegalArgumentException("Unknown value type '" + type + "'.");
+        }
+    }
+}
@@ -8,6 +8,11 @@ package com.temenos.interaction.jdbc.producer.sql;
  * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
  *******************************************************************************/
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.ws.rs.core.Response.Status;
 
@@ -20,7 +25,9 @@ import org.odata4j.expression.ConcatMethodCallExpression;
 import org.odata4j.expression.DateTimeLiteral;
 import org.odata4j.expression.DateTimeOffsetLiteral;
 import org.odata4j.expression.DayMethodCallExpression;
+import org.odata4j.expression.DecimalLiteral;
 import org.odata4j.expression.DivExpression;
+import org.odata4j.expression.DoubleLiteral;
 import org.odata4j.expression.EndsWithMethodCallExpression;
 import org.odata4j.expression.EntitySimpleProperty;
 import org.odata4j.expression.EqExpression;
@@ -29,6 +36,8 @@ import org.odata4j.expression.GeExpression;
 import org.odata4j.expression.GtExpression;
 import org.odata4j.expression.HourMethodCallExpression;
 import org.odata4j.expression.IndexOfMethodCallExpression;
+import org.odata4j.expression.Int64Literal;
+import org.odata4j.expression.IntegralLiteral;
 import org.odata4j.expression.IsofExpression;
 import org.odata4j.expression.LeExpression;
 import org.odata4j.expression.LengthMethodCallExpression;
@@ -45,6 +54,7 @@ import org.odata4j.expression.ParenExpression;
 import org.odata4j.expression.ReplaceMethodCallExpression;
 import org.odata4j.expression.RoundMethodCallExpression;
 import org.odata4j.expression.SecondMethodCallExpression;
+import org.odata4j.expression.SingleLiteral;
 import org.odata4j.expression.StartsWithMethodCallExpression;
 import org.odata4j.expression.StringLiteral;
 import org.odata4j.expression.SubExpression;
@@ -57,6 +67,7 @@ import org.odata4j.expression.TrimMethodCallExpression;
 import org.odata4j.expression.YearMethodCallExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.SqlParameterValue;
 
 import com.temenos.interaction.jdbc.SqlRelation;
 import com.temenos.interaction.jdbc.exceptions.JdbcException;
@@ -70,10 +81,62 @@ public class SQLExpressionVisitor extends PrintExpressionVisitor {
     private SQLExpressionNode rootNode = new SQLExpressionNode();
     private SQLExpressionNode currentNode = rootNode;
 
+    // Marks where a bound value goes. Nodes may reorder their arguments so
+    // values are numbered in visit order and put in statement order once the
+    // tree has been printed.
+    private static final String PLACEHOLDER = "?";
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\?(\\d+)\\?");
+
+    // Literal values in visit order. Null if literals are printed inline.
+    private List<SqlParameterValue> boundValues;
+
+    // Bound values in the order their placeholders appear in the command.
+    private List<SqlParameterValue> parameters = new ArrayList<SqlParameterValue>();
+
+    /*
+     * Constructor for a visitor printing literal values inline.
+     */
+    public SQLExpressionVisitor() {
+        this(false);
+    }
+
+    /*
+     * Constructor for a visitor optionally replacing literal values by '?'
+     * placeholders. The values are then available from getParameters().
+     */
+    public SQLExpressionVisitor(boolean bindLiterals) {
+        if (bindLiterals) {
+            boundValues = new ArrayList<SqlParameterValue>();
+        }
+    }
+
     @Override
     public String toString() {
         // Print out the expression tree
-        return rootNode.toSqlParameter();
+        String sql = rootNode.toSqlParameter();
+        if (null == boundValues) {
+            return sql;
+        }
+
+        // Replace the numbered placeholders, collecting their values in
+        // statement order.
+        parameters = new ArrayList<SqlParameterValue>();
+        StringBuffer sb = new StringBuffer();
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(sql);
+        while (matcher.find()) {
+            parameters.add(boundValues.get(Integer.parseInt(matcher.group(1))));
+            matcher.appendReplacement(sb, PLACEHOLDER);
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    /*
+     * Get the values bound to the placeholders of the last printed command, in
+     * statement order. Empty if literals are printed inline.
+     */
+    public List<SqlParameterValue> getParameters() {
+        return parameters;
     }
 
     /*
@@ -92,6 +155,18 @@ public class SQLExpressionVisitor extends PrintExpressionVisitor {
         append(String.format(format, args));
     }
 
+    /*
+     * Append a literal value, either inline or as a bound parameter.
+     */
+    private void appendLiteral(String literal, int sqlType, Object value) {
+        if (null == boundValues) {
+            append(literal);
+        } else {
+            append(PLACEHOLDER + boundValues.size() + PLACEHOLDER);
+            boundValues.add(new SqlParameterValue(sqlType, value));
+        }
+    }
+
     protected void append(String str) {
         if (!currentNode.addArgument(str)) {
             throw new JdbcException(Status.INTERNAL_SERVER_ERROR, "Internal error adding:" + str);
@@ -252,7 +327,32 @@ public class SQLExpressionVisitor extends PrintExpressionVisitor {
     // Literal strings may contain spaces or dots. So single quote.
     @Override
     public void visit(StringLiteral expr) {
-        appendFormatted("'%s'", expr.getValue());
+        appendLiteral(String.format("'%s'", expr.getValue()), Types.VARCHAR, expr.getValue());
+    }
+
+    @Override
+    public void visit(IntegralLiteral expr) {
+        appendLiteral(String.valueOf(expr.getValue()), Types.INTEGER, expr.getValue());
+    }
+
+    @Override
+    public void visit(Int64Literal expr) {
+        appendLiteral(String.valueOf(expr.getValue()), Types.BIGINT, expr.getValue());
+    }
+
+    @Override
+    public void visit(DecimalLiteral expr) {
+        appendLiteral(String.valueOf(expr.getValue()), Types.DECIMAL, expr.getValue());
+    }
+
+    @Override
+    public void visit(DoubleLiteral expr) {
+        appendLiteral(String.valueOf(expr.getValue()), Types.DOUBLE, expr.getValue());
+    }
+
+    @Override
+    public void visit(SingleLiteral expr) {
+        appendLiteral(String.valueOf(expr.getValue()), Types.REAL, expr.getValue());
     }
 
     @Override
@@ -370,7 +470,7 @@ public class SQLExpressionVisitor extends PrintExpressionVisitor {
 
         // Print it out.
         String timeStampStr = timeStamp.toString();
-        appendFormatted("'%s'", timeStampStr);
+        appendLiteral(String.format("'%s'", timeStampStr), Types.TIMESTAMP, timeStamp);
     }
 
     @Override
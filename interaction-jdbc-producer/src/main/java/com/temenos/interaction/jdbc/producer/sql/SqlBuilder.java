@@ -5,16 +5,24 @@ package com.temenos.interaction.jdbc.producer.sql;
  *******************************************************************************/
 
 import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import javax.ws.rs.core.Response.Status;
+
+import org.odata4j.expression.OrderByExpression.Direction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.SqlParameterValue;
 
 import com.temenos.interaction.jdbc.JDBCProducerConstants;
 import com.temenos.interaction.jdbc.ServerMode;
 import com.temenos.interaction.jdbc.SqlRelation;
+import com.temenos.interaction.jdbc.exceptions.JdbcException;
+import com.temenos.interaction.odataext.odataparser.ODataParser;
 import com.temenos.interaction.odataext.odataparser.data.AccessProfile;
 import com.temenos.interaction.odataext.odataparser.data.FieldName;
 import com.temenos.interaction.odataext.odataparser.data.OrderBy;
@@ -40,6 +48,15 @@ public abstract class SqlBuilder {
     protected String skip;
     protected List<OrderBy> orderBy;
 
+    // Keyset pagination. When set rows are sorted on a unique set of columns
+    // and, if a seek position is given, only rows after it are returned.
+    protected boolean keysetPagination;
+    protected KeysetToken seekAfter;
+
+    // Values bound to the placeholders of a parameterized command, in
+    // statement order. Null while building a literal command.
+    protected List<SqlParameterValue> parameters;
+
     // Server compatibility mode.
     protected ServerMode serverMode;
 
@@ -186,12 +203,13 @@ public abstract class SqlBuilder {
     }
 
     /*
-     * add the "WHERE x AND y" etc clause. Adds filters and/or key.
+     * add the "WHERE x AND y" etc clause. Adds filters and/or key and, when
+     * seeking, the keyset predicate.
      */
     protected void addWhereTerms(StringBuilder builder) {
 
-        // If there are no filters or key return
-        if (accessProfile.getNewRowFilters().isEmpty() && (null == keyValue)) {
+        // If there are no filters, key or seek position return
+        if (accessProfile.getNewRowFilters().isEmpty() && (null == keyValue) && (null == seekAfter)) {
             return;
         }
 
@@ -208,8 +226,18 @@ public abstract class SqlBuilder {
                     colTypesMap.getPrimaryKeyName() + " " + SqlRelation.EQ.getoDataString() + " '" + keyValue + "'");
         }
 
-        if (!accessProfile.getNewRowFilters().isEmpty()) {
-            addFilters(builder);
+        boolean hasFilters = !accessProfile.getNewRowFilters().isEmpty();
+        if (hasFilters) {
+            // Bracket the filters so a top level OR does not swallow the
+            // keyset predicate.
+            addFilters(builder, null != seekAfter);
+        }
+
+        if (null != seekAfter) {
+            if (hasFilters) {
+                addAnd(builder);
+            }
+            addSeekTerms(builder);
         }
     }
 
@@ -221,7 +249,7 @@ public abstract class SqlBuilder {
         builder.append(" AND");
     }
 
-    private void addFilters(StringBuilder builder) {
+    private void addFilters(StringBuilder builder, boolean bracketed) {
 
         // Add row filters
         RowFilters filters = accessProfile.getNewRowFilters();
@@ -230,12 +258,15 @@ public abstract class SqlBuilder {
         }
 
         // Create an OData4j visitor and use it to print out the filters. 
-        SQLExpressionVisitor v = new SQLExpressionVisitor();
+        SQLExpressionVisitor v = new SQLExpressionVisitor(isParameterized());
         filters.getOData4jExpression().visit(v);
-        String parameters = v.toString();
-        if (!parameters.isEmpty()) {
+        String filterTerms = v.toString();
+        if (!filterTerms.isEmpty()) {
             builder.append(" ");
-            builder.append(v.toString());
+            builder.append(bracketed ? "(" + filterTerms + ")" : filterTerms);
+            if (isParameterized()) {
+                parameters.addAll(v.getParameters());
+            }
         }
     }
     
@@ -244,26 +275,135 @@ public abstract class SqlBuilder {
      * random order.
      */
     protected void addOrderByTerms(StringBuilder builder) {
+        List<OrderBy> sortColumns = getSortColumns();
+        if (sortColumns.isEmpty()) {
+            LOGGER.warn("Primary key name not known. Cannot add \"ORDER BY\" clause.");
+            return;
+        }
+        addOrderBy(builder);
+        boolean first = true;
+        for (OrderBy order : sortColumns) {
+            if (!first) {
+                builder.append(",");
+            } else {
+                first = false;
+            }
+            addOrderByTerm(builder, order.getFieldName().getName(), order.isAcsending());
+        }
+    }
+
+    /*
+     * Get the columns rows are sorted on. These are the $orderby columns or, by
+     * default, the primary key. For keyset pagination the primary key is
+     * appended to the $orderby columns, if not already present, so every row
+     * has a distinct position.
+     */
+    public List<OrderBy> getSortColumns() {
+        List<OrderBy> sortColumns = new ArrayList<OrderBy>();
+        String primaryKeyName = colTypesMap.getPrimaryKeyName();
         if (null != orderBy) {
-            addOrderBy(builder);
-            boolean first = true;
+            sortColumns.addAll(orderBy);
+            if (!keysetPagination || null == primaryKeyName) {
+                return sortColumns;
+            }
             for (OrderBy order : orderBy) {
-                if (!first) {
-                    builder.append(",");
-                } else {
-                    first = false;
+                if (primaryKeyName.equals(order.getFieldName().getName())) {
+                    return sortColumns;
                 }
-                addOrderByTerm(builder, order.getFieldName().getName(), order.isAcsending());
             }
-        } else {
+        }
+        if (null != primaryKeyName) {
             // By default order by the primary key.
-            if (null == colTypesMap.getPrimaryKeyName()) {
-                LOGGER.warn("Primary key name not known. Cannot add \"ORDER BY\" clause.");
-                return;
+            sortColumns.add(new OrderBy(primaryKeyName, Direction.ASCENDING));
+        }
+        return sortColumns;
+    }
+
+    /*
+     * Enable keyset pagination. Rows are then sorted on a unique set of
+     * columns so a page can be continued from its last row.
+     */
+    public void setKeysetPagination(boolean keysetPagination) {
+        this.keysetPagination = keysetPagination;
+    }
+
+    /*
+     * Return only rows sorted after the given position, less the rows the
+     * token skips. Enables keyset pagination. The token must hold the current
+     * sort columns.
+     */
+    public void setSeekAfter(KeysetToken seekAfter) {
+        keysetPagination = true;
+        List<String> columnNames = new ArrayList<String>();
+        for (OrderBy order : getSortColumns()) {
+            columnNames.add(order.getFieldName().getName());
+        }
+        if (!columnNames.equals(seekAfter.getColumnNames())) {
+            throw new JdbcException(Status.BAD_REQUEST, "$skiptoken does not match the $orderby of the request.");
+        }
+        this.seekAfter = null == seekAfter.getValues() ? null : seekAfter;
+        this.skip = 0 == seekAfter.getSkip() ? null : Integer.toString(seekAfter.getSkip());
+    }
+
+    /*
+     * The position rows are returned after. Null if returned from the first
+     * row.
+     */
+    public KeysetToken getSeekAfter() {
+        return seekAfter;
+    }
+
+    /*
+     * The number of rows skipped, after the seek position if any.
+     */
+    public int getSkipCount() {
+        return null == skip ? 0 : parseRowCount(ODataParser.SKIP_KEY, skip);
+    }
+
+    /*
+     * Parse a $top or $skip row count. A count that is not a non negative
+     * integer is rejected as a bad request.
+     */
+    protected static int parseRowCount(String option, String value) {
+        try {
+            int count = Integer.parseInt(value);
+            if (count >= 0) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Invalid " + option + " value", e);
+        }
+        throw new JdbcException(Status.BAD_REQUEST, "Invalid " + option + " \"" + value + "\".");
+    }
+
+    /*
+     * Add the keyset predicate selecting rows sorted after the seek position.
+     * 
+     * Row value comparisons such as "(k1, k2) > (?, ?)" are not supported by
+     * Oracle or SQL Server, and cannot mix sort directions, so the expanded
+     * form "k1 > ? OR (k1 = ? AND (k2 > ? ...))" is used.
+     */
+    private void addSeekTerms(StringBuilder builder) {
+        builder.append(" (");
+        List<OrderBy> sortColumns = getSortColumns();
+        for (int i = 0; i < sortColumns.size(); i++) {
+            OrderBy order = sortColumns.get(i);
+            String columnName = order.getFieldName().getName();
+            Object value = seekAfter.getValues().get(i);
+            int sqlType = colTypesMap.getType(columnName);
+
+            if (i > 0) {
+                builder.append(" AND (");
+            }
+            builder.append("\"" + columnName + "\"" + (order.isAcsending() ? ">" : "<") + seekValue(value, sqlType));
+            if (i < sortColumns.size() - 1) {
+                builder.append(" OR (\"" + columnName + "\"=" + seekValue(value, sqlType));
             }
-            addOrderBy(builder);
-            addOrderByTerm(builder, colTypesMap.getPrimaryKeyName(), true);
         }
+        for (int i = 1; i < sortColumns.size(); i++) {
+            builder.append("))");
+        }
+        builder.append(")");
     }
 
     private void addOrderBy(StringBuilder builder) {
@@ -330,9 +470,9 @@ public abstract class SqlBuilder {
     private void addTop(StringBuilder builder) {
         if (null != top) {
             // Work out max row
-            int maxRow = Integer.parseInt(top);
+            int maxRow = parseRowCount(ODataParser.TOP_KEY, top);
             if (null != skip) {
-                maxRow += Integer.parseInt(skip);
+                maxRow += parseRowCount(ODataParser.SKIP_KEY, skip);
             }
 
             if (null != skip) {
@@ -341,17 +481,48 @@ public abstract class SqlBuilder {
             } else {
                 addWhere(builder);
             }
-            builder.append(" \"" + INNER_RN_NAME + "\" <= " + maxRow);
+            builder.append(" \"" + INNER_RN_NAME + "\" <= " + bind(maxRow, Types.INTEGER));
         }
     }
 
     private void addSkip(StringBuilder builder) {
         if (null != skip) {
             addWhere(builder);
-            builder.append(" \"" + INNER_RN_NAME + "\" > " + skip);
+            builder.append(" \"" + INNER_RN_NAME + "\" > " + bind(parseRowCount(ODataParser.SKIP_KEY, skip), Types.INTEGER));
         }
     }
 
+    /*
+     * Get the text for a seek position value. Literal values other than
+     * numbers are quoted.
+     */
+    private String seekValue(Object value, int sqlType) {
+        if (isParameterized() || value instanceof Number) {
+            return bind(value, sqlType);
+        }
+        return "'" + String.valueOf(value).replace("'", "''") + "'";
+    }
+
+    /*
+     * Get the text for a value. While building a parameterized command the
+     * value is bound and a '?' placeholder is returned. Otherwise the value is
+     * returned as a literal.
+     */
+    protected String bind(Object value, int sqlType) {
+        if (!isParameterized()) {
+            return String.valueOf(value);
+        }
+        parameters.add(new SqlParameterValue(sqlType, value));
+        return "?";
+    }
+
+    /*
+     * Check if a parameterized command is being built.
+     */
+    protected boolean isParameterized() {
+        return null != parameters;
+    }
+
     /*
      * Utility to obtain the reserved 'row number' column name. Used mainly in
      * testing but could be useful to the end user.
@@ -367,6 +538,24 @@ public abstract class SqlBuilder {
      */
     public abstract String getCommand();
 
+    /**
+     * Returns the SQL Statement with its filter, $top and $skip values replaced
+     * by '?' placeholders, together with the values to bind to them.
+     * 
+     * Like getCommand() this should only be called once per builder.
+     * 
+     * @return
+     */
+    public SqlCommand getParameterizedCommand() {
+        parameters = new ArrayList<SqlParameterValue>();
+        try {
+            String sql = getCommand();
+            return new SqlCommand(sql, parameters);
+        } finally {
+            parameters = null;
+        }
+    }
+
     /**
      * Sets the compatibility mode
      */
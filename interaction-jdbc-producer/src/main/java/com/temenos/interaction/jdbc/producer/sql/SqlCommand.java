@@ -0,0 +1,80 @@
+package com.temenos.interaction.jdbc.producer.sql;
+
+/*
+ * A parameterized SQL command.
+ *
+ * Holds the shape of the command, with a '?' placeholder for each value, and
+ * the typed values to bind to the placeholders in the order they appear.
+ * Commands differing only in their values share the same shape, so the
+ * database can reuse its execution plan rather than parse every command.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.jdbc.core.SqlParameterValue;
+
+public class SqlCommand {
+
+    private final String sql;
+    private final List<SqlParameterValue> parameters;
+
+    public SqlCommand(String sql, List<SqlParameterValue> parameters) {
+        this.sql = sql;
+        this.parameters = Collections.unmodifiableList(new ArrayList<SqlParameterValue>(parameters));
+    }
+
+    /*
+     * Get the command shape, with placeholders in place of the values.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /*
+     * Get the values bound to the placeholders, in statement order.
+     */
+    public List<SqlParameterValue> getParameters() {
+        return parameters;
+    }
+
+    /*
+     * Get the java.sql.Types of the bound values, in statement order.
+     */
+    public int[] getParameterTypes() {
+        int[] types = new int[parameters.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = parameters.get(i).getSqlType();
+        }
+        return types;
+    }
+
+    /*
+     * Get the bound values, in statement order.
+     */
+    public Object[] getParameterValues() {
+        Object[] values = new Object[parameters.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = parameters.get(i).getValue();
+        }
+        return values;
+    }
+
+    /*
+     * Get a key identifying commands which can share a prepared statement.
+     */
+    public String getShape() {
+        return sql + Arrays.toString(getParameterTypes());
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + Arrays.toString(getParameterValues());
+    }
+}
@@ -4,14 +4,13 @@ package com.temenos.interaction.jdbc.producer.sql.builder;
  * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
  *******************************************************************************/
 
+import java.sql.Types;
 import java.util.List;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.temenos.interaction.jdbc.ServerMode;
 import com.temenos.interaction.jdbc.producer.sql.ColumnTypesMap;
 import com.temenos.interaction.jdbc.producer.sql.SqlBuilder;
+import com.temenos.interaction.odataext.odataparser.ODataParser;
 import com.temenos.interaction.odataext.odataparser.data.AccessProfile;
 import com.temenos.interaction.odataext.odataparser.data.OrderBy;
 
@@ -23,8 +22,6 @@ import com.temenos.interaction.odataext.odataparser.data.OrderBy;
  */
 public class MSSQLBuilder extends SqlBuilder {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(MSSQLBuilder.class);
-
     /**
      * Constructor to build a SQL Server Command Builder
      */
@@ -74,25 +71,13 @@ public class MSSQLBuilder extends SqlBuilder {
     }
 
     private void addSkip(StringBuilder builder) {
-        int skipAsInt = 0;
-        try {
-            skipAsInt = skip == null ? SKIP_ROWS_DEFAULT : Integer.parseInt(skip);
-        } catch (NumberFormatException nfe) {
-            skipAsInt = SKIP_ROWS_DEFAULT;
-            LOGGER.warn("Invalid value provided to skip rows", nfe);
-        }
-        builder.append(" OFFSET " + skipAsInt + " ROWS");
+        int skipAsInt = skip == null ? SKIP_ROWS_DEFAULT : parseRowCount(ODataParser.SKIP_KEY, skip);
+        builder.append(" OFFSET " + bind(skipAsInt, Types.INTEGER) + " ROWS");
     }
 
     private void addTop(StringBuilder builder) {
-        int maxRow = 0;
-        try {
-            // Work out max row
-            maxRow = top == null ? MAX_ROWS_DEFAULT : Integer.parseInt(top);
-        } catch (NumberFormatException nfe) {
-            maxRow = MAX_ROWS_DEFAULT;
-            LOGGER.warn("Invalid value provided to fetch top rows", nfe);
-        }
-        builder.append(" FETCH NEXT " + maxRow + " ROWS ONLY");
+        // Work out max row
+        int maxRow = top == null ? MAX_ROWS_DEFAULT : parseRowCount(ODataParser.TOP_KEY, top);
+        builder.append(" FETCH NEXT " + bind(maxRow, Types.INTEGER) + " ROWS ONLY");
     }
 }
\ No newline at end of file
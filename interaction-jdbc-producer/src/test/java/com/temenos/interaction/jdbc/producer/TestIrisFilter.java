@@ -71,6 +71,29 @@ public class TestIrisFilter extends AbstractJdbcProducerTest {
         assertEquals(1, rowCount);
     }
 
+    /**
+     * Test a $filter value containing a quote is bound rather than breaking
+     * the command.
+     */
+    @Test
+    public void testIrisQuotedFilterQuery() throws Exception {
+
+        // Create the producer
+        JdbcProducer producer = new JdbcProducer(dataSource);
+
+        // Build up an InteractionContext
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl<String>();
+        queryParams.add(ODataParser.FILTER_KEY, VARCHAR_FIELD_NAME + " " + SqlRelation.EQ.getoDataString()
+                + " 'x'' OR ''1''=''1'");
+        MultivaluedMap<String, String> pathParams = new MultivaluedMapImpl<String>();
+        InteractionContext ctx = new InteractionContext(mock(UriInfo.class), mock(HttpHeaders.class), pathParams,
+                queryParams, mock(ResourceState.class), mock(Metadata.class));
+
+        // Run a query. No row holds the quoted value.
+        SqlRowSet rs = producer.query(TEST_TABLE_NAME, null, ctx);
+        assertFalse(rs.next());
+    }
+
     /**
      * Test access to database using Iris parameters with a numeric $filter
      * term.
@@ -0,0 +1,209 @@
+package com.temenos.interaction.jdbc.producer;
+
+/*
+ * Test keyset pagination. The SQL differs between servers so test each under both Oracle and MSSQL compatibility
+ * mode.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.UriInfo;
+
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.temenos.interaction.core.MultivaluedMapImpl;
+import com.temenos.interaction.core.command.InteractionContext;
+import com.temenos.interaction.core.entity.Entity;
+import com.temenos.interaction.core.entity.Metadata;
+import com.temenos.interaction.core.hypermedia.ResourceState;
+import com.temenos.interaction.core.resource.CollectionResource;
+import com.temenos.interaction.core.resource.EntityResource;
+import com.temenos.interaction.jdbc.JDBCProducerConstants;
+import com.temenos.interaction.jdbc.ServerMode;
+import com.temenos.interaction.jdbc.exceptions.JdbcException;
+import com.temenos.interaction.odataext.odataparser.ODataParser;
+
+/**
+ * Test keyset pagination with JdbcProducer class.
+ */
+public class TestKeysetPagination extends AbstractJdbcProducerTest {
+
+    @Test
+    public void testKeysetPagesMSSQL() throws Exception {
+        setMSSQLMode();
+        testKeysetPages(ServerMode.H2_MSSQL, null);
+    }
+
+    @Test
+    public void testKeysetPagesOracle() throws Exception {
+        setOracleMode();
+        testKeysetPages(ServerMode.H2_ORACLE, null);
+    }
+
+    @Test
+    public void testKeysetPagesOrderByMSSQL() throws Exception {
+        setMSSQLMode();
+        testKeysetPages(ServerMode.H2_MSSQL, INTEGER_FIELD_NAME + " desc");
+    }
+
+    @Test
+    public void testKeysetPagesOrderByOracle() throws Exception {
+        setOracleMode();
+        testKeysetPages(ServerMode.H2_ORACLE, INTEGER_FIELD_NAME + " desc");
+    }
+
+    /*
+     * Page through the table two rows at a time. Rows should be returned once
+     * each in sort order.
+     */
+    private void testKeysetPages(ServerMode serverMode, String orderBy) throws Exception {
+        JdbcProducer producer = new JdbcProducer(dataSource, serverMode);
+        producer.setKeysetPagination(true);
+
+        List<String> keys = new ArrayList<String>();
+        String token = null;
+        int pages = 0;
+        do {
+            CollectionResource<Entity> page = producer.queryEntities(TEST_TABLE_NAME, context("2", orderBy, token),
+                    "returnEntityType");
+            for (EntityResource<Entity> entityResource : page.getEntities()) {
+                keys.add((String) entityResource.getEntity().getProperties().getProperty(KEY_FIELD_NAME).getValue());
+            }
+            token = page.getSkipToken();
+            pages++;
+        } while (null != token);
+
+        assertEquals(2, pages);
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < TEST_ROW_COUNT; i++) {
+            expected.add(TEST_KEY_DATA + (null == orderBy ? i : TEST_ROW_COUNT - 1 - i));
+        }
+        assertEquals(expected, keys);
+    }
+
+    /**
+     * Test paging continues by row count when the sort column is null in the
+     * last row of a page.
+     */
+    @Test
+    public void testKeysetPagesNullSortColumn() throws Exception {
+        new JdbcTemplate(dataSource).update("UPDATE \"" + TEST_TABLE_NAME + "\" SET \"" + VARCHAR_FIELD_NAME
+                + "\" = NULL WHERE \"" + KEY_FIELD_NAME + "\" <> '" + TEST_KEY_DATA + (TEST_ROW_COUNT - 1) + "'");
+        JdbcProducer producer = new JdbcProducer(dataSource);
+        producer.setKeysetPagination(true);
+
+        List<String> keys = new ArrayList<String>();
+        String token = null;
+        int pages = 0;
+        do {
+            CollectionResource<Entity> page = producer.queryEntities(TEST_TABLE_NAME,
+                    context("2", VARCHAR_FIELD_NAME, token, null), "returnEntityType");
+            for (EntityResource<Entity> entityResource : page.getEntities()) {
+                keys.add((String) entityResource.getEntity().getProperties().getProperty(KEY_FIELD_NAME).getValue());
+            }
+            token = page.getSkipToken();
+            pages++;
+        } while (null != token && pages < 10);
+
+        assertEquals(2, pages);
+        Collections.sort(keys);
+        assertEquals(allKeys(), keys);
+    }
+
+    /**
+     * Test paging continues by row count when the sort column is not selected.
+     */
+    @Test
+    public void testKeysetPagesSortColumnNotSelected() throws Exception {
+        JdbcProducer producer = new JdbcProducer(dataSource);
+        producer.setKeysetPagination(true);
+
+        List<String> values = new ArrayList<String>();
+        String token = null;
+        int pages = 0;
+        do {
+            CollectionResource<Entity> page = producer.queryEntities(TEST_TABLE_NAME,
+                    context("2", null, token, VARCHAR_FIELD_NAME), "returnEntityType");
+            for (EntityResource<Entity> entityResource : page.getEntities()) {
+                values.add((String) entityResource.getEntity().getProperties().getProperty(VARCHAR_FIELD_NAME)
+                        .getValue());
+            }
+            token = page.getSkipToken();
+            pages++;
+        } while (null != token && pages < 10);
+
+        assertEquals(2, pages);
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < TEST_ROW_COUNT; i++) {
+            expected.add(TEST_VARCHAR_DATA + i);
+        }
+        assertEquals(expected, values);
+    }
+
+    /**
+     * Test no token is given without keyset pagination.
+     */
+    @Test
+    public void testNoTokenByDefault() throws Exception {
+        JdbcProducer producer = new JdbcProducer(dataSource);
+        CollectionResource<Entity> page = producer.queryEntities(TEST_TABLE_NAME, context("2", null, null),
+                "returnEntityType");
+        assertEquals(2, page.getEntities().size());
+        assertNull(page.getSkipToken());
+    }
+
+    /**
+     * Test a token is rejected if the sort order has changed.
+     */
+    @Test(expected = JdbcException.class)
+    public void testTokenOrderByMismatch() throws Exception {
+        JdbcProducer producer = new JdbcProducer(dataSource);
+        producer.setKeysetPagination(true);
+        CollectionResource<Entity> page = producer.queryEntities(TEST_TABLE_NAME, context("2", null, null),
+                "returnEntityType");
+        producer.queryEntities(TEST_TABLE_NAME, context("2", INTEGER_FIELD_NAME, page.getSkipToken()),
+                "returnEntityType");
+    }
+
+    private List<String> allKeys() {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < TEST_ROW_COUNT; i++) {
+            keys.add(TEST_KEY_DATA + i);
+        }
+        return keys;
+    }
+
+    private InteractionContext context(String top, String orderBy, String skipToken) {
+        return context(top, orderBy, skipToken, null);
+    }
+
+    private InteractionContext context(String top, String orderBy, String skipToken, String select) {
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl<String>();
+        queryParams.add(ODataParser.TOP_KEY, top);
+        if (null != select) {
+            queryParams.add(ODataParser.SELECT_KEY, select);
+        }
+        if (null != orderBy) {
+            queryParams.add(ODataParser.ORDERBY_KEY, orderBy);
+        }
+        if (null != skipToken) {
+            queryParams.add(JDBCProducerConstants.SKIPTOKEN_KEY, skipToken);
+        }
+        MultivaluedMap<String, String> pathParams = new MultivaluedMapImpl<String>();
+        return new InteractionContext(mock(UriInfo.class), mock(HttpHeaders.class), pathParams, queryParams,
+                mock(ResourceState.class), mock(Metadata.class));
+    }
+}
@@ -8,9 +8,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.sql.DataSource;
 import javax.ws.rs.core.HttpHeaders;
@@ -19,6 +23,8 @@ import javax.ws.rs.core.UriInfo;
 
 import org.h2.jdbcx.JdbcDataSource;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.springframework.jdbc.InvalidResultSetAccessException;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 
@@ -315,6 +321,46 @@ public class TestLocalJdbcProducer extends AbstractJdbcProducerTest {
         assertEquals(TEST_ROW_COUNT, entityCount);
     }
 
+    /**
+     * Test entities are read from the cursor whatever the fetch size, and the
+     * connection is released once they have been read.
+     */
+    @Test
+    public void testIrisQueryEntitiesFetchSize() throws Exception {
+
+        // Create the producer
+        DataSource spyDataSource = spy(dataSource);
+        JdbcProducer producer = new JdbcProducer(spyDataSource);
+        assertEquals(JdbcProducer.DEFAULT_FETCH_SIZE, producer.getFetchSize());
+        producer.setFetchSize(1);
+        assertEquals(1, producer.getFetchSize());
+
+        // Build up an InteractionContext
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl<String>();
+        MultivaluedMap<String, String> pathParams = new MultivaluedMapImpl<String>();
+        InteractionContext ctx = new InteractionContext(mock(UriInfo.class), mock(HttpHeaders.class), pathParams,
+                queryParams, mock(ResourceState.class), mock(Metadata.class));
+
+        // Run a query, keeping hold of the connections it uses.
+        final List<Connection> connections = new ArrayList<Connection>();
+        doAnswer(new Answer<Connection>() {
+            @Override
+            public Connection answer(InvocationOnMock invocation) throws Throwable {
+                Connection connection = (Connection) invocation.callRealMethod();
+                connections.add(connection);
+                return connection;
+            }
+        }).when(spyDataSource).getConnection();
+        CollectionResource<Entity> entities = producer.queryEntities(TEST_TABLE_NAME, ctx, "returnEntityType");
+
+        // Check the results
+        assertEquals(TEST_ROW_COUNT, entities.getEntities().size());
+        assertFalse(connections.isEmpty());
+        for (Connection connection : connections) {
+            assertTrue(connection.isClosed());
+        }
+    }
+
     /**
      * Test access to database using Iris parameters with a $select term.
      */
@@ -0,0 +1,90 @@
+package com.temenos.interaction.jdbc.producer.sql;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+
+import com.temenos.interaction.jdbc.producer.AbstractJdbcProducerTest;
+
+/**
+ * Test ColumnTypesMapCache class.
+ */
+public class TestColumnTypesMapCache extends AbstractJdbcProducerTest {
+
+	/**
+	 * Test the metadata is read once.
+	 */
+	@Test
+	public void testGetReadsTableOnce() throws Exception {
+		DataSource spyDataSource = spy(dataSource);
+		ColumnTypesMapCache cache = new ColumnTypesMapCache();
+
+		ColumnTypesMap first = cache.get(spyDataSource, TEST_TABLE_NAME);
+		ColumnTypesMap second = cache.get(spyDataSource, TEST_TABLE_NAME);
+
+		assertSame(first, second);
+		assertEquals(KEY_FIELD_NAME, first.getPrimaryKeyName());
+		verify(spyDataSource, times(1)).getConnection();
+	}
+
+	/**
+	 * Test invalidated metadata is read again.
+	 */
+	@Test
+	public void testInvalidate() throws Exception {
+		DataSource spyDataSource = spy(dataSource);
+		ColumnTypesMapCache cache = new ColumnTypesMapCache();
+
+		ColumnTypesMap first = cache.get(spyDataSource, TEST_TABLE_NAME);
+		cache.invalidate(spyDataSource, TEST_TABLE_NAME);
+		ColumnTypesMap second = cache.get(spyDataSource, TEST_TABLE_NAME);
+
+		assertNotSame(first, second);
+		verify(spyDataSource, times(2)).getConnection();
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Test tables are keyed by data source.
+	 */
+	@Test
+	public void testKeyedByDataSource() throws Exception {
+		ColumnTypesMapCache cache = new ColumnTypesMapCache();
+
+		ColumnTypesMap first = cache.get(dataSource, TEST_TABLE_NAME);
+		ColumnTypesMap second = cache.get(spy(dataSource), TEST_TABLE_NAME);
+
+		assertNotSame(first, second);
+		assertEquals(2, cache.size());
+	}
+
+	/**
+	 * Test warming skips unknown tables.
+	 */
+	@Test
+	public void testWarm() throws Exception {
+		DataSource spyDataSource = spy(dataSource);
+		ColumnTypesMapCache cache = new ColumnTypesMapCache();
+
+		cache.warm(spyDataSource, Arrays.asList(TEST_TABLE_NAME, "noSuchTable"));
+		assertEquals(1, cache.size());
+
+		cache.get(spyDataSource, TEST_TABLE_NAME);
+		verify(spyDataSource, times(2)).getConnection();
+	}
+}
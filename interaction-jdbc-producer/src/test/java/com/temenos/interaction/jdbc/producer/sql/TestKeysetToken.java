@@ -0,0 +1,86 @@
+package com.temenos.interaction.jdbc.producer.sql;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Test;
+
+import com.temenos.interaction.jdbc.exceptions.JdbcException;
+
+/**
+ * Test KeysetToken class.
+ */
+public class TestKeysetToken {
+
+	/**
+	 * Test values survive encoding with their types.
+	 */
+	@Test
+	public void testRoundTrip() {
+		List<String> columnNames = Arrays.asList("name", "count", "big", "amount", "rate", "when");
+		List<Object> values = Arrays.<Object> asList("it's a/b+c", 42, 7L, new BigDecimal("12.50"), 0.5d,
+				Timestamp.valueOf("2000-12-12 12:00:00.123"));
+
+		String token = new KeysetToken(columnNames, values).encode();
+		assertFalse(token.contains("/") || token.contains("+") || token.contains("="));
+
+		KeysetToken decoded = KeysetToken.decode(token);
+		assertEquals(columnNames, decoded.getColumnNames());
+		assertEquals(values, decoded.getValues());
+	}
+
+	/**
+	 * Test a token continuing by row count, with or without a position.
+	 */
+	@Test
+	public void testRoundTripSkip() {
+		List<String> columnNames = Arrays.asList("name", "id");
+
+		KeysetToken decoded = KeysetToken.decode(new KeysetToken(columnNames, null, 20).encode());
+		assertEquals(columnNames, decoded.getColumnNames());
+		assertNull(decoded.getValues());
+		assertEquals(20, decoded.getSkip());
+
+		List<Object> values = Arrays.<Object> asList("a", 1);
+		decoded = KeysetToken.decode(new KeysetToken(columnNames, values, 4).encode());
+		assertEquals(values, decoded.getValues());
+		assertEquals(4, decoded.getSkip());
+	}
+
+	/**
+	 * Test a token not produced by encode() is rejected.
+	 */
+	@Test(expected = JdbcException.class)
+	public void testInvalidToken() {
+		KeysetToken.decode("not a token");
+	}
+
+	/**
+	 * Test a token of another format version is rejected as a bad request.
+	 */
+	@Test
+	public void testOtherVersion() {
+		byte[] bytes = Base64.getUrlDecoder().decode(new KeysetToken(Arrays.asList("id"), null, 1).encode());
+		bytes[0]++;
+		try {
+			KeysetToken.decode(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+			fail("Token of another version accepted");
+		} catch (JdbcException e) {
+			assertEquals(Status.BAD_REQUEST, e.getHttpStatus());
+		}
+	}
+}
@@ -3,6 +3,7 @@ package com.temenos.interaction.jdbc.producer.sql.builder;
 /*******************************************************************************
  * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
  *******************************************************************************/
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -10,7 +11,9 @@ import static org.mockito.Mockito.mock;
 
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -19,6 +22,8 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import javax.ws.rs.core.Response.Status;
+
 import org.junit.Ignore;
 import org.junit.Test;
 import org.odata4j.expression.OrderByExpression;
@@ -26,9 +31,11 @@ import org.odata4j.expression.OrderByExpression;
 import com.temenos.interaction.jdbc.JDBCProducerConstants;
 import com.temenos.interaction.jdbc.ServerMode;
 import com.temenos.interaction.jdbc.SqlRelation;
+import com.temenos.interaction.jdbc.exceptions.JdbcException;
 import com.temenos.interaction.jdbc.producer.sql.ColumnTypesMap;
 import com.temenos.interaction.jdbc.producer.sql.SqlBuilder;
 import com.temenos.interaction.jdbc.producer.sql.SqlBuilderFactory;
+import com.temenos.interaction.jdbc.producer.sql.SqlCommand;
 import com.temenos.interaction.odataext.odataparser.data.AccessProfile;
 import com.temenos.interaction.odataext.odataparser.data.FieldName;
 import com.temenos.interaction.odataext.odataparser.data.OrderBy;
@@ -257,6 +264,65 @@ public class TestMSSQLBuilder {
                 + "OFFSET 3 ROWS FETCH NEXT 2 ROWS ONLY", actualCommand);
     }
 
+    /**
+     * Test an invalid $skip is rejected as a bad request.
+     */
+    @Test
+    public void testGetCommandInvalidSkip() {
+        AccessProfile accessProfile = new AccessProfile(new RowFilters(), new HashSet<FieldName>());
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        map.put("col1", java.sql.Types.VARCHAR);
+        ColumnTypesMap columnTypesMap = new ColumnTypesMap(map, "col1");
+
+        for (String skip : Arrays.asList("x", "-1", "99999999999")) {
+            SqlBuilder builder = SqlBuilderFactory.getSqlBuilder(TEST_TABLE_NAME, null, accessProfile, columnTypesMap, "2",
+                    skip, null, ServerMode.MSSQL);
+            try {
+                builder.getCommand();
+                fail("Invalid $skip \"" + skip + "\" accepted");
+            } catch (JdbcException e) {
+                assertEquals(Status.BAD_REQUEST, e.getHttpStatus());
+            }
+        }
+    }
+
+    /**
+     * Test a parameterized command with $filter, $top and $skip.
+     */
+    @Test
+    public void testGetParameterizedCommand() {
+
+        // Build up an access profile
+        RowFilters filters = new RowFilters("startswith(col1, 'it''s') " + Relation.AND.getoDataString() + " col2 "
+                + Relation.LE.getoDataString() + " 4");
+        Set<FieldName> selects = new HashSet<FieldName>();
+        AccessProfile accessProfile = new AccessProfile(filters, selects);
+
+        // Build up some column metadata with a primary key
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        map.put("col1", java.sql.Types.VARCHAR);
+        map.put("col2", java.sql.Types.INTEGER);
+        ColumnTypesMap columnTypesMap = new ColumnTypesMap(map, "col1");
+
+        // Create the builder
+        SqlBuilder builder = null;
+        try {
+            builder = SqlBuilderFactory.getSqlBuilder(TEST_TABLE_NAME, null, accessProfile, columnTypesMap, "2", "3",
+                    null, ServerMode.MSSQL);
+        } catch (Exception e) {
+            fail();
+        }
+
+        // Get the command.
+        SqlCommand actualCommand = builder.getParameterizedCommand();
+
+        assertEquals("SELECT * FROM \"" + TEST_TABLE_NAME + "\" WHERE \"col1\" LIKE ? + '%' AND \"col2\"<=?"
+                + " ORDER BY \"col1\" OFFSET ? ROWS FETCH NEXT ? ROWS ONLY", actualCommand.getSql());
+        assertArrayEquals(new Object[] { "it's", 4, 3, 2 }, actualCommand.getParameterValues());
+        assertArrayEquals(new int[] { Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.INTEGER },
+                actualCommand.getParameterTypes());
+    }
+
     /**
      * Test a command with bracketed $filter
      */
@@ -4,6 +4,7 @@ package com.temenos.interaction.jdbc.producer.sql.builder;
  * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
  *******************************************************************************/
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -11,7 +12,9 @@ import static org.mockito.Mockito.mock;
 
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -20,15 +23,20 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import javax.ws.rs.core.Response.Status;
+
 import org.junit.Ignore;
 import org.junit.Test;
 import org.odata4j.expression.OrderByExpression;
 
 import com.temenos.interaction.jdbc.ServerMode;
 import com.temenos.interaction.jdbc.SqlRelation;
+import com.temenos.interaction.jdbc.exceptions.JdbcException;
 import com.temenos.interaction.jdbc.producer.sql.ColumnTypesMap;
+import com.temenos.interaction.jdbc.producer.sql.KeysetToken;
 import com.temenos.interaction.jdbc.producer.sql.SqlBuilder;
 import com.temenos.interaction.jdbc.producer.sql.SqlBuilderFactory;
+import com.temenos.interaction.jdbc.producer.sql.SqlCommand;
 import com.temenos.interaction.odataext.odataparser.data.AccessProfile;
 import com.temenos.interaction.odataext.odataparser.data.FieldName;
 import com.temenos.interaction.odataext.odataparser.data.OrderBy;
@@ -194,6 +202,103 @@ public class TestOracleBuilder {
                 + " WHERE \"rn\" > 3 AND \"rn\" <= 5", actualCommand);
     }
     
+    /**
+     * Test an invalid $skip is rejected as a bad request.
+     */
+    @Test
+    public void testGetCommandInvalidSkip() {
+        AccessProfile accessProfile = new AccessProfile(new RowFilters(), new HashSet<FieldName>());
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        map.put("col1", java.sql.Types.VARCHAR);
+        ColumnTypesMap columnTypesMap = new ColumnTypesMap(map, "col1");
+
+        for (String skip : Arrays.asList("x", "-1", "99999999999")) {
+            SqlBuilder builder = new OracleBuilder(TEST_TABLE_NAME, null, accessProfile, columnTypesMap, "2", skip, null);
+            try {
+                builder.getCommand();
+                fail("Invalid $skip \"" + skip + "\" accepted");
+            } catch (JdbcException e) {
+                assertEquals(Status.BAD_REQUEST, e.getHttpStatus());
+            }
+        }
+    }
+
+    /**
+     * Test a parameterized command with $filter, $top, $skip and a key.
+     */
+    @Test
+    public void testGetParameterizedCommand() {
+
+        // Build up an access profile
+        RowFilters filters = new RowFilters("col2 " + Relation.GT.getoDataString() + " 10");
+        Set<FieldName> selects = new HashSet<FieldName>();
+        AccessProfile accessProfile = new AccessProfile(filters, selects);
+
+        // Build up some column metadata with a primary key
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        map.put("col1", java.sql.Types.VARCHAR);
+        map.put("col2", java.sql.Types.INTEGER);
+        ColumnTypesMap columnTypesMap = new ColumnTypesMap(map, "col1");
+
+        // Create the builder
+        OracleBuilder builder = null;
+        try {
+            builder = new OracleBuilder(TEST_TABLE_NAME, "aKeyValue", accessProfile, columnTypesMap, "2", "3", null);
+        } catch (Exception e) {
+            fail();
+        }
+
+        // Get the command.
+        SqlCommand actualCommand = builder.getParameterizedCommand();
+
+        assertEquals("SELECT * FROM ( SELECT inner_tab.*, ROWNUM \"rn\" FROM (" + " SELECT * FROM \"" + TEST_TABLE_NAME
+                + "\" WHERE \"col2\">? AND \"col1\"=? ORDER BY \"col1\" ) inner_tab )"
+                + " WHERE \"rn\" > ? AND \"rn\" <= ?", actualCommand.getSql());
+        assertArrayEquals(new Object[] { 10, "aKeyValue", 3, 5 }, actualCommand.getParameterValues());
+        assertArrayEquals(new int[] { Types.INTEGER, Types.VARCHAR, Types.INTEGER, Types.INTEGER },
+                actualCommand.getParameterTypes());
+    }
+
+    /**
+     * Test a keyset paginated command continuing after a given row.
+     */
+    @Test
+    public void testGetCommandSeek() {
+
+        // Build up an access profile
+        RowFilters filters = new RowFilters("col2 " + Relation.GT.getoDataString() + " 10 "
+                + Relation.OR.getoDataString() + " col2 " + Relation.LT.getoDataString() + " 5");
+        Set<FieldName> selects = new HashSet<FieldName>();
+        AccessProfile accessProfile = new AccessProfile(filters, selects);
+
+        // Build up some column metadata with a primary key
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        map.put("col1", java.sql.Types.VARCHAR);
+        map.put("col2", java.sql.Types.INTEGER);
+        ColumnTypesMap columnTypesMap = new ColumnTypesMap(map, "col1");
+
+        // Order by a non unique column. The key is added to make it unique.
+        List<OrderBy> orderBy = new ArrayList<OrderBy>();
+        orderBy.add(new OrderBy("col2", OrderByExpression.Direction.DESCENDING));
+
+        // Create the builder
+        OracleBuilder builder = null;
+        try {
+            builder = new OracleBuilder(TEST_TABLE_NAME, null, accessProfile, columnTypesMap, "2", null, orderBy);
+        } catch (Exception e) {
+            fail();
+        }
+        builder.setSeekAfter(new KeysetToken(Arrays.asList("col2", "col1"), Arrays.<Object> asList(7, "a'b")));
+
+        // Get the command.
+        SqlCommand actualCommand = builder.getParameterizedCommand();
+
+        assertEquals("SELECT * FROM ( SELECT inner_tab.*, ROWNUM \"rn\" FROM (" + " SELECT * FROM \"" + TEST_TABLE_NAME
+                + "\" WHERE (\"col2\">? OR \"col2\"<?) AND (\"col2\"<? OR (\"col2\"=? AND (\"col1\">?)))"
+                + " ORDER BY \"col2\" DESC, \"col1\" ) inner_tab ) WHERE \"rn\" <= ?", actualCommand.getSql());
+        assertArrayEquals(new Object[] { 10, 5, 7, 7, "a'b", 2 }, actualCommand.getParameterValues());
+    }
+
     /**
      * Test a command with bracketed $filter
      */
@@ -5,17 +5,19 @@ package com.temenos.interaction.media.hal;
  *******************************************************************************/
 
 
-import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PushbackInputStream;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.net.URI;
@@ -62,6 +64,7 @@ import com.temenos.interaction.core.entity.EntityProperties;
 import com.temenos.interaction.core.entity.EntityProperty;
 import com.temenos.interaction.core.entity.Metadata;
 import com.temenos.interaction.core.entity.vocabulary.terms.TermMandatory;
+import com.temenos.interaction.core.hypermedia.BeanAccessors;
 import com.temenos.interaction.core.hypermedia.DefaultResourceStateProvider;
 import com.temenos.interaction.core.hypermedia.Link;
 import com.temenos.interaction.core.hypermedia.MethodNotAllowedException;
@@ -69,6 +72,8 @@ import com.temenos.interaction.core.hypermedia.ResourceState;
 import com.temenos.interaction.core.hypermedia.ResourceStateMachine;
 import com.temenos.interaction.core.hypermedia.ResourceStateProvider;
 import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.metrics.Metrics;
+import com.temenos.interaction.core.metrics.MetricsRecorder.Stage;
 import com.temenos.interaction.core.resource.CollectionResource;
 import com.temenos.interaction.core.resource.EntityResource;
 import com.temenos.interaction.core.resource.RESTResource;
@@ -86,6 +91,7 @@ import com.theoryinpractise.halbuilder.standard.StandardRepresentationFactory;
 @Produces({HALMediaType.APPLICATION_HAL_XML, HALMediaType.APPLICATION_HAL_JSON, MediaType.APPLICATION_JSON})
 public class HALProvider implements MessageBodyReader<RESTResource>, MessageBodyWriter<RESTResource> {
 	private final Logger logger = LoggerFactory.getLogger(HALProvider.class);
+	private static final int WRITE_BUFFER_SIZE = 8192;
 
 	@Context
 	private UriInfo uriInfo;
@@ -231,6 +237,18 @@ public class HALProvider implements MessageBodyReader<RESTResource>, MessageBody
 			MultivaluedMap<String, Object> httpHeaders,
 			OutputStream entityStream) throws IOException,
 			WebApplicationException {
+		long start = Metrics.start();
+		try {
+			write(resource, type, genericType, mediaType, httpHeaders, entityStream);
+		} finally {
+			Metrics.stop(Stage.SERIALIZATION, resource != null ? resource.getEntityName() : null, String.valueOf(mediaType), start);
+		}
+	}
+
+	private void write(RESTResource resource, Class<?> type, Type genericType,
+			MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+			OutputStream entityStream) throws IOException,
+			WebApplicationException {
 		logger.debug("Writing " + mediaType);
 		Representation halResource;
 		try {
@@ -241,12 +259,44 @@ public class HALProvider implements MessageBodyReader<RESTResource>, MessageBody
 			throw new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR);
 		}
 		String baseMediaType = HALMediaType.baseMediaType( mediaType );
-		String representation = halResource.toString(baseMediaType);
 		String charset = HALMediaType.charset( mediaType, "UTF-8" );
 
-		logger.debug("Produced [" + representation + "]");
+		if (logger.isDebugEnabled()) {
+			String representation = halResource.toString(baseMediaType);
+			logger.debug("Produced [" + representation + "]");
+			entityStream.write(representation.getBytes(charset));
+			return;
+		}
+
+		/*
+		 * Render straight to the entity stream rather than to a String and then
+		 * a byte array; the output is the same, but neither a full copy of the
+		 * document nor of its encoded bytes is held in memory.
+		 */
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new NonClosingOutputStream(entityStream), charset), WRITE_BUFFER_SIZE);
+		halResource.toString(baseMediaType, writer);
+		// the JSON writer has closed it already, closing again is a no-op
+		writer.close();
+	}
+
+	/*
+	 * The representation writers may close the writer they are given, the
+	 * entity stream however belongs to the container.
+	 */
+	private static class NonClosingOutputStream extends FilterOutputStream {
+		NonClosingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
 
-		entityStream.write(representation.getBytes(charset));
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
 	}
 
 	private Link findLinkByTransition(Collection<Link> links, Transition transition) {
@@ -439,11 +489,10 @@ public class HALProvider implements MessageBodyReader<RESTResource>, MessageBody
 			throw new IllegalStateException("Entity metadata could not be found [" + entityName + "]");
 
 		try {
-			BeanInfo beanInfo = Introspector.getBeanInfo(bean.getClass());
-			for (PropertyDescriptor propertyDesc : beanInfo.getPropertyDescriptors()) {
-			    String propertyName = propertyDesc.getName();
+			for (Map.Entry<String, Method> readMethod : BeanAccessors.of(bean.getClass()).getReadMethods().entrySet()) {
+			    String propertyName = readMethod.getKey();
 				if (entityMetadata.getPropertyVocabulary(propertyName) != null) {
-				    Object value = propertyDesc.getReadMethod().invoke(bean);
+				    Object value = readMethod.getValue().invoke(bean);
 					map.put(propertyName, value);				
 				}
 			}
@@ -34,6 +34,8 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.UriInfo;
 
+import ch.qos.logback.classic.Level;
+
 import org.apache.commons.beanutils.PropertyUtils;
 import org.custommonkey.xmlunit.Diff;
 import org.custommonkey.xmlunit.XMLAssert;
@@ -48,6 +50,7 @@ import org.odata4j.edm.EdmEntitySet;
 import org.odata4j.edm.EdmEntityType;
 import org.odata4j.edm.EdmProperty;
 import org.odata4j.edm.EdmSimpleType;
+import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.temenos.interaction.core.MultivaluedMapImpl;
@@ -606,6 +609,44 @@ public class TestHALProvider {
 		assertTrue(diff.similar());
 	}
 
+	/*
+	 * The tests log at debug level, where the representation is rendered to a
+	 * String to be logged; it is otherwise streamed to the entity stream.
+	 */
+	@Test
+	public void testSerialiseWithoutDebugLogging() throws Exception {
+		OEntityKey entityKey = OEntityKey.create("123");
+		List<OProperty<?>> properties = new ArrayList<OProperty<?>>();
+		properties.add(OProperties.string("name", "noah"));
+		properties.add(OProperties.string("age", "2"));
+		OEntity entity = OEntities.create(createMockChildrenEntitySet(), entityKey, properties, new ArrayList<OLink>());
+		EntityResource<OEntity> er = CommandHelper.createEntityResource(entity, OEntity.class);
+		er.setEntityName("Children");
+
+		HALProvider hp = new HALProvider(createMockChildVocabMetadata());
+		UriInfo mockUriInfo = mock(UriInfo.class);
+		when(mockUriInfo.getBaseUri()).thenReturn(new URI("http://www.temenos.com/rest.svc/"));
+		hp.setUriInfo(mockUriInfo);
+		ByteArrayOutputStream logged = new ByteArrayOutputStream();
+		hp.writeTo(er, EntityResource.class, OEntity.class, null, MediaType.APPLICATION_HAL_JSON_TYPE, null, logged);
+
+		ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(HALProvider.class);
+		Level level = logger.getLevel();
+		logger.setLevel(Level.INFO);
+		try {
+			ByteArrayOutputStream json = new ByteArrayOutputStream();
+			hp.writeTo(er, EntityResource.class, OEntity.class, null, MediaType.APPLICATION_HAL_JSON_TYPE, null, json);
+			assertEquals(logged.toString("UTF-8"), json.toString("UTF-8"));
+
+			ByteArrayOutputStream xml = new ByteArrayOutputStream();
+			hp.writeTo(er, EntityResource.class, OEntity.class, null, MediaType.APPLICATION_HAL_XML_TYPE, null, xml);
+			Diff diff = new Diff("<resource href=\"http://www.temenos.com/rest.svc/\"><name>noah</name><age>2</age></resource>", createFlatXML(xml));
+			assertTrue(diff.similar());
+		} finally {
+			logger.setLevel(level);
+		}
+	}
+
 	@Test
 	public void testSerialiseCollectionResource() throws Exception {
 		// the test key
@@ -638,6 +679,38 @@ public class TestHALProvider {
 		assertTrue(diff.similar());
 	}
 
+	@Test
+	public void testSerialiseCollectionResourceJSONLeavesStreamOpen() throws Exception {
+		List<OProperty<?>> properties = new ArrayList<OProperty<?>>();
+		properties.add(OProperties.string("name", "noah"));
+
+		Collection<EntityResource<OEntity>> entities = new ArrayList<EntityResource<OEntity>>();
+		for (int i = 0; i < 1000; i++) {
+			entities.add(createEntityResourceWithSelfLink(OEntityKey.create("" + i), properties, "http://www.temenos.com/rest.svc/children/" + i));
+		}
+		CollectionResource<OEntity> er = new CollectionResource<OEntity>("Children", entities);
+		er.setEntityName("Children");
+
+		HALProvider hp = new HALProvider(createMockChildVocabMetadata());
+		UriInfo mockUriInfo = mock(UriInfo.class);
+		when(mockUriInfo.getBaseUri()).thenReturn(new URI("http://www.temenos.com/rest.svc/"));
+		hp.setUriInfo(mockUriInfo);
+		final boolean[] closed = new boolean[1];
+		ByteArrayOutputStream bos = new ByteArrayOutputStream() {
+			@Override
+			public void close() throws IOException {
+				closed[0] = true;
+			}
+		};
+		hp.writeTo(er, CollectionResource.class, OEntity.class, null, MediaType.APPLICATION_HAL_JSON_TYPE, null, bos);
+
+		assertFalse(closed[0]);
+		Map<String, Object> data = parseJson(new String(bos.toByteArray(), "UTF-8"));
+		List<?> items = (List<?>) ((Map<?, ?>) data.get("_embedded")).get("item");
+		assertEquals(1000, items.size());
+		assertEquals("noah", ((Map<?, ?>) items.get(999)).get("name"));
+	}
+
 	@Test
 	public void testSerialiseEmbeddedResources() throws Exception {
 		OEntityKey parentEntityKey = OEntityKey.create("333");
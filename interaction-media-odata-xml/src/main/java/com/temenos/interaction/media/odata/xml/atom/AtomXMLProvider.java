@@ -5,8 +5,6 @@ package com.temenos.interaction.media.odata.xml.atom;
  *******************************************************************************/
 
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -40,7 +38,6 @@ import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 
-import org.apache.commons.io.IOUtils;
 import org.odata4j.core.OEntities;
 import org.odata4j.core.OEntity;
 import org.odata4j.core.OEntityKey;
@@ -75,6 +72,8 @@ import com.temenos.interaction.core.hypermedia.ResourceStateMachine;
 import com.temenos.interaction.core.hypermedia.ResourceStateProvider;
 import com.temenos.interaction.core.hypermedia.Transformer;
 import com.temenos.interaction.core.hypermedia.Transition;
+import com.temenos.interaction.core.metrics.Metrics;
+import com.temenos.interaction.core.metrics.MetricsRecorder.Stage;
 import com.temenos.interaction.core.resource.CollectionResource;
 import com.temenos.interaction.core.resource.EntityResource;
 import com.temenos.interaction.core.resource.RESTResource;
@@ -90,6 +89,8 @@ public class AtomXMLProvider implements MessageBodyReader<RESTResource>, Message
 	private static final String UTF_8 = "UTF-8";
 	private static final Logger LOGGER = LoggerFactory.getLogger(AtomXMLProvider.class);
 	private static final Pattern STRING_KEY_RESOURCE_PATTERN = Pattern.compile("(\\('.*'\\))");
+	public static final int DEFAULT_BUFFER_THRESHOLD = 64 * 1024;
+	private static final int FLUSH_INTERVAL = 32 * 1024;
 
 	@Context
 	private UriInfo uriInfo;
@@ -106,6 +107,7 @@ public class AtomXMLProvider implements MessageBodyReader<RESTResource>, Message
 	private final LinkInterceptor linkInterceptor = new ODataLinkInterceptor(this);
 
     private ResourceStateProvider resourceStateProvider;	
+    private int bufferThreshold = DEFAULT_BUFFER_THRESHOLD;
 
 	/**
 	 * Construct the jax-rs Provider for OData media type.
@@ -138,6 +140,19 @@ public class AtomXMLProvider implements MessageBodyReader<RESTResource>, Message
 		this.uriInfo = new UriInfoImpl(uriInfo);
 	}
 
+	/**
+	 * Responses up to this size are buffered and sent with a Content-Length
+	 * header, larger ones are streamed to the client as they are written.
+	 * @param bufferThreshold size in bytes, 0 to always stream
+	 */
+	public void setBufferThreshold(int bufferThreshold) {
+		this.bufferThreshold = bufferThreshold;
+	}
+
+	public int getBufferThreshold() {
+		return bufferThreshold;
+	}
+
 	@Override
 	public boolean isWriteable(Class<?> type, Type genericType,
 			Annotation[] annotations, MediaType mediaType) {
@@ -174,9 +189,25 @@ public class AtomXMLProvider implements MessageBodyReader<RESTResource>, Message
 			MultivaluedMap<String, Object> httpHeaders,
 			OutputStream entityStream) throws IOException,
 			WebApplicationException {
+		long start = Metrics.start();
+		try {
+			write(resource, type, genericType, mediaType, httpHeaders, entityStream);
+		} finally {
+			Metrics.stop(Stage.SERIALIZATION, resource != null ? resource.getEntityName() : null, String.valueOf(mediaType), start);
+		}
+	}
+
+	private void write(RESTResource resource, Class<?> type, Type genericType,
+			MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+			OutputStream entityStream) throws IOException,
+			WebApplicationException {
 		assert resource != null;
 		assert uriInfo != null;
-		ByteArrayOutputStream buffer = new ByteArrayOutputStream();  		
+        //Set response headers before the first byte may reach the entity stream
+        if(httpHeaders != null) {
+            httpHeaders.putSingle(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_ATOM_XML);        //Workaround for https://issues.apache.org/jira/browse/WINK-374
+        }
+        ThresholdOutputStream responseStream = new ThresholdOutputStream(entityStream, httpHeaders, bufferThreshold, FLUSH_INTERVAL);
         RESTResource restResource = processLinks((RESTResource) resource);
         Collection<Link> processedLinks = restResource.getLinks();
         if(ResourceTypeHelper.isType(type, genericType, EntityResource.class, OEntity.class)) {
@@ -204,14 +235,14 @@ public class AtomXMLProvider implements MessageBodyReader<RESTResource>, Message
             //Write entry
             // create OEntity with our EdmEntitySet see issue https://github.com/aphethean/IRIS/issues/20
             OEntity oentity = OEntities.create(entitySet, tempEntity.getEntityKey(), tempEntity.getProperties(), null);
-            entryWriter.write(uriInfo, new OutputStreamWriter(buffer, UTF_8), Responses.entity(oentity), entitySet, olinks);
+            entryWriter.write(uriInfo, new OutputStreamWriter(responseStream, UTF_8), Responses.entity(oentity), entitySet, olinks);
         } else if(ResourceTypeHelper.isType(type, genericType, EntityResource.class, Entity.class)) {
             EntityResource<Entity> entityResource = (EntityResource<Entity>) resource;
             //Write entry
             Entity entity = entityResource.getEntity();
             String entityName = entityResource.getEntityName();
             // Write Entity object with Abdera implementation
-            entityEntryWriter.write(uriInfo, new OutputStreamWriter(buffer, UTF_8), entityName, entity, processedLinks, entityResource.getEmbedded());
+            entityEntryWriter.write(uriInfo, new OutputStreamWriter(responseStream, UTF_8), entityName, entity, processedLinks, entityResource.getEmbedded());
         } else if(ResourceTypeHelper.isType(type, genericType, EntityResource.class)) {
             EntityResource<Object> entityResource = (EntityResource<Object>) resource;
             //Links and entity properties
@@ -226,7 +257,7 @@ public class AtomXMLProvider implements MessageBodyReader<RESTResource>, Message
                     }
                 }
             }
-            entityEntryWriter.write(uriInfo, new OutputStreamWriter(buffer, UTF_8), entityName, new Entity(entityName, props), processedLinks, entityResource.getEmbedded());
+            entityEntryWriter.write(uriInfo, new OutputStreamWriter(responseStream, UTF_8), entityName, new Entity(entityName, props), processedLinks, entityResource.getEmbedded());
         } else if(ResourceTypeHelper.isType(type, genericType, CollectionResource.class, OEntity.class)) {
             CollectionResource<OEntity> collectionResource = ((CollectionResource<OEntity>) resource);
             EdmEntitySet entitySet = getEdmEntitySet(collectionResource.getEntityName());
@@ -249,31 +280,25 @@ public class AtomXMLProvider implements MessageBodyReader<RESTResource>, Message
             Map<String,String> hiddenColumnValue = new HashMap<String,String>();
             hiddenColumnValue = collectionResource.getHiddenColumnValue();
             
-            feedWriter.write(uriInfo, new OutputStreamWriter(buffer, UTF_8), 
+            feedWriter.write(uriInfo, new OutputStreamWriter(responseStream, UTF_8), 
                     processedLinks, 
                     Responses.entities(entities, entitySet, inlineCount, skipToken), 
                     metadata.getModelName(), linkId, queryToken,hiddenColumnValue);
         } else if(ResourceTypeHelper.isType(type, genericType, CollectionResource.class, Entity.class)) {
             CollectionResource<Entity> collectionResource = ((CollectionResource<Entity>) resource);
             
-            // TODO implement collection properties and get transient value for skiptoken
             Integer inlineCount = collectionResource.getInlineCount();
-            String skipToken = null;
+            String skipToken = collectionResource.getSkipToken();
             String queryToken = collectionResource.getQueryToken();
             //Write feed
             AtomEntityFeedFormatWriter entityFeedWriter = new AtomEntityFeedFormatWriter(serviceDocument, metadata);
-            entityFeedWriter.write(uriInfo, new OutputStreamWriter(buffer, UTF_8), collectionResource, inlineCount, skipToken, metadata.getModelName(), queryToken);
+            entityFeedWriter.write(uriInfo, new OutputStreamWriter(responseStream, UTF_8), collectionResource, inlineCount, skipToken, metadata.getModelName(), queryToken);
         } else {
             LOGGER.error("Accepted object for writing in isWriteable, but type not supported in writeTo method");
             throw new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR);
         }
-        
-        //Set response headers
-        if(httpHeaders != null) {
-            httpHeaders.putSingle(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_ATOM_XML);        //Workaround for https://issues.apache.org/jira/browse/WINK-374
-            httpHeaders.putSingle(HttpHeaders.CONTENT_LENGTH, Integer.toString(buffer.size()));
-        }
-        IOUtils.copy(new ByteArrayInputStream(buffer.toByteArray()), entityStream);
+        // sets the Content-Length of a buffered response and writes it
+        responseStream.close();
 	}
 	
 	public RESTResource processLinks(RESTResource restResource) {
@@ -0,0 +1,107 @@
+package com.temenos.interaction.media.odata.xml.atom;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * Output stream holding a response in memory while it is smaller than a
+ * threshold, so it can be sent with a Content-Length header, and writing it
+ * straight to the entity stream once it grows larger. A streamed response has
+ * no Content-Length, the container sends it with chunked transfer encoding
+ * and the entity stream is flushed every time another flush interval worth of
+ * bytes has been written so the client receives the entries as they are
+ * produced.
+ *
+ * The entity stream belongs to the container and is never closed.
+ */
+class ThresholdOutputStream extends OutputStream {
+
+	private final OutputStream entityStream;
+	private final MultivaluedMap<String, Object> httpHeaders;
+	private final int threshold;
+	private final int flushInterval;
+	private ByteArrayOutputStream buffer;
+	private long unflushed;
+
+	/**
+	 * @param entityStream the response entity stream
+	 * @param httpHeaders the response headers, may be null
+	 * @param threshold the size in bytes above which the response is streamed,
+	 *            0 to always stream
+	 * @param flushInterval number of bytes written between two flushes of the
+	 *            entity stream once streaming
+	 */
+	ThresholdOutputStream(OutputStream entityStream, MultivaluedMap<String, Object> httpHeaders, int threshold, int flushInterval) {
+		this.entityStream = entityStream;
+		this.httpHeaders = httpHeaders;
+		this.threshold = threshold;
+		this.flushInterval = flushInterval;
+		if (threshold > 0) {
+			buffer = new ByteArrayOutputStream(Math.min(threshold, 8192));
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (buffer != null) {
+			if (buffer.size() + len <= threshold) {
+				buffer.write(b, off, len);
+				return;
+			}
+			startStreaming();
+		}
+		entityStream.write(b, off, len);
+		unflushed += len;
+		if (unflushed >= flushInterval) {
+			entityStream.flush();
+			unflushed = 0;
+		}
+	}
+
+	/**
+	 * @return true if the response has outgrown the threshold and is being
+	 *         written to the entity stream
+	 */
+	boolean isStreaming() {
+		return buffer == null;
+	}
+
+	/**
+	 * Write the buffered response, if any, to the entity stream and flush it.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (buffer != null) {
+			if (httpHeaders != null) {
+				httpHeaders.putSingle(HttpHeaders.CONTENT_LENGTH, Integer.toString(buffer.size()));
+			}
+			buffer.writeTo(entityStream);
+			buffer = null;
+		}
+		entityStream.flush();
+	}
+
+	private void startStreaming() throws IOException {
+		// headers are committed with the first byte
+		if (httpHeaders != null) {
+			httpHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+		}
+		unflushed = buffer.size();
+		buffer.writeTo(entityStream);
+		buffer = null;
+	}
+}
@@ -0,0 +1,83 @@
+package com.temenos.interaction.media.odata.xml.atom;
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.junit.Test;
+
+import com.temenos.interaction.core.MultivaluedMapImpl;
+
+public class TestThresholdOutputStream {
+
+	@Test
+	public void testSmallResponseBuffered() throws IOException {
+		CountingStream entityStream = new CountingStream();
+		MultivaluedMap<String, Object> headers = new MultivaluedMapImpl<Object>();
+		ThresholdOutputStream out = new ThresholdOutputStream(entityStream, headers, 10, 4);
+		out.write("hello".getBytes("UTF-8"));
+		assertFalse(out.isStreaming());
+		assertEquals(0, entityStream.size());
+
+		out.close();
+		assertEquals("hello", entityStream.toString("UTF-8"));
+		assertEquals("5", headers.getFirst(HttpHeaders.CONTENT_LENGTH));
+		assertFalse(entityStream.closed);
+	}
+
+	@Test
+	public void testLargeResponseStreamed() throws IOException {
+		CountingStream entityStream = new CountingStream();
+		MultivaluedMap<String, Object> headers = new MultivaluedMapImpl<Object>();
+		ThresholdOutputStream out = new ThresholdOutputStream(entityStream, headers, 10, 4);
+		out.write("hello".getBytes("UTF-8"));
+		out.write(" world".getBytes("UTF-8"));
+		assertTrue(out.isStreaming());
+		assertEquals("hello world", entityStream.toString("UTF-8"));
+		assertEquals(1, entityStream.flushes);
+
+		out.write('!');
+		out.close();
+		assertEquals("hello world!", entityStream.toString("UTF-8"));
+		assertNull(headers.getFirst(HttpHeaders.CONTENT_LENGTH));
+		assertFalse(entityStream.closed);
+	}
+
+	@Test
+	public void testZeroThresholdAlwaysStreams() throws IOException {
+		CountingStream entityStream = new CountingStream();
+		ThresholdOutputStream out = new ThresholdOutputStream(entityStream, null, 0, 1024);
+		assertTrue(out.isStreaming());
+		out.write('a');
+		assertEquals("a", entityStream.toString("UTF-8"));
+		out.close();
+		assertEquals(1, entityStream.flushes);
+	}
+
+	private static class CountingStream extends ByteArrayOutputStream {
+		int flushes;
+		boolean closed;
+
+		@Override
+		public void flush() {
+			flushes++;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
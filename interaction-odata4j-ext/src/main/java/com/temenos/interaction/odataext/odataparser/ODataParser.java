@@ -24,7 +24,6 @@ import org.odata4j.expression.CommonExpression;
 import org.odata4j.expression.EntitySimpleProperty;
 import org.odata4j.expression.OrderByExpression;
 import org.odata4j.producer.EntityQueryInfo;
-import org.odata4j.producer.resources.OptionsQueryParser;
 
 import com.temenos.interaction.core.command.InteractionContext;
 import com.temenos.interaction.odataext.odataparser.data.FieldName;
@@ -42,6 +41,22 @@ public class ODataParser {
     public static final String TOP_KEY = "$top";
     public static final String SKIP_KEY = "$skip";
     public static final String ORDERBY_KEY = "$orderby";
+    public static final String SKIPTOKEN_KEY = "$skiptoken";
+
+    // Parsed options shared by all requests.
+    private static volatile ParsedExpressionCache expressionCache = new ParsedExpressionCache();
+
+    public static ParsedExpressionCache getExpressionCache() {
+        return expressionCache;
+    }
+
+    // Replace the shared cache, for instance to change its size.
+    public static void setExpressionCache(ParsedExpressionCache cache) {
+        if (null == cache) {
+            throw new IllegalArgumentException("No expression cache supplied");
+        }
+        expressionCache = cache;
+    }
 
     // Convert an OData string parameter into filters.
     public static RowFilters parseFilters(String filterStr) {
@@ -77,7 +92,7 @@ public class ODataParser {
         if (null == selectStr) {
             return (null);
         }
-        return OptionsQueryParser.parseSelect(selectStr);
+        return expressionCache.getSelect(selectStr);
     }
 
     // Parse an $orderby expression.
@@ -86,8 +101,20 @@ public class ODataParser {
             return null;
         }
 
-        List<OrderByExpression> expressions = OData4jParseOrderBys(orderBy);
+        return wrapOrderBys(OData4jParseOrderBys(orderBy));
+    }
+
+    // Get the context's $orderby, parsed once per request.
+    public static List<OrderBy> getOrderBy(InteractionContext ctx) {
+        String orderBy = ctx.getQueryParameters().getFirst(ORDERBY_KEY);
+        if (null == orderBy) {
+            return null;
+        }
+
+        return wrapOrderBys(ParsedQueryOptions.get(ctx).getOrderBy(orderBy));
+    }
 
+    private static List<OrderBy> wrapOrderBys(List<OrderByExpression> expressions) {
         // Wrap the odata4j output.
         List<OrderBy> orderBys = new ArrayList<OrderBy>();
         for (OrderByExpression expression : expressions) {
@@ -100,7 +127,7 @@ public class ODataParser {
         if (null == orderByStr) {
             return (null);
         }
-        return OptionsQueryParser.parseOrderBy(orderByStr);
+        return expressionCache.getOrderBy(orderByStr);
     }
 
     // Convert filter to an oData parameter.
@@ -236,7 +263,8 @@ public class ODataParser {
      * Obtain the odata query information from the context's query parameters.
      * This parses the incoming parameters into an oData4j EntityQueryInfo
      * object. Further work is than required to convert this into our internal
-     * representation.
+     * representation. The parameters are parsed once per request, see
+     * ParsedQueryOptions.
      */
     public static EntityQueryInfo getEntityQueryInfo(InteractionContext ctx) {
         MultivaluedMap<String, String> queryParams = ctx.getQueryParameters();
@@ -245,8 +273,8 @@ public class ODataParser {
         String filter = queryParams.getFirst(FILTER_KEY);
         String select = queryParams.getFirst(SELECT_KEY);
 
-        return new EntityQueryInfo(OptionsQueryParser.parseFilter(filter), null, null,
-                OptionsQueryParser.parseSelect(select));
+        ParsedQueryOptions options = ParsedQueryOptions.get(ctx);
+        return new EntityQueryInfo(options.getFilter(filter), null, null, options.getSelect(select));
     }
 
     // Convert an OData filter into a list of authorization framework
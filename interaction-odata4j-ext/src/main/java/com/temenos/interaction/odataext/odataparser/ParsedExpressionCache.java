@@ -0,0 +1,119 @@
+package com.temenos.interaction.odataext.odataparser;
+
+/*
+ * Bounded cache of parsed OData $filter, $select and $orderby options, keyed by the raw option string.
+ *
+ * Clients issue the same few options over and over, and parsing them with odata4j is far more expensive than a
+ * lookup. The cached trees are shared by every request so they are never modified: odata4j expressions are
+ * immutable, RowFilters builds new 'and' nodes rather than changing the ones it wraps, and the lists are returned
+ * unmodifiable. Options which fail to parse are not cached.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.Collections;
+import java.util.List;
+
+import org.odata4j.expression.BoolCommonExpression;
+import org.odata4j.expression.EntitySimpleProperty;
+import org.odata4j.expression.OrderByExpression;
+import org.odata4j.producer.resources.OptionsQueryParser;
+
+import com.temenos.interaction.core.cache.LruCacheConcurrentImpl;
+
+public class ParsedExpressionCache {
+
+    // Number of options of each kind cached by default.
+    public static final int DEFAULT_SIZE = 1024;
+
+    private final LruCacheConcurrentImpl<String, BoolCommonExpression> filters;
+    private final LruCacheConcurrentImpl<String, List<EntitySimpleProperty>> selects;
+    private final LruCacheConcurrentImpl<String, List<OrderByExpression>> orderBys;
+
+    public ParsedExpressionCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param maxSize
+     *            the number of options of each kind above which the least
+     *            recently used ones are evicted
+     */
+    public ParsedExpressionCache(int maxSize) {
+        filters = new LruCacheConcurrentImpl<String, BoolCommonExpression>(maxSize);
+        selects = new LruCacheConcurrentImpl<String, List<EntitySimpleProperty>>(maxSize);
+        orderBys = new LruCacheConcurrentImpl<String, List<OrderByExpression>>(maxSize);
+    }
+
+    // Parse a $filter option, null if there is none.
+    public BoolCommonExpression getFilter(String filterStr) {
+        if (null == filterStr) {
+            return null;
+        }
+        BoolCommonExpression filter = filters.get(filterStr);
+        if (null == filter) {
+            filter = OptionsQueryParser.parseFilter(filterStr);
+            filters.put(filterStr, filter);
+        }
+        return filter;
+    }
+
+    // Parse a $select option, null if there is none.
+    public List<EntitySimpleProperty> getSelect(String selectStr) {
+        if (null == selectStr) {
+            return null;
+        }
+        List<EntitySimpleProperty> select = selects.get(selectStr);
+        if (null == select) {
+            select = Collections.unmodifiableList(OptionsQueryParser.parseSelect(selectStr));
+            selects.put(selectStr, select);
+        }
+        return select;
+    }
+
+    // Parse an $orderby option, null if there is none.
+    public List<OrderByExpression> getOrderBy(String orderByStr) {
+        if (null == orderByStr) {
+            return null;
+        }
+        List<OrderByExpression> orderBy = orderBys.get(orderByStr);
+        if (null == orderBy) {
+            orderBy = Collections.unmodifiableList(OptionsQueryParser.parseOrderBy(orderByStr));
+            orderBys.put(orderByStr, orderBy);
+        }
+        return orderBy;
+    }
+
+    public int getMaxSize() {
+        return filters.getMaxSize();
+    }
+
+    /**
+     * @return the number of options of all kinds currently cached
+     */
+    public int size() {
+        return filters.size() + selects.size() + orderBys.size();
+    }
+
+    /**
+     * @return the number of options found already parsed
+     */
+    public long getHitCount() {
+        return filters.getHitCount() + selects.getHitCount() + orderBys.getHitCount();
+    }
+
+    /**
+     * @return the number of options which had to be parsed
+     */
+    public long getMissCount() {
+        return filters.getMissCount() + selects.getMissCount() + orderBys.getMissCount();
+    }
+
+    public void clear() {
+        filters.removeAll();
+        selects.removeAll();
+        orderBys.removeAll();
+    }
+}
@@ -0,0 +1,93 @@
+package com.temenos.interaction.odataext.odataparser;
+
+/*
+ * Request scoped record of the OData $filter, $select and $orderby options parsed while handling a request.
+ *
+ * Authorization, the commands and the producers each need the parsed options of the same request. The first to ask
+ * parses them, through the shared ParsedExpressionCache, and the others get the same trees. The record is held in an
+ * attribute of the InteractionContext so it is shared by the contexts derived from the request context and is
+ * discarded with it. Those contexts, or a command rewriting the options, may have different option strings so the
+ * trees are recorded against the string they were parsed from.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.odata4j.expression.BoolCommonExpression;
+import org.odata4j.expression.EntitySimpleProperty;
+import org.odata4j.expression.OrderByExpression;
+
+import com.temenos.interaction.core.command.InteractionContext;
+
+public class ParsedQueryOptions {
+
+    // Name of the interaction context attribute holding the parsed options.
+    public static final String ATTRIBUTE_NAME = ParsedQueryOptions.class.getName();
+
+    private final ConcurrentMap<String, BoolCommonExpression> filters = new ConcurrentHashMap<String, BoolCommonExpression>();
+    private final ConcurrentMap<String, List<EntitySimpleProperty>> selects = new ConcurrentHashMap<String, List<EntitySimpleProperty>>();
+    private final ConcurrentMap<String, List<OrderByExpression>> orderBys = new ConcurrentHashMap<String, List<OrderByExpression>>();
+
+    /**
+     * Get the parsed options of an interaction context, creating the record
+     * if needed.
+     *
+     * @param ctx
+     * @return the parsed options, never null
+     */
+    public static ParsedQueryOptions get(InteractionContext ctx) {
+        Object options = ctx.getAttribute(ATTRIBUTE_NAME);
+        if (options instanceof ParsedQueryOptions) {
+            return (ParsedQueryOptions) options;
+        }
+        // Concurrent requests for the record of a new context may each create
+        // one, later lookups use the last one stored.
+        ParsedQueryOptions newOptions = new ParsedQueryOptions();
+        ctx.setAttribute(ATTRIBUTE_NAME, newOptions);
+        return newOptions;
+    }
+
+    // Parse a $filter option, null if there is none.
+    public BoolCommonExpression getFilter(String filterStr) {
+        if (null == filterStr) {
+            return null;
+        }
+        BoolCommonExpression filter = filters.get(filterStr);
+        if (null == filter) {
+            filter = ODataParser.getExpressionCache().getFilter(filterStr);
+            filters.put(filterStr, filter);
+        }
+        return filter;
+    }
+
+    // Parse a $select option, null if there is none.
+    public List<EntitySimpleProperty> getSelect(String selectStr) {
+        if (null == selectStr) {
+            return null;
+        }
+        List<EntitySimpleProperty> select = selects.get(selectStr);
+        if (null == select) {
+            select = ODataParser.getExpressionCache().getSelect(selectStr);
+            selects.put(selectStr, select);
+        }
+        return select;
+    }
+
+    // Parse an $orderby option, null if there is none.
+    public List<OrderByExpression> getOrderBy(String orderByStr) {
+        if (null == orderByStr) {
+            return null;
+        }
+        List<OrderByExpression> orderBy = orderBys.get(orderByStr);
+        if (null == orderBy) {
+            orderBy = ODataParser.getExpressionCache().getOrderBy(orderByStr);
+            orderBys.put(orderByStr, orderBy);
+        }
+        return orderBy;
+    }
+}
@@ -11,7 +11,6 @@ import org.odata4j.expression.EntitySimpleProperty;
 import org.odata4j.expression.Expression;
 import org.odata4j.expression.IntegralLiteral;
 import org.odata4j.expression.StringLiteral;
-import org.odata4j.producer.resources.OptionsQueryParser;
 
 import com.temenos.interaction.odataext.odataparser.ODataParser;
 import com.temenos.interaction.odataext.odataparser.ODataParser.UnsupportedQueryOperationException;
@@ -48,7 +47,7 @@ public class RowFilters {
             // empty filter.
             oData4jExpression = null;
         } else {
-            oData4jExpression = OptionsQueryParser.parseFilter(filterStr);
+            oData4jExpression = ODataParser.getExpressionCache().getFilter(filterStr);
         }
     }
 
@@ -76,7 +75,7 @@ public class RowFilters {
 
     // Add (and) a filter to the current filter.
     public void addFilters(String filterStr) {
-        BoolCommonExpression newExpression = OptionsQueryParser.parseFilter(filterStr);
+        BoolCommonExpression newExpression = ODataParser.getExpressionCache().getFilter(filterStr);
         addFilters(newExpression);
     }
 
@@ -0,0 +1,279 @@
+package com.temenos.interaction.odataext.odataparser.query;
+
+/*
+ * An OData $filter, $select and $orderby compiled for evaluation in memory, over collections of entities returned by
+ * a command which could not apply them itself.
+ *
+ * A compiled query holds no state of its own evaluation, so it can be kept and used by several threads at once. It
+ * is applied to a collection in place: entities which do not match, or fall outside the $skip and $top window, are
+ * removed as they are found, and only the entities kept are projected onto the $select.
+ *
+ * Nulls follow SQL rather than Java: a comparison with a null value is unknown, "not" of unknown is still unknown,
+ * and an entity is kept only when the filter is true. So "not (Name eq 'Bob')" does not match an entity without a
+ * name. Comparing with the null literal, as in "Name eq null", tests for a missing value and is always known.
+ *
+ * For example:
+ *
+ *     CompiledQuery<OEntity> query = new CompiledQuery.Builder<OEntity>(new OEntityAdapter())
+ *             .filter(ODataParser.parseFilters(filter)).orderBy(ODataParser.parseOrderBy(orderBy)).build();
+ *     query.apply(collection.getEntities(), skip, top);
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import org.odata4j.expression.BoolCommonExpression;
+import org.odata4j.expression.OrderByExpression;
+import org.odata4j.expression.OrderByExpression.Direction;
+
+import com.temenos.interaction.core.resource.EntityResource;
+import com.temenos.interaction.odataext.odataparser.ODataParser.UnsupportedQueryOperationException;
+import com.temenos.interaction.odataext.odataparser.data.FieldName;
+import com.temenos.interaction.odataext.odataparser.data.OrderBy;
+import com.temenos.interaction.odataext.odataparser.data.RowFilters;
+import com.temenos.interaction.odataext.odataparser.query.QueryCompiler.Condition;
+import com.temenos.interaction.odataext.odataparser.query.QueryCompiler.Operand;
+
+public class CompiledQuery<E> {
+
+    private final EntityAdapter<E> adapter;
+    // Null when all entities match.
+    private final Condition<E> condition;
+    // Null when all properties are selected.
+    private final Set<String> select;
+    // Null when the order is kept.
+    private final Comparator<E> comparator;
+
+    private CompiledQuery(Builder<E> builder, Condition<E> condition, Comparator<E> comparator) {
+        this.adapter = builder.adapter;
+        this.condition = condition;
+        this.select = null == builder.select ? null : Collections.unmodifiableSet(new HashSet<String>(builder.select));
+        this.comparator = comparator;
+    }
+
+    public boolean matches(E entity) {
+        return null == condition || condition.matches(entity);
+    }
+
+    // The entity with only the selected properties.
+    public E select(E entity) {
+        return null == select ? entity : adapter.select(entity, select);
+    }
+
+    // The $orderby comparator, null if there is no $orderby.
+    public Comparator<E> getComparator() {
+        return comparator;
+    }
+
+    public boolean hasFilter() {
+        return null != condition;
+    }
+
+    /**
+     * Apply the query to a collection, removing the entities which do not
+     * match or are outside of the window and projecting the others.
+     *
+     * @param entities
+     *            a modifiable collection
+     * @param skip
+     *            the number of matching entities to skip
+     * @param top
+     *            the maximum number of entities to keep
+     * @return the number of entities kept
+     */
+    public int apply(Collection<EntityResource<E>> entities, int skip, int top) {
+        if (null == comparator && entities instanceof List && entities instanceof RandomAccess) {
+            return applyList((List<EntityResource<E>>) entities, skip, top);
+        }
+        return applyAll(entities, skip, top);
+    }
+
+    /*
+     * Move the kept entities down over the removed ones, then cut the tail.
+     * Entities past the window are not evaluated at all.
+     */
+    private int applyList(List<EntityResource<E>> entities, int skip, int top) {
+        int size = entities.size();
+        int skipped = 0;
+        int kept = 0;
+        for (int i = 0; i < size && kept < top; i++) {
+            EntityResource<E> resource = entities.get(i);
+            if (!matches(resource.getEntity())) {
+                continue;
+            }
+            if (skipped < skip) {
+                skipped++;
+                continue;
+            }
+            entities.set(kept++, selected(resource));
+        }
+        entities.subList(kept, size).clear();
+        return kept;
+    }
+
+    /*
+     * Filter all the entities before sorting and cutting the window. A
+     * collection without random access is copied.
+     */
+    private int applyAll(Collection<EntityResource<E>> entities, int skip, int top) {
+        List<EntityResource<E>> list;
+        if (entities instanceof List && entities instanceof RandomAccess) {
+            list = (List<EntityResource<E>>) entities;
+            int kept = 0;
+            int size = list.size();
+            for (int i = 0; i < size; i++) {
+                EntityResource<E> resource = list.get(i);
+                if (matches(resource.getEntity())) {
+                    list.set(kept++, resource);
+                }
+            }
+            list.subList(kept, size).clear();
+        } else {
+            // Sorting and replacing entities need random access.
+            list = new ArrayList<EntityResource<E>>(entities.size());
+            for (EntityResource<E> resource : entities) {
+                if (matches(resource.getEntity())) {
+                    list.add(resource);
+                }
+            }
+        }
+        if (null != comparator) {
+            Collections.sort(list, new Comparator<EntityResource<E>>() {
+                public int compare(EntityResource<E> lhs, EntityResource<E> rhs) {
+                    return comparator.compare(lhs.getEntity(), rhs.getEntity());
+                }
+            });
+        }
+        int from = Math.min(skip, list.size());
+        int to = (int) Math.min((long) from + top, list.size());
+        list.subList(to, list.size()).clear();
+        list.subList(0, from).clear();
+        for (int i = 0; i < list.size(); i++) {
+            list.set(i, selected(list.get(i)));
+        }
+        if (list != entities) {
+            entities.clear();
+            entities.addAll(list);
+        }
+        return list.size();
+    }
+
+    // The resource of the selected entity, the same resource if the entity
+    // was selected in place.
+    private EntityResource<E> selected(EntityResource<E> resource) {
+        E entity = resource.getEntity();
+        E selected = select(entity);
+        if (selected == entity) {
+            return resource;
+        }
+        EntityResource<E> selectedResource = new EntityResource<E>(resource.getEntityName(), selected);
+        selectedResource.setLinks(resource.getLinks());
+        selectedResource.setEmbedded(resource.getEmbedded());
+        selectedResource.setEntityTag(resource.getEntityTag());
+        return selectedResource;
+    }
+
+    public static class Builder<E> {
+        private final EntityAdapter<E> adapter;
+        private BoolCommonExpression filter;
+        private boolean blockAll;
+        private Set<String> select;
+        private List<OrderByExpression> orderBy;
+
+        public Builder(EntityAdapter<E> adapter) {
+            this.adapter = adapter;
+        }
+
+        public Builder<E> filter(BoolCommonExpression filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        // A 'block all' filter matches nothing.
+        public Builder<E> filter(RowFilters filters) {
+            if (null == filters || filters.isBlockAll()) {
+                blockAll = true;
+                filter = null;
+            } else {
+                filter = filters.getOData4jExpression();
+            }
+            return this;
+        }
+
+        // Null or empty selects all properties.
+        public Builder<E> select(Collection<FieldName> fields) {
+            if (null == fields || fields.isEmpty()) {
+                select = null;
+            } else {
+                select = new HashSet<String>();
+                for (FieldName field : fields) {
+                    select.add(field.getName());
+                }
+            }
+            return this;
+        }
+
+        public Builder<E> orderBy(List<OrderBy> orderBys) {
+            if (null == orderBys || orderBys.isEmpty()) {
+                orderBy = null;
+            } else {
+                orderBy = new ArrayList<OrderByExpression>();
+                for (OrderBy ob : orderBys) {
+                    orderBy.add(ob.getOData4jExpression());
+                }
+            }
+            return this;
+        }
+
+        public CompiledQuery<E> build() throws UnsupportedQueryOperationException {
+            QueryCompiler<E> compiler = new QueryCompiler<E>(adapter);
+            Condition<E> condition = null;
+            if (blockAll) {
+                condition = new Condition<E>() {
+                    public boolean matches(E entity) {
+                        return false;
+                    }
+                };
+            } else if (null != filter) {
+                condition = compiler.compileCondition(filter);
+            }
+            return new CompiledQuery<E>(this, condition, compileOrderBy(compiler));
+        }
+
+        private Comparator<E> compileOrderBy(QueryCompiler<E> compiler) throws UnsupportedQueryOperationException {
+            if (null == orderBy) {
+                return null;
+            }
+            final List<Operand<E>> keys = new ArrayList<Operand<E>>(orderBy.size());
+            final boolean[] descending = new boolean[orderBy.size()];
+            for (int i = 0; i < orderBy.size(); i++) {
+                keys.add(compiler.compileOperand(orderBy.get(i).getExpression()));
+                descending[i] = Direction.DESCENDING == orderBy.get(i).getDirection();
+            }
+            return new Comparator<E>() {
+                public int compare(E lhs, E rhs) {
+                    for (int i = 0; i < descending.length; i++) {
+                        Object l = keys.get(i).evaluate(lhs);
+                        Object r = keys.get(i).evaluate(rhs);
+                        // Nulls sort first.
+                        int result = null == l ? (null == r ? 0 : -1) : (null == r ? 1 : Values.compare(l, r));
+                        if (result != 0) {
+                            return descending[i] ? -result : result;
+                        }
+                    }
+                    return 0;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.temenos.interaction.odataext.odataparser.query;
+
+/*
+ * Adapter for the IRIS core Entity, the entity of the commands which do not go through an OData producer.
+ *
+ * Selecting removes the other properties from the entity itself.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.Set;
+
+import com.temenos.interaction.core.entity.Entity;
+import com.temenos.interaction.core.entity.EntityProperties;
+import com.temenos.interaction.core.entity.EntityProperty;
+
+public class CoreEntityAdapter implements EntityAdapter<Entity> {
+
+    @Override
+    public Object getValue(Entity entity, String name) {
+        EntityProperties properties = entity.getProperties();
+        int start = 0;
+        int end;
+        // Walk down the complex properties of a nested name.
+        while ((end = name.indexOf('/', start)) >= 0) {
+            EntityProperty property = properties.getProperty(name.substring(start, end));
+            if (null == property || !(property.getValue() instanceof EntityProperties)) {
+                return null;
+            }
+            properties = (EntityProperties) property.getValue();
+            start = end + 1;
+        }
+        EntityProperty property = properties.getProperty(start == 0 ? name : name.substring(start));
+        return null == property ? null : property.getValue();
+    }
+
+    @Override
+    public Entity select(Entity entity, Set<String> names) {
+        entity.getProperties().getProperties().keySet().retainAll(names);
+        return entity;
+    }
+}
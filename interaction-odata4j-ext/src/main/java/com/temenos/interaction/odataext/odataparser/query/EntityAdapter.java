@@ -0,0 +1,33 @@
+package com.temenos.interaction.odataext.odataparser.query;
+
+/*
+ * Access to the properties of one kind of entity, for queries evaluated in memory.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.Set;
+
+public interface EntityAdapter<E> {
+
+    /**
+     * @param entity
+     * @param name
+     *            the property name, with '/' separating the names of nested
+     *            properties
+     * @return the value of the property, null if the entity has no such
+     *         property
+     */
+    public Object getValue(E entity, String name);
+
+    /**
+     * @param entity
+     * @param names
+     *            the names of the properties to keep
+     * @return the entity with only the given properties, either the same
+     *         entity changed or a new one
+     */
+    public E select(E entity, Set<String> names);
+}
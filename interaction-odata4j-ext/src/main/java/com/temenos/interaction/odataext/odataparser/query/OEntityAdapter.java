@@ -0,0 +1,47 @@
+package com.temenos.interaction.odataext.odataparser.query;
+
+/*
+ * Adapter for the odata4j OEntity, the entity returned by OData producers.
+ *
+ * OEntities cannot be changed, so selecting creates a new entity with the same key and links.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.odata4j.core.OEntities;
+import org.odata4j.core.OEntity;
+import org.odata4j.core.OProperty;
+
+public class OEntityAdapter implements EntityAdapter<OEntity> {
+
+    @Override
+    public Object getValue(OEntity entity, String name) {
+        // OEntity.getProperty() throws for a missing property.
+        List<OProperty<?>> properties = entity.getProperties();
+        for (int i = 0; i < properties.size(); i++) {
+            OProperty<?> property = properties.get(i);
+            if (name.equals(property.getName())) {
+                return property.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public OEntity select(OEntity entity, Set<String> names) {
+        List<OProperty<?>> selected = new ArrayList<OProperty<?>>(names.size());
+        for (OProperty<?> property : entity.getProperties()) {
+            if (names.contains(property.getName())) {
+                selected.add(property);
+            }
+        }
+        return OEntities.create(entity.getEntitySet(), entity.getEntityType(), entity.getEntityKey(),
+                entity.getEntityTag(), selected, entity.getLinks());
+    }
+}
@@ -0,0 +1,383 @@
+package com.temenos.interaction.odataext.odataparser.query;
+
+/*
+ * Compiles odata4j expression trees into conditions and operands evaluated against entities.
+ *
+ * The tree is walked once, at compile time, leaving a tree of small objects which only evaluate. Expressions which
+ * cannot be evaluated in memory are rejected when compiling rather than silently matching.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import org.odata4j.expression.AddExpression;
+import org.odata4j.expression.AndExpression;
+import org.odata4j.expression.BinaryCommonExpression;
+import org.odata4j.expression.BoolCommonExpression;
+import org.odata4j.expression.BoolMethodExpression;
+import org.odata4j.expression.BoolParenExpression;
+import org.odata4j.expression.BooleanLiteral;
+import org.odata4j.expression.CommonExpression;
+import org.odata4j.expression.ConcatMethodCallExpression;
+import org.odata4j.expression.DivExpression;
+import org.odata4j.expression.EndsWithMethodCallExpression;
+import org.odata4j.expression.EntitySimpleProperty;
+import org.odata4j.expression.EqExpression;
+import org.odata4j.expression.Expression;
+import org.odata4j.expression.GeExpression;
+import org.odata4j.expression.GtExpression;
+import org.odata4j.expression.IndexOfMethodCallExpression;
+import org.odata4j.expression.LeExpression;
+import org.odata4j.expression.LengthMethodCallExpression;
+import org.odata4j.expression.LiteralExpression;
+import org.odata4j.expression.LtExpression;
+import org.odata4j.expression.ModExpression;
+import org.odata4j.expression.MulExpression;
+import org.odata4j.expression.NeExpression;
+import org.odata4j.expression.NegateExpression;
+import org.odata4j.expression.NotExpression;
+import org.odata4j.expression.NullLiteral;
+import org.odata4j.expression.OrExpression;
+import org.odata4j.expression.ParenExpression;
+import org.odata4j.expression.ReplaceMethodCallExpression;
+import org.odata4j.expression.StartsWithMethodCallExpression;
+import org.odata4j.expression.SubExpression;
+import org.odata4j.expression.SubstringMethodCallExpression;
+import org.odata4j.expression.SubstringOfMethodCallExpression;
+import org.odata4j.expression.ToLowerMethodCallExpression;
+import org.odata4j.expression.ToUpperMethodCallExpression;
+import org.odata4j.expression.TrimMethodCallExpression;
+
+import com.temenos.interaction.odataext.odataparser.ODataParser.UnsupportedQueryOperationException;
+
+final class QueryCompiler<E> {
+
+    // A compiled boolean expression.
+    interface Condition<E> {
+        boolean matches(E entity);
+    }
+
+    // A compiled value expression, null when the value is unknown.
+    interface Operand<E> {
+        Object evaluate(E entity);
+    }
+
+    // String functions taking a single argument.
+    private static final int TOLOWER = 0;
+    private static final int TOUPPER = 1;
+    private static final int TRIM = 2;
+    private static final int LENGTH = 3;
+
+    private final EntityAdapter<E> adapter;
+
+    QueryCompiler(EntityAdapter<E> adapter) {
+        this.adapter = adapter;
+    }
+
+    Condition<E> compileCondition(CommonExpression expression) throws UnsupportedQueryOperationException {
+        return compileCondition(expression, false);
+    }
+
+    /*
+     * Compile a condition, or its negation when negated is set. A comparison with an unknown (null) value is
+     * neither true nor false, so it matches in neither polarity: "not" is pushed down to the comparisons rather than
+     * inverting their result, which keeps "not (Name lt 'Z')" from matching an entity without a name.
+     */
+    private Condition<E> compileCondition(CommonExpression expression, final boolean negated)
+            throws UnsupportedQueryOperationException {
+        if (expression instanceof AndExpression || expression instanceof OrExpression) {
+            final Condition<E> lhs = compileCondition(((BinaryCommonExpression) expression).getLHS(), negated);
+            final Condition<E> rhs = compileCondition(((BinaryCommonExpression) expression).getRHS(), negated);
+            // not (a and b) is (not a) or (not b), and the other way round.
+            if (expression instanceof AndExpression != negated) {
+                return new Condition<E>() {
+                    public boolean matches(E entity) {
+                        return lhs.matches(entity) && rhs.matches(entity);
+                    }
+                };
+            }
+            return new Condition<E>() {
+                public boolean matches(E entity) {
+                    return lhs.matches(entity) || rhs.matches(entity);
+                }
+            };
+        }
+        if (expression instanceof NotExpression) {
+            return compileCondition(((NotExpression) expression).getExpression(), !negated);
+        }
+        if (expression instanceof BoolParenExpression) {
+            return compileCondition(((BoolParenExpression) expression).getExpression(), negated);
+        }
+        if (expression instanceof ParenExpression) {
+            return compileCondition(((ParenExpression) expression).getExpression(), negated);
+        }
+        if (expression instanceof BooleanLiteral) {
+            final boolean value = ((BooleanLiteral) expression).getValue() != negated;
+            return new Condition<E>() {
+                public boolean matches(E entity) {
+                    return value;
+                }
+            };
+        }
+        if (expression instanceof EqExpression || expression instanceof NeExpression) {
+            return compileEquality((BinaryCommonExpression) expression, negated);
+        }
+        if (expression instanceof LtExpression || expression instanceof LeExpression
+                || expression instanceof GtExpression || expression instanceof GeExpression) {
+            return compileRelation((BinaryCommonExpression) expression, negated);
+        }
+        if (expression instanceof SubstringOfMethodCallExpression) {
+            // substringof(value, target), true when target contains value.
+            SubstringOfMethodCallExpression call = (SubstringOfMethodCallExpression) expression;
+            final Operand<E> value = compileOperand(call.getValue());
+            final Operand<E> target = compileOperand(call.getTarget());
+            return new Condition<E>() {
+                public boolean matches(E entity) {
+                    Object t = target.evaluate(entity);
+                    Object v = value.evaluate(entity);
+                    return null != t && null != v && t.toString().contains(v.toString()) != negated;
+                }
+            };
+        }
+        if (expression instanceof StartsWithMethodCallExpression || expression instanceof EndsWithMethodCallExpression) {
+            final boolean starts = expression instanceof StartsWithMethodCallExpression;
+            final Operand<E> target = compileOperand(((BoolMethodExpression) expression).getTarget());
+            final Operand<E> value = compileOperand(((BoolMethodExpression) expression).getValue());
+            return new Condition<E>() {
+                public boolean matches(E entity) {
+                    Object t = target.evaluate(entity);
+                    Object v = value.evaluate(entity);
+                    if (null == t || null == v) {
+                        return false;
+                    }
+                    return (starts ? t.toString().startsWith(v.toString()) : t.toString().endsWith(v.toString())) != negated;
+                }
+            };
+        }
+        if (expression instanceof EntitySimpleProperty) {
+            // A boolean property on its own.
+            final Operand<E> operand = compileOperand(expression);
+            return new Condition<E>() {
+                public boolean matches(E entity) {
+                    Object value = operand.evaluate(entity);
+                    return null != value && Boolean.parseBoolean(value.toString()) != negated;
+                }
+            };
+        }
+        throw new UnsupportedQueryOperationException("Cannot evaluate filter \"" + expression + "\" in memory");
+    }
+
+    private Condition<E> compileEquality(BinaryCommonExpression expression, boolean negated)
+            throws UnsupportedQueryOperationException {
+        final boolean eq = expression instanceof EqExpression != negated;
+        final Operand<E> lhs = compileOperand(expression.getLHS());
+        final Operand<E> rhs = compileOperand(expression.getRHS());
+        if (expression.getLHS() instanceof NullLiteral || expression.getRHS() instanceof NullLiteral) {
+            // "eq null" tests for a missing value, so it is always known.
+            return new Condition<E>() {
+                public boolean matches(E entity) {
+                    return Values.equal(lhs.evaluate(entity), rhs.evaluate(entity)) == eq;
+                }
+            };
+        }
+        return new Condition<E>() {
+            public boolean matches(E entity) {
+                Object l = lhs.evaluate(entity);
+                Object r = rhs.evaluate(entity);
+                return null != l && null != r && Values.equal(l, r) == eq;
+            }
+        };
+    }
+
+    private Condition<E> compileRelation(BinaryCommonExpression expression, final boolean negated)
+            throws UnsupportedQueryOperationException {
+        final Operand<E> lhs = compileOperand(expression.getLHS());
+        final Operand<E> rhs = compileOperand(expression.getRHS());
+        // Accept comparison results within [min, max].
+        final int min = expression instanceof GtExpression ? 1 : (expression instanceof GeExpression ? 0
+                : Integer.MIN_VALUE);
+        final int max = expression instanceof LtExpression ? -1 : (expression instanceof LeExpression ? 0
+                : Integer.MAX_VALUE);
+        return new Condition<E>() {
+            public boolean matches(E entity) {
+                Object l = lhs.evaluate(entity);
+                Object r = rhs.evaluate(entity);
+                if (null == l || null == r) {
+                    // Comparisons with null are neither true nor false.
+                    return false;
+                }
+                int result = Values.compare(l, r);
+                return (result >= min && result <= max) != negated;
+            }
+        };
+    }
+
+    Operand<E> compileOperand(CommonExpression expression) throws UnsupportedQueryOperationException {
+        if (expression instanceof EntitySimpleProperty) {
+            final String name = ((EntitySimpleProperty) expression).getPropertyName();
+            return new Operand<E>() {
+                public Object evaluate(E entity) {
+                    return adapter.getValue(entity, name);
+                }
+            };
+        }
+        if (expression instanceof LiteralExpression) {
+            final Object value = Expression.literalValue((LiteralExpression) expression);
+            return new Operand<E>() {
+                public Object evaluate(E entity) {
+                    return value;
+                }
+            };
+        }
+        if (expression instanceof ParenExpression) {
+            return compileOperand(((ParenExpression) expression).getExpression());
+        }
+        if (expression instanceof AddExpression || expression instanceof SubExpression
+                || expression instanceof MulExpression || expression instanceof DivExpression
+                || expression instanceof ModExpression) {
+            return compileArithmetic((BinaryCommonExpression) expression);
+        }
+        if (expression instanceof NegateExpression) {
+            final Operand<E> operand = compileOperand(((NegateExpression) expression).getExpression());
+            return new Operand<E>() {
+                public Object evaluate(E entity) {
+                    Number number = Values.toNumber(operand.evaluate(entity));
+                    return null == number ? null : Values.negate(number);
+                }
+            };
+        }
+        if (expression instanceof ToLowerMethodCallExpression || expression instanceof ToUpperMethodCallExpression
+                || expression instanceof TrimMethodCallExpression || expression instanceof LengthMethodCallExpression) {
+            return compileStringFunction(expression);
+        }
+        if (expression instanceof IndexOfMethodCallExpression) {
+            final Operand<E> target = compileOperand(((IndexOfMethodCallExpression) expression).getTarget());
+            final Operand<E> value = compileOperand(((IndexOfMethodCallExpression) expression).getValue());
+            return new Operand<E>() {
+                public Object evaluate(E entity) {
+                    Object t = target.evaluate(entity);
+                    Object v = value.evaluate(entity);
+                    return null == t || null == v ? null : t.toString().indexOf(v.toString());
+                }
+            };
+        }
+        if (expression instanceof ConcatMethodCallExpression) {
+            final Operand<E> lhs = compileOperand(((ConcatMethodCallExpression) expression).getLHS());
+            final Operand<E> rhs = compileOperand(((ConcatMethodCallExpression) expression).getRHS());
+            return new Operand<E>() {
+                public Object evaluate(E entity) {
+                    Object l = lhs.evaluate(entity);
+                    Object r = rhs.evaluate(entity);
+                    return null == l || null == r ? null : l.toString() + r.toString();
+                }
+            };
+        }
+        if (expression instanceof SubstringMethodCallExpression) {
+            return compileSubstring((SubstringMethodCallExpression) expression);
+        }
+        if (expression instanceof ReplaceMethodCallExpression) {
+            ReplaceMethodCallExpression call = (ReplaceMethodCallExpression) expression;
+            final Operand<E> target = compileOperand(call.getTarget());
+            final Operand<E> find = compileOperand(call.getFind());
+            final Operand<E> replace = compileOperand(call.getReplace());
+            return new Operand<E>() {
+                public Object evaluate(E entity) {
+                    Object t = target.evaluate(entity);
+                    Object f = find.evaluate(entity);
+                    Object r = replace.evaluate(entity);
+                    return null == t || null == f || null == r ? null : t.toString().replace(f.toString(),
+                            r.toString());
+                }
+            };
+        }
+        if (expression instanceof BoolCommonExpression) {
+            // A condition used as a value, as in "(a eq b) eq true", null when unknown.
+            final Condition<E> condition = compileCondition(expression, false);
+            final Condition<E> negation = compileCondition(expression, true);
+            return new Operand<E>() {
+                public Object evaluate(E entity) {
+                    if (condition.matches(entity)) {
+                        return Boolean.TRUE;
+                    }
+                    return negation.matches(entity) ? Boolean.FALSE : null;
+                }
+            };
+        }
+        throw new UnsupportedQueryOperationException("Cannot evaluate expression \"" + expression + "\" in memory");
+    }
+
+    private Operand<E> compileArithmetic(BinaryCommonExpression expression) throws UnsupportedQueryOperationException {
+        final Operand<E> lhs = compileOperand(expression.getLHS());
+        final Operand<E> rhs = compileOperand(expression.getRHS());
+        final char operator = expression instanceof AddExpression ? '+' : expression instanceof SubExpression ? '-'
+                : expression instanceof MulExpression ? '*' : expression instanceof DivExpression ? '/' : '%';
+        return new Operand<E>() {
+            public Object evaluate(E entity) {
+                Number l = Values.toNumber(lhs.evaluate(entity));
+                Number r = Values.toNumber(rhs.evaluate(entity));
+                return null == l || null == r ? null : Values.arithmetic(operator, l, r);
+            }
+        };
+    }
+
+    private Operand<E> compileStringFunction(CommonExpression expression) throws UnsupportedQueryOperationException {
+        final int function;
+        CommonExpression targetExpression;
+        if (expression instanceof ToLowerMethodCallExpression) {
+            function = TOLOWER;
+            targetExpression = ((ToLowerMethodCallExpression) expression).getTarget();
+        } else if (expression instanceof ToUpperMethodCallExpression) {
+            function = TOUPPER;
+            targetExpression = ((ToUpperMethodCallExpression) expression).getTarget();
+        } else if (expression instanceof TrimMethodCallExpression) {
+            function = TRIM;
+            targetExpression = ((TrimMethodCallExpression) expression).getTarget();
+        } else {
+            function = LENGTH;
+            targetExpression = ((LengthMethodCallExpression) expression).getTarget();
+        }
+        final Operand<E> target = compileOperand(targetExpression);
+        return new Operand<E>() {
+            public Object evaluate(E entity) {
+                Object value = target.evaluate(entity);
+                if (null == value) {
+                    return null;
+                }
+                String str = value.toString();
+                switch (function) {
+                case TOLOWER:
+                    return str.toLowerCase();
+                case TOUPPER:
+                    return str.toUpperCase();
+                case TRIM:
+                    return str.trim();
+                default:
+                    return str.length();
+                }
+            }
+        };
+    }
+
+    private Operand<E> compileSubstring(SubstringMethodCallExpression call) throws UnsupportedQueryOperationException {
+        final Operand<E> target = compileOperand(call.getTarget());
+        final Operand<E> start = compileOperand(call.getStart());
+        final Operand<E> length = null == call.getLength() ? null : compileOperand(call.getLength());
+        return new Operand<E>() {
+            public Object evaluate(E entity) {
+                Object t = target.evaluate(entity);
+                Number s = Values.toNumber(start.evaluate(entity));
+                if (null == t || null == s) {
+                    return null;
+                }
+                String str = t.toString();
+                int from = Math.max(0, Math.min(str.length(), s.intValue()));
+                if (null == length) {
+                    return str.substring(from);
+                }
+                Number l = Values.toNumber(length.evaluate(entity));
+                return null == l ? null : str.substring(from, Math.max(from, Math.min(str.length(), from + l.intValue())));
+            }
+        };
+    }
+}
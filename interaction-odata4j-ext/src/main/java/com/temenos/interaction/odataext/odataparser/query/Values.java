@@ -0,0 +1,184 @@
+package com.temenos.interaction.odataext.odataparser.query;
+
+/*
+ * Comparison and arithmetic of property values and literals.
+ *
+ * Entities from different sources hold the same logical value in different types: numbers may be stored as
+ * strings, dates as java.util.Date or joda LocalDateTime. Values are converted to a common type before comparing,
+ * and compared as strings when there is none.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDateTime;
+
+final class Values {
+
+    private Values() {
+    }
+
+    // Compare two non null values.
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compare(Object lhs, Object rhs) {
+        if (lhs instanceof Number || rhs instanceof Number) {
+            Number lhsNumber = toNumber(lhs);
+            Number rhsNumber = toNumber(rhs);
+            if (null != lhsNumber && null != rhsNumber) {
+                return compareNumbers(lhsNumber, rhsNumber);
+            }
+        } else if (isTime(lhs) || isTime(rhs)) {
+            Long lhsTime = toTime(lhs);
+            Long rhsTime = toTime(rhs);
+            if (null != lhsTime && null != rhsTime) {
+                return lhsTime.compareTo(rhsTime);
+            }
+        } else if (lhs instanceof Boolean || rhs instanceof Boolean) {
+            return Boolean.valueOf(lhs.toString()).compareTo(Boolean.valueOf(rhs.toString()));
+        } else if (lhs.getClass() == rhs.getClass() && lhs instanceof Comparable) {
+            return ((Comparable) lhs).compareTo(rhs);
+        }
+        return lhs.toString().compareTo(rhs.toString());
+    }
+
+    // Equality of two values, either may be null.
+    static boolean equal(Object lhs, Object rhs) {
+        if (null == lhs || null == rhs) {
+            return lhs == rhs;
+        }
+        return compare(lhs, rhs) == 0;
+    }
+
+    // The value as a number, null if it is not one.
+    static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        if (value instanceof String) {
+            try {
+                return new BigDecimal(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    static boolean isIntegral(Number number) {
+        return number instanceof Integer || number instanceof Long || number instanceof Short
+                || number instanceof Byte;
+    }
+
+    static boolean isFloating(Number number) {
+        return number instanceof Double || number instanceof Float;
+    }
+
+    static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (isIntegral(number)) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        // Float.toString() avoids the noise of widening to double.
+        return new BigDecimal(number.toString());
+    }
+
+    static int compareNumbers(Number lhs, Number rhs) {
+        if (isIntegral(lhs) && isIntegral(rhs)) {
+            long l = lhs.longValue();
+            long r = rhs.longValue();
+            return l < r ? -1 : (l == r ? 0 : 1);
+        }
+        if ((isFloating(lhs) && isNonFinite(lhs.doubleValue())) || (isFloating(rhs) && isNonFinite(rhs.doubleValue()))) {
+            return Double.compare(lhs.doubleValue(), rhs.doubleValue());
+        }
+        return toBigDecimal(lhs).compareTo(toBigDecimal(rhs));
+    }
+
+    private static boolean isNonFinite(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value);
+    }
+
+    // Arithmetic on two numbers, integral if both are.
+    static Number arithmetic(char operator, Number lhs, Number rhs) {
+        if (isIntegral(lhs) && isIntegral(rhs)) {
+            long l = lhs.longValue();
+            long r = rhs.longValue();
+            switch (operator) {
+            case '+':
+                return l + r;
+            case '-':
+                return l - r;
+            case '*':
+                return l * r;
+            case '/':
+                return r == 0 ? null : l / r;
+            default:
+                return r == 0 ? null : l % r;
+            }
+        }
+        BigDecimal l = toBigDecimal(lhs);
+        BigDecimal r = toBigDecimal(rhs);
+        switch (operator) {
+        case '+':
+            return l.add(r);
+        case '-':
+            return l.subtract(r);
+        case '*':
+            return l.multiply(r);
+        case '/':
+            return r.signum() == 0 ? null : l.divide(r, MathContext.DECIMAL64);
+        default:
+            return r.signum() == 0 ? null : l.remainder(r);
+        }
+    }
+
+    static Number negate(Number number) {
+        if (isIntegral(number)) {
+            return -number.longValue();
+        }
+        return toBigDecimal(number).negate();
+    }
+
+    private static boolean isTime(Object value) {
+        return value instanceof Date || value instanceof Calendar || value instanceof LocalDateTime
+                || value instanceof DateTime;
+    }
+
+    // The value as milliseconds, local date times taken in the default time
+    // zone like java.util.Date.
+    private static Long toTime(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Calendar) {
+            return ((Calendar) value).getTimeInMillis();
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toDateTime().getMillis();
+        }
+        if (value instanceof DateTime) {
+            return ((DateTime) value).getMillis();
+        }
+        if (value instanceof String) {
+            try {
+                return new LocalDateTime(((String) value).trim()).toDateTime().getMillis();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
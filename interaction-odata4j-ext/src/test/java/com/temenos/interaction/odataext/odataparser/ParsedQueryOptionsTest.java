@@ -0,0 +1,166 @@
+package com.temenos.interaction.odataext.odataparser;
+
+/*
+ * Test class for the per request and shared caches of parsed oData options.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.odata4j.expression.BoolCommonExpression;
+import org.odata4j.expression.EntitySimpleProperty;
+import org.odata4j.expression.OrderByExpression;
+import org.odata4j.producer.EntityQueryInfo;
+
+import com.temenos.interaction.core.MultivaluedMapImpl;
+import com.temenos.interaction.core.command.InteractionContext;
+import com.temenos.interaction.core.entity.Metadata;
+import com.temenos.interaction.odataext.odataparser.data.RowFilters;
+
+public class ParsedQueryOptionsTest {
+
+    private ParsedExpressionCache previousCache;
+    private ParsedExpressionCache cache;
+
+    @Before
+    public void setUp() {
+        previousCache = ODataParser.getExpressionCache();
+        cache = new ParsedExpressionCache(16);
+        ODataParser.setExpressionCache(cache);
+    }
+
+    @After
+    public void tearDown() {
+        ODataParser.setExpressionCache(previousCache);
+    }
+
+    @Test
+    public void testParsedOncePerRequest() {
+        InteractionContext ctx = createContext("a eq 'b'", "a, c", "a desc");
+
+        EntityQueryInfo first = ODataParser.getEntityQueryInfo(ctx);
+        EntityQueryInfo second = ODataParser.getEntityQueryInfo(ctx);
+        assertSame(first.filter, second.filter);
+        assertSame(first.select.get(0), second.select.get(0));
+        assertEquals("a eq 'b'", ODataParser.OData4jToFilters(first.filter));
+        assertEquals(2, first.select.size());
+
+        assertEquals(1, ODataParser.getOrderBy(ctx).size());
+        assertSame(ODataParser.getOrderBy(ctx).get(0).getOData4jExpression(), ODataParser.getOrderBy(ctx).get(0)
+                .getOData4jExpression());
+
+        // Each option only went to the shared cache once.
+        assertEquals(3, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testSharedAcrossRequests() {
+        BoolCommonExpression first = ODataParser.getEntityQueryInfo(createContext("a eq 'b'", null, null)).filter;
+        BoolCommonExpression second = ODataParser.getEntityQueryInfo(createContext("a eq 'b'", null, null)).filter;
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testDerivedContextShares() {
+        InteractionContext ctx = createContext("a eq 'b'", null, null);
+        MultivaluedMap<String, String> subQueryParams = new MultivaluedMapImpl<String>();
+        subQueryParams.putSingle(ODataParser.FILTER_KEY, "c eq 'd'");
+        InteractionContext subCtx = new InteractionContext(ctx, null, null, subQueryParams, null);
+
+        assertSame(ParsedQueryOptions.get(ctx), ParsedQueryOptions.get(subCtx));
+        assertEquals("a eq 'b'", ODataParser.OData4jToFilters(ODataParser.getEntityQueryInfo(ctx).filter));
+        assertEquals("c eq 'd'", ODataParser.OData4jToFilters(ODataParser.getEntityQueryInfo(subCtx).filter));
+    }
+
+    @Test
+    public void testRewrittenOption() {
+        InteractionContext ctx = createContext("a eq 'b'", null, null);
+        BoolCommonExpression original = ODataParser.getEntityQueryInfo(ctx).filter;
+
+        // As authorization rewrites the filter.
+        ctx.getQueryParameters().putSingle(ODataParser.FILTER_KEY, "a eq 'b' and c eq 'd'");
+        BoolCommonExpression rewritten = ODataParser.getEntityQueryInfo(ctx).filter;
+        assertNotSame(original, rewritten);
+        assertEquals("a eq 'b' and c eq 'd'", ODataParser.OData4jToFilters(rewritten));
+    }
+
+    @Test
+    public void testMissingOptions() {
+        InteractionContext ctx = createContext(null, null, null);
+        assertNull(ODataParser.getEntityQueryInfo(ctx).filter);
+        assertTrue(ODataParser.getEntityQueryInfo(ctx).select.isEmpty());
+        assertNull(ODataParser.getOrderBy(ctx));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCachedTreesUnchanged() {
+        RowFilters filters = ODataParser.parseFilters("a eq 'b'");
+        filters.addFilters("c eq 'd'");
+        assertEquals("a eq 'b' and c eq 'd'", ODataParser.toFilters(filters));
+
+        // The cached tree is not the one extended.
+        assertEquals("a eq 'b'", ODataParser.toFilters(ODataParser.parseFilters("a eq 'b'")));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCachedListsUnmodifiable() {
+        List<EntitySimpleProperty> select = cache.getSelect("a, b");
+        select.clear();
+    }
+
+    @Test
+    public void testInvalidNotCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.getFilter("a eq");
+                fail("Invalid filter parsed");
+            } catch (RuntimeException e) {
+                // Expected.
+            }
+        }
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testBounded() {
+        for (int i = 0; i < 100; i++) {
+            List<OrderByExpression> orderBy = cache.getOrderBy("a" + i);
+            assertEquals(1, orderBy.size());
+        }
+        assertEquals(16, cache.getMaxSize());
+        assertTrue(cache.size() <= 16);
+    }
+
+    private InteractionContext createContext(String filter, String select, String orderBy) {
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl<String>();
+        if (null != filter) {
+            queryParams.putSingle(ODataParser.FILTER_KEY, filter);
+        }
+        if (null != select) {
+            queryParams.putSingle(ODataParser.SELECT_KEY, select);
+        }
+        if (null != orderBy) {
+            queryParams.putSingle(ODataParser.ORDERBY_KEY, orderBy);
+        }
+        return new InteractionContext(null, null, new MultivaluedMapImpl<String>(), queryParams, null, new Metadata(
+                "Test"));
+    }
+}
@@ -0,0 +1,248 @@
+package com.temenos.interaction.odataext.odataparser.query;
+
+/*
+ * Test class for the in memory evaluation of oData queries.
+ */
+
+/*******************************************************************************
+ * Copyright © Temenos Headquarters SA 1993-2019.  All rights reserved.
+ *******************************************************************************/
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.joda.time.LocalDateTime;
+import org.junit.Test;
+import org.odata4j.core.OEntities;
+import org.odata4j.core.OEntity;
+import org.odata4j.core.OEntityKey;
+import org.odata4j.core.OLink;
+import org.odata4j.core.OProperties;
+import org.odata4j.core.OProperty;
+import org.odata4j.edm.EdmEntitySet;
+import org.odata4j.edm.EdmEntityType;
+
+import com.temenos.interaction.core.entity.Entity;
+import com.temenos.interaction.core.entity.EntityProperties;
+import com.temenos.interaction.core.entity.EntityProperty;
+import com.temenos.interaction.core.resource.EntityResource;
+import com.temenos.interaction.odataext.odataparser.ODataParser;
+import com.temenos.interaction.odataext.odataparser.ODataParser.UnsupportedQueryOperationException;
+import com.temenos.interaction.odataext.odataparser.data.RowFilters;
+
+public class CompiledQueryTest {
+
+    @Test
+    public void testFilterEntities() throws UnsupportedQueryOperationException {
+        List<EntityResource<Entity>> entities = entities();
+        int kept = entityQuery("Balance gt 100 and Currency eq 'EUR'", null, null).apply(entities, 0,
+                Integer.MAX_VALUE);
+
+        assertEquals(2, kept);
+        assertEquals(Arrays.asList("4", "5"), ids(entities));
+    }
+
+    @Test
+    public void testFilterFunctions() throws UnsupportedQueryOperationException {
+        assertIds("substringof('ar', Name)", "2", "3");
+        assertIds("startswith(Name, 'B')", "2");
+        assertIds("endswith(tolower(Name), 'e')", "1", "4");
+        assertIds("length(Name) eq 4", "2", "3", "4");
+        assertIds("not (Currency eq 'EUR') or Balance mod 2 eq 1", "1", "2", "3");
+        assertIds("Balance add 10 ge 510", "4", "5");
+        assertIds("Name eq null", "5");
+        assertIds("Name ne null and Balance le 50", "1", "3");
+    }
+
+    @Test
+    public void testNullsNeverCompare() throws UnsupportedQueryOperationException {
+        // Entity 5 has no name.
+        assertIds("Name lt 'Z'", "1", "2", "3", "4");
+        assertIds("not (Name lt 'Z')");
+    }
+
+    @Test
+    public void testNotOfNullIsUnknown() throws UnsupportedQueryOperationException {
+        // Entity 5 has no name, so neither a comparison with it nor its negation is true.
+        assertIds("not (Name eq 'Bart')", "1", "3", "4");
+        assertIds("not (Name ne 'Bart')", "2");
+        assertIds("not (startswith(Name, 'B') or Balance gt 1000)", "1", "3", "4");
+        assertIds("not (Name eq null)", "1", "2", "3", "4");
+        assertIds("(Name lt 'Z') eq false");
+    }
+
+    @Test
+    public void testCoercion() throws UnsupportedQueryOperationException {
+        // Balances are strings in some entities.
+        List<EntityResource<Entity>> entities = new ArrayList<EntityResource<Entity>>();
+        entities.add(entityResource("1", "One", "USD", "120"));
+        entities.add(entityResource("2", "Two", "USD", new BigDecimal("99.5")));
+        entityQuery("Balance gt 100", null, null).apply(entities, 0, Integer.MAX_VALUE);
+        assertEquals(Arrays.asList("1"), ids(entities));
+
+        entities.add(entityResource("3", "Three", "USD", new LocalDateTime(2019, 1, 1, 0, 0).toDateTime().toDate()));
+        entityQuery("Balance ge datetime'2019-01-01T00:00'", null, null).apply(entities, 0, Integer.MAX_VALUE);
+        assertEquals(Arrays.asList("3"), ids(entities));
+    }
+
+    @Test
+    public void testOrderSkipTop() throws UnsupportedQueryOperationException {
+        List<EntityResource<Entity>> entities = entities();
+        int kept = entityQuery(null, null, "Currency desc, Balance").apply(entities, 1, 3);
+
+        assertEquals(3, kept);
+        // USD 30, USD 400, GBP 50, EUR 500, EUR 700 without the first.
+        assertEquals(Arrays.asList("2", "1", "4"), ids(entities));
+    }
+
+    @Test
+    public void testSkipTopWithoutOrder() throws UnsupportedQueryOperationException {
+        List<EntityResource<Entity>> entities = entities();
+        entityQuery("Currency eq 'EUR'", null, null).apply(entities, 1, 1);
+        assertEquals(Arrays.asList("5"), ids(entities));
+    }
+
+    @Test
+    public void testSelectEntities() throws UnsupportedQueryOperationException {
+        List<EntityResource<Entity>> entities = entities();
+        entityQuery("Id eq '1'", "Id, Name", null).apply(entities, 0, Integer.MAX_VALUE);
+
+        assertEquals(1, entities.size());
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("Id", "Name")), entities.get(0).getEntity()
+                .getProperties().getProperties().keySet());
+    }
+
+    @Test
+    public void testNestedProperty() throws UnsupportedQueryOperationException {
+        List<EntityResource<Entity>> entities = entities();
+        EntityProperties address = new EntityProperties();
+        address.setProperty(new EntityProperty("City", "Geneva"));
+        entities.get(2).getEntity().getProperties().setProperty(new EntityProperty("Address", address));
+
+        entityQuery("Address/City eq 'Geneva'", null, null).apply(entities, 0, Integer.MAX_VALUE);
+        assertEquals(Arrays.asList("3"), ids(entities));
+    }
+
+    @Test
+    public void testNotListCollection() throws UnsupportedQueryOperationException {
+        Collection<EntityResource<Entity>> entities = new LinkedHashSet<EntityResource<Entity>>(entities());
+        int kept = entityQuery("Currency eq 'USD'", null, "Balance desc").apply(entities, 0, Integer.MAX_VALUE);
+
+        assertEquals(2, kept);
+        assertEquals(Arrays.asList("2", "3"), ids(entities));
+    }
+
+    @Test
+    public void testBlockAll() throws UnsupportedQueryOperationException {
+        RowFilters blockAll = new RowFilters("Id eq '1'");
+        blockAll.addFilters((RowFilters) null);
+        List<EntityResource<Entity>> entities = entities();
+        new CompiledQuery.Builder<Entity>(new CoreEntityAdapter()).filter(blockAll).build().apply(entities, 0,
+                Integer.MAX_VALUE);
+        assertTrue(entities.isEmpty());
+    }
+
+    @Test(expected = UnsupportedQueryOperationException.class)
+    public void testUnsupported() throws UnsupportedQueryOperationException {
+        entityQuery("year(Created) eq 2019", null, null);
+    }
+
+    @Test
+    public void testOEntities() throws UnsupportedQueryOperationException {
+        List<EntityResource<OEntity>> entities = new ArrayList<EntityResource<OEntity>>();
+        entities.add(oEntityResource("1", "Alice", 10));
+        entities.add(oEntityResource("2", "Bob", 20));
+        entities.add(oEntityResource("3", "Carol", 30));
+
+        CompiledQuery<OEntity> query = new CompiledQuery.Builder<OEntity>(new OEntityAdapter())
+                .filter(ODataParser.parseFilters("Balance ge 20 and Missing eq null"))
+                .select(ODataParser.parseSelect("Name"))
+                .orderBy(ODataParser.parseOrderBy("Name desc")).build();
+        assertEquals(2, query.apply(entities, 0, Integer.MAX_VALUE));
+
+        OEntity first = entities.get(0).getEntity();
+        assertEquals("Carol", first.getProperty("Name").getValue());
+        assertEquals(1, first.getProperties().size());
+        assertEquals(OEntityKey.create("3"), first.getEntityKey());
+        assertEquals("Accounts", entities.get(0).getEntityName());
+    }
+
+    @Test
+    public void testReusable() throws UnsupportedQueryOperationException {
+        CompiledQuery<Entity> query = entityQuery("Currency eq 'USD'", null, null);
+        assertFalse(query.matches(entities().get(0).getEntity()));
+        assertTrue(query.matches(entities().get(1).getEntity()));
+        assertNull(query.getComparator());
+        assertTrue(query.hasFilter());
+    }
+
+    private void assertIds(String filter, String... ids) throws UnsupportedQueryOperationException {
+        List<EntityResource<Entity>> entities = entities();
+        entityQuery(filter, null, null).apply(entities, 0, Integer.MAX_VALUE);
+        assertEquals(filter, Arrays.asList(ids), ids(entities));
+    }
+
+    private CompiledQuery<Entity> entityQuery(String filter, String select, String orderBy)
+            throws UnsupportedQueryOperationException {
+        CompiledQuery.Builder<Entity> builder = new CompiledQuery.Builder<Entity>(new CoreEntityAdapter());
+        if (null != filter) {
+            builder.filter(ODataParser.parseFilters(filter));
+        }
+        if (null != select) {
+            builder.select(ODataParser.parseSelect(select));
+        }
+        return builder.orderBy(ODataParser.parseOrderBy(orderBy)).build();
+    }
+
+    private List<EntityResource<Entity>> entities() {
+        List<EntityResource<Entity>> entities = new ArrayList<EntityResource<Entity>>();
+        entities.add(entityResource("1", "Alice", "GBP", 50L));
+        entities.add(entityResource("2", "Bart", "USD", 400));
+        entities.add(entityResource("3", "Karl", "USD", 30));
+        entities.add(entityResource("4", "Kate", "EUR", 500));
+        entities.add(entityResource("5", null, "EUR", 700));
+        return entities;
+    }
+
+    private EntityResource<Entity> entityResource(String id, String name, String currency, Object balance) {
+        EntityProperties properties = new EntityProperties();
+        properties.setProperty(new EntityProperty("Id", id));
+        properties.setProperty(new EntityProperty("Name", name));
+        properties.setProperty(new EntityProperty("Currency", currency));
+        properties.setProperty(new EntityProperty("Balance", balance));
+        return new EntityResource<Entity>("Account", new Entity("Account", properties));
+    }
+
+    private EntityResource<OEntity> oEntityResource(String id, String name, int balance) {
+        List<OProperty<?>> properties = new ArrayList<OProperty<?>>();
+        properties.add(OProperties.string("Id", id));
+        properties.add(OProperties.string("Name", name));
+        properties.add(OProperties.int32("Balance", balance));
+        EdmEntityType.Builder entityType = EdmEntityType.newBuilder().setNamespace("QueryTest").setName("Account")
+                .addKeys(Arrays.asList("Id"));
+        EdmEntitySet entitySet = EdmEntitySet.newBuilder().setName("Accounts").setEntityType(entityType).build();
+        OEntity entity = OEntities.create(entitySet, OEntityKey.create(id), properties, new ArrayList<OLink>());
+        return new EntityResource<OEntity>("Accounts", entity);
+    }
+
+    private <E> List<String> ids(Collection<EntityResource<E>> entities) {
+        List<String> ids = new ArrayList<String>();
+        for (EntityResource<E> resource : entities) {
+            Object entity = resource.getEntity();
+            if (entity instanceof Entity) {
+                ids.add((String) ((Entity) entity).getProperties().getProperty("Id").getValue());
+            } else {
+                ids.add((String) ((OEntity) entity).getProperty("Id").getValue());
+            }
+        }
+        return ids;
+    }
+}
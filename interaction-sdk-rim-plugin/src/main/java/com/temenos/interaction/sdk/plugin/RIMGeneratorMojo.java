@@ -6,13 +6,24 @@ package com.temenos.interaction.sdk.plugin;
 
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Properties;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.springframework.core.io.ByteArrayResource;
 
 import com.google.inject.Injector;
 import com.temenos.interaction.core.entity.Metadata;
+import com.temenos.interaction.core.loader.PrdReader;
+import com.temenos.interaction.core.loader.PrdReader.UnsupportedPrdException;
+import com.temenos.interaction.core.loader.ResourceStateSnapshot;
+import com.temenos.interaction.core.loader.ResourceStateSnapshotWriter;
 import com.temenos.interaction.core.resource.ResourceMetadataManager;
 import com.temenos.interaction.rimdsl.RIMDslStandaloneSetup;
 import com.temenos.interaction.rimdsl.RIMDslStandaloneSetupSpringPRD;
@@ -59,6 +70,13 @@ public class RIMGeneratorMojo extends AbstractMojo {
      */
     private boolean skipRIMGenerationSpringPRD;
 
+	/**
+     * Also write a binary snapshot of the resource states of the generated
+     * Spring PRD files, to META-INF in the [targetDirectory].
+     * @parameter default-value="false"
+     */
+    private boolean generateSnapshot;
+
 	/**
      * Output location for generated Swagger docs.
      * @parameter expression="${project.build.directory}/swagger-gen"
@@ -91,6 +109,10 @@ public class RIMGeneratorMojo extends AbstractMojo {
 		this.skipRIMGenerationSpringPRD = (skipRIMGenerationSpringPRD != null && skipRIMGenerationSpringPRD.equalsIgnoreCase("true"));
 	}
     
+    public void setGenerateSnapshot(String generateSnapshot) {
+		this.generateSnapshot = (generateSnapshot != null && generateSnapshot.equalsIgnoreCase("true"));
+	}
+
     public void setSwaggerTargetDirectory(File swaggerTargetDirectory) {
 		this.swaggerTargetDirectory = swaggerTargetDirectory;
 	}
@@ -185,10 +207,70 @@ public class RIMGeneratorMojo extends AbstractMojo {
     		} else {
         		ok = generator.runGenerator(rimSourceFile.toString(), targetDirectory.toString());
     		}
+    		if (ok && generateSnapshot) {
+    			writeSnapshot();
+    		}
     	}
 		return ok;
 	}
 
+	/**
+	 * Write a snapshot of the resource states of the generated PRD files. A
+	 * file left out of it, or a missing snapshot, only means the resource
+	 * states are read from the PRD files at runtime.
+	 */
+	private void writeSnapshot() {
+		ResourceStateSnapshotWriter writer = new ResourceStateSnapshotWriter();
+		File[] prdFiles = targetDirectory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.matches("IRIS-.*-PRD\\.xml");
+			}
+		});
+		File metaInf = new File(targetDirectory, "META-INF");
+		File[] propertiesFiles = metaInf.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.matches("IRIS-.*\\.properties");
+			}
+		});
+		try {
+			int files = 0;
+			if (prdFiles != null) {
+				for (File prdFile : prdFiles) {
+					byte[] xml = Files.readAllBytes(prdFile.toPath());
+					try {
+						if (writer.addFile(prdFile.getName(), xml, PrdReader.read(new ByteArrayResource(xml)))) {
+							files++;
+							continue;
+						}
+					} catch (UnsupportedPrdException e) {
+						getLog().debug(e.getMessage());
+					}
+					getLog().info("Resource states of " + prdFile.getName() + " not in the snapshot");
+				}
+			}
+			if (propertiesFiles != null) {
+				for (File propertiesFile : propertiesFiles) {
+					Properties bindings = new Properties();
+					InputStream in = new FileInputStream(propertiesFile);
+					try {
+						bindings.load(in);
+					} finally {
+						in.close();
+					}
+					writer.addBindings(bindings);
+				}
+			}
+			metaInf.mkdirs();
+			File snapshotFile = new File(metaInf, ResourceStateSnapshot.FILE_NAME);
+			writer.write(snapshotFile);
+			getLog().info("Wrote resource state snapshot " + snapshotFile + " of " + files + " PRD files");
+		} catch (IOException e) {
+			getLog().warn("Failed to write the resource state snapshot", e);
+		}
+	}
+
 	/**
 	 * @throws MojoExecutionException
 	 */
@@ -13,6 +13,8 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.junit.Test;
 
+import com.temenos.interaction.core.loader.ResourceStateSnapshot;
+
 public class TestRIMGeneratorMojo {
 
 	@Test (expected = MojoExecutionException.class)
@@ -64,4 +66,30 @@ public class TestRIMGeneratorMojo {
 		assertEquals(2, targetDirectory.list().length);
 	}
 
+	@Test
+	public void testRIMGenerationSnapshot() throws Exception {
+		RIMGeneratorMojo mojo = new RIMGeneratorMojo();
+
+	    File rimSourceFile = new File("src/test/rim/Simple.rim");
+	    File targetDirectory = new File("target/springdsl-snapshot");
+		mojo.setSkipRIMGenerationSpringPRD("false");
+		mojo.setSkipSwaggerGeneration("true");
+		mojo.setSkipRIMGeneration("true");
+		mojo.setGenerateSnapshot("true");
+		mojo.setTargetDirectory(targetDirectory);
+		mojo.setRimSourceFile(rimSourceFile);
+
+		mojo.execute();
+
+		ResourceStateSnapshot snapshot = ResourceStateSnapshot.open(
+				new File(targetDirectory, "META-INF/" + ResourceStateSnapshot.FILE_NAME));
+		for (String prdFile : targetDirectory.list()) {
+			if (prdFile.endsWith("-PRD.xml")) {
+				assertTrue(prdFile, snapshot.contains(prdFile));
+				assertFalse(snapshot.read(prdFile).isEmpty());
+			}
+		}
+		assertFalse(snapshot.getBindings().isEmpty());
+	}
+
 }